@@ -0,0 +1,41 @@
+package src;
+
+/**
+ * File: Allegiance.java
+ * ---------------------
+ * The allegiances an intersection can have. During the game an intersection is empty or holds a
+ * black or white piece. When the game ends, every empty intersection is turned into black or white
+ * territory, or neutral territory if it touches both colours, so that tallyScore can count pieces
+ * and territory together. A player's territory is always their colour plus TERRITORY_OFFSET.
+ */
+
+public final class Allegiance {
+
+	public static final int EMPTY = 0;
+	public static final int BLACK = 1;
+	public static final int WHITE = 2;
+	public static final int BLACK_TERRITORY = 3;
+	public static final int WHITE_TERRITORY = 4;
+	public static final int NEUTRAL = 5;
+
+	/** added to a player's colour to give their territory */
+	public static final int TERRITORY_OFFSET = BLACK_TERRITORY - BLACK;
+
+	private Allegiance() {
+	}
+
+	/** isPiece returns true if the allegiance is a black or white piece */
+	public static boolean isPiece(int allegiance) {
+		return allegiance == BLACK || allegiance == WHITE;
+	}
+
+	/** opponent returns the other player's colour */
+	public static int opponent(int colour) {
+		return BLACK + WHITE - colour;
+	}
+
+	/** territoryOf returns the allegiance of the given player's territory */
+	public static int territoryOf(int colour) {
+		return colour + TERRITORY_OFFSET;
+	}
+}
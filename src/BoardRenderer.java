@@ -0,0 +1,440 @@
+package src;
+
+/**
+ * File: BoardRenderer.java
+ * ------------------------
+ * The BoardRenderer draws the whole game onto a single Swing component instead of adding a
+ * GLine for every line of the board and a GOval for every piece to the acm canvas.
+ *
+ * The grid only changes when the view moves, so it is drawn into an image and copied to the
+ * screen. The pieces are kept in a byte for every intersection, and whenever one changes only
+ * the small square around that intersection is repainted. Swing draws into an off-screen buffer
+ * first, so the player never sees a half drawn board.
+ *
+ * The board is seen through a viewport that can be zoomed with the mouse wheel and moved by
+ * dragging with the mouse, so boards far too large to fit in the window can still be played on.
+ * Only the lines and pieces inside the window are ever drawn or looked at, so the cost of
+ * drawing depends on the size of the window rather than the size of the board.
+ */
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+
+public class BoardRenderer extends JComponent {
+
+	/** added to the allegiance of a piece in stones to draw it in grey */
+	private static final int GREYED = 4;
+
+	/** levels of setAtariHighlight: no ring, a ring for a chain that can escape, and one for a chain that can't */
+	public static final int NO_HIGHLIGHT = 0;
+	public static final int ATARI_ESCAPABLE = 1;
+	public static final int ATARI_LOST = 2;
+
+	/** the highlight level of a piece is stored in stones shifted up by this much */
+	private static final int HIGHLIGHT_SHIFT = 3;
+	private static final int HIGHLIGHT_MASK = 3 << HIGHLIGHT_SHIFT;
+
+	private static final Color ESCAPABLE_COLOR = Color.ORANGE;
+	private static final Color LOST_COLOR = Color.RED;
+
+	private static final Font TURN_FONT = new Font(Font.DIALOG, Font.PLAIN, 18);
+
+	/**
+	 * The diameter of a piece compared to the distance between lines. A click
+	 * counts as choosing an intersection if it lands on where its piece would be.
+	 */
+	private static final double PIECE_SIZE = 0.5;
+
+	/**
+	 * The separation between lines is never less than this when the game
+	 * starts, so that the pieces on a large board are big enough to click. The
+	 * players can zoom out further than this, down to MIN_LINE_SEP.
+	 */
+	private static final double PLAYABLE_LINE_SEP = 20;
+
+	/**
+	 * The closest together and furthest apart the lines can be zoomed to. The
+	 * lower limit keeps the number of visible intersections small enough to
+	 * draw quickly however large the board is.
+	 */
+	private static final double MIN_LINE_SEP = 4;
+	private static final double MAX_LINE_SEP = 120;
+
+	/** how much one notch of the mouse wheel zooms in or out */
+	private static final double ZOOM_PER_NOTCH = 1.15;
+
+	private final int numLines;
+	private final int extraHeight;
+
+	/**
+	 * The piece on every intersection, stored at index i * numLines + j the
+	 * same way a GoBoard stores its points: 0 for no piece, 1 for black, 2 for
+	 * white, plus GREYED if the piece should be drawn grey, plus its highlight
+	 * level shifted up by HIGHLIGHT_SHIFT.
+	 */
+	private final byte[] stones;
+
+	/**
+	 * The viewport: lineSep is the distance between lines in pixels and
+	 * originX, originY is where on the screen intersection 0, 0 is drawn,
+	 * which is off of the screen once the board has been moved.
+	 */
+	private double lineSep;
+	private double originX;
+	private double originY;
+
+	/**
+	 * the grid as seen through the current viewport, redrawn when the viewport
+	 * changes into the same image, which is only made again when the window
+	 * changes size
+	 */
+	private BufferedImage background;
+	private boolean backgroundOutdated = true;
+
+	private int currentTurn = 1;
+	private int currentPlayer = 1;
+
+	/** where the mouse was last dragged to, while the board is being moved */
+	private int dragX;
+	private int dragY;
+
+	public BoardRenderer(int numLines, int extraHeight, int width, int height) {
+		this.numLines = numLines;
+		this.extraHeight = extraHeight;
+		stones = new byte[numLines * numLines];
+		setSize(width, height);
+		setDoubleBuffered(true);
+		setOpaque(true);
+
+		/*
+		 * the board fills the window if the lines can still be far enough apart
+		 * to play on, otherwise the top left corner of the board is shown
+		 */
+		double fittedLineSep = Math.min(width, height - extraHeight)
+				/ (double) (numLines + 1);
+		lineSep = Math.max(fittedLineSep, PLAYABLE_LINE_SEP);
+		originX = lineSep;
+		originY = extraHeight + lineSep;
+
+		ViewportMover mover = new ViewportMover();
+		addMouseListener(mover);
+		addMouseMotionListener(mover);
+		addMouseWheelListener(mover);
+	}
+
+	/**
+	 * setStone changes the piece drawn at indices i and j to the given
+	 * allegiance. Anything but 1 or 2 means there is no piece. Only the
+	 * intersection that changed is repainted.
+	 */
+	public void setStone(int i, int j, int allegiance) {
+		byte stone = (byte) (allegiance == 1 || allegiance == 2 ? allegiance : 0);
+		if (stones[i * numLines + j] != stone) {
+			stones[i * numLines + j] = stone;
+			repaintIntersection(i, j);
+		}
+	}
+
+	/**
+	 * setStones changes every piece drawn to the pieces of the given board,
+	 * taking away any grey or highlight. However many pieces changed, the
+	 * board is only repainted once, so a board many turns away from the one
+	 * shown costs no more to draw than a board one turn away.
+	 *
+	 * @return how many intersections changed
+	 */
+	public int setStones(PackedPosition position) {
+		int numChanged = 0;
+		for (int p = 0; p < stones.length; p++) {
+			int allegiance = position.get(p);
+			byte stone = (byte) (allegiance == 1 || allegiance == 2 ? allegiance : 0);
+			if (stones[p] != stone) {
+				stones[p] = stone;
+				numChanged++;
+			}
+		}
+		if (numChanged > 0) {
+			repaint(0, extraHeight, getWidth(), getHeight() - extraHeight);
+		}
+		return numChanged;
+	}
+
+	/** setGreyed draws the piece at indices i and j in grey, or back in its own color */
+	public void setGreyed(int i, int j, boolean greyed) {
+		int stone = stones[i * numLines + j] & ~GREYED;
+		if (stone != 0) {
+			stones[i * numLines + j] = (byte) (greyed ? stone | GREYED : stone);
+			repaintIntersection(i, j);
+		}
+	}
+
+	/**
+	 * setAtariHighlight draws a ring around the piece at indices i and j, in
+	 * orange for ATARI_ESCAPABLE or red for ATARI_LOST, or takes it away for
+	 * NO_HIGHLIGHT.
+	 */
+	public void setAtariHighlight(int i, int j, int level) {
+		int stone = stones[i * numLines + j] & ~HIGHLIGHT_MASK;
+		byte highlighted = (byte) (stone | level << HIGHLIGHT_SHIFT);
+		if (stone != 0 && stones[i * numLines + j] != highlighted) {
+			stones[i * numLines + j] = highlighted;
+			repaintIntersection(i, j);
+		}
+	}
+
+	/** setTurnInformation changes the turn number and player shown above the board */
+	public void setTurnInformation(int turn, int player) {
+		currentTurn = turn;
+		currentPlayer = player;
+		repaint(0, 0, getWidth(), extraHeight);
+	}
+
+	/**
+	 * findIntersection returns the index i * numLines + j of the intersection
+	 * whose piece covers the point x, y on the screen, or -1 if the point isn't
+	 * on any piece or is hidden behind the turn information. Only the nearest
+	 * intersection is checked, so this takes the same time on any board.
+	 */
+	public int findIntersection(int x, int y) {
+		if (y < extraHeight) {
+			return -1;
+		}
+		int i = (int) Math.round((x - originX) / lineSep);
+		int j = (int) Math.round((y - originY) / lineSep);
+		if (i < 0 || j < 0 || i >= numLines || j >= numLines) {
+			return -1;
+		}
+		double dx = x - getIntersectionX(i);
+		double dy = y - getIntersectionY(j);
+		if (Math.sqrt(dx * dx + dy * dy) > pieceDiameter() / 2) {
+			return -1;
+		}
+		return i * numLines + j;
+	}
+
+	/** getIntersectionX returns the x coordinate on the screen of the intersections in column i */
+	public double getIntersectionX(int i) {
+		return originX + lineSep * i;
+	}
+
+	/** getIntersectionY returns the y coordinate on the screen of the intersections in row j */
+	public double getIntersectionY(int j) {
+		return originY + lineSep * j;
+	}
+
+	private double pieceDiameter() {
+		return lineSep * PIECE_SIZE;
+	}
+
+	private void repaintIntersection(int i, int j) {
+		int radius = (int) Math.ceil(pieceDiameter() / 2) + 1;
+		repaint((int) getIntersectionX(i) - radius,
+				(int) getIntersectionY(j) - radius, 2 * radius + 1,
+				2 * radius + 1);
+	}
+
+	/**
+	 * zoom changes the distance between lines by the given factor, keeping the
+	 * point of the board under x, y on the screen where it is.
+	 */
+	private void zoom(double factor, int x, int y) {
+		double fittedLineSep = Math.min(getWidth(), getHeight() - extraHeight)
+				/ (double) (numLines + 1);
+		double minLineSep = Math.max(MIN_LINE_SEP, Math.min(fittedLineSep, PLAYABLE_LINE_SEP));
+		double newLineSep = Math.min(MAX_LINE_SEP, Math.max(minLineSep, lineSep * factor));
+
+		originX = x - (x - originX) * newLineSep / lineSep;
+		originY = y - (y - originY) * newLineSep / lineSep;
+		lineSep = newLineSep;
+		moveViewport(0, 0);
+	}
+
+	/**
+	 * moveViewport moves the board by dx, dy pixels, but never so far that the
+	 * board leaves the window completely.
+	 */
+	private void moveViewport(double dx, double dy) {
+		double boardLength = lineSep * (numLines - 1);
+		originX = Math.min(getWidth() - lineSep,
+				Math.max(lineSep - boardLength, originX + dx));
+		originY = Math.min(getHeight() - lineSep,
+				Math.max(extraHeight + lineSep - boardLength, originY + dy));
+		backgroundOutdated = true;
+		repaint();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		if (background == null || background.getWidth() != getWidth()
+				|| background.getHeight() != getHeight()) {
+			background = new BufferedImage(getWidth(), getHeight(),
+					BufferedImage.TYPE_INT_RGB);
+			backgroundOutdated = true;
+		}
+		if (backgroundOutdated) {
+			drawBackground();
+			backgroundOutdated = false;
+		}
+
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		g.drawImage(background, 0, 0, null);
+
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+
+		/*
+		 * only the intersections whose pieces overlap the area being repainted
+		 * are looked at, so repainting one piece doesn't look at the whole
+		 * board, and repainting the window doesn't look at the hidden parts
+		 */
+		g2.clipRect(0, extraHeight, getWidth(), getHeight() - extraHeight);
+		double radius = pieceDiameter() / 2;
+		int firstI = Math.max(0, (int) Math.floor((clip.x - radius - originX) / lineSep));
+		int lastI = Math.min(numLines - 1,
+				(int) Math.ceil((clip.x + clip.width + radius - originX) / lineSep));
+		int firstJ = Math.max(0, (int) Math.floor((clip.y - radius - originY) / lineSep));
+		int lastJ = Math.min(numLines - 1,
+				(int) Math.ceil((clip.y + clip.height + radius - originY) / lineSep));
+
+		for (int i = firstI; i <= lastI; i++) {
+			for (int j = firstJ; j <= lastJ; j++) {
+				int stone = stones[i * numLines + j];
+				if (stone != 0) {
+					drawStone(g2, getIntersectionX(i), getIntersectionY(j),
+							pieceDiameter(), stone);
+				}
+			}
+		}
+		g2.setClip(clip);
+
+		if (clip.y < extraHeight) {
+			drawTurnInformation(g2);
+		}
+	}
+
+	private void drawStone(Graphics2D g, double x, double y, double diameter, int stone) {
+		int left = (int) Math.round(x - diameter / 2);
+		int top = (int) Math.round(y - diameter / 2);
+		int size = Math.max(1, (int) Math.round(diameter));
+
+		if ((stone & GREYED) != 0) {
+			g.setColor(Color.GRAY);
+		} else if ((stone & 3) == 1) {
+			g.setColor(Color.BLACK);
+		} else {
+			g.setColor(Color.WHITE);
+		}
+		g.fillOval(left, top, size, size);
+
+		int highlight = (stone & HIGHLIGHT_MASK) >> HIGHLIGHT_SHIFT;
+		if (highlight != NO_HIGHLIGHT) {
+			// the ring is drawn just inside the piece so it never spills onto its neighbors
+			int width = Math.max(2, size / 8);
+			Stroke thin = g.getStroke();
+			g.setStroke(new BasicStroke(width));
+			g.setColor(highlight == ATARI_LOST ? LOST_COLOR : ESCAPABLE_COLOR);
+			g.drawOval(left + width / 2, top + width / 2, size - width, size - width);
+			g.setStroke(thin);
+		} else {
+			g.setColor(Color.BLACK);
+			g.drawOval(left, top, size, size);
+		}
+	}
+
+	/**
+	 * drawTurnInformation draws "Current Turn:" with the turn number, and
+	 * "Current Player:" followed by a piece of that player's color, on a blank
+	 * strip above the board so that the board can be moved underneath it.
+	 */
+	private void drawTurnInformation(Graphics2D g) {
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, getWidth(), extraHeight);
+
+		g.setFont(TURN_FONT);
+		g.setColor(Color.BLACK);
+		g.drawString("Current Turn: " + currentTurn, 0, extraHeight / 2);
+
+		String playerText = "Current Player:";
+		g.drawString(playerText, 0, extraHeight - 4);
+
+		double diameter = Math.min(extraHeight / 2 - 4, 20);
+		int ascent = g.getFontMetrics().getAscent();
+		double x = g.getFontMetrics().stringWidth(playerText) + diameter;
+		double y = extraHeight - 4 - ascent / 3.0;
+		drawStone(g, x, y, diameter, currentPlayer);
+	}
+
+	/**
+	 * drawBackground is a void method that draws the empty board as seen
+	 * through the viewport over the background image, drawing only the parts
+	 * of the lines that are inside the window.
+	 */
+	private void drawBackground() {
+		Graphics2D g = background.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, getWidth(), getHeight());
+		g.setColor(Color.BLACK);
+
+		int firstI = Math.max(0, (int) Math.ceil(-originX / lineSep));
+		int lastI = Math.min(numLines - 1, (int) Math.floor((getWidth() - originX) / lineSep));
+		int firstJ = Math.max(0, (int) Math.ceil((extraHeight - originY) / lineSep));
+		int lastJ = Math.min(numLines - 1, (int) Math.floor((getHeight() - originY) / lineSep));
+
+		int top = (int) Math.round(getIntersectionY(Math.max(0, firstJ - 1)));
+		int bottom = (int) Math.round(getIntersectionY(Math.min(numLines - 1, lastJ + 1)));
+		int left = (int) Math.round(getIntersectionX(Math.max(0, firstI - 1)));
+		int right = (int) Math.round(getIntersectionX(Math.min(numLines - 1, lastI + 1)));
+
+		for (int i = firstI; i <= lastI; i++) {
+			int x = (int) Math.round(getIntersectionX(i));
+			g.drawLine(x, top, x, bottom);
+		}
+		for (int j = firstJ; j <= lastJ; j++) {
+			int y = (int) Math.round(getIntersectionY(j));
+			g.drawLine(left, y, right, y);
+		}
+		g.dispose();
+	}
+
+	/**
+	 * A ViewportMover zooms the board when the mouse wheel is turned and moves
+	 * it when the mouse is dragged. Clicks are left for the Go program, since a
+	 * drag never counts as a click.
+	 */
+	private class ViewportMover extends MouseAdapter {
+
+		@Override
+		public void mousePressed(MouseEvent e) {
+			dragX = e.getX();
+			dragY = e.getY();
+		}
+
+		@Override
+		public void mouseDragged(MouseEvent e) {
+			moveViewport(e.getX() - dragX, e.getY() - dragY);
+			dragX = e.getX();
+			dragY = e.getY();
+		}
+
+		@Override
+		public void mouseWheelMoved(MouseWheelEvent e) {
+			zoom(Math.pow(ZOOM_PER_NOTCH, -e.getWheelRotation()), e.getX(), e.getY());
+		}
+	}
+}
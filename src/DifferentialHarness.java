@@ -0,0 +1,672 @@
+package src;
+
+/**
+ * File: DifferentialHarness.java
+ * ------------------------------
+ * The DifferentialHarness checks that a RulesEngine plays by exactly the same rules as the Go
+ * program, by playing the same random games on it and on a GoRules side by side. GoRules is the
+ * board and rules every game of the Go program is played on, so the harness always checks
+ * against the rules as they are, captures, every rule against repeating boards, undoing and both
+ * ways of counting included. It is run on its own, not from the Go program:
+ *
+ *     java src.DifferentialHarness [--games n] [--threads n] [--min-size n] [--max-size n]
+ *             [--ko | --superko | --situational-superko] [--territory] [--seed n] [engine]
+ *
+ * where the engine is "tree", the VariationTree and TerritoryScorer that the Go program uses for
+ * its variations and scoring, or "reference", the ReferenceRules copy of the first version of the
+ * Go program. The defaults are a million games, a thread for every processor, boards from 2x2 to
+ * 9x9, Ko or Superko chosen at random for each game, counting by area, and the tree engine.
+ * Situational superko and counting by territory are only played when asked for, since the
+ * reference engine has neither.
+ *
+ * A turn is a move, a pass, or now and then an undo of one to three turns, which is asked for the
+ * way the Undo button asks for it: an undo of more turns than have been taken undoes one. After
+ * every turn both engines must agree on whether the turn was allowed, whose turn it is, the count
+ * of passes and every point of the board, and after every pass or undo and at the end of the game
+ * they must agree on the score, which is how the prisoners given back by an undo are checked.
+ * Small boards are the default because random play on them fills the board, so captures, self
+ * capture and repeated boards happen all the time.
+ *
+ * Every game comes from its own random numbers, worked out from the seed and the number of the
+ * game, so any game can be played again without the rest. The games are shared out between the
+ * threads, and once a game goes wrong no game after it is started, but every game before it is
+ * still finished, so the first game that goes wrong is always the same one. That game is then
+ * made as short as possible by leaving out turns while it still goes wrong, and printed.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DifferentialHarness {
+
+	/** the turn of a game that is a pass rather than a move */
+	public static final int PASS = -1;
+
+	/**
+	 * a turn below PASS is an undo, of as many turns as it is below PASS, so
+	 * UNDO undoes one turn, UNDO - 1 two and so on
+	 */
+	public static final int UNDO = -2;
+
+	/** the chance of passing instead of trying a move */
+	private static final double PASS_CHANCE = 0.05;
+
+	/** the chance of undoing instead of trying a move, and the most turns undone at once */
+	private static final double UNDO_CHANCE = 0.03;
+	private static final int MAX_UNDO = 3;
+
+	/** a game is stopped after this many turns for every point on the board */
+	private static final int MAX_TURNS_PER_POINT = 4;
+
+	/** the largest bonus for white a game is given */
+	private static final int MAX_BONUS = 7;
+
+	/** the names of the rules against repeating boards, for reports */
+	private static final String[] RULE_NAMES = { "Ko", "Superko", "situational superko" };
+
+	/** how many games go by between reports of how far the harness has got */
+	private static final long PROGRESS_INTERVAL = 100000;
+
+	private final RulesEngine.Factory candidate;
+	private final long numGames;
+	private final int numThreads;
+	private final int minSize;
+	private final int maxSize;
+
+	/** one of the rules of RulesEngine, or RANDOM_KO_OR_SUPERKO to choose for every game */
+	private final int ruleChoice;
+	private final int counting;
+	private final long seed;
+
+	/** the rule choice that picks Ko or Superko at random for every game */
+	public static final int RANDOM_KO_OR_SUPERKO = -1;
+
+	public DifferentialHarness(RulesEngine.Factory candidate, long numGames, int numThreads,
+			int minSize, int maxSize, int ruleChoice, int counting, long seed) {
+		this.candidate = candidate;
+		this.numGames = numGames;
+		this.numThreads = Math.max(1, numThreads);
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.ruleChoice = ruleChoice;
+		this.counting = counting;
+		this.seed = seed;
+	}
+
+	public static void main(String[] args) {
+		long games = 1000000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int minSize = 2;
+		int maxSize = 9;
+		int ruleChoice = RANDOM_KO_OR_SUPERKO;
+		int counting = RulesEngine.AREA;
+		long seed = System.nanoTime();
+		String name = "tree";
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--games")) {
+					games = Long.parseLong(args[++i]);
+				} else if (args[i].equals("--threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--min-size")) {
+					minSize = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--max-size")) {
+					maxSize = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--ko")) {
+					ruleChoice = RulesEngine.SIMPLE_KO;
+				} else if (args[i].equals("--superko")) {
+					ruleChoice = RulesEngine.POSITIONAL_SUPERKO;
+				} else if (args[i].equals("--situational-superko")) {
+					ruleChoice = RulesEngine.SITUATIONAL_SUPERKO;
+				} else if (args[i].equals("--territory")) {
+					counting = RulesEngine.TERRITORY;
+				} else if (args[i].equals("--seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else {
+					name = args[i];
+				}
+			}
+		} catch (RuntimeException badArguments) {
+			games = 0;
+		}
+
+		RulesEngine.Factory candidate = engineNamed(name);
+		if (candidate == null) {
+			System.out.println("There is no engine called " + name);
+			return;
+		}
+		if (games < 1 || minSize < 2 || maxSize < minSize) {
+			System.out.println("Usage: java src.DifferentialHarness [--games n] [--threads n]"
+					+ " [--min-size n] [--max-size n] [--ko | --superko | --situational-superko]"
+					+ " [--territory] [--seed n] [engine]");
+			System.out.println("Engines: tree, reference");
+			return;
+		}
+		try {
+			if (ruleChoice == RANDOM_KO_OR_SUPERKO) {
+				candidate.create(minSize, RulesEngine.SIMPLE_KO, counting);
+				candidate.create(minSize, RulesEngine.POSITIONAL_SUPERKO, counting);
+			} else {
+				candidate.create(minSize, ruleChoice, counting);
+			}
+		} catch (IllegalArgumentException unsupported) {
+			System.out.println(unsupported.getMessage());
+			return;
+		}
+
+		System.out.println("Checking " + candidate.getName() + " against "
+				+ GoRules.FACTORY.getName() + " with seed " + seed);
+		DifferentialHarness harness = new DifferentialHarness(candidate, games, threads, minSize,
+				maxSize, ruleChoice, counting, seed);
+		long startTime = System.nanoTime();
+		Divergence divergence = harness.run();
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+
+		if (divergence == null) {
+			System.out.printf("All %d games agreed, in %.1f seconds (%.0f games per second)%n",
+					games, seconds, games / seconds);
+		} else {
+			System.out.printf("Game %d went wrong after %.1f seconds%n", divergence.game.number,
+					seconds);
+			System.out.println("As played: " + divergence.describe());
+			System.out.println();
+			System.out.print(harness.minimise(divergence).report());
+		}
+	}
+
+	/** engineNamed returns the factory for an engine's name, or null if there is none */
+	public static RulesEngine.Factory engineNamed(String name) {
+		if (name.equals("tree")) {
+			return TreeRules.FACTORY;
+		} else if (name.equals("reference")) {
+			return ReferenceRules.FACTORY;
+		}
+		return null;
+	}
+
+	/**
+	 * run plays every game, using numThreads threads, and returns how the
+	 * first game to go wrong went wrong, or null if none did.
+	 */
+	public Divergence run() {
+		final AtomicLong nextGame = new AtomicLong();
+		final AtomicLong firstWrong = new AtomicLong(Long.MAX_VALUE);
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<Divergence>> parts = new ArrayList<Future<Divergence>>();
+
+		for (int t = 0; t < numThreads; t++) {
+			parts.add(pool.submit(new Callable<Divergence>() {
+				public Divergence call() {
+					Divergence first = null;
+					while (true) {
+						long number = nextGame.getAndIncrement();
+						if (number >= numGames || number > firstWrong.get()) {
+							return first;
+						}
+						Divergence divergence = playRandomGame(number);
+						if (divergence != null && first == null) {
+							first = divergence;
+							lowerTo(firstWrong, number);
+						}
+						if ((number + 1) % PROGRESS_INTERVAL == 0) {
+							System.out.println((number + 1) + " games started");
+						}
+					}
+				}
+			}));
+		}
+
+		Divergence first = null;
+		try {
+			for (Future<Divergence> part : parts) {
+				Divergence divergence = part.get();
+				if (divergence != null
+						&& (first == null || divergence.game.number < first.game.number)) {
+					first = divergence;
+				}
+			}
+		} catch (InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException failed) {
+			throw new RuntimeException(failed.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return first;
+	}
+
+	/** lowerTo sets value to number if number is lower */
+	private static void lowerTo(AtomicLong value, long number) {
+		long current = value.get();
+		while (number < current && !value.compareAndSet(current, number)) {
+			current = value.get();
+		}
+	}
+
+	/**
+	 * playRandomGame makes up game number and plays it on both engines, one
+	 * turn at a time, and returns how they first disagreed, or null if they
+	 * never did. The turns are chosen by looking at the reference board, and
+	 * an empty point is much more likely to be tried than a taken one.
+	 */
+	Divergence playRandomGame(long number) {
+		Random random = new Random(seed ^ (number * 0x9E3779B97F4A7C15L));
+		int size = minSize + random.nextInt(maxSize - minSize + 1);
+		int rule = ruleChoice;
+		if (rule == RANDOM_KO_OR_SUPERKO) {
+			rule = random.nextBoolean() ? RulesEngine.SIMPLE_KO : RulesEngine.POSITIONAL_SUPERKO;
+		}
+		int bonus = random.nextInt(MAX_BONUS + 1);
+		int numPoints = size * size;
+		int maxTurns = MAX_TURNS_PER_POINT * numPoints;
+
+		Game game = new Game(number, size, rule, counting, bonus, new int[maxTurns]);
+		Match match = new Match(game);
+		int numTurns = 0;
+
+		while (numTurns < maxTurns && match.reference.getPasses() < 2) {
+			int turn = PASS;
+			double kind = random.nextDouble();
+			if (kind < UNDO_CHANCE) {
+				turn = UNDO - random.nextInt(MAX_UNDO);
+			} else if (kind >= UNDO_CHANCE + PASS_CHANCE) {
+				turn = random.nextInt(numPoints);
+				if (match.reference.get(turn / size, turn % size) != 0) {
+					turn = random.nextInt(numPoints);
+				}
+			}
+			game.turns[numTurns++] = turn;
+
+			String difference = match.take(turn);
+			if (difference != null) {
+				match.close();
+				return new Divergence(game.truncate(numTurns), numTurns - 1, difference, match);
+			}
+		}
+
+		game = game.truncate(numTurns);
+		String difference = match.compareScores();
+		match.close();
+		if (difference != null) {
+			return new Divergence(game, numTurns, difference, match);
+		}
+		return null;
+	}
+
+	/**
+	 * replay plays a game on both engines and returns how they first
+	 * disagreed, or null if they never did, including at the end.
+	 */
+	Divergence replay(Game game) {
+		Match match = new Match(game);
+		for (int i = 0; i < game.turns.length; i++) {
+			String difference = match.take(game.turns[i]);
+			if (difference != null) {
+				match.close();
+				return new Divergence(game.truncate(i + 1), i, difference, match);
+			}
+		}
+		String difference = match.compareScores();
+		match.close();
+		if (difference != null) {
+			return new Divergence(game, game.turns.length, difference, match);
+		}
+		return null;
+	}
+
+	/**
+	 * minimise makes a game that went wrong as short as it can by leaving out
+	 * runs of turns, starting with half of the game and going down to single
+	 * turns, keeping every shorter game that still goes wrong. Runs of an even
+	 * length leave the colour of every later turn the same, so runs of two are
+	 * tried again after single turns until neither makes the game shorter.
+	 * Every turn after the one that went wrong is dropped straight away.
+	 */
+	public Divergence minimise(Divergence divergence) {
+		Divergence best = divergence;
+		int run = Math.max(1, best.game.turns.length / 2);
+		boolean pairsDone = false;
+
+		while (true) {
+			Divergence shorter = leaveOutRuns(best, run);
+			if (shorter != best) {
+				best = shorter;
+				if (run == 1) {
+					pairsDone = false;
+				}
+			} else if (run > 2) {
+				run = (run + 1) / 2;
+			} else if (run == 2) {
+				pairsDone = true;
+				run = 1;
+			} else if (pairsDone) {
+				return best;
+			} else {
+				run = 2;
+			}
+		}
+	}
+
+	/**
+	 * leaveOutRuns tries leaving out every run of the given length in turn,
+	 * and returns the shortest game found that still goes wrong, which is the
+	 * same divergence if none does.
+	 */
+	private Divergence leaveOutRuns(Divergence divergence, int run) {
+		Divergence best = divergence;
+		int start = 0;
+		while (start < best.game.turns.length) {
+			int[] turns = best.game.turns;
+			int end = Math.min(turns.length, start + run);
+			int[] shorter = new int[turns.length - (end - start)];
+			System.arraycopy(turns, 0, shorter, 0, start);
+			System.arraycopy(turns, end, shorter, start, turns.length - end);
+
+			Divergence again = replay(best.game.withTurns(shorter));
+			if (again != null) {
+				best = again;
+			} else {
+				start += run;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * A Game is the rules of a game and every turn taken in it: PASS, an undo
+	 * at UNDO or below, or a point x * size + y
+	 */
+	static class Game {
+
+		final long number;
+		final int size;
+		final int rule;
+		final int counting;
+		final int whiteDisadvantageBonus;
+		final int[] turns;
+
+		Game(long number, int size, int rule, int counting, int whiteDisadvantageBonus,
+				int[] turns) {
+			this.number = number;
+			this.size = size;
+			this.rule = rule;
+			this.counting = counting;
+			this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+			this.turns = turns;
+		}
+
+		Game truncate(int numTurns) {
+			return withTurns(Arrays.copyOf(turns, numTurns));
+		}
+
+		Game withTurns(int[] newTurns) {
+			return new Game(number, size, rule, counting, whiteDisadvantageBonus, newTurns);
+		}
+	}
+
+	/**
+	 * A Match is a game being played on the reference, the GoRules the Go
+	 * program plays on, and the candidate at once
+	 */
+	private class Match {
+
+		final Game game;
+		final GoRules reference;
+		final RulesEngine other;
+
+		/** whether the last turn was allowed */
+		boolean allowed;
+
+		Match(Game game) {
+			this.game = game;
+			reference = GoRules.create(game.size, game.rule, game.counting);
+			other = candidate.create(game.size, game.rule, game.counting);
+		}
+
+		/** close lets go of the reference's history once the game has been played */
+		void close() {
+			reference.close();
+		}
+
+		/**
+		 * take plays a turn on both engines and returns what they disagree on
+		 * afterwards, or null if nothing. An undo of more turns than can be
+		 * undone is an undo of one turn, as it is for the Undo button.
+		 */
+		String take(int turn) {
+			int size = game.size;
+			boolean candidateAllowed;
+			if (turn == PASS) {
+				allowed = reference.pass();
+				candidateAllowed = other.pass();
+			} else if (turn <= UNDO) {
+				int numTurns = UNDO + 1 - turn;
+				if (numTurns > reference.getNumUndoable()) {
+					numTurns = 1;
+				}
+				allowed = reference.undo(numTurns);
+				candidateAllowed = other.undo(numTurns);
+			} else {
+				allowed = reference.play(turn / size, turn % size);
+				candidateAllowed = other.play(turn / size, turn % size);
+			}
+
+			if (allowed != candidateAllowed) {
+				return "the Go program " + (allowed ? "allowed" : "refused") + " the turn but "
+						+ candidate.getName() + (candidateAllowed ? " allowed" : " refused") + " it";
+			}
+			if (reference.getCurrentPlayer() != other.getCurrentPlayer()) {
+				return "it is player " + reference.getCurrentPlayer() + "'s turn for the Go program but "
+						+ "player " + other.getCurrentPlayer() + "'s for " + candidate.getName();
+			}
+			if (reference.getPasses() != other.getPasses()) {
+				return "the Go program counts " + reference.getPasses() + " passes in a row but "
+						+ candidate.getName() + " counts " + other.getPasses();
+			}
+			for (int x = 0; x < size; x++) {
+				for (int y = 0; y < size; y++) {
+					if (reference.get(x, y) != other.get(x, y)) {
+						return "(" + x + ", " + y + ") is " + reference.get(x, y)
+								+ " for the Go program but " + other.get(x, y) + " for "
+								+ candidate.getName();
+					}
+				}
+			}
+			if ((turn == PASS || turn <= UNDO) && allowed) {
+				return compareScores();
+			}
+			return null;
+		}
+
+		/** compareScores returns how the two engines' scores differ, or null if they don't */
+		String compareScores() {
+			int[] expected = reference.score(game.whiteDisadvantageBonus);
+			int[] actual = other.score(game.whiteDisadvantageBonus);
+			if (!Arrays.equals(expected, actual)) {
+				return "the Go program scores black " + expected[0] + " and white " + expected[1]
+						+ " but " + candidate.getName() + " scores black " + actual[0]
+						+ " and white " + actual[1];
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A Divergence is a game that went wrong: its turns up to the one where the
+	 * engines disagreed (or every turn, if they only disagreed on the final
+	 * score), what they disagreed on, and both boards at that point.
+	 */
+	public class Divergence {
+
+		final Game game;
+
+		/** the index of the turn that went wrong, or the number of turns for the final score */
+		final int turnIndex;
+		final String difference;
+		final String referenceBoard;
+		final String candidateBoard;
+
+		private Divergence(Game game, int turnIndex, String difference, Match match) {
+			this.game = game;
+			this.turnIndex = turnIndex;
+			this.difference = difference;
+			referenceBoard = drawBoard(match.reference);
+			candidateBoard = drawBoard(match.other);
+		}
+
+		/** describe says where the game went wrong and how, in one line */
+		public String describe() {
+			String where = turnIndex < game.turns.length ? "on turn " + (turnIndex + 1)
+					: "in the final score";
+			return game.turns.length + " turns, went wrong " + where + ": " + difference;
+		}
+
+		/**
+		 * report describes the game and its rules, every turn, and both boards
+		 * after the turn that went wrong, with X for black and O for white.
+		 */
+		public String report() {
+			StringBuilder report = new StringBuilder();
+			report.append("Smallest game found: ").append(describe()).append('\n');
+			report.append(game.size).append('x').append(game.size).append(" board, ")
+					.append(RULE_NAMES[game.rule]).append(", counted by ")
+					.append(game.counting == RulesEngine.AREA ? "area" : "territory")
+					.append(", bonus ")
+					.append(game.whiteDisadvantageBonus).append(" for white, from game ")
+					.append(game.number).append(" of seed ").append(seed).append('\n');
+
+			for (int i = 0; i < game.turns.length; i++) {
+				int turn = game.turns[i];
+				if (turn == PASS) {
+					report.append("pass");
+				} else if (turn <= UNDO) {
+					report.append("undo ").append(UNDO + 1 - turn);
+				} else {
+					report.append("(" + turn / game.size + ", " + turn % game.size + ")");
+				}
+				report.append(i == game.turns.length - 1 ? "\n" : " ");
+			}
+
+			String[] left = referenceBoard.split("\n");
+			String[] right = candidateBoard.split("\n");
+			report.append(String.format("%-" + Math.max(10, game.size + 1) + "s %s%n",
+					GoRules.FACTORY.getName(), candidate.getName()));
+			for (int row = 0; row < left.length; row++) {
+				report.append(String.format("%-" + Math.max(10, game.size + 1) + "s %s%n",
+						left[row], right[row]));
+			}
+			return report.toString();
+		}
+	}
+
+	/** drawBoard draws a board one row of y at a time, with x going across */
+	private static String drawBoard(RulesEngine engine) {
+		StringBuilder drawing = new StringBuilder();
+		for (int y = 0; y < engine.getSize(); y++) {
+			for (int x = 0; x < engine.getSize(); x++) {
+				int allegiance = engine.get(x, y);
+				drawing.append(allegiance == 1 ? 'X' : allegiance == 2 ? 'O' : '.');
+			}
+			drawing.append('\n');
+		}
+		return drawing.toString();
+	}
+
+	/**
+	 * A TreeRules plays by the rules the way the Go program keeps its
+	 * variations: every board is a PersistentBoard in a VariationTree, which
+	 * captures and enforces the rule against repeating boards, and the
+	 * score is counted by a TerritoryScorer. Counting by territory, the
+	 * prisoners are counted by the node at the end of the line of play, the
+	 * same way the tools that read game logs count them. Undoing goes back up
+	 * the tree. The count of passes is kept the way the Go program keeps it,
+	 * which isn't always the count of the node: see RulesEngine.getPasses.
+	 */
+	static class TreeRules implements RulesEngine {
+
+		static final RulesEngine.Factory FACTORY = new RulesEngine.Factory() {
+			public String getName() {
+				return "tree";
+			}
+
+			public RulesEngine create(int size, int rule, int counting) {
+				return new TreeRules(size, rule, counting);
+			}
+		};
+
+		private final int size;
+		private final int counting;
+		private final VariationTree tree;
+		private int passes = 0;
+
+		TreeRules(int size, int rule, int counting) {
+			this.size = size;
+			this.counting = counting;
+			tree = new VariationTree(size, rule);
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public int getCurrentPlayer() {
+			return tree.getCurrent().getToMove();
+		}
+
+		public int get(int x, int y) {
+			return tree.getCurrent().getBoard().get(x, y);
+		}
+
+		public int getPasses() {
+			return passes;
+		}
+
+		public boolean play(int x, int y) {
+			if (tree.getCurrent().getBoard().get(x * size + y) == Allegiance.EMPTY) {
+				passes = 0;
+			}
+			return tree.play(x * size + y) != null;
+		}
+
+		public boolean pass() {
+			if (tree.getCurrent().getParent() == null) {
+				return false;
+			}
+			tree.pass();
+			passes++;
+			return true;
+		}
+
+		public boolean undo(int numTurns) {
+			if (passes > 0) {
+				passes--;
+			}
+			if (tree.getCurrent().getParent() == null) {
+				return false;
+			}
+			tree.back(numTurns);
+			return true;
+		}
+
+		public int[] score(int whiteDisadvantageBonus) {
+			PersistentBoard board = tree.getCurrent().getBoard();
+			int[] points = new int[size * size];
+			for (int p = 0; p < points.length; p++) {
+				points[p] = board.get(p);
+			}
+			int[] prisoners = tree.getCurrent().countPrisoners(new int[0]);
+			int[] score = new TerritoryScorer().score(points, size, counting,
+					prisoners[Allegiance.BLACK], prisoners[Allegiance.WHITE]);
+			score[1] += whiteDisadvantageBonus;
+			return score;
+		}
+	}
+}
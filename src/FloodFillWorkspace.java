@@ -0,0 +1,150 @@
+package src;
+
+/**
+ * File: FloodFillWorkspace.java
+ * -----------------------------
+ * A FloodFillWorkspace holds everything needed to find a chain of pieces or a region of empty
+ * points, so that finding one doesn't need to create any objects.
+ *
+ * Points are numbered x * size + y, the same way as in a GoBoard. Instead of marking points as
+ * visited and then unmarking them all again afterwards, every point remembers the number of the
+ * last fill that visited it. Starting a new fill only adds one to that number, which makes every
+ * point unvisited at once. A workspace must not be shared between threads, but one thread can
+ * share it between any number of boards, as long as it is only used by one fill at a time.
+ * forCurrentThread gives each thread one workspace to share this way.
+ */
+
+import java.util.Arrays;
+
+public class FloodFillWorkspace {
+
+	public static final int NO_POINT = -1;
+
+	private final int size;
+
+	/**
+	 * neighbors[4 * p + k] is the index of the k'th point adjacent to p, or
+	 * NO_POINT if that side of p is the edge of the board.
+	 */
+	private final int[] neighbors;
+
+	/** the number of the last fill that visited each point */
+	private final int[] visitedBy;
+	private int currentFill = 0;
+
+	/**
+	 * The points found so far by the current fill, in the order they were
+	 * found. Points before next have had their neighbors looked at, the rest
+	 * are still waiting, so the same array works as the queue of the fill.
+	 */
+	private final int[] found;
+	private int numFound = 0;
+	private int next = 0;
+
+	/** the workspace shared by the boards of each thread, replaced when the size changes */
+	private static final ThreadLocal<FloodFillWorkspace> THREAD_WORKSPACE = new ThreadLocal<FloodFillWorkspace>();
+
+	public FloodFillWorkspace(int size) {
+		this.size = size;
+		neighbors = createNeighbors(size);
+		visitedBy = new int[size * size];
+		found = new int[size * size];
+	}
+
+	private static int[] createNeighbors(int size) {
+		int[] neighbors = new int[4 * size * size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				int p = x * size + y;
+				neighbors[4 * p] = y > 0 ? p - 1 : NO_POINT;
+				neighbors[4 * p + 1] = x < size - 1 ? p + size : NO_POINT;
+				neighbors[4 * p + 2] = x > 0 ? p - size : NO_POINT;
+				neighbors[4 * p + 3] = y < size - 1 ? p + 1 : NO_POINT;
+			}
+		}
+		return neighbors;
+	}
+
+	/**
+	 * forCurrentThread returns the workspace of the thread calling it for
+	 * boards of the given size, making it the first time it is asked for.
+	 */
+	public static FloodFillWorkspace forCurrentThread(int size) {
+		FloodFillWorkspace workspace = THREAD_WORKSPACE.get();
+		if (workspace == null || workspace.size != size) {
+			workspace = new FloodFillWorkspace(size);
+			THREAD_WORKSPACE.set(workspace);
+		}
+		return workspace;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/** neighbor returns the k'th point next to p (k from 0 to 3), or NO_POINT at the edge */
+	public int neighbor(int p, int k) {
+		return neighbors[4 * p + k];
+	}
+
+	/**
+	 * start begins a new fill from point p. Every point becomes unvisited
+	 * except p, which is the first point found.
+	 */
+	public void start(int p) {
+		newFill();
+		numFound = 0;
+		next = 0;
+		visit(p);
+	}
+
+	/**
+	 * newFill makes every point unvisited. Only when the fill number runs out,
+	 * after billions of fills, does every point actually have to be reset.
+	 */
+	private void newFill() {
+		currentFill++;
+		if (currentFill == Integer.MAX_VALUE) {
+			Arrays.fill(visitedBy, 0);
+			currentFill = 1;
+		}
+	}
+
+	/**
+	 * visit adds p to the points found by the current fill, unless it was
+	 * already visited.
+	 *
+	 * @return true if p had not been visited before
+	 */
+	public boolean visit(int p) {
+		if (visitedBy[p] == currentFill) {
+			return false;
+		}
+		visitedBy[p] = currentFill;
+		found[numFound++] = p;
+		return true;
+	}
+
+	public boolean isVisited(int p) {
+		return visitedBy[p] == currentFill;
+	}
+
+	/** hasNext returns true if some found point has not had its neighbors looked at yet */
+	public boolean hasNext() {
+		return next < numFound;
+	}
+
+	/** next returns the next found point whose neighbors should be looked at */
+	public int next() {
+		return found[next++];
+	}
+
+	public int getNumFound() {
+		return numFound;
+	}
+
+	/** getFound returns the i'th point found by the current fill */
+	public int getFound(int i) {
+		return found[i];
+	}
+}
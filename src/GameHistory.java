@@ -0,0 +1,325 @@
+package src;
+
+/**
+ * File: GameHistory.java
+ * ----------------------
+ * A GameHistory holds every previous board state of a game, like a list where index 0 is the
+ * most recent board state.
+ *
+ * Only the most recent board states are kept in memory. Once there are more than fit in the
+ * window, the oldest ones are written to a temporary file, one fixed size record per board
+ * state, and are read back from the file when they are needed again: when enough turns are
+ * undone that the window runs out, or when a superko check finds a board state with the same
+ * hash that has to be compared. The hash of every board state is kept in memory, so that
+ * checking for a repeated board state only reads the file on a likely match.
+ *
+ * A history can also start from the board states saved in a GameSnapshot, which are stored the
+ * same way as the temporary file and are mapped into memory rather than read. The oldest board
+ * states are then read straight from the mapping whenever they are needed, and their hashes too,
+ * so a saved game can be resumed without reading its history at all.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class GameHistory {
+
+	/** how many of the most recent board states are kept in memory by default */
+	public static final int DEFAULT_WINDOW_SIZE = 1024;
+
+	private final int size;
+	private final int windowSize;
+	private final int recordBytes;
+
+	/**
+	 * The board states that are in memory, oldest first, in a ring buffer so
+	 * that the oldest one can be dropped without moving the others. The board
+	 * state at recent(k) is the one that was stored (spilled + k)'th, and is
+	 * kept at ring[(ringStart + k) % ring.length]. The ring grows up to the
+	 * size of the window.
+	 */
+	private PackedPosition[] ring = new PackedPosition[16];
+	private int ringStart = 0;
+	private int numRecent = 0;
+
+	/** how many of the oldest board states are only in the file */
+	private int spilled = 0;
+
+	/** the hash of every board state after the saved ones, oldest first */
+	private int[] hashes = new int[64];
+	private int count = 0;
+
+	/**
+	 * the oldest board states and their hashes, as saved in a GameSnapshot, or
+	 * null if the history didn't start from one. Only the first savedCount of
+	 * them are still part of the history.
+	 */
+	private ByteBuffer savedRecords;
+	private IntBuffer savedHashes;
+	private int savedCount = 0;
+
+	private File spillPath;
+	private RandomAccessFile spillFile;
+	private FileChannel spillChannel;
+
+	public GameHistory(int size) {
+		this(size, DEFAULT_WINDOW_SIZE);
+	}
+
+	public GameHistory(int size, int windowSize) {
+		this.size = size;
+		this.windowSize = Math.max(1, windowSize);
+		recordBytes = PackedPosition.wordsFor(size) * 8;
+	}
+
+	/**
+	 * Makes a history that starts with count saved board states, oldest first,
+	 * one record after another in records in the same layout as the temporary
+	 * file, with the hash of each in hashes. Neither buffer is read until a
+	 * board state or hash is needed.
+	 */
+	public GameHistory(int size, int windowSize, ByteBuffer records, IntBuffer hashes, int count) {
+		this(size, windowSize);
+		savedRecords = records;
+		savedHashes = hashes;
+		savedCount = count;
+		this.count = count;
+		spilled = count;
+	}
+
+	/** getRecordBytes returns how many bytes each board state takes when it is stored */
+	public int getRecordBytes() {
+		return recordBytes;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/** add stores a new board state, which becomes index 0 */
+	public void add(PackedPosition position) {
+		if (count - savedCount == hashes.length) {
+			hashes = Arrays.copyOf(hashes, hashes.length * 2);
+		}
+		hashes[count - savedCount] = position.hashCode();
+		count++;
+
+		if (numRecent == windowSize) {
+			writeRecord(spilled, ring[ringStart]);
+			ring[ringStart] = null;
+			ringStart = (ringStart + 1) % ring.length;
+			numRecent--;
+			spilled++;
+		}
+		addRecent(position);
+	}
+
+	/**
+	 * get returns the board state at the given index, where 0 is the most
+	 * recent one, reading it from the file if it isn't in memory.
+	 */
+	public PackedPosition get(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		int order = count - 1 - index;
+		if (order >= spilled) {
+			return recent(order - spilled);
+		}
+		return readRecord(order);
+	}
+
+	/**
+	 * getHash returns the hash of the board state at the given index, where 0
+	 * is the most recent one, without reading the board state itself.
+	 */
+	public int getHash(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		return hashAt(count - 1 - index);
+	}
+
+	/**
+	 * removeMostRecent throws away the board state at index 0. If that empties
+	 * the window, the most recent board state in the file is read back into
+	 * memory, so undoing turn after turn only reads one record per turn.
+	 */
+	public void removeMostRecent() {
+		if (count == 0) {
+			throw new IndexOutOfBoundsException("The history is empty");
+		}
+		if (numRecent == 0) {
+			spilled--; // only possible when every board state is a saved one
+		} else {
+			removeNewestRecent();
+		}
+		count--;
+		if (count < savedCount) {
+			savedCount = count; // the saved board states after it are gone for good
+		}
+
+		if (numRecent == 0 && spilled > 0) {
+			spilled--;
+			addRecent(readRecord(spilled));
+		}
+	}
+
+	/**
+	 * truncate throws away every board state but the oldest newCount, without
+	 * reading any of them back but the most recent one left.
+	 */
+	public void truncate(int newCount) {
+		if (newCount >= count) {
+			return;
+		}
+		count = Math.max(0, newCount);
+		if (count < savedCount) {
+			savedCount = count;
+		}
+		if (count > spilled) {
+			while (numRecent > count - spilled) {
+				removeNewestRecent();
+			}
+		} else {
+			while (numRecent > 0) {
+				removeNewestRecent();
+			}
+			spilled = count;
+			if (spilled > 0) {
+				spilled--;
+				addRecent(readRecord(spilled));
+			}
+		}
+	}
+
+	/** recent returns the k'th oldest board state that is in memory */
+	private PackedPosition recent(int k) {
+		return ring[(ringStart + k) % ring.length];
+	}
+
+	/**
+	 * addRecent is a void method that puts a board state after the most recent
+	 * one in memory, growing the ring if it is full. It is never asked to hold
+	 * more than the window.
+	 */
+	private void addRecent(PackedPosition position) {
+		if (numRecent == ring.length) {
+			PackedPosition[] grown = new PackedPosition[Math.min(windowSize, ring.length * 2)];
+			for (int k = 0; k < numRecent; k++) {
+				grown[k] = recent(k);
+			}
+			ring = grown;
+			ringStart = 0;
+		}
+		ring[(ringStart + numRecent) % ring.length] = position;
+		numRecent++;
+	}
+
+	private void removeNewestRecent() {
+		numRecent--;
+		ring[(ringStart + numRecent) % ring.length] = null;
+	}
+
+	/**
+	 * contains returns true if the given board state is anywhere in the
+	 * history. Only board states whose hash matches are compared in full.
+	 */
+	public boolean contains(PackedPosition position) {
+		int hash = position.hashCode();
+		for (int order = count - 1; order >= 0; order--) {
+			if (hashAt(order) == hash && position.equals(get(count - 1 - order))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int hashAt(int order) {
+		return order < savedCount ? savedHashes.get(order) : hashes[order - savedCount];
+	}
+
+	/**
+	 * close lets go of the saved board states and closes and deletes the file
+	 * holding the oldest board states, if there is one. The history can't be
+	 * used after it is closed.
+	 */
+	public void close() {
+		savedRecords = null;
+		savedHashes = null;
+		savedCount = 0;
+		if (spillFile != null) {
+			try {
+				spillFile.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				spillFile = null;
+				spillChannel = null;
+				spillPath.delete();
+				spillPath = null;
+			}
+		}
+	}
+
+	/**
+	 * writeRecord stores a board state that no longer fits in memory. Saved
+	 * board states are never written, since they are already stored, so the
+	 * temporary file only holds the board states after them.
+	 */
+	private void writeRecord(int order, PackedPosition position) {
+		if (order < savedCount) {
+			return;
+		}
+		try {
+			if (spillFile == null) {
+				spillPath = File.createTempFile("go_history", ".bin");
+				spillPath.deleteOnExit();
+				spillFile = new RandomAccessFile(spillPath, "rw");
+				spillChannel = spillFile.getChannel();
+			}
+			ByteBuffer record = ByteBuffer.allocate(recordBytes);
+			for (int w = 0; w < position.getNumWords(); w++) {
+				record.putLong(position.getWord(w));
+			}
+			record.flip();
+			long offset = (long) (order - savedCount) * recordBytes;
+			while (record.hasRemaining()) {
+				offset += spillChannel.write(record, offset);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private PackedPosition readRecord(int order) {
+		long[] words = new long[recordBytes / 8];
+		if (order < savedCount) {
+			ByteBuffer record = savedRecords.duplicate();
+			record.position(order * recordBytes);
+			record.asLongBuffer().get(words);
+			return PackedPosition.fromWords(size, words);
+		}
+		try {
+			ByteBuffer record = ByteBuffer.allocate(recordBytes);
+			long offset = (long) (order - savedCount) * recordBytes;
+			while (record.hasRemaining()) {
+				int read = spillChannel.read(record, offset + record.position());
+				if (read < 0) {
+					throw new IOException("The history file ends before board state " + order);
+				}
+			}
+			record.flip();
+			record.asLongBuffer().get(words);
+			return PackedPosition.fromWords(size, words);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
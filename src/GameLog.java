@@ -0,0 +1,326 @@
+package src;
+
+/**
+ * File: GameLog.java
+ * ------------------
+ * A GameLog writes down every action taken in a game as it happens, so that a game can be
+ * recovered if the program is closed or crashes part way through.
+ *
+ * Every action is one fixed size record: a type, up to three numbers, and a checksum. Adding a
+ * record only copies it into memory, and a background thread writes whatever has built up to
+ * the file and forces it onto the disk. While one batch is being forced the next batch builds
+ * up, so many records share the cost of each force. When the log is read back, it stops at the
+ * first record that is incomplete or has the wrong checksum, since that is where writing stopped.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+public class GameLog {
+
+	/**
+	 * the first record of every log, holding the board size, the rule and
+	 * counting as made into one number by GameOptions.rulesNumber, and white's
+	 * bonus
+	 */
+	public static final int START = 1;
+	/** a piece placed at the indices in the first two numbers */
+	public static final int MOVE = 2;
+	public static final int PASS = 3;
+	/** an undo of the number of turns in the first number */
+	public static final int UNDO = 4;
+	public static final int END_GAME = 5;
+	/**
+	 * a dead piece at the indices in the first two numbers, taken off the
+	 * board before the score was counted. These are only logged just before
+	 * the END_GAME record of the game they were taken off in.
+	 */
+	public static final int DEAD_PIECE = 6;
+
+	/** one byte for the type, three ints, and the checksum */
+	public static final int RECORD_SIZE = 1 + 4 * 3 + 4;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	/** records that have been added but not yet written, guarded by itself */
+	private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 256);
+	private ByteBuffer writing = ByteBuffer.allocate(RECORD_SIZE * 256);
+
+	/** how many records have been added, and how many of those are safely on disk */
+	private long recordsAdded = 0;
+	private long recordsForced = 0;
+
+	private boolean closed = false;
+	private IOException writeFailure;
+
+	private GameLog(File logFile, long validLength) throws IOException {
+		file = new RandomAccessFile(logFile, "rw");
+		channel = file.getChannel();
+		channel.truncate(validLength);
+		channel.position(validLength);
+
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				writeRecords();
+			}
+		}, "GameLog writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * create starts a new log in the given file, replacing anything that was
+	 * there, and writes the options of the new game as its first record.
+	 */
+	public static GameLog create(File logFile, int numLines, int rule, int counting,
+			int whiteDisadvantageBonus) throws IOException {
+		GameLog log = new GameLog(logFile, 0);
+		log.add(START, numLines, GameOptions.rulesNumber(rule, counting), whiteDisadvantageBonus);
+		return log;
+	}
+
+	/**
+	 * resume opens an existing log so that more records can be added after the
+	 * ones that were read back by read. Anything after the last good record is
+	 * thrown away.
+	 */
+	public static GameLog resume(File logFile, Recovery recovery) throws IOException {
+		return new GameLog(logFile, (long) recovery.size() * RECORD_SIZE);
+	}
+
+	/**
+	 * read returns every complete record in the given file, in the order they
+	 * were added. A missing file is read as an empty log.
+	 */
+	public static Recovery read(File logFile) throws IOException {
+		Recovery recovery = new Recovery();
+		if (!logFile.exists()) {
+			return recovery;
+		}
+
+		RandomAccessFile in = new RandomAccessFile(logFile, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+			while (channel.read(buffer) > 0 || buffer.position() > 0) {
+				buffer.flip();
+				if (buffer.remaining() < RECORD_SIZE && channel.position() == channel.size()) {
+					break;
+				}
+				while (buffer.remaining() >= RECORD_SIZE) {
+					if (!recovery.readRecord(buffer)) {
+						return recovery;
+					}
+				}
+				buffer.compact();
+			}
+		} finally {
+			in.close();
+		}
+		return recovery;
+	}
+
+	public void logMove(int i, int j) {
+		add(MOVE, i, j, 0);
+	}
+
+	public void logPass() {
+		add(PASS, 0, 0, 0);
+	}
+
+	public void logUndo(int numTurns) {
+		add(UNDO, numTurns, 0, 0);
+	}
+
+	public void logEndGame() {
+		add(END_GAME, 0, 0, 0);
+	}
+
+	public void logDeadPiece(int i, int j) {
+		add(DEAD_PIECE, i, j, 0);
+	}
+
+	/**
+	 * add copies one record into the pending batch and wakes the writer. It
+	 * does not wait for the record to reach the disk; use flush for that.
+	 */
+	private void add(int type, int a, int b, int c) {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			if (pending.remaining() < RECORD_SIZE) {
+				ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+				pending.flip();
+				larger.put(pending);
+				pending = larger;
+			}
+			int start = pending.position();
+			pending.put((byte) type).putInt(a).putInt(b).putInt(c);
+			pending.putInt(checksum(pending.array(), start));
+			recordsAdded++;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * flush waits until every record added so far has been forced onto the
+	 * disk.
+	 */
+	public void flush() throws IOException {
+		synchronized (this) {
+			long target = recordsAdded;
+			while (recordsForced < target && writeFailure == null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			if (writeFailure != null) {
+				throw writeFailure;
+			}
+		}
+	}
+
+	/** close writes any remaining records and closes the file */
+	public void close() throws IOException {
+		flush();
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		file.close();
+	}
+
+	/**
+	 * writeRecords is run by the writer thread. It swaps the pending batch with
+	 * an empty one so that new records can keep being added, then writes and
+	 * forces the batch it took.
+	 */
+	private void writeRecords() {
+		while (true) {
+			long batchEnd;
+			synchronized (this) {
+				while (pending.position() == 0 && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (pending.position() == 0) {
+					return;
+				}
+				ByteBuffer batch = pending;
+				pending = writing;
+				writing = batch;
+				batchEnd = recordsAdded;
+			}
+
+			try {
+				writing.flip();
+				while (writing.hasRemaining()) {
+					channel.write(writing);
+				}
+				writing.clear();
+				channel.force(false);
+			} catch (IOException e) {
+				synchronized (this) {
+					writeFailure = e;
+					notifyAll();
+				}
+				return;
+			}
+
+			synchronized (this) {
+				recordsForced = batchEnd;
+				notifyAll();
+			}
+		}
+	}
+
+	private static int checksum(byte[] bytes, int start) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, start, RECORD_SIZE - 4);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * A Recovery holds the records read back from a log. Each record is stored
+	 * as its type followed by its three numbers.
+	 */
+	public static class Recovery {
+
+		private final ArrayList<int[]> records = new ArrayList<int[]>();
+
+		private boolean readRecord(ByteBuffer buffer) {
+			int start = buffer.position();
+			byte[] bytes = new byte[RECORD_SIZE];
+			buffer.get(bytes);
+			ByteBuffer record = ByteBuffer.wrap(bytes);
+			int type = record.get();
+			int a = record.getInt();
+			int b = record.getInt();
+			int c = record.getInt();
+			if (record.getInt() != checksum(bytes, 0) || type < START || type > DEAD_PIECE
+					|| (records.isEmpty() != (type == START))) {
+				buffer.position(start);
+				return false;
+			}
+			records.add(new int[] { type, a, b, c });
+			return true;
+		}
+
+		public int size() {
+			return records.size();
+		}
+
+		public int getType(int index) {
+			return records.get(index)[0];
+		}
+
+		/** getNumber returns the n'th number (0 to 2) of the record at index */
+		public int getNumber(int index, int n) {
+			return records.get(index)[n + 1];
+		}
+
+		/** hasGame returns true if there is at least a START record to recover */
+		public boolean hasGame() {
+			return !records.isEmpty();
+		}
+
+		/** isEnded returns true if the last record is the end of the game */
+		public boolean isEnded() {
+			return !records.isEmpty() && getType(records.size() - 1) == END_GAME;
+		}
+
+		/**
+		 * getDeadPieces returns the point, i * size + j, of every dead piece
+		 * that was taken off the board when the game was last ended, or none
+		 * if the game isn't ended or the players kept every piece.
+		 */
+		public int[] getDeadPieces() {
+			if (!isEnded()) {
+				return new int[0];
+			}
+			int size = getNumber(0, 0);
+			int first = records.size() - 1;
+			while (first > 0 && getType(first - 1) == DEAD_PIECE) {
+				first--;
+			}
+			int[] points = new int[records.size() - 1 - first];
+			for (int k = 0; k < points.length; k++) {
+				points[k] = getNumber(first + k, 0) * size + getNumber(first + k, 1);
+			}
+			return points;
+		}
+	}
+}
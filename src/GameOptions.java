@@ -0,0 +1,258 @@
+package src;
+
+/**
+ * File: GameOptions.java
+ * ----------------------
+ * GameOptions are the choices a game of Go is started with: the size of the board, the rule
+ * against repeating boards (Ko, Superko or situational superko), whether the score is counted by
+ * area or by territory, white's bonus, and how long the OwnershipEstimator may spend finding dead
+ * pieces at the end. They usually come from the GoOptionMenu, but the Go program can also be
+ * started with them on the command line, or in a config file, so that the menu is skipped
+ * altogether:
+ *
+ *     java src.Go [--config file] [--size n] [--ko | --superko | --situational-superko]
+ *             [--area | --territory] [--bonus n] [--dead-stone-ms n] [--resume] [--load file]
+ *
+ * A config file is a properties file with any of the keys size, rules (ko, superko or
+ * situational-superko), counting (area or territory), bonus and deadStoneMs. Options given on the
+ * command line win over those in the file, wherever the file comes in the arguments. --resume
+ * continues the game in the game log without asking, if there is one; without it, the game log is
+ * replaced by the new game. --load continues a game saved with
+ * the Save Game button instead, and the other options are then taken from the saved game.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+public class GameOptions {
+
+	/** the options used by the Use Default Options button of the GoOptionMenu */
+	public static final int DEFAULT_BOARD_SIZE = 19;
+	public static final int DEFAULT_RULE = RulesEngine.SIMPLE_KO;
+	public static final int DEFAULT_COUNTING = RulesEngine.AREA;
+	public static final int DEFAULT_WHITE_BONUS = 5;
+	public static final long DEFAULT_DEAD_STONE_TIME_BUDGET = 200;
+
+	public static final String USAGE = "Usage: java src.Go [--config file] [--size n]"
+			+ " [--ko | --superko | --situational-superko] [--area | --territory] [--bonus n]"
+			+ " [--dead-stone-ms n] [--resume] [--load file]";
+
+	/** the names of the rules against repeating boards, as written in a config file */
+	private static final String[] RULE_NAMES = { "ko", "superko", "situational-superko" };
+	private static final String[] COUNTING_NAMES = { "area", "territory" };
+
+	/**
+	 * Game logs and saved games store the rule and counting as one number.
+	 * It used to be usingKo, 1 for Ko and 0 for Superko, which it still is for
+	 * those rules counted by area, so older logs and saved games are read the
+	 * same as before.
+	 */
+	private static final int[] RULE_NUMBERS = { 1, 0, 2 };
+	private static final int TERRITORY_NUMBER = 4;
+
+	private int numLines = DEFAULT_BOARD_SIZE;
+	private int rule = DEFAULT_RULE;
+	private int counting = DEFAULT_COUNTING;
+	private int whiteDisadvantageBonus = DEFAULT_WHITE_BONUS;
+	private long deadStoneTimeBudget = DEFAULT_DEAD_STONE_TIME_BUDGET;
+	private boolean resuming = false;
+	private File snapshotFile = null;
+
+	/** Makes the default options */
+	public GameOptions() {
+	}
+
+	public GameOptions(int numLines, int rule, int counting, int whiteDisadvantageBonus) {
+		this.numLines = numLines;
+		this.rule = rule;
+		this.counting = counting;
+		this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+	}
+
+	/**
+	 * fromArguments reads the options from the arguments the program was
+	 * started with, reading the config file first if one is given.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if an argument isn't understood or an option is out of range
+	 * @throws IOException
+	 *             if the config file can't be read
+	 */
+	public static GameOptions fromArguments(String[] args) throws IOException {
+		GameOptions options = new GameOptions();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--config")) {
+				if (i + 1 == args.length) {
+					throw new IllegalArgumentException("--config needs a file");
+				}
+				options.load(new File(args[i + 1]));
+			}
+		}
+
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--ko")) {
+				options.rule = RulesEngine.SIMPLE_KO;
+			} else if (arg.equals("--superko")) {
+				options.rule = RulesEngine.POSITIONAL_SUPERKO;
+			} else if (arg.equals("--situational-superko")) {
+				options.rule = RulesEngine.SITUATIONAL_SUPERKO;
+			} else if (arg.equals("--area")) {
+				options.counting = RulesEngine.AREA;
+			} else if (arg.equals("--territory")) {
+				options.counting = RulesEngine.TERRITORY;
+			} else if (arg.equals("--resume")) {
+				options.resuming = true;
+			} else if (arg.equals("--config") || arg.equals("--size") || arg.equals("--bonus")
+					|| arg.equals("--dead-stone-ms") || arg.equals("--load")) {
+				if (i + 1 == args.length) {
+					throw new IllegalArgumentException(arg + " needs a value");
+				}
+				String value = args[++i];
+				if (arg.equals("--size")) {
+					options.numLines = parseInt(arg, value);
+				} else if (arg.equals("--bonus")) {
+					options.whiteDisadvantageBonus = parseInt(arg, value);
+				} else if (arg.equals("--dead-stone-ms")) {
+					options.deadStoneTimeBudget = parseInt(arg, value);
+				} else if (arg.equals("--load")) {
+					options.snapshotFile = new File(value);
+				}
+			} else {
+				throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+		options.check();
+		return options;
+	}
+
+	/**
+	 * load reads any options in a config file, leaving the others as they
+	 * are.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a value isn't understood
+	 */
+	public void load(File configFile) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(configFile);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+
+		String size = properties.getProperty("size");
+		if (size != null) {
+			numLines = parseInt("size", size.trim());
+		}
+		String rules = properties.getProperty("rules");
+		if (rules != null) {
+			rule = parseName("rules", rules.trim(), RULE_NAMES);
+		}
+		String countingName = properties.getProperty("counting");
+		if (countingName != null) {
+			counting = parseName("counting", countingName.trim(), COUNTING_NAMES);
+		}
+		String bonus = properties.getProperty("bonus");
+		if (bonus != null) {
+			whiteDisadvantageBonus = parseInt("bonus", bonus.trim());
+		}
+		String deadStoneMs = properties.getProperty("deadStoneMs");
+		if (deadStoneMs != null) {
+			deadStoneTimeBudget = parseInt("deadStoneMs", deadStoneMs.trim());
+		}
+	}
+
+	/** parseName returns the index of the value in names, ignoring case */
+	private static int parseName(String name, String value, String[] names) {
+		for (int i = 0; i < names.length; i++) {
+			if (value.equalsIgnoreCase(names[i])) {
+				return i;
+			}
+		}
+		StringBuilder choices = new StringBuilder(names[0]);
+		for (int i = 1; i < names.length; i++) {
+			choices.append(i == names.length - 1 ? " or " : ", ").append(names[i]);
+		}
+		throw new IllegalArgumentException(name + " must be " + choices + ", not " + value);
+	}
+
+	private static int parseInt(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException notANumber) {
+			throw new IllegalArgumentException(name + " must be a whole number, not " + value);
+		}
+	}
+
+	/** check makes sure every option is one a game can be played with */
+	private void check() {
+		if (numLines < 2) {
+			throw new IllegalArgumentException("The board must have at least 2 lines");
+		}
+		if (deadStoneTimeBudget < 0) {
+			throw new IllegalArgumentException("The time for finding dead pieces can't be negative");
+		}
+	}
+
+	public int getBoardSize() {
+		return numLines;
+	}
+
+	/** getRule returns the rule against repeating boards, one of the rules of RulesEngine */
+	public int getRule() {
+		return rule;
+	}
+
+	/** getCounting returns how the score is counted, RulesEngine.AREA or RulesEngine.TERRITORY */
+	public int getCounting() {
+		return counting;
+	}
+
+	public int getWhiteDisadvantageBonus() {
+		return whiteDisadvantageBonus;
+	}
+
+	/** getDeadStoneTimeBudget returns how many milliseconds dead pieces may be looked for */
+	public long getDeadStoneTimeBudget() {
+		return deadStoneTimeBudget;
+	}
+
+	/** isResuming returns true if a game in the game log should be continued without asking */
+	public boolean isResuming() {
+		return resuming;
+	}
+
+	/** getSnapshotFile returns the saved game to continue, or null to start a new one */
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/**
+	 * rulesNumber returns the one number a game log or saved game stores the
+	 * rule and counting as.
+	 */
+	public static int rulesNumber(int rule, int counting) {
+		return RULE_NUMBERS[rule] + (counting == RulesEngine.TERRITORY ? TERRITORY_NUMBER : 0);
+	}
+
+	/** ruleOf returns the rule stored in a number made by rulesNumber */
+	public static int ruleOf(int rulesNumber) {
+		int number = rulesNumber % TERRITORY_NUMBER;
+		for (int rule = 0; rule < RULE_NUMBERS.length; rule++) {
+			if (RULE_NUMBERS[rule] == number) {
+				return rule;
+			}
+		}
+		return RulesEngine.POSITIONAL_SUPERKO;
+	}
+
+	/** countingOf returns the way of counting stored in a number made by rulesNumber */
+	public static int countingOf(int rulesNumber) {
+		return rulesNumber >= TERRITORY_NUMBER ? RulesEngine.TERRITORY : RulesEngine.AREA;
+	}
+}
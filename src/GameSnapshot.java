@@ -0,0 +1,270 @@
+package src;
+
+/**
+ * File: GameSnapshot.java
+ * -----------------------
+ * A GameSnapshot is everything needed to carry on with a game later, saved in one binary file:
+ * the options it was started with, the board, whose turn it is, the count of passes, the turn
+ * number, both players' prisoners, and every previous board state for the rule against repeating
+ * boards.
+ *
+ * The file starts with a header of ints, followed by the board and then the previous board
+ * states, oldest first, each stored as a record in the same layout as the temporary file of a
+ * GameHistory, and finally the hash of each previous board state:
+ *
+ *     MAGIC, VERSION, size, currentPlayer, pass, currentTurn, rules, whiteDisadvantageBonus,
+ *     whiteWinsTies, gameOver, blackPrisoners, whitePrisoners, number of previous board states,
+ *     bytes per record
+ *
+ * where rules is the rule and counting made into one number by GameOptions.rulesNumber. Version 1
+ * snapshots, which have no prisoners, can still be opened, and are continued with none.
+ *
+ * Opening a snapshot maps the file into memory and only reads the header and the board. The
+ * previous board states are handed to a GameHistory still in the mapping, which reads them only
+ * when they are needed, so opening takes the same time however long the game was.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class GameSnapshot {
+
+	/** "GOSV" */
+	private static final int MAGIC = 0x474F5356;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 14 * 4;
+	private static final int VERSION_1_HEADER_BYTES = 12 * 4;
+
+	/** how many bytes of previous board states are written at a time */
+	private static final int WRITE_BATCH_BYTES = 1 << 16;
+
+	private final int numLines;
+	private final int currentPlayer;
+	private final int pass;
+	private final int currentTurn;
+	private final int rule;
+	private final int counting;
+	private final int whiteDisadvantageBonus;
+	private final boolean whiteWinsTies;
+	private final boolean gameOver;
+	private final int blackPrisoners;
+	private final int whitePrisoners;
+	private final PackedPosition board;
+	private final GameHistory history;
+
+	public GameSnapshot(int numLines, int currentPlayer, int pass, int currentTurn, int rule,
+			int counting, int whiteDisadvantageBonus, boolean whiteWinsTies, boolean gameOver,
+			int blackPrisoners, int whitePrisoners, PackedPosition board, GameHistory history) {
+		this.numLines = numLines;
+		this.currentPlayer = currentPlayer;
+		this.pass = pass;
+		this.currentTurn = currentTurn;
+		this.rule = rule;
+		this.counting = counting;
+		this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+		this.whiteWinsTies = whiteWinsTies;
+		this.gameOver = gameOver;
+		this.blackPrisoners = blackPrisoners;
+		this.whitePrisoners = whitePrisoners;
+		this.board = board;
+		this.history = history;
+	}
+
+	/**
+	 * save writes the snapshot to a file, replacing anything already there.
+	 * It is first written to a file next to it and then renamed, so that a
+	 * snapshot that was saved before is never left half overwritten. The file
+	 * can't be the one the history was opened from while the history is still
+	 * in use, since some systems, Windows among them, won't replace a file that
+	 * is mapped into memory, and Java can't unmap it.
+	 */
+	public void save(File file) throws IOException {
+		int recordBytes = history.getRecordBytes();
+		int numRecords = history.size();
+		File partFile = new File(file.getPath() + ".part");
+
+		RandomAccessFile out = new RandomAccessFile(partFile, "rw");
+		try {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(Math.max(WRITE_BATCH_BYTES, HEADER_BYTES
+					+ recordBytes));
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(numLines).putInt(currentPlayer)
+					.putInt(pass).putInt(currentTurn)
+					.putInt(GameOptions.rulesNumber(rule, counting))
+					.putInt(whiteDisadvantageBonus).putInt(whiteWinsTies ? 1 : 0)
+					.putInt(gameOver ? 1 : 0).putInt(blackPrisoners).putInt(whitePrisoners)
+					.putInt(numRecords).putInt(recordBytes);
+			putRecord(buffer, board);
+
+			for (int order = 0; order < numRecords; order++) {
+				if (buffer.remaining() < recordBytes) {
+					writeAll(channel, buffer);
+				}
+				putRecord(buffer, history.get(numRecords - 1 - order));
+			}
+			for (int order = 0; order < numRecords; order++) {
+				if (buffer.remaining() < 4) {
+					writeAll(channel, buffer);
+				}
+				buffer.putInt(history.getHash(numRecords - 1 - order));
+			}
+			writeAll(channel, buffer);
+			channel.force(true);
+		} finally {
+			out.close();
+		}
+
+		if (!partFile.renameTo(file)) {
+			if (!file.delete() || !partFile.renameTo(file)) {
+				throw new IOException("The snapshot couldn't be moved to " + file);
+			}
+		}
+	}
+
+	private static void putRecord(ByteBuffer buffer, PackedPosition position) {
+		for (int w = 0; w < position.getNumWords(); w++) {
+			buffer.putLong(position.getWord(w));
+		}
+	}
+
+	private static void writeAll(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * open maps a saved snapshot into memory. Its previous board states stay
+	 * in the mapping, which lasts until the history is no longer used, even
+	 * though the file itself is closed straight away.
+	 *
+	 * @throws IOException
+	 *             if the file can't be read or isn't a snapshot
+	 */
+	public static GameSnapshot open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			if (channel.size() < VERSION_1_HEADER_BYTES) {
+				throw new IOException(file + " is too short to be a snapshot");
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+
+			int version = mapped.getInt() == MAGIC ? mapped.getInt() : -1;
+			if (version != 1 && version != VERSION) {
+				throw new IOException(file + " isn't a snapshot this program can read");
+			}
+			int headerBytes = version == 1 ? VERSION_1_HEADER_BYTES : HEADER_BYTES;
+			if (channel.size() < headerBytes) {
+				throw new IOException(file + " is too short to be a snapshot");
+			}
+			int numLines = mapped.getInt();
+			int currentPlayer = mapped.getInt();
+			int pass = mapped.getInt();
+			int currentTurn = mapped.getInt();
+			int rules = mapped.getInt();
+			int whiteDisadvantageBonus = mapped.getInt();
+			boolean whiteWinsTies = mapped.getInt() == 1;
+			boolean gameOver = mapped.getInt() == 1;
+			int blackPrisoners = version == 1 ? 0 : mapped.getInt();
+			int whitePrisoners = version == 1 ? 0 : mapped.getInt();
+			int numRecords = mapped.getInt();
+			int recordBytes = mapped.getInt();
+
+			int numWords = PackedPosition.wordsFor(numLines);
+			long expectedLength = headerBytes + (long) recordBytes * (numRecords + 1) + 4L
+					* numRecords;
+			if (numLines < 2 || recordBytes != numWords * 8 || numRecords < 0
+					|| channel.size() != expectedLength) {
+				throw new IOException(file + " is damaged");
+			}
+
+			long[] words = new long[numWords];
+			mapped.asLongBuffer().get(words);
+			PackedPosition board = PackedPosition.fromWords(numLines, words);
+
+			int recordsStart = headerBytes + recordBytes;
+			int hashesStart = recordsStart + recordBytes * numRecords;
+			ByteBuffer records = slice(mapped, recordsStart, hashesStart);
+			IntBuffer hashes = slice(mapped, hashesStart, (int) expectedLength).asIntBuffer();
+			GameHistory history = new GameHistory(numLines, GameHistory.DEFAULT_WINDOW_SIZE,
+					records, hashes, numRecords);
+
+			return new GameSnapshot(numLines, currentPlayer, pass, currentTurn,
+					GameOptions.ruleOf(rules), GameOptions.countingOf(rules),
+					whiteDisadvantageBonus, whiteWinsTies, gameOver, blackPrisoners,
+					whitePrisoners, board, history);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+		ByteBuffer part = buffer.duplicate();
+		part.limit(end);
+		part.position(start);
+		return part.slice();
+	}
+
+	public int getBoardSize() {
+		return numLines;
+	}
+
+	public int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	public int getPass() {
+		return pass;
+	}
+
+	public int getCurrentTurn() {
+		return currentTurn;
+	}
+
+	/** getRule returns the rule against repeating boards, one of the rules of RulesEngine */
+	public int getRule() {
+		return rule;
+	}
+
+	/** getCounting returns how the score is counted, RulesEngine.AREA or RulesEngine.TERRITORY */
+	public int getCounting() {
+		return counting;
+	}
+
+	public int getWhiteDisadvantageBonus() {
+		return whiteDisadvantageBonus;
+	}
+
+	public boolean getWhiteWinsTies() {
+		return whiteWinsTies;
+	}
+
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/** getPrisoners returns how many pieces the given player had captured */
+	public int getPrisoners(int colour) {
+		return colour == Allegiance.BLACK ? blackPrisoners : whitePrisoners;
+	}
+
+	/** getBoard returns the board as it was when the snapshot was saved */
+	public PackedPosition getBoard() {
+		return board;
+	}
+
+	/** getHistory returns every board state before the current one, 0 being the most recent */
+	public GameHistory getHistory() {
+		return history;
+	}
+}
@@ -27,6 +27,8 @@ package src;
  */
 
 import java.applet.*;
+import java.io.File;
+import java.io.IOException;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
@@ -63,55 +65,41 @@ public class Go extends GraphicsProgram {
 	private int numLines;
 
 	/**
-	 * These values represent the separation between each line, vertically and
-	 * horizontally, respectively. They also represent the distance between
-	 * adjacent intersections, in pixels.
+	 * rules holds the intersections, the current player, the count of passes
+	 * and the board state of every previous turn, and does all of the
+	 * capturing, checking for repeated boards and scoring, by the rule and
+	 * counting chosen for this game. It is created once the
+	 * size of the board is known, and tells the renderer about every piece
+	 * that is placed or taken off the board.
 	 */
-	private int vertLineSep;
-	private int horizLineSep;
+	private GoRules rules;
 
 	/**
-	 * Width of one game piece. Uses vertical line separation to determine size,
-	 * because the program is simpler without using horizontal line separation
-	 * to determine the height of a piece. If the window were not a square, the
-	 * pieces would not conform to its warped shape and would instead be circles
-	 * diameters based on the separation between vertical lines. I have opted
-	 * for this because it is simpler and because it maintains said circular
-	 * shape of pieces even under strange window conditions.
+	 * The renderer draws the board, the pieces and the turn information. It
+	 * keeps its own copy of which piece is on every intersection, which is
+	 * updated as the rules place and take away pieces.
 	 */
-	private double pieceDiameter;
-
-	/** This integer represents the player whose turn it currently is */
-	private int currentPlayer = 1;
-	private int opposingPlayer = 2;
+	private BoardRenderer renderer;
 
 	/**
-	 * This array contains all of the intersections on the game board. It exists
-	 * so that they can be accessed by all methods of the program.
+	 * variations remembers every line of play tried in this game, including
+	 * the ones that were undone, so that the players can go back to any of
+	 * them with the Variations button. Its current node is always the board
+	 * being played on.
 	 */
-	private Intersection[][] intersections;
+	private VariationTree variations;
 
 	/**
-	 * This ArrayList contains the board state of every previous turn. The most
-	 * recent previous board state is stored in index 0, with each previous turn
-	 * in increasing order. If undo is pressed, the most recent prior board
-	 * state replaces the current one and is removed from this ArrayList
+	 * Determines which rule against repeating boards the game uses, one of the
+	 * rules of RulesEngine. Ko means that only the board state of the previous
+	 * turn cannot be repeated. Superko is a rule that states that no previous
+	 * board state can ever be repeated, and situational superko that no
+	 * previous board state can be repeated with the same player to move.
 	 */
-	private ArrayList<int[][]> allPreviousAllegiances = new ArrayList<int[][]>();
+	private int rule = GameOptions.DEFAULT_RULE;
 
-	/**
-	 * pass stores the number of times a turn has been passed consecutively. It
-	 * is reset to 0 once a player places a piece and is incremented by one if a
-	 * player passes. Should it reach 2, the game ends as per the rules of Go.
-	 */
-	private int pass = 0;
-
-	/**
-	 * Determines whether the game should use Ko or Superko rules. Superko is a
-	 * rule that states that no previous board state can ever be repeated. Ko
-	 * means that only the board state of the previous turn cannot be repeated.
-	 */
-	private boolean usingKo;
+	/** Determines whether the score is counted by area or by territory */
+	private int counting = GameOptions.DEFAULT_COUNTING;
 
 	/** If the game is over, gameOver is true */
 	private boolean gameOver = false;
@@ -129,50 +117,363 @@ public class Go extends GraphicsProgram {
 	 */
 	private boolean whiteWinsTies = false;
 
+	/**
+	 * How long, in milliseconds, the computer may spend at the end of the game
+	 * looking for dead pieces. 200 is plenty for a 19x19 board on most
+	 * computers; a larger budget gives a more reliable guess. It can be
+	 * changed with GameOptions when the program is started.
+	 */
+	private long deadStoneTimeBudget = GameOptions.DEFAULT_DEAD_STONE_TIME_BUDGET;
+
+	/**
+	 * the options given on the command line or in a config file, or null if
+	 * they should be asked for with the GoOptionMenu
+	 */
+	private GameOptions startupOptions;
+
+	/**
+	 * Every move, pass, undo and end of the game is written to this file as it
+	 * happens, so that the game can be recovered if the program is closed
+	 * before the game is over.
+	 */
+	private static final String GAME_LOG_FILE = "go_game.log";
+
+	/** gameLog records the actions of the current game, it is null if the log can't be written */
+	private GameLog gameLog;
+
+	/**
+	 * the Save Game button saves the game to SNAPSHOT_FILE, to be continued
+	 * with --load, or to OTHER_SNAPSHOT_FILE if the game was continued from
+	 * SNAPSHOT_FILE, which is still mapped into memory and can't be replaced
+	 */
+	private static final String SNAPSHOT_FILE = "go_game.snapshot";
+	private static final String OTHER_SNAPSHOT_FILE = "go_game_2.snapshot";
+
+	/** the snapshot file the game was continued from, or null */
+	private File loadedSnapshotFile;
+
+	/**
+	 * The opening book made by the OpeningBookBuilder from earlier games is
+	 * read from this file, if there is one, to suggest moves.
+	 */
+	private static final String OPENING_BOOK_FILE = "go_opening_book.bin";
+
+	/**
+	 * tacticalReader reads out whether chains in atari can escape, for the
+	 * Atari button, which turns showingAtari on and off.
+	 */
+	private TacticalReader tacticalReader;
+	private boolean showingAtari = false;
+
+	/** true if the rings drawn by showAtari might still be on the board */
+	private boolean atariShown = false;
+
+	/** openingBook is null if there is no book for this size of board */
+	private OpeningBook openingBook;
+
+	/**
+	 * bookBoard is a board that tracks its symmetries, for looking boards up
+	 * in the opening book. It is brought up to date with the board being
+	 * looked up before every lookup, which only changes the points that differ.
+	 */
+	private GoBoard bookBoard;
+
+	/**
+	 * ponderer searches the current board in the background while pondering
+	 * is turned on by the Ponder button, so that Suggest Move can show the
+	 * move it likes best. Every point of the board gets a node in its tree, so
+	 * it is only offered on boards of up to PONDER_MAX_LINES lines.
+	 */
+	private Ponderer ponderer;
+	private boolean pondering = false;
+	private static final int PONDER_MAX_LINES = 13;
+
+	/**
+	 * spectators sends every turn to anyone watching the game over the
+	 * network, once the Broadcast button has started it. It is null until then.
+	 */
+	private SpectatorServer spectators;
+
 	/** The user inputs a previous board number to undo the game to in here */
 	private JTextField undoField;
 
 	/** the current turn number of the game */
 	private int currentTurn = 1;
 
-	private GLabel turnLabel;
-	private GOval currentPlayerPiece;
+	public Go() {
+	}
+
+	/**
+	 * Makes a game that starts with the given options straight away, without
+	 * showing the GoOptionMenu or asking about the game log.
+	 */
+	public Go(GameOptions startupOptions) {
+		this.startupOptions = startupOptions;
+	}
+
+	/**
+	 * main starts the program. With no arguments the options are chosen in the
+	 * GoOptionMenu as usual; otherwise they are read from the arguments as
+	 * described in GameOptions, and the menu is never shown.
+	 */
+	public static void main(String[] args) {
+		GameOptions options = null;
+		if (args.length > 0) {
+			try {
+				options = GameOptions.fromArguments(args);
+			} catch (IllegalArgumentException badArguments) {
+				System.out.println(badArguments.getMessage());
+				System.out.println(GameOptions.USAGE);
+				return;
+			} catch (IOException configUnreadable) {
+				System.out.println("The config file can't be read: "
+						+ configUnreadable.getMessage());
+				return;
+			}
+		}
+		new Go(options).start(new String[0]);
+	}
 
 	public void init() {
 
-		GoOptionMenu menu = new GoOptionMenu();
-		menu.setVisible(true);
-		while (!menu.isCompleted())
-			pause(20);
-		menu.setVisible(false);
+		GameLog.Recovery recovery = readGameLog();
+		GameSnapshot snapshot = null;
+		if (startupOptions != null && startupOptions.getSnapshotFile() != null) {
+			snapshot = openSnapshot(startupOptions.getSnapshotFile());
+		}
 
-		assignAllOptions(menu);
+		if (snapshot != null) {
+			recovery = null;
+			assignSnapshotOptions(snapshot);
+			deadStoneTimeBudget = startupOptions.getDeadStoneTimeBudget();
+
+		} else if (startupOptions != null) {
+			if (recovery.hasGame() && startupOptions.isResuming()) {
+				assignRecoveredOptions(recovery);
+			} else {
+				recovery = null;
+				assignAllOptions(startupOptions);
+			}
+			deadStoneTimeBudget = startupOptions.getDeadStoneTimeBudget();
+
+		} else if (recovery.hasGame() && !recovery.isEnded() && resumeDialogResponse()) {
+			assignRecoveredOptions(recovery);
+
+		} else {
+			recovery = null;
+
+			GoOptionMenu menu = new GoOptionMenu();
+			menu.setVisible(true);
+			try {
+				menu.awaitCompletion();
+			} catch (InterruptedException interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			menu.setVisible(false);
+
+			assignAllOptions(menu.getOptions());
+		}
 
 		createBoard();
 		initializeIntersections();
-		overwritePreviousAllegiances();
 		addTurnInformation();
+		if (snapshot != null) {
+			restoreSnapshot(snapshot);
+			loadedSnapshotFile = startupOptions.getSnapshotFile();
+		}
 
-		addMouseListeners();
+		renderer.addMouseListener(this);
+		openingBook = loadOpeningBook();
+		bookBoard = new GoBoard(numLines);
+		bookBoard.trackSymmetries();
 
 		addJComponents();
 
 		addActionListeners();
 
+		if (recovery != null) {
+			replayGameLog(recovery);
+		}
+		if (snapshot == null) {
+			startGameLog(recovery);
+		}
+	}
+
+	/**
+	 * openSnapshot returns the game saved in the given file, or null if it
+	 * can't be read, in which case a new game is started instead.
+	 */
+	private GameSnapshot openSnapshot(File file) {
+		try {
+			return GameSnapshot.open(file);
+		} catch (IOException snapshotUnreadable) {
+			JOptionPane.showMessageDialog(this, "The saved game can't be read: "
+					+ snapshotUnreadable.getMessage() + "\nA new game will be started.",
+					"Load Game", JOptionPane.PLAIN_MESSAGE);
+			return null;
+		}
+	}
+
+	/**
+	 * assignSnapshotOptions sets up the options of a saved game from its
+	 * GameSnapshot, instead of asking for them with the GoOptionMenu.
+	 */
+	private void assignSnapshotOptions(GameSnapshot snapshot) {
+		numLines = snapshot.getBoardSize();
+		rule = snapshot.getRule();
+		counting = snapshot.getCounting();
+		whiteDisadvantageBonus = snapshot.getWhiteDisadvantageBonus();
+		whiteWinsTies = snapshot.getWhiteWinsTies();
+	}
+
+	/**
+	 * restoreSnapshot is a void method that puts the board, turn and history of
+	 * a saved game in place of the empty board a game starts with. Only the
+	 * board itself is read; the previous board states stay in the snapshot
+	 * file until the rule against repeating boards or an undo needs them, so this takes the same time
+	 * however long the game was. The variation tree starts at the saved board.
+	 * A continued game isn't written to the game log, since the log can only
+	 * recover a game from its first move.
+	 */
+	private void restoreSnapshot(GameSnapshot snapshot) {
+		PackedPosition board = snapshot.getBoard();
+		rules.restore(board, snapshot.getCurrentPlayer(), snapshot.getPass(),
+				snapshot.getHistory(), snapshot.getPrisoners(Allegiance.BLACK),
+				snapshot.getPrisoners(Allegiance.WHITE));
+
+		gameOver = snapshot.isGameOver();
+		variations = new VariationTree(PersistentBoard.fromPosition(board),
+				rules.getCurrentPlayer(), rules.getPasses(), rules.getHistoryBase() - 1,
+				rule);
+		currentTurn = snapshot.getCurrentTurn() - 1;
+		displayTurnInformation();
+		gameLog = null;
+	}
+
+	/**
+	 * saveSnapshot is a void method that saves the game so that it can be
+	 * continued later by starting the program with --load. It is saved to
+	 * SNAPSHOT_FILE, unless that is the file the game was continued from.
+	 */
+	private void saveSnapshot() {
+		GameSnapshot snapshot = new GameSnapshot(numLines, rules.getCurrentPlayer(),
+				rules.getPasses(), currentTurn, rule, counting, whiteDisadvantageBonus,
+				whiteWinsTies, gameOver, rules.getPrisoners(Allegiance.BLACK),
+				rules.getPrisoners(Allegiance.WHITE), rules.pack(), rules.getHistory());
+		File file = new File(SNAPSHOT_FILE);
+		if (loadedSnapshotFile != null && sameFile(file, loadedSnapshotFile)) {
+			file = new File(OTHER_SNAPSHOT_FILE);
+		}
+		try {
+			snapshot.save(file);
+			JOptionPane.showMessageDialog(this, "The game has been saved to "
+					+ file + ".\nStart the program with --load "
+					+ file + " to continue it.", "Save Game",
+					JOptionPane.PLAIN_MESSAGE);
+		} catch (IOException snapshotUnwritable) {
+			JOptionPane.showMessageDialog(this, "The game can't be saved: "
+					+ snapshotUnwritable.getMessage(), "Save Game",
+					JOptionPane.PLAIN_MESSAGE);
+		}
+	}
+
+	private static boolean sameFile(File a, File b) {
+		try {
+			return a.getCanonicalFile().equals(b.getCanonicalFile());
+		} catch (IOException pathUnreadable) {
+			return a.getAbsoluteFile().equals(b.getAbsoluteFile());
+		}
+	}
+
+	/**
+	 * readGameLog returns the actions stored in the game log file. If the file
+	 * can't be read, there is nothing to recover and an empty Recovery is
+	 * returned.
+	 */
+	private GameLog.Recovery readGameLog() {
+		try {
+			return GameLog.read(new File(GAME_LOG_FILE));
+		} catch (IOException logUnreadable) {
+			return new GameLog.Recovery();
+		}
+	}
+
+	/**
+	 * resumeDialogResponse asks the players whether they want to continue the
+	 * game found in the game log, returning true if they do. They aren't asked
+	 * about a game that was ended, since there is nothing left to continue.
+	 */
+	private boolean resumeDialogResponse() {
+		int n = JOptionPane.showConfirmDialog(this,
+				"A game from last time was found."
+						+ "\nDo you want to continue it?", "Resume Game",
+				JOptionPane.YES_NO_OPTION);
+		return n == JOptionPane.YES_OPTION;
+	}
+
+	/**
+	 * assignRecoveredOptions sets up the options of a recovered game from the
+	 * START record at the beginning of its game log, instead of asking for
+	 * them with the GoOptionMenu.
+	 */
+	private void assignRecoveredOptions(GameLog.Recovery recovery) {
+		numLines = recovery.getNumber(0, 0);
+		rule = GameOptions.ruleOf(recovery.getNumber(0, 1));
+		counting = GameOptions.countingOf(recovery.getNumber(0, 1));
+		whiteDisadvantageBonus = recovery.getNumber(0, 2);
+	}
+
+	/**
+	 * replayGameLog is a void method that plays every action in a recovered
+	 * game log on the variation tree, then makes the board the tree finished
+	 * on the current board with resumeVariation, so that the board, turn and
+	 * history end up as they were without placing and capturing every piece
+	 * on the screen again. The lines of play that were undone stay in the tree
+	 * as variations. If the game had been ended, it is ended again with the
+	 * dead pieces the players chose to remove then, so the players see the
+	 * same result without being asked again.
+	 */
+	private void replayGameLog(GameLog.Recovery recovery) {
+		variations.follow(recovery);
+		resumeVariation(variations.getCurrent());
+		if (recovery.isEnded()) {
+			endGame(recovery.getDeadPieces());
+		}
 	}
 
-	private void assignAllOptions(GoOptionMenu menu) {
-		usingKo = menu.getUsingKo();
-		whiteDisadvantageBonus = menu.getWhiteDisadvantageBonus();
-		initializeBoardProperties(menu);
+	/**
+	 * startGameLog opens the game log so the actions of this game are
+	 * recorded, either continuing a recovered log or replacing the old one with
+	 * a new game. If the file can't be written, the game is played without a
+	 * log.
+	 */
+	private void startGameLog(GameLog.Recovery recovery) {
+		try {
+			File logFile = new File(GAME_LOG_FILE);
+			if (recovery != null) {
+				gameLog = GameLog.resume(logFile, recovery);
+			} else {
+				gameLog = GameLog.create(logFile, numLines, rule, counting,
+						whiteDisadvantageBonus);
+			}
+		} catch (IOException logUnwritable) {
+			gameLog = null;
+			JOptionPane.showMessageDialog(this,
+					"The game log can't be written, so this game can't be recovered"
+							+ "\nif the program closes before it is over.",
+					"Game Log", JOptionPane.PLAIN_MESSAGE);
+		}
+	}
+
+	private void assignAllOptions(GameOptions options) {
+		rule = options.getRule();
+		counting = options.getCounting();
+		whiteDisadvantageBonus = options.getWhiteDisadvantageBonus();
+		initializeBoardProperties(options);
 	}
 
-	private void initializeBoardProperties(GoOptionMenu menu) {
-		numLines = menu.getBoardSize();
-		vertLineSep = APPLICATION_WIDTH / (numLines + 1);
-		horizLineSep = (APPLICATION_HEIGHT - EXTRA_HEIGHT) / (numLines + 1);
-		pieceDiameter = vertLineSep / 2;
-		
+	private void initializeBoardProperties(GameOptions options) {
+		numLines = options.getBoardSize();
 	}
 
 	/**
@@ -212,79 +513,45 @@ public class Go extends GraphicsProgram {
 	}
 
 	/**
-	 * createBoard is a simple method that draws all the lines that comprise the
-	 * Go game board. It determines the locations of the lines based on the
-	 * constants that define how many lines there are, how large the application
-	 * window should be, and how much space there is above the board
+	 * createBoard is a simple method that adds the BoardRenderer that draws all
+	 * the lines that comprise the Go game board. The renderer determines the
+	 * separation between lines from how many lines there are, how large the
+	 * application window should be, and how much space there is above the
+	 * board. If the board is too large to play on in the window, only part of
+	 * it is shown, and the players can zoom and move around the board.
 	 */
 	private void createBoard() {
-		for (int i = 1; i < numLines + 1; i++) {
-			GLine vertLine = new GLine(vertLineSep * i, horizLineSep
-					+ EXTRA_HEIGHT, vertLineSep * i, APPLICATION_HEIGHT
-					- horizLineSep);
-
-			GLine horizLine = new GLine(vertLineSep, EXTRA_HEIGHT
-					+ horizLineSep * i, APPLICATION_WIDTH - vertLineSep,
-					EXTRA_HEIGHT + horizLineSep * i);
-
-			horizLine.setColor(Color.BLACK);
-			vertLine.setColor(Color.BLACK);
-			add(vertLine);
-			add(horizLine);
-		}
-
+		renderer = new BoardRenderer(numLines, EXTRA_HEIGHT, APPLICATION_WIDTH,
+				APPLICATION_HEIGHT);
+		getGCanvas().add(renderer, 0, 0);
 	}
 
 	/**
-	 * initializeIntersections is a private method that creates all of the
-	 * intersections and stores each of them in the appropriate index of a
-	 * numLines x numLines array. The x locations and y locations of each
-	 * intersection are determined by using the separation between vertical
-	 * lines and horizontal lines as well as i and j, respectively. The for
-	 * loops store each new intersection in the array. The indices of each
-	 * intersection represent the x and y number of each intersection. That is,
-	 * index 0,0 is the leftmost topmost intersection, while 0,1 is the
-	 * intersection directly below it
+	 * initializeIntersections is a private method that creates the GoRules
+	 * that holds all of the intersections, starting with the empty board, and
+	 * has every piece it places or takes away drawn or taken off the board by
+	 * the renderer.
 	 */
 	private void initializeIntersections() {
-		intersections = new Intersection[numLines][numLines];
-		for (int i = 0; i < numLines; i++) {
-			for (int j = 0; j < numLines; j++) {
-
-				intersections[i][j] = new Intersection(vertLineSep * (i + 1),
-						EXTRA_HEIGHT + horizLineSep * (j + 1), pieceDiameter);
+		rules = GoRules.create(numLines, rule, counting);
+		rules.setListener(new GoRules.Listener() {
+			public void pieceChanged(int x, int y, int allegiance) {
+				renderer.setStone(x, y, allegiance);
 			}
-
-		}
+		});
+		variations = new VariationTree(numLines, rule);
+		tacticalReader = new TacticalReader(numLines);
+		ponderer = new Ponderer(numLines, whiteDisadvantageBonus);
 	}
 
 	/**
-	 * addTurnInformation is a void method that adds a GLabel that says
-	 * "Current player:", as well as a separate GLabel that has the current turn
-	 * number on it. It also adds a GOval that is the size of a normal piece
-	 * with that is the color of the black player. This piece is changed by the
-	 * displayTurnInformation method, along with the turn count GLabel, which is
-	 * called after any player makes a move.
+	 * addTurnInformation is a void method that shows "Current player:" along
+	 * with a piece of the color of the black player, as well as the current
+	 * turn number. These are changed by the displayTurnInformation method,
+	 * which is called after any player makes a move.
 	 */
 	private void addTurnInformation() {
-		GLabel currentPlayerLabel = new GLabel("Current Player:", 0,
-				EXTRA_HEIGHT);
-		currentPlayerLabel.setColor(Color.BLACK);
-		currentPlayerLabel.setFont("Plain-*-18");
-		add(currentPlayerLabel);
-
-		currentPlayerPiece = new GOval(currentPlayerLabel.getWidth()
-				+ pieceDiameter / 2, EXTRA_HEIGHT - pieceDiameter / 3
-				- currentPlayerLabel.getAscent() / 2, pieceDiameter,
-				pieceDiameter);
-		currentPlayerPiece.setFilled(true);
-		add(currentPlayerPiece);
-
-		turnLabel = new GLabel("Current Turn: 1", 0, EXTRA_HEIGHT / 2);
-		turnLabel.setColor(Color.BLACK);
-		turnLabel.setFont("Plain-*-18");
-		add(turnLabel);
-
+		renderer.setTurnInformation(currentTurn, Allegiance.BLACK);
 	}
 
 	/**
@@ -302,6 +569,16 @@ public class Go extends GraphicsProgram {
 
 		add(new JButton("Pass"), NORTH);
 		add(new JButton("End Game"), NORTH);
+		add(new JButton("Variations"), NORTH);
+		add(new JButton("Suggest Move"), NORTH);
+		add(new JButton("Atari"), NORTH);
+		add(new JButton("Score Chart"), NORTH);
+		add(new JButton("Broadcast"), NORTH);
+		add(new JButton("Save Game"), NORTH);
+		add(new JButton("Replay"), NORTH);
+		if (numLines <= PONDER_MAX_LINES) {
+			add(new JButton("Ponder"), NORTH);
+		}
 	}
 
 	/**
@@ -317,98 +594,87 @@ public class Go extends GraphicsProgram {
 	 * meaning that a player has tried to make a move. If an intersection was
 	 * clicked, then a piece will be placed there and it will become the next
 	 * player's turn, otherwise nothing will happen and the game will wait for
-	 * another click or button press.
+	 * another click or button press. The renderer finds which intersection was
+	 * clicked, if any, since only it knows which part of the board is shown.
 	 */
 	private void playerMoved(MouseEvent e) {
 		if (!gameOver) {
 
-			for (int i = 0; i < numLines; i++) {
-				for (int j = 0; j < numLines; j++) {
-
-					if (intersectionClicked(intersections[i][j].getX(),
-							intersections[i][j].getY(), e.getX(), e.getY())) {
-
-						if (intersections[i][j].getAllegiance() != 1
-								&& intersections[i][j].getAllegiance() != 2) {
-
-							overwritePreviousAllegiances();
-
-							intersections[i][j].setAllegiance(currentPlayer);
-							add(intersections[i][j].getPiece());
-
-							pass = 0;
-							capturePieces(i, j);
-							nextPlayer();
-							displayTurnInformation();
-							checkNeighbors(i, j);
-
-						}
-
-					}
+			int clicked = renderer.findIntersection(e.getX(), e.getY());
+			if (clicked >= 0) {
+				int i = clicked / numLines;
+				int j = clicked % numLines;
 
+				if (placePiece(i, j) && gameLog != null) {
+					gameLog.logMove(i, j);
 				}
 			}
-
-			koCheck();
 		}
 	}
 
 	/**
-	 * koCheck is a void method that checks if the move the player made breaks
-	 * the Ko or Superko rule, depending on which is being used in this game. If
-	 * the player is breaking either rule, a quick JOptionPane message dialog
-	 * will pop up mentioning that they repeated a/the previous board state
-	 * depending on whether superko or ko are being used, respectively.
+	 * placePiece is a boolean method that places a piece of the current player
+	 * on the intersection at indices i and j, captures anything it surrounds
+	 * and makes it the next player's turn, all of which is done by the rules.
+	 * If the move breaks the rule against repeating boards, the rules take it
+	 * back again and koCheck tells the players why.
+	 * 
+	 * @return true if a piece was placed and the move was allowed to stand
 	 */
-	private void koCheck() {
-		if (usingKo) {
+	private boolean placePiece(int i, int j) {
+		if (!Allegiance.isPiece(rules.get(i, j))) {
 
-			if (breakingKo()) {
-				undo(-1);
-				JOptionPane
-						.showMessageDialog(
-								this,
-								"It is illegal to make a move that repeats the board state of your previous move.",
-								"Rules", JOptionPane.PLAIN_MESSAGE);
+			if (!rules.play(i, j)) {
+				koCheck();
+				return false;
 			}
-
-		} else {
-			if (breakingSuperko()) {
-				undo(-1);
-				JOptionPane
-						.showMessageDialog(
-								this,
-								"It is illegal to make a move that repeats the board state of any previous move.",
-								"Rules", JOptionPane.PLAIN_MESSAGE);
+			displayTurnInformation();
+			variations.play(i * numLines + j);
+			if (pondering) {
+				ponderer.play(i * numLines + j);
 			}
-
+			if (spectators != null) {
+				broadcastMove(i, j);
+			}
+			showAtari();
+			return true;
 		}
+		return false;
 	}
 
 	/**
-	 * intersectionClicked is a private method that receives the x and y
-	 * coordinates of an intersection and the x and y coordinates of the mouse
-	 * (after a click) and checks whether the intersection was selected or not.
-	 * This is determined by the radius of a game piece. If the click was less
-	 * than or equal to the radius of a game piece distance from the
-	 * intersection, then that intersection is considered to have been clicked
-	 * In that scenario, this method returns true, otherwise it returns false
-	 * This method exists to reduce clutter in the mouseClicked method.
-	 * 
-	 * @param x1
-	 *            x coordinate of the intersection
-	 * @param y1
-	 *            y coordinate of the intersection
-	 * @param x2
-	 *            x coordinate of the mouse
-	 * @param y2
-	 *            y coordinate of the mouse
-	 * @return true if click was close enough to the intersection, otherwise
-	 *         false
+	 * koCheck is a void method that is called once the rules have undone a
+	 * move for breaking the Ko, Superko or situational superko rule, depending
+	 * on which is being used in this game. A quick JOptionPane message dialog
+	 * will pop up mentioning that they repeated the previous board state, any
+	 * previous board state, or any previous board state with the same player
+	 * to move, respectively.
 	 */
-	private boolean intersectionClicked(double x1, double y1, double x2,
-			double y2) {
-		return Math.sqrt((x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2)) <= pieceDiameter / 2;
+	private void koCheck() {
+		if (rule == RulesEngine.SIMPLE_KO) {
+
+			JOptionPane
+					.showMessageDialog(
+							this,
+							"It is illegal to make a move that repeats the board state of your previous move.",
+							"Rules", JOptionPane.PLAIN_MESSAGE);
+
+		} else if (rule == RulesEngine.POSITIONAL_SUPERKO) {
+			JOptionPane
+					.showMessageDialog(
+							this,
+							"It is illegal to make a move that repeats the board state of any previous move.",
+							"Rules", JOptionPane.PLAIN_MESSAGE);
+
+		} else {
+			JOptionPane
+					.showMessageDialog(
+							this,
+							"It is illegal to make a move that repeats the board state of any previous move"
+									+ "\nthat had the same player to move.",
+							"Rules", JOptionPane.PLAIN_MESSAGE);
+
+		}
 	}
 
 	/**
@@ -422,15 +688,14 @@ public class Go extends GraphicsProgram {
 
 		if ("Pass".equals(e.getActionCommand())) {
 
-			if (allPreviousAllegiances.size() > 1) {
+			if (passTurn()) {
 
-				pass++;
-				overwritePreviousAllegiances();
-				nextPlayer();
-				displayTurnInformation();
+				if (gameLog != null) {
+					gameLog.logPass();
+				}
 
-				if (pass >= 2) {
-					endGame();
+				if (rules.getPasses() >= 2) {
+					endGameAndLog();
 				}
 
 			} else {
@@ -444,431 +709,417 @@ public class Go extends GraphicsProgram {
 		}
 
 		if ("Undo".equals(e.getActionCommand())) {
+			int numTurns = 1;
 			try {
-				int numTurns = Integer.parseInt(undoField.getText());
+				numTurns = Integer.parseInt(undoField.getText());
 
-				if (numTurns > 0 && numTurns <= allPreviousAllegiances.size()) {
-					undo(numTurns);
-				} else {
-					undo(1);
+				if (numTurns <= 0
+						|| numTurns > rules.getNumUndoable()) {
+					numTurns = 1;
 				}
 			} catch (NullPointerException playerInputInvalid) {
 				nonIntegerInputMessage();
-				undo(1);
+				numTurns = 1;
 
 			} catch (NumberFormatException playerInputInvalid) {
 				nonIntegerInputMessage();
-				undo(1);
+				numTurns = 1;
 			}
 
+			int numUndone = undoTurns(numTurns);
+			if (gameLog != null && numUndone > 0) {
+				gameLog.logUndo(numUndone);
+			}
 		}
 
-		if ("End Game".equals(e.getActionCommand())) {
-
-			if (allPreviousAllegiances.size() > 2) {
-				endGame();
+		if ("Atari".equals(e.getActionCommand())) {
+			showingAtari = !showingAtari;
+			showAtari();
+		}
 
+		if ("Ponder".equals(e.getActionCommand())) {
+			pondering = !pondering;
+			if (pondering) {
+				ponderFromHere();
 			} else {
-
-				JOptionPane.showMessageDialog(this,
-						"Are you honestly going to end the game like this?",
-						"What a strange decision.", JOptionPane.PLAIN_MESSAGE);
+				ponderer.stop();
 			}
 		}
-	}
 
-	/**
-	 * If the player inputs a non integer valuu (or no value at all) into the
-	 * undofield, they are notified with a dialog window
-	 */
-	private void nonIntegerInputMessage() {
-		JOptionPane.showMessageDialog(this,
-				"Please input integer values for this field"
-						+ "\n1 turn has been undone", "Error",
-				JOptionPane.PLAIN_MESSAGE);
-	}
+		if ("Score Chart".equals(e.getActionCommand())) {
+			ScoreChart.show(ScoreEvolution.fromHistory(rules.getHistory(),
+					rules.pack(), rules.getPrisonersByTurn(), rules.getCounting(),
+					whiteDisadvantageBonus));
+		}
 
-	/**
-	 * nextPlayer is a void method that changes the current player to the other
-	 * player and vice versa. It is called in response to a piece being placed
-	 * or to a turn being passed. It also calls the displayCurrentPlayerMethod,
-	 * which shows whose turn it is at any given time.
-	 */
-	private void nextPlayer() {
+		if ("Broadcast".equals(e.getActionCommand())) {
+			startBroadcast();
+		}
 
-		currentPlayer++;
-		if (currentPlayer > 2) {
-			currentPlayer = 1;
+		if ("Save Game".equals(e.getActionCommand())) {
+			saveSnapshot();
 		}
 
-		opposingPlayer++;
-		if (opposingPlayer > 2) {
-			opposingPlayer = 1;
+		if ("Replay".equals(e.getActionCommand())) {
+			ReplayController replay = new ReplayController(
+					variations.getCurrent().getLine());
+			replay.setVisible(true);
+			replay.play();
 		}
 
-	}
+		if ("Suggest Move".equals(e.getActionCommand())) {
+			suggestMove();
+		}
 
-	private void displayTurnInformation() {
-		currentTurn++;
-		if (currentTurn % 2 == 0) {
-			currentPlayerPiece.setFilled(false);
-		} else {
-			currentPlayerPiece.setFilled(true);
+		if ("Variations".equals(e.getActionCommand())) {
+			VariationTree.Node chosen = variationDialogResponse();
+			if (chosen != null) {
+				resumeVariation(chosen);
+			}
 		}
 
-		remove(turnLabel);
-		turnLabel = new GLabel("Current Turn: " + currentTurn, 0,
-				EXTRA_HEIGHT / 2);
-		turnLabel.setColor(Color.BLACK);
-		turnLabel.setFont("Plain-*-18");
-		add(turnLabel);
+		if ("End Game".equals(e.getActionCommand())) {
+
+			if (rules.getHistory().size() > 2) {
+				endGameAndLog();
+
+			} else {
 
+				JOptionPane.showMessageDialog(this,
+						"Are you honestly going to end the game like this?",
+						"What a strange decision.", JOptionPane.PLAIN_MESSAGE);
+			}
+		}
 	}
 
 	/**
-	 * undo is a method that reverts the previous move made by a player. If undo
-	 * is chosen after a pass, it will only change the turn of the current
-	 * player. There is no longer any limit on the number of possible undos
+	 * passTurn is a boolean method that passes the current player's turn. The
+	 * board state is still stored by the rules, so that the pass can be undone
+	 * like a move. The rules don't allow a pass before any turn has been taken.
+	 * 
+	 * @return true if the turn was passed
 	 */
-	private void undo(int numTurns) {
-		if (pass > 0) {
-			pass--;
+	private boolean passTurn() {
+		if (!rules.pass()) {
+			return false;
 		}
-
-		if (allPreviousAllegiances.size() > 1) {
-
-			resetBoard();
-			overwriteIntersections(numTurns - 1);
-			restoreBoardState();
-
-			currentTurn -= numTurns + 1;
-			for (int i = 0; i < numTurns; i++) {
-				nextPlayer();
-			}
-			displayTurnInformation();
-
+		displayTurnInformation();
+		variations.pass();
+		if (pondering) {
+			ponderer.play(Ponderer.PASS);
 		}
-
-		gameOver = false;
+		if (spectators != null) {
+			spectators.pass(Allegiance.opponent(rules.getCurrentPlayer()));
+		}
+		return true;
 	}
 
 	/**
-	 * resetBoard is a void method that completely clears the board. It exists
-	 * to make the undo method simpler. It allows the current board to be
-	 * replaced with a previous board, which is done by the restoreBoardState
-	 * method.
+	 * broadcastMove is a void method that sends the move just made at indices
+	 * i and j to the spectators, along with every piece it captured, which are
+	 * the pieces on the board before the move that are gone now, and the new
+	 * piece too if it was captured along with its own chain.
 	 */
-	private void resetBoard() {
-		for (int i = 0; i < numLines; i++) {
-			for (int j = 0; j < numLines; j++) {
-
-				if (intersections[i][j].getAllegiance() == 1
-						|| intersections[i][j].getAllegiance() == 2) {
-
-					remove(intersections[i][j].getPiece());
-
+	private void broadcastMove(int i, int j) {
+		PackedPosition before = rules.getHistory().get(0);
+		int[] captured = new int[numLines * numLines];
+		int numCaptured = 0;
+		for (int x = 0; x < numLines; x++) {
+			for (int y = 0; y < numLines; y++) {
+				if (before.get(x, y) != Allegiance.EMPTY
+						&& rules.get(x, y) != before.get(x, y)) {
+					captured[numCaptured++] = x * numLines + y;
 				}
-
 			}
 		}
+		if (rules.get(i, j) == Allegiance.EMPTY) {
+			captured[numCaptured++] = i * numLines + j; // it captured itself
+		}
+		spectators.move(i * numLines + j, Allegiance.opponent(rules.getCurrentPlayer()),
+				captured, numCaptured);
 	}
 
 	/**
-	 * restoreBoardState is a void method that adds every piece that should be
-	 * on the board to the board according to the first element of the
-	 * allPreviousAllegiances array ArrayList. It assumes that the board is
-	 * currently empty and is only called after resetBoard and
-	 * overwriteIntersections
+	 * startBroadcast is a void method that starts sending the game to
+	 * spectators on SpectatorServer.DEFAULT_PORT, beginning with the board as
+	 * it is now, or says how many are watching if it has already started.
 	 */
-	private void restoreBoardState() {
-		for (int i = 0; i < numLines; i++) {
-			for (int j = 0; j < numLines; j++) {
-
-				if (intersections[i][j].getAllegiance() == 1
-						|| intersections[i][j].getAllegiance() == 2) {
-
-					add(intersections[i][j].getPiece());
-
-				}
-
+	private void startBroadcast() {
+		if (spectators == null) {
+			try {
+				spectators = new SpectatorServer(numLines, null,
+						SpectatorServer.DEFAULT_PORT);
+			} catch (IOException portUnavailable) {
+				JOptionPane.showMessageDialog(this,
+						"The game can't be broadcast: " + portUnavailable.getMessage(),
+						"Broadcast", JOptionPane.PLAIN_MESSAGE);
+				return;
 			}
+			spectators.position(rules.pack(), rules.getHistory().size() - 1,
+					rules.getCurrentPlayer());
 		}
+		JOptionPane.showMessageDialog(this, "The game is being broadcast on port "
+				+ spectators.getPort() + ".\nSpectators watching: "
+				+ spectators.getNumSpectators(), "Broadcast", JOptionPane.PLAIN_MESSAGE);
 	}
 
 	/**
-	 * overwriteIntersections is a void method that replaces every allegiance
-	 * value in intersections with the corresponding value from the board at
-	 * index boardIndex of allPreviousAllegiances. Additionally, it removes that
-	 * particular board state from the ArrayList and every board state that came
-	 * after it (ie earlier indices), since the game board has been reverted to
-	 * that state. It exists to simplify the Undo method, and is called
-	 * immediately after every existing piece is removed from the board with
-	 * resetBoard.
-	 * 
-	 * @param boardIndex
-	 *            the index of the board the player has chosen to revert to when
-	 *            the press the undo button. It is 0 if they are reverting the
-	 *            last move
+	 * ponderFromHere is a void method that starts the ponderer again on the
+	 * current board, for when the board has changed by more than a move, such
+	 * as after an undo.
 	 */
-	private void overwriteIntersections(int boardIndex) {
-
-		for (int i = 0; i < numLines; i++) {
-			for (int j = 0; j < numLines; j++) {
-
-				intersections[i][j].setAllegiance(allPreviousAllegiances
-						.get(boardIndex)[i][j]);
-
-			}
+	private void ponderFromHere() {
+		if (pondering && !gameOver) {
+			ponderer.start(rules.toGoBoard(), rules.getCurrentPlayer());
 		}
+	}
 
-		for (int i = 0; i <= boardIndex; i++) {
-			allPreviousAllegiances.remove(0);
+	/**
+	 * loadOpeningBook returns the opening book in OPENING_BOOK_FILE, or null if
+	 * there isn't one, it can't be read, or it was made for a different size
+	 * of board.
+	 */
+	private OpeningBook loadOpeningBook() {
+		File bookFile = new File(OPENING_BOOK_FILE);
+		if (!bookFile.isFile()) {
+			return null;
+		}
+		try {
+			OpeningBook book = OpeningBook.open(bookFile);
+			return book.getSize() == numLines ? book : null;
+		} catch (IOException bookUnreadable) {
+			return null;
 		}
 	}
 
 	/**
-	 * overwritePreviousAllegiances is a void method that stores in an ArrayList
-	 * the arrays that contain the allegiance of each piece on the board for
-	 * every single previous board state. It is called immediately before a
-	 * piece is placed or after a player passes their turn, as well as at the
-	 * beginning of the game to store the empty board as the first board state.
+	 * suggestMove is a void method that shows the players the move the
+	 * ponderer likes best, if pondering is on, and the moves the opening book
+	 * has for the current board, with how often each was played and won, and
+	 * whether the last move made was one of the book's moves.
 	 */
-	private void overwritePreviousAllegiances() {
-
-		int[][] previousAllegiances = new int[numLines][numLines];
+	private void suggestMove() {
+		StringBuilder message = new StringBuilder();
+		if (pondering) {
+			int best = ponderer.getBestMove();
+			message.append("After " + ponderer.getPlayouts()
+					+ " playouts, the search likes "
+					+ (best == Ponderer.PASS ? "passing" : "(" + best / numLines
+							+ ", " + best % numLines + ")") + ", which won "
+					+ Math.round(100 * ponderer.getBestWinRate()) + "% of them.\n\n");
+		}
 
-		for (int i = 0; i < numLines; i++) {
-			for (int j = 0; j < numLines; j++) {
+		if (openingBook == null) {
+			message.append("There is no opening book for this size of board.");
+			JOptionPane.showMessageDialog(this, message.toString(),
+					"Suggest Move", JOptionPane.PLAIN_MESSAGE);
+			return;
+		}
 
-				previousAllegiances[i][j] = intersections[i][j].getAllegiance();
+		VariationTree.Node current = variations.getCurrent();
+		if (current.getParent() != null && current.getMove() != VariationTree.PASS) {
+			int last = current.getMove();
+			bookBoard.copyFrom(current.getParent().getBoard());
+			boolean inBook = openingBook.isBookMove(bookBoard, current.getParent()
+					.getToMove(), last);
+			message.append("The last move, (" + last / numLines + ", "
+					+ last % numLines + "), " + (inBook ? "is" : "is not")
+					+ " in the book.\n\n");
+		}
 
+		bookBoard.copyFrom(current.getBoard());
+		ArrayList<OpeningBook.BookMove> moves = openingBook.getMoves(bookBoard,
+				rules.getCurrentPlayer());
+		if (moves.isEmpty()) {
+			message.append("The book has no moves for this board.");
+		} else {
+			message.append("Moves from the book:");
+			for (int k = 0; k < moves.size() && k < 5; k++) {
+				OpeningBook.BookMove move = moves.get(k);
+				message.append("\n(" + move.getPoint() / numLines + ", "
+						+ move.getPoint() % numLines + "): played "
+						+ move.getPlays() + " times, won "
+						+ (100 * move.getWins() / move.getPlays()) + "%");
 			}
 		}
-
-		allPreviousAllegiances.add(0, previousAllegiances);
+		JOptionPane.showMessageDialog(this, message.toString(), "Suggest Move",
+				JOptionPane.PLAIN_MESSAGE);
 	}
 
 	/**
-	 * breakingKo is a boolean method helps enforce the Ko rule in the koCheck
-	 * method. Ko is a rule in go that prevents a player from making a move that
-	 * results in the board state of their previous turn being repeated. This
-	 * means that if the array of allegiances 2 moves ago is the same as that of
-	 * th move being made, then the move being made is invalid. This method
-	 * returns false if there have not been enough moves in the game for Ko to
-	 * matter, or if the previous turn of that player did not have the same
-	 * board state.
+	 * variationDialogResponse asks the players which line of play they want to
+	 * go back to, listing the last board of every line tried so far.
 	 * 
-	 * @return true if the player has made a move that repeats the board state
-	 *         of their previous move
+	 * @return the chosen node, or null if the dialog was cancelled
 	 */
-	private boolean breakingKo() {
-
-		if (allPreviousAllegiances.size() < 2) {
-			return false;
+	private VariationTree.Node variationDialogResponse() {
+		ArrayList<VariationTree.Node> leaves = variations.getLeaves();
+		String[] options = new String[leaves.size()];
+		for (int i = 0; i < options.length; i++) {
+			options[i] = leaves.get(i).describe();
+			if (leaves.get(i) == variations.getCurrent()) {
+				options[i] += " (current)";
+			}
 		}
-
-		for (int i = 0; i < numLines; i++) {
-			for (int j = 0; j < numLines; j++) {
-
-				if (intersections[i][j].getAllegiance() != allPreviousAllegiances
-						.get(1)[i][j]) {
-					return false;
-				}
-
+		Object chosen = JOptionPane.showInputDialog(this,
+				"Which line of play do you want to go back to?", "Variations",
+				JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+		for (int i = 0; i < options.length; i++) {
+			if (options[i].equals(chosen)) {
+				return leaves.get(i);
 			}
 		}
-		return true;
+		return null;
 	}
 
 	/**
-	 * breakingSuperko is the same as breakingKo, except it checks for every
-	 * previous board rather than just the board from the previous move.
-	 * 
-	 * @return true if the player has made a move that repeats the board state
-	 *         of any previous move
+	 * resumeVariation is a void method that makes the board of any node of the
+	 * variation tree the current board, straight from the node's
+	 * PersistentBoard rather than by replaying the game from the start. The
+	 * history of previous board states and the prisoners are rebuilt from the
+	 * boards on the way to the node, so the rule against repeating boards and
+	 * the counting keep working. In the game log this is
+	 * recorded as undoing back to where the two lines of play split, followed
+	 * by the moves of the chosen line, so a recovered game ends up in the same
+	 * place.
 	 */
-	private boolean breakingSuperko() {
-
-		if (allPreviousAllegiances.size() < 2) {
-			return false;
+	private void resumeVariation(VariationTree.Node node) {
+		VariationTree.Node split = variations.getCurrent();
+		while (!split.isAncestorOf(node)) {
+			split = split.getParent();
 		}
+		int turnsUndone = variations.getCurrent().getDepth() - split.getDepth();
 
-		for (int i = 0; i < allPreviousAllegiances.size(); i++) {
-			boolean arraysSame = true;
-
-			for (int j = 0; j < numLines; j++) {
-				for (int k = 0; k < numLines; k++) {
-
-					if (intersections[j][k].getAllegiance() != allPreviousAllegiances
-							.get(i)[j][k]) {
-						arraysSame = false;
-					}
+		ArrayList<VariationTree.Node> path = node.getLine();
+		rules.followLine(path);
+		gameOver = false;
+		currentTurn = node.getDepth();
+		displayTurnInformation();
+		variations.select(node);
+		showAtari();
+		ponderFromHere();
+		if (spectators != null) {
+			spectators.position(rules.pack(), rules.getHistory().size() - 1,
+					rules.getCurrentPlayer());
+		}
 
+		if (gameLog != null) {
+			if (turnsUndone > 0) {
+				gameLog.logUndo(turnsUndone);
+			}
+			for (int k = split.getDepth() - node.getDepth() + path.size(); k < path.size(); k++) {
+				int move = path.get(k).getMove();
+				if (move == VariationTree.PASS) {
+					gameLog.logPass();
+				} else {
+					gameLog.logMove(move / numLines, move % numLines);
 				}
 			}
+		}
+	}
 
-			if (arraysSame) {
-				return true;
+	/**
+	 * exit is called when the window is closed. It closes the game log, which
+	 * writes any actions that haven't reached the file yet, and deletes the
+	 * temporary file of the game history before the program closes.
+	 */
+	@Override
+	public void exit() {
+		if (gameLog != null) {
+			try {
+				gameLog.close();
+			} catch (IOException logUnwritable) {
+				// the actions that were forced before this are still recoverable
 			}
+			gameLog = null;
 		}
-		return false;
+		if (rules != null) {
+			rules.close();
+		}
+		super.exit();
 	}
 
 	/**
-	 * capturePieces is a void method that checks to see if any of the pieces
-	 * adjacent to the most recently placed piece are part of a group that
-	 * should be captured, then removes any group as appropriate. Each call of
-	 * checkNeighbors checks a different neighboring intersection for opposing
-	 * allegiance pieces.
-	 * 
-	 * checkNeighbors only needs to be called 4 times since captures can only be
-	 * performed on chains of pieces that are touching the last placed piece.
-	 * However, since the capture methods only operate on pieces not of the
-	 * allegiance of the current player, self capture doesn't happen, the pieces
-	 * that would be self captured are not adjacent to the piece that is next
-	 * played after the current turn ends and so can never be captured. This is
-	 * currently an fault in the program.
-	 * 
-	 * @param x
-	 *            the x index of the piece just placed
-	 * @param y
-	 *            the y index of the piece just placed
+	 * endGameAndLog ends the game, then records the dead pieces the players
+	 * chose to remove and that the game was ended in the game log, and waits
+	 * for the log to reach the disk, since the end of a game is a good time to
+	 * be sure nothing is lost.
 	 */
-	private void capturePieces(int x, int y) {
-
-		checkNeighbors(x, y - 1);
-		checkNeighbors(x + 1, y);
-		checkNeighbors(x - 1, y);
-		checkNeighbors(x, y + 1);
-
+	private void endGameAndLog() {
+		int[] deadPieces = endGame(null);
+		if (gameLog != null) {
+			for (int p : deadPieces) {
+				gameLog.logDeadPiece(p / numLines, p % numLines);
+			}
+			gameLog.logEndGame();
+			try {
+				gameLog.flush();
+			} catch (IOException logUnwritable) {
+				gameLog = null;
+			}
+		}
 	}
 
 	/**
-	 * checkNeighbors is a method that performs some of the capture
-	 * functionality. It receives the indices of one of the four intersections
-	 * adjacent to the most recently placed piece. If the intersection has a
-	 * piece of the opposite player's allegiance, then the recursive
-	 * markedForCapture method is called to determine if it should be removed.
-	 * The arrayList chain is altered to store every piece of the same color
-	 * attached to the aforementioned piece, and modifies the marked boolean to
-	 * true for any completely surrounded piece. After, if any piece in the
-	 * arrayList is unmarked, then none of the pieces are captured, whereas if
-	 * every piece is marked, the pieces are all removed.
-	 * 
-	 * checkNeighbors is additionally called once more on the last played piece
-	 * itself after the current player allegiance has switched but before that
-	 * player's turn starts in order to check for self capture. Self-capture is
-	 * when a player makes a move that causes a chain of their own pieces to be
-	 * captured. It always occurs after any sort of regular capture, and does
-	 * not occur if the pieces causing the self-capture would be removed by
-	 * regular capture.
-	 * 
-	 * @param x
-	 *            the x index of the adjacent piece
-	 * @param y
-	 *            the y index of the adjacent piece
+	 * If the player inputs a non integer valuu (or no value at all) into the
+	 * undofield, they are notified with a dialog window
 	 */
-	private void checkNeighbors(int x, int y) {
-
-		if (y >= 0 && y < numLines && x >= 0 && x < numLines) {
-
-			if (intersections[x][y].getAllegiance() == opposingPlayer) {
-
-				ArrayList<Intersection> chain = new ArrayList<Intersection>();
-				markedForCapture(x, y, chain);
-
-				for (int i = 0; i < chain.size(); i++) {
-					if (!chain.get(i).getMarked()) {
-						for (int j = 0; j < chain.size(); j++) {
-							chain.get(j).setMarked(false);
-						}
-						break;
-					}
-				}
-
-				if (chain.get(0).getMarked()) {
-					for (int i = 0; i < chain.size(); i++) {
-						remove(chain.get(i).getPiece());
-						chain.get(i).setAllegiance(0);
-					}
-				}
-
-			}
+	private void nonIntegerInputMessage() {
+		JOptionPane.showMessageDialog(this,
+				"Please input integer values for this field"
+						+ "\n1 turn has been undone", "Error",
+				JOptionPane.PLAIN_MESSAGE);
+	}
 
+	private void displayTurnInformation() {
+		currentTurn++;
+		if (currentTurn % 2 == 0) {
+			renderer.setTurnInformation(currentTurn, Allegiance.WHITE);
+		} else {
+			renderer.setTurnInformation(currentTurn, Allegiance.BLACK);
 		}
 
 	}
 
 	/**
-	 * markedForCapture is a recursive method that determines if a piece that is
-	 * part of a group should be "marked", which is a boolean that is true if
-	 * the piece has no empty spaces adjacent to it. It modifies the arrayList
-	 * chain to store every intersection that is part of this group of
-	 * same-color pieces, and marks all pieces that should be marked.
-	 * 
-	 * Base case: all edges are either walls, opposing allegiances or previously
-	 * checked pieces. Alternatively, any edge is a space. Recursive step, check
-	 * adjacent pieces to see if they meet the base case, add them to the
-	 * arrayList of previously checked pieces and 'mark' them as appropriate
-	 * 
-	 * 
-	 * @param x
-	 *            the x index of the piece being checked
-	 * @param y
-	 *            the y index of the piece being checked
-	 * @param chain
-	 *            the arrayList that stores the checked intersections of the
-	 *            chain of pieces
-	 * @return whether or not the previous piece should be marked
+	 * undo is a method that reverts the previous move made by a player, which
+	 * the rules do, and then shows the turn it has gone back to. If undo is
+	 * chosen after a pass, it will only change the turn of the current player.
+	 * There is no longer any limit on the number of possible undos
 	 */
-	private boolean markedForCapture(int x, int y, ArrayList<Intersection> chain) {
-		/*
-		 * Capture rules, for reference: if a piece has no 'liberties' that is,
-		 * empty spaces around it, then it is slated to be captured however, if
-		 * any of its liberties are occupied by a piece of the same color, then
-		 * it will not be captured. Again however, if those pieces of the same
-		 * color have no liberties they are marked for capture under the same
-		 * conditions and all pieces will be captured.
-		 * 
-		 * Recursion plan: recursion 4 directions. Base case: all edges are
-		 * either walls, opposing allegiances or previously checked pieces.
-		 * Alternatively, any edge is a space Recursive step, check adjacent
-		 * pieces to see if they meet the base case, add them to the arrayList
-		 * as appropriate
-		 */
-
-		if (x < 0 || y < 0 || y >= numLines || x >= numLines) {
-			return true;
+	private void undo(int numTurns) {
+		if (rules.undo(numTurns)) {
 
-		} else if (intersections[x][y].getAllegiance() == currentPlayer) {
-			return true;
+			currentTurn -= numTurns + 1;
+			displayTurnInformation();
+			showAtari();
 
 		}
-		if (intersections[x][y].getAllegiance() == 0) {
-			return false;
 
-		}
-		if (chain.contains(intersections[x][y])) {
-			intersections[x][y].setMarked(true);
-			return true;
+		gameOver = false;
+	}
 
+	/**
+	 * undoTurns is an integer method that undoes the given number of turns
+	 * when a player asks for it, and moves the variation tree back the same
+	 * way so that the undone turns are kept as a line of play that can be gone
+	 * back to. Spectators are only told about turns that were really undone.
+	 *
+	 * @return how many turns were undone, which is 0 if there were none to undo
+	 */
+	private int undoTurns(int numTurns) {
+		if (rules.getNumUndoable() == 0) {
+			undo(numTurns);
+			return 0;
 		}
-
-		chain.add(intersections[x][y]);
-
-		if (markedForCapture(x, y - 1, chain)
-				&& markedForCapture(x - 1, y, chain)
-				&& markedForCapture(x + 1, y, chain)
-				&& markedForCapture(x, y + 1, chain)) {
-
-			intersections[x][y].setMarked(true);
-			return true;
-
+		variations.back(numTurns);
+		undo(numTurns);
+		ponderFromHere();
+		if (spectators != null) {
+			spectators.undo(numTurns, rules.pack(), rules.getHistory().size() - 1,
+					rules.getCurrentPlayer());
 		}
-
-		intersections[x][y].setMarked(false);
-		return false;
-
+		return numTurns;
 	}
 
 	/**
@@ -878,11 +1129,21 @@ public class Go extends GraphicsProgram {
 	 * has been chosen, players can no longer place pieces on the board, but if
 	 * they press undo, the gameOver variable is reset to false and the players
 	 * can play again from that point.
+	 * 
+	 * @param deadPieces
+	 *            the points of the pieces to take off the board as dead, as
+	 *            read back from the game log, or null to ask the players
+	 * @return the points of the dead pieces that were taken off the board
 	 */
-	private void endGame() {
+	private int[] endGame(int[] deadPieces) {
 		gameOver = true;
 
-		int lastPlayer = currentPlayer; // stores the current player
+		ponderer.stop();
+		if (deadPieces == null) {
+			deadPieces = removeDeadStones();
+		} else {
+			rules.remove(deadPieces);
+		}
 
 		String gameWinner = determineWinner();
 		JOptionPane
@@ -894,239 +1155,131 @@ public class Go extends GraphicsProgram {
 						("Victory for " + gameWinner),
 						JOptionPane.PLAIN_MESSAGE);
 
-		/*
-		 * Returns currentPlayer and opposingPlayer to normal so players can
-		 * keep playing if they press undo.
-		 */
-		currentPlayer = lastPlayer;
-		opposingPlayer = currentPlayer + 1;
-		if (opposingPlayer == 3) {
-			opposingPlayer = 1;
-		}
+		return deadPieces;
 	}
 
 	/**
-	 * determineWinner is a String method that returns a string with the name of
-	 * the color of the player that won. It checks every intersection in the
-	 * game to see what territory it belongs to. If the intersection has been
-	 * previously checked or was already claimed by a player (allegiance == 1 or
-	 * 2, the intersection has a piece on it) it is ignored, otherwise it is
-	 * checked by setColorTerritory and is changed to the corresponding
-	 * allegiance of the player that owns it, along with every other
-	 * intersection that was connected to it. (allegiance 3 is black territory,
-	 * 4 is white, 5 is unaligned/neutral)
+	 * removeDeadStones is a void method that asks an OwnershipEstimator which
+	 * pieces are probably dead, greys them out, and asks the players whether
+	 * they should be removed before the score is counted. If they agree, the
+	 * dead pieces are taken off the board so that determineWinner counts their
+	 * points as territory of the other player, and the pieces as prisoners of
+	 * the other player when the score is counted by territory. If not, the pieces go back to
+	 * their normal colour and are counted as alive, as they always used to be.
 	 * 
-	 * @return the color of the winner
+	 * @return the points of the pieces that were removed
 	 */
-	private String determineWinner() {
+	private int[] removeDeadStones() {
+		GoBoard board = rules.toGoBoard();
+		OwnershipEstimator.Estimate estimate = new OwnershipEstimator()
+				.estimate(board, rules.getCurrentPlayer(), deadStoneTimeBudget);
 
+		int deadBlack = 0;
+		int deadWhite = 0;
 		for (int i = 0; i < numLines; i++) {
 			for (int j = 0; j < numLines; j++) {
-
-				if (intersections[i][j].getAllegiance() == 0) {
-					setColorTerritory(i, j);
+				if (estimate.isDead(i * numLines + j)) {
+					if (rules.get(i, j) == Allegiance.BLACK) {
+						deadBlack++;
+					} else {
+						deadWhite++;
+					}
+					renderer.setGreyed(i, j, true);
 				}
-
 			}
 		}
 
-		currentPlayer = 1;
-		int blackScore = tallyScore();
-		System.out.println("Black has " + blackScore + " points.");
-
-		currentPlayer = 2;
-		int whiteScore = tallyScore();
-		System.out.println("White has " + whiteScore + " points.");
-
-		if (blackScore > whiteScore) {
-			return "black";
-		} else if (whiteScore > blackScore) {
-			return "white";
-		} else if (whiteWinsTies) {
-			return "white";
-		} else {
-			return "neither player";
+		if (deadBlack + deadWhite == 0) {
+			return new int[0];
 		}
 
-	}
-
-	/**
-	 * setColorTerritory is a method that helps determine the winner by changing
-	 * the allegiance of a piece that currently has allegiance 0 to the the
-	 * allegiance of the territory it should be. If the piece is surrounded by
-	 * black pieces, it is allegiance 3. White, allegiance 4, and if it is
-	 * connected to both colors, it is of allegiance 5: neutral.
-	 * setColorTerritory changes the allegiance of every empty space touching
-	 * the space at indices x and y to its appropriate value by using the
-	 * checkCurrentPlayerTerritory method to see if the piece is in the
-	 * territory of the current player. After checking both black and white, if
-	 * the piece was not part of either player's territory, then its allegiance
-	 * is changed to 5 (neutral).
-	 * 
-	 * @param x
-	 *            the x index of the space
-	 * @param y
-	 *            the y index of the space
-	 * @param space
-	 *            the ArrayList storing every space that has been checked and
-	 *            has had its allegiance changed to a number from 3 to 5
-	 */
-	private void setColorTerritory(int x, int y) {
-
-		ArrayList<Intersection> chain = new ArrayList<Intersection>();
-
-		currentPlayer = 1;
-		opposingPlayer = 2;
-		if (!checkCurrentPlayerTerritory(x, y, chain)) {
-
-			chain.clear();
-			currentPlayer = 2;
-			opposingPlayer = 1;
-			if (!checkCurrentPlayerTerritory(x, y, chain)) {
-				/*
-				 * if the intersections were touching both white and black (or
-				 * no color for some reason), the pieces are now guaranteed to
-				 * be neutral
-				 */
-				for (int i = 0; i < chain.size(); i++) {
-					chain.get(i).setAllegiance(5);
-				}
+		int n = JOptionPane.showConfirmDialog(this, deadBlack
+				+ " black and " + deadWhite
+				+ " white pieces (shown in grey) look dead."
+				+ "\nShould they be removed before the score is counted?",
+				"Dead Pieces", JOptionPane.YES_NO_OPTION);
+
+		int[] deadPieces = new int[deadBlack + deadWhite];
+		int numDead = 0;
+		for (int p = 0; p < numLines * numLines; p++) {
+			if (estimate.isDead(p)) {
+				renderer.setGreyed(p / numLines, p % numLines, false);
+				deadPieces[numDead++] = p;
 			}
 		}
-
+		if (n != JOptionPane.YES_OPTION) {
+			return new int[0];
+		}
+		rules.remove(deadPieces);
+		return deadPieces;
 	}
 
 	/**
-	 * checkCurrentPlayerTerritory is a boolean that receives the x and y index
-	 * of a space that needs to be checked and an ArrayList chain which is used
-	 * to store every space connected to that space. If currentPlayer is 1
-	 * (black), it will use determineTerritory to check the space and every
-	 * connected space to see if those spaces are black territory. Those pieces
-	 * will be marked by determineTerritory if they are. Then it will check to
-	 * see if any piece is unmarked, because that would mean that every piece is
-	 * not a part of black territory. If so, every piece is unmarked, the
-	 * allegiances are not changed and false is returned. If the pieces are part
-	 * of black territory then true is returned and setColorTerritory will also
-	 * terminate. If every piece is marked, then their allegiances are changed
-	 * to currentPlayer + 2, the corresponding territory allegiance to
-	 * currentPlayer, which is 3 for black.
-	 * 
-	 * If false was returned, setColorTerritory will alter current and opposing
-	 * player such that 2 (white) is the current player and this method will be
-	 * called again. It will do for white, this time, what it did for black,
-	 * returning true if the pieces are white territory and false otherwise.
-	 * 
-	 * Note: currentPlayer is set to 1 when this method is being called to
-	 * determine black territory and 2 when it is being called to determine
-	 * white territory. opposingPlayer is also appropriately changed.
-	 * 
-	 * @param x
-	 *            the x index of the space being checked
-	 * @param y
-	 *            the y index of the space being checked
-	 * @param chain
-	 *            the ArrayList containing every space connected to the one at
-	 *            (x, y)
-	 * @return whether or not the piece is part of the current player's
-	 *         territory
+	 * showAtari is a void method that draws a ring around every chain in atari
+	 * while the Atari button is turned on, and takes the rings away when it is
+	 * off. The ring is red if the TacticalReader finds that the chain can't
+	 * escape even if its player moves first, such as a chain caught in a
+	 * ladder, and orange if it can.
 	 */
-	private boolean checkCurrentPlayerTerritory(int x, int y,
-			ArrayList<Intersection> chain) {
-		determineTerritory(x, y, chain);
-		/*
-		 * everything in chain is now marked if it was touching only pieces of
-		 * currentPlayer's color
-		 */
-		for (int i = 0; i < chain.size(); i++) {
-			if (!chain.get(i).getMarked()) {
-				for (int j = 0; j < chain.size(); j++) {
-					chain.get(j).setMarked(false);
+	private void showAtari() {
+		if (!showingAtari && !atariShown) {
+			return;
+		}
+		atariShown = showingAtari;
+		GoBoard board = showingAtari ? rules.toGoBoard() : null;
+		boolean[] checked = new boolean[numLines * numLines];
+		int[] chain = new int[numLines * numLines];
+
+		for (int p = 0; p < numLines * numLines; p++) {
+			if (checked[p]) {
+				continue;
+			}
+			int level = BoardRenderer.NO_HIGHLIGHT;
+			int count = 1;
+			chain[0] = p;
+			if (board != null && board.get(p) != GoBoard.EMPTY) {
+				count = board.collectChain(p, chain);
+				if (board.countLiberties(p, 2) == 1) {
+					level = tacticalReader.canEscape(board, p) ? BoardRenderer.ATARI_ESCAPABLE
+							: BoardRenderer.ATARI_LOST;
 				}
-				break;
 			}
-		}
-
-		if (chain.get(0).getMarked()) {
-			for (int i = 0; i < chain.size(); i++) {
-				chain.get(i).setAllegiance(currentPlayer + 2);
-				chain.get(i).setMarked(false);
+			for (int c = 0; c < count; c++) {
+				checked[chain[c]] = true;
+				renderer.setAtariHighlight(chain[c] / numLines, chain[c] % numLines, level);
 			}
-			return true;
-		}
-		return false;
-	}
-
-	/**
-	 * determineTerritory is a modified version of markedForCapture that
-	 * recursively checks each space to see if it is surrounded by pieces owned
-	 * by the current player. It changes the marked variable of every space that
-	 * is surrounded by previously checked spaces, walls or pieces of the
-	 * allegiance of the current player to true. If any space in the ArrayList
-	 * chain is unmarked, that means it was connected to a piece of the opposing
-	 * player's color. This means that in the checkCurrentPlayerTerritory
-	 * method, every space will be unmarked and their allegiances will not be
-	 * changed to the territory of the current player
-	 */
-	private boolean determineTerritory(int x, int y,
-			ArrayList<Intersection> chain) {
-
-		if (x < 0 || y < 0 || y >= numLines || x >= numLines) {
-			return true;
-		} else if (intersections[x][y].getAllegiance() == currentPlayer) {
-			return true;
-		}
-		if (intersections[x][y].getAllegiance() == opposingPlayer) {
-			return false;
-		}
-		if (chain.contains(intersections[x][y])) {
-			intersections[x][y].setMarked(true);
-			return true;
-		}
-		chain.add(intersections[x][y]);
-		if (determineTerritory(x, y - 1, chain)
-				&& determineTerritory(x - 1, y, chain)
-				&& determineTerritory(x + 1, y, chain)
-				&& determineTerritory(x, y + 1, chain)) {
-			intersections[x][y].setMarked(true);
-			return true;
 		}
-		intersections[x][y].setMarked(false);
-		return false;
-
 	}
 
 	/**
-	 * tallyScore is an integer method that returns the total score of the
-	 * current player. It does so by checking every intersection and
-	 * incrementing the variable totalCurrentPlayerScore by 1 for every
-	 * intersection that is of the allegiance or corresponding territory
-	 * allegiance of the current player. That is, if the current player is 1
-	 * (black), then any space/piece with allegiance 1 or 3 increases black's
-	 * score by 1. Additionally, if there is a bonus for white for going second,
-	 * white's total score will also increase.
+	 * determineWinner is a String method that returns a string with the name of
+	 * the color of the player that won. The rules count every piece (counting
+	 * by area) or every prisoner (counting by territory) and every
+	 * intersection of territory each player has, along with the bonus for
+	 * white, and leave the board as it was so that the players can keep
+	 * playing if they press undo.
 	 * 
-	 * @return currentPlayer's total score
+	 * @return the color of the winner
 	 */
-	private int tallyScore() {
-
-		int totalCurrentPlayerScore = 0;
-		if (currentPlayer == 2) {
-			totalCurrentPlayerScore = whiteDisadvantageBonus;
-		}
-
-		for (int i = 0; i < numLines; i++) {
-			for (int j = 0; j < numLines; j++) {
+	private String determineWinner() {
 
-				if (intersections[i][j].getAllegiance() == currentPlayer
-						|| intersections[i][j].getAllegiance() == currentPlayer + 2) {
+		int[] scores = rules.score(whiteDisadvantageBonus);
+		int blackScore = scores[0];
+		int whiteScore = scores[1];
 
-					totalCurrentPlayerScore++;
-				}
+		System.out.println("Black has " + blackScore + " points.");
+		System.out.println("White has " + whiteScore + " points.");
 
-			}
+		if (blackScore > whiteScore) {
+			return "black";
+		} else if (whiteScore > blackScore) {
+			return "white";
+		} else if (whiteWinsTies) {
+			return "white";
+		} else {
+			return "neither player";
 		}
 
-		return totalCurrentPlayerScore;
 	}
 
 	/*
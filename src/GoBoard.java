@@ -0,0 +1,680 @@
+package src;
+
+/**
+ * File: GoBoard.java
+ * ------------------
+ * A GoBoard is a headless copy of a position that can be played on without touching the screen.
+ * It exists so that analysis such as random playouts can run thousands of games a second on
+ * background threads while the Go program keeps showing the real game.
+ *
+ * Points are stored in a single array rather than as Intersection objects. The point at index
+ * x * size + y is the same point as intersections[x][y] in the Go program, and the values are
+ * the same allegiances that Intersection uses for pieces (0 empty, 1 black, 2 white).
+ *
+ * A board keeps a hash of its pieces up to date as pieces are placed and captured, so caches can
+ * find a board state they have seen before. Once trackSymmetries has been called, it also keeps
+ * the hashes of every rotation and reflection of itself (see SymmetryHash), so a board state can
+ * be found in any orientation. That means 16 hashes to change for every piece, so boards used
+ * for playouts don't do it. The ko point is not part of any hash.
+ *
+ * A board can also keep the 3x3 pattern around every point up to date (see PatternCodes), for
+ * playouts that choose moves by pattern. This costs time on every move, so it is only done once
+ * trackPatterns has been called.
+ */
+
+import java.util.Arrays;
+
+public class GoBoard {
+
+	/** the allegiances of a point, which are the ones in Allegiance */
+	public static final int EMPTY = Allegiance.EMPTY;
+	public static final int BLACK = Allegiance.BLACK;
+	public static final int WHITE = Allegiance.WHITE;
+
+	/** Used for the ko point and for moves to mean "no point" */
+	public static final int NO_POINT = -1;
+
+	/**
+	 * copyFrom rebuilds the patterns of a board that tracks them, rather than
+	 * changing them point by point, once more than 1 / REBUILD_FRACTION of the
+	 * board differs
+	 */
+	private static final int REBUILD_FRACTION = 4;
+
+	private final int size;
+
+	/** the allegiance of every point, indexed by x * size + y */
+	private final int[] points;
+
+	/**
+	 * The point that cannot be played on this turn because it would retake a
+	 * ko, or NO_POINT if there is no such point.
+	 */
+	private int koPoint = NO_POINT;
+
+	/**
+	 * used for finding chains and their liberties without creating any
+	 * objects. It is the workspace of workspaceThread, the thread that last
+	 * used the board, which every board of the same size on that thread
+	 * shares, so making or copying a board doesn't make a workspace. Every
+	 * public method that uses it calls claimWorkspace first.
+	 */
+	private FloodFillWorkspace workspace;
+	private Thread workspaceThread;
+
+	/** the hash of the pieces on the board, the same as SymmetryHash gives for IDENTITY */
+	private long hash = 0;
+
+	/**
+	 * the hash of the board after every symmetry, with and without swapped
+	 * colours, or null if symmetries aren't being tracked
+	 */
+	private long[] hashes;
+
+	/** the pattern around every point, or null if patterns aren't being tracked */
+	private PatternCodes patterns;
+
+	/** the points captured by the last move, only kept while patterns are tracked */
+	private int[] capturedPoints;
+	private int numCaptured = 0;
+
+	/** the points copyFrom changed, only kept while patterns are tracked */
+	private int[] changedPoints;
+
+	public GoBoard(int size) {
+		this.size = size;
+		points = new int[size * size];
+	}
+
+	/**
+	 * claimWorkspace is a void method that makes workspace the one the calling
+	 * thread shares between its boards, if the board was last used by another
+	 * thread or hasn't been used yet. A board only uses the workspace while
+	 * one of its methods runs, so boards on the same thread never get in each
+	 * other's way.
+	 */
+	private void claimWorkspace() {
+		Thread thread = Thread.currentThread();
+		if (workspaceThread != thread) {
+			workspace = FloodFillWorkspace.forCurrentThread(size);
+			workspaceThread = thread;
+		}
+	}
+
+	/**
+	 * fromAllegiances creates a board with the same pieces as the given array
+	 * of allegiances, which is laid out the same way as the intersections array
+	 * of the Go program. Anything that is not a black or white piece becomes
+	 * empty.
+	 */
+	public static GoBoard fromAllegiances(int[][] allegiances) {
+		GoBoard board = new GoBoard(allegiances.length);
+		for (int x = 0; x < board.size; x++) {
+			for (int y = 0; y < board.size; y++) {
+				int allegiance = allegiances[x][y];
+				if (allegiance == BLACK || allegiance == WHITE) {
+					board.setPoint(x * board.size + y, allegiance);
+				}
+			}
+		}
+		return board;
+	}
+
+	/** copy returns a new board with the same position that can be changed independently */
+	public GoBoard copy() {
+		GoBoard board = new GoBoard(size);
+		board.copyFrom(this);
+		return board;
+	}
+
+	/**
+	 * copyFrom overwrites this board with the position of another board of the
+	 * same size. If this board tracks patterns and the other doesn't, only the
+	 * points that differ are changed and only the patterns around them are
+	 * worked out again, so a board that tracks patterns can be kept in step
+	 * with a game by copying the game's board onto it before every move, for
+	 * the cost of the moves made since.
+	 */
+	public void copyFrom(GoBoard other) {
+		if (patterns != null && other.patterns == null) {
+			syncPatterns(other);
+		} else {
+			System.arraycopy(other.points, 0, points, 0, points.length);
+			if (patterns != null) {
+				patterns.copyFrom(other.patterns);
+			}
+		}
+		hash = other.hash;
+		koPoint = other.koPoint;
+		if (hashes != null) {
+			if (other.hashes != null) {
+				System.arraycopy(other.hashes, 0, hashes, 0, hashes.length);
+			} else {
+				rebuildHashes();
+			}
+		}
+	}
+
+	/**
+	 * copyFrom gives this board the pieces of a PersistentBoard of the same
+	 * size, such as a board of a VariationTree, and clears the ko point. Only
+	 * the points that differ are changed, so a board that tracks symmetries
+	 * can be kept in step with a game for the cost of the moves made since,
+	 * rather than working out all 16 hashes again for every board.
+	 */
+	public void copyFrom(PersistentBoard other) {
+		boolean changed = false;
+		for (int p = 0; p < points.length; p++) {
+			int allegiance = other.get(p);
+			if (points[p] != allegiance) {
+				setPoint(p, allegiance);
+				changed = true;
+			}
+		}
+		koPoint = NO_POINT;
+		if (changed && patterns != null) {
+			rebuildPatterns();
+		}
+	}
+
+	/**
+	 * syncPatterns is a void method that gives this board the pieces of
+	 * another board by changing only the points that differ, then refreshes
+	 * the atari flags of every chain on or next to a changed point, since
+	 * those are the only chains whose liberties can have changed. A piece that
+	 * was taken away also takes its atari flags off the empty points next to
+	 * it. If too much of the board differs, the patterns are rebuilt instead.
+	 */
+	private void syncPatterns(GoBoard other) {
+		int numChanged = 0;
+		for (int p = 0; p < points.length; p++) {
+			if (points[p] != other.points[p]) {
+				points[p] = other.points[p];
+				patterns.setPoint(p, points[p]);
+				changedPoints[numChanged++] = p;
+			}
+		}
+		if (numChanged == 0) {
+			return;
+		}
+		if (numChanged > points.length / REBUILD_FRACTION) {
+			rebuildPatterns();
+			return;
+		}
+
+		claimWorkspace();
+		for (int i = 0; i < numChanged; i++) {
+			int p = changedPoints[i];
+			if (points[p] == EMPTY) {
+				for (int k = 0; k < 4; k++) {
+					int n = workspace.neighbor(p, k);
+					if (n != NO_POINT && points[n] == EMPTY) {
+						patterns.setAtari(n, 3 - k, false); // p is neighbor 3 - k of n
+					}
+				}
+			}
+		}
+		patterns.newRefresh();
+		for (int i = 0; i < numChanged; i++) {
+			int p = changedPoints[i];
+			refreshAtari(p);
+			for (int k = 0; k < 4; k++) {
+				int n = workspace.neighbor(p, k);
+				if (n != NO_POINT) {
+					refreshAtari(n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * trackSymmetries is a void method that starts keeping the hashes of every
+	 * rotation and reflection of the board up to date, if it isn't already.
+	 * Once started, copyFrom keeps them right as well.
+	 */
+	public void trackSymmetries() {
+		if (hashes == null) {
+			hashes = new long[SymmetryHash.NUM_HASHES];
+			rebuildHashes();
+		}
+	}
+
+	/** rebuildHashes works out every symmetry hash from the pieces on the board */
+	private void rebuildHashes() {
+		Arrays.fill(hashes, 0);
+		for (int p = 0; p < points.length; p++) {
+			if (points[p] != EMPTY) {
+				SymmetryHash.update(hashes, size, p, EMPTY, points[p]);
+			}
+		}
+	}
+
+	/**
+	 * trackPatterns is a void method that starts keeping the pattern around
+	 * every point up to date, if it isn't already. Once started, copyFrom
+	 * keeps the patterns right as well.
+	 */
+	public void trackPatterns() {
+		if (patterns == null) {
+			patterns = new PatternCodes(size);
+			capturedPoints = new int[points.length];
+			changedPoints = new int[points.length];
+			rebuildPatterns();
+		}
+	}
+
+	/** getPatterns returns the patterns of the board, or null if they aren't being tracked */
+	public PatternCodes getPatterns() {
+		return patterns;
+	}
+
+	/** rebuildPatterns works out every pattern from the pieces on the board */
+	private void rebuildPatterns() {
+		claimWorkspace();
+		patterns.clear();
+		for (int p = 0; p < points.length; p++) {
+			if (points[p] != EMPTY) {
+				patterns.setPoint(p, points[p]);
+			}
+		}
+		patterns.newRefresh();
+		for (int p = 0; p < points.length; p++) {
+			refreshAtari(p);
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getNumPoints() {
+		return points.length;
+	}
+
+	public int get(int p) {
+		return points[p];
+	}
+
+	public int get(int x, int y) {
+		return points[x * size + y];
+	}
+
+	public int getKoPoint() {
+		return koPoint;
+	}
+
+	/** getHash returns the hash of the board as it is, without any symmetry */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * getCanonicalHash returns a hash that is the same for every rotation and
+	 * reflection of this board. If swapColours is true, it is also the same
+	 * for the board with black and white swapped, which is only right for
+	 * callers that swap whose turn it is too. It starts tracking symmetries if
+	 * trackSymmetries hasn't been called.
+	 */
+	public long getCanonicalHash(boolean swapColours) {
+		trackSymmetries();
+		return SymmetryHash.canonical(hashes, swapColours);
+	}
+
+	/**
+	 * getCanonicalIndex returns which symmetry (and colour swap) gives the
+	 * canonical hash, so that moves can be turned to match the canonical board
+	 * with SymmetryHash.transform and back again with SymmetryHash.inverse. It
+	 * starts tracking symmetries if trackSymmetries hasn't been called.
+	 */
+	public int getCanonicalIndex(boolean swapColours) {
+		trackSymmetries();
+		return SymmetryHash.canonicalIndex(hashes, swapColours);
+	}
+
+	/**
+	 * getSymmetryHash returns one of the 16 hashes of the board, numbered as
+	 * in SymmetryHash. It starts tracking symmetries if trackSymmetries
+	 * hasn't been called.
+	 */
+	public long getSymmetryHash(int hashIndex) {
+		trackSymmetries();
+		return hashes[hashIndex];
+	}
+
+	/** neighbor returns the k'th point next to p (k from 0 to 3), or NO_POINT at the edge */
+	public int neighbor(int p, int k) {
+		claimWorkspace();
+		return workspace.neighbor(p, k);
+	}
+
+	public static int opponent(int colour) {
+		return Allegiance.opponent(colour);
+	}
+
+	/** pass clears the ko point, since a pass always makes the ko legal again */
+	public void pass() {
+		koPoint = NO_POINT;
+	}
+
+	/**
+	 * isLegal is a boolean method that returns true if colour may play at p:
+	 * the point must be empty, must not be the ko point, and the move must not
+	 * be suicide. Suicide is forbidden here (unlike in the Go program, which
+	 * removes the suicided chain) because it is never a useful move in a playout.
+	 */
+	public boolean isLegal(int p, int colour) {
+		claimWorkspace();
+		if (points[p] != EMPTY || p == koPoint) {
+			return false;
+		}
+		int enemy = opponent(colour);
+		for (int k = 0; k < 4; k++) {
+			int n = workspace.neighbor(p, k);
+			if (n == NO_POINT) {
+				continue;
+			}
+			if (points[n] == EMPTY) {
+				return true;
+			}
+			/*
+			 * p is a liberty of the neighboring chain, so if it is the only one
+			 * then playing at p either captures an enemy chain or takes the last
+			 * liberty of a friendly one
+			 */
+			boolean onlyLiberty = countLiberties(n, 2) == 1;
+			if (points[n] == enemy && onlyLiberty) {
+				return true;
+			}
+			if (points[n] == colour && !onlyLiberty) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * play places a piece of the given colour at p and removes any enemy chains
+	 * that are left without liberties. It does not check legality, so isLegal
+	 * should be called first.
+	 *
+	 * @return the number of pieces captured
+	 */
+	public int play(int p, int colour) {
+		claimWorkspace();
+		setPoint(p, colour);
+		int enemy = opponent(colour);
+		int captured = 0;
+		int lastCaptured = NO_POINT;
+
+		for (int k = 0; k < 4; k++) {
+			int n = workspace.neighbor(p, k);
+			if (n != NO_POINT && points[n] == enemy && countLiberties(n, 1) == 0) {
+				int removed = removeChain(n);
+				captured += removed;
+				lastCaptured = n;
+			}
+		}
+		if (patterns != null) {
+			updateAtari(p);
+		}
+
+		/*
+		 * a single capture by a lone stone that is left with one liberty is a
+		 * ko, and the captured point cannot be retaken immediately
+		 */
+		koPoint = NO_POINT;
+		if (captured == 1 && countLiberties(p, 2) == 1 && chainSize(p) == 1) {
+			koPoint = lastCaptured;
+		}
+		return captured;
+	}
+
+	/**
+	 * countLiberties returns the number of liberties of the chain containing p,
+	 * but stops counting once it reaches limit since callers usually only care
+	 * whether a chain has zero, one, or more liberties.
+	 */
+	public int countLiberties(int p, int limit) {
+		claimWorkspace();
+		int colour = points[p];
+		int liberties = 0;
+		workspace.start(p);
+
+		while (workspace.hasNext()) {
+			int q = workspace.next();
+			if (points[q] != colour) {
+				continue; // a liberty, which was only visited so it is counted once
+			}
+			for (int k = 0; k < 4; k++) {
+				int n = workspace.neighbor(q, k);
+				if (n == NO_POINT) {
+					continue;
+				}
+				if (points[n] == EMPTY) {
+					if (workspace.visit(n)) {
+						liberties++;
+						if (liberties >= limit) {
+							return liberties;
+						}
+					}
+				} else if (points[n] == colour) {
+					workspace.visit(n);
+				}
+			}
+		}
+		return liberties;
+	}
+
+	/** chainSize returns the number of pieces in the chain containing p */
+	public int chainSize(int p) {
+		claimWorkspace();
+		fillChain(p);
+		return workspace.getNumFound();
+	}
+
+	/**
+	 * collectChain stores every point of the chain containing p in the start of
+	 * chain and returns how many there are. chain must be large enough to hold
+	 * every point on the board.
+	 */
+	public int collectChain(int p, int[] chain) {
+		claimWorkspace();
+		fillChain(p);
+		int count = workspace.getNumFound();
+		for (int i = 0; i < count; i++) {
+			chain[i] = workspace.getFound(i);
+		}
+		return count;
+	}
+
+	/**
+	 * updateAtari is a void method that updates the atari flags of the
+	 * patterns after a piece was played at p, by refreshing every chain whose
+	 * liberties could have changed: the chain at p, the enemy chains next to
+	 * it, and if anything was captured, the chains next to the captured
+	 * points, which are all chains of the colour that played.
+	 *
+	 * The chains next to p only lost liberties, or were joined into one chain
+	 * whose only liberty before, if it was in atari, was p itself, so none of
+	 * their flags need clearing. Unless they are now in atari they are only
+	 * counted up to two liberties. The chains next to captured points gained
+	 * liberties and may need their old flag cleared, so they are refreshed
+	 * fully.
+	 */
+	private void updateAtari(int p) {
+		patterns.newRefresh();
+		if (countLiberties(p, 2) == 1) {
+			refreshAtari(p);
+		}
+		for (int k = 0; k < 4; k++) {
+			int n = workspace.neighbor(p, k);
+			if (n != NO_POINT && points[n] != EMPTY && countLiberties(n, 2) == 1) {
+				refreshAtari(n);
+			}
+		}
+		for (int i = 0; i < numCaptured; i++) {
+			for (int k = 0; k < 4; k++) {
+				int n = workspace.neighbor(capturedPoints[i], k);
+				if (n != NO_POINT && points[n] != EMPTY) {
+					refreshAtari(n);
+				}
+			}
+		}
+		numCaptured = 0;
+	}
+
+	/**
+	 * refreshAtari is a void method that sets the atari flags of every
+	 * liberty of the chain containing p if the chain has only one liberty,
+	 * and clears them if it has more. Chains already refreshed since the last
+	 * newRefresh, and empty points, are skipped.
+	 */
+	private void refreshAtari(int p) {
+		if (points[p] == EMPTY || !patterns.markRefreshed(p)) {
+			return;
+		}
+		fillChain(p);
+		int chainSize = workspace.getNumFound();
+		int liberties = 0;
+		for (int i = 0; i < chainSize; i++) {
+			int q = workspace.getFound(i);
+			patterns.markRefreshed(q);
+			for (int k = 0; k < 4; k++) {
+				int n = workspace.neighbor(q, k);
+				// liberties are visited after the chain, so they don't change getFound(i) for i < chainSize
+				if (n != NO_POINT && points[n] == EMPTY && workspace.visit(n)) {
+					liberties++;
+				}
+			}
+		}
+		for (int i = 0; i < chainSize; i++) {
+			int q = workspace.getFound(i);
+			for (int k = 0; k < 4; k++) {
+				int n = workspace.neighbor(q, k);
+				if (n != NO_POINT && points[n] == EMPTY) {
+					// q is neighbor 3 - k of n
+					patterns.setAtari(n, 3 - k, liberties == 1);
+				}
+			}
+		}
+	}
+
+	/** fillChain leaves every point of the chain containing p as the points found by workspace */
+	private void fillChain(int p) {
+		int colour = points[p];
+		workspace.start(p);
+		while (workspace.hasNext()) {
+			int q = workspace.next();
+			for (int k = 0; k < 4; k++) {
+				int n = workspace.neighbor(q, k);
+				if (n != NO_POINT && points[n] == colour) {
+					workspace.visit(n);
+				}
+			}
+		}
+	}
+
+	private int removeChain(int p) {
+		fillChain(p);
+		int count = workspace.getNumFound();
+		for (int i = 0; i < count; i++) {
+			setPoint(workspace.getFound(i), EMPTY);
+			if (patterns != null) {
+				capturedPoints[numCaptured++] = workspace.getFound(i);
+			}
+		}
+		return count;
+	}
+
+	/** setPoint changes the allegiance of p and updates the hashes to match */
+	private void setPoint(int p, int allegiance) {
+		if (points[p] != EMPTY) {
+			hash ^= SymmetryHash.pieceKey(size, p, points[p]);
+		}
+		if (allegiance != EMPTY) {
+			hash ^= SymmetryHash.pieceKey(size, p, allegiance);
+		}
+		if (hashes != null) {
+			SymmetryHash.update(hashes, size, p, points[p], allegiance);
+		}
+		points[p] = allegiance;
+		if (patterns != null) {
+			patterns.setPoint(p, allegiance);
+		}
+	}
+
+	/**
+	 * isEye returns true if every point next to p is a piece of the given
+	 * colour (or the edge), so that filling it would only hurt that colour.
+	 */
+	public boolean isEye(int p, int colour) {
+		claimWorkspace();
+		if (points[p] != EMPTY) {
+			return false;
+		}
+		for (int k = 0; k < 4; k++) {
+			int n = workspace.neighbor(p, k);
+			if (n != NO_POINT && points[n] != colour) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * owner returns who the point p belongs to under area counting: the colour
+	 * of its piece, or for an empty point the colour of the only player whose
+	 * pieces it touches directly. Empty points touching both colours (or
+	 * neither) belong to nobody and EMPTY is returned. This is only a local
+	 * check, and is meant for finished playouts where every empty point is a
+	 * single-point eye.
+	 */
+	public int owner(int p) {
+		claimWorkspace();
+		if (points[p] != EMPTY) {
+			return points[p];
+		}
+		int seen = EMPTY;
+		for (int k = 0; k < 4; k++) {
+			int n = workspace.neighbor(p, k);
+			if (n == NO_POINT || points[n] == EMPTY) {
+				continue;
+			}
+			if (seen == EMPTY) {
+				seen = points[n];
+			} else if (seen != points[n]) {
+				return EMPTY;
+			}
+		}
+		return seen;
+	}
+
+	/**
+	 * areaScore returns black's area minus white's area, counting each point
+	 * for its owner, with no bonus for white. Like owner, it is only right for
+	 * finished playouts, where every empty point is a single-point eye.
+	 */
+	public int areaScore() {
+		int score = 0;
+		for (int p = 0; p < points.length; p++) {
+			int owner = owner(p);
+			if (owner == BLACK) {
+				score++;
+			} else if (owner == WHITE) {
+				score--;
+			}
+		}
+		return score;
+	}
+
+	/** toAllegiances returns the position in the same layout as the intersections array */
+	public int[][] toAllegiances() {
+		int[][] allegiances = new int[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				allegiances[x][y] = points[x * size + y];
+			}
+		}
+		return allegiances;
+	}
+}
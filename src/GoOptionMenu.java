@@ -2,6 +2,7 @@ package src;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.CountDownLatch;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -12,11 +13,15 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 
 	private boolean startSelected = false;
 
+	/** counted down once Start Game is pressed with every option chosen */
+	private final CountDownLatch completed = new CountDownLatch(1);
+
 	private boolean koOptionSelected = false;
 	private boolean disadvantageBonusSelected = false;
 	private boolean boardSizeSelected = false;
 
-	private boolean usingKo;
+	private int rule;
+	private int counting = GameOptions.DEFAULT_COUNTING;
 	private int whiteDisadvantageBonus;
 	private int numLines;
 
@@ -38,12 +43,14 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 
 		addBoardSizeOptions();
 
+		addCountingOptions();
+
 		addDefaultOptions();
 
 		JButton start = new JButton("Start Game");
 		start.setActionCommand("start");
 		start.addActionListener(this);
-		start.setBounds(270, 200, 200, 60);
+		start.setBounds(270, 235, 200, 60);
 		optionMenu.add(start);
 	}
 
@@ -65,10 +72,16 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 		superKo.setBounds(332, 20, 110, 25);
 		optionMenu.add(superKo);
 
+		JButton situationalSuperKo = new JButton("Use Situational");
+		situationalSuperKo.setActionCommand("situationalSuperKo");
+		situationalSuperKo.addActionListener(this);
+		situationalSuperKo.setBounds(452, 20, 130, 25);
+		optionMenu.add(situationalSuperKo);
+
 		JButton koInquiry = new JButton("What are Ko and SuperKo?");
 		koInquiry.setActionCommand("koInquiry");
 		koInquiry.addActionListener(this);
-		koInquiry.setBounds(452, 20, 200, 25);
+		koInquiry.setBounds(592, 20, 190, 25);
 		optionMenu.add(koInquiry);
 
 	}
@@ -111,27 +124,81 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 
 	}
 
+	/**
+	 * addCountingOptions adds the buttons choosing how the score is counted.
+	 * Area counting is used unless territory is chosen, so this is the one
+	 * option that doesn't have to be chosen before starting.
+	 */
+	private void addCountingOptions() {
+
+		JLabel countingLabel = new JLabel("How is the score counted?:");
+		countingLabel.setBounds(30, 135, 172, 25);
+		optionMenu.add(countingLabel);
+
+		JButton area = new JButton("By Area");
+		area.setActionCommand("area");
+		area.addActionListener(this);
+		area.setBounds(212, 135, 110, 25);
+		optionMenu.add(area);
+
+		JButton territory = new JButton("By Territory");
+		territory.setActionCommand("territory");
+		territory.addActionListener(this);
+		territory.setBounds(332, 135, 110, 25);
+		optionMenu.add(territory);
+
+		JButton countingInquiry = new JButton("What is the difference?");
+		countingInquiry.setActionCommand("countingInquiry");
+		countingInquiry.addActionListener(this);
+		countingInquiry.setBounds(452, 135, 200, 25);
+		optionMenu.add(countingInquiry);
+
+	}
+
 	private void addDefaultOptions() {
 
 		JButton useDefaults = new JButton("Use Default Options");
 		useDefaults.setActionCommand("default");
 		useDefaults.addActionListener(this);
-		useDefaults.setBounds(30, 135, 180, 30);
+		useDefaults.setBounds(30, 170, 180, 30);
 		optionMenu.add(useDefaults);
 
 		JButton defaultInquiry = new JButton("What are the Default Options?");
 		defaultInquiry.setActionCommand("defaultInquiry");
 		defaultInquiry.addActionListener(this);
-		defaultInquiry.setBounds(220, 135, 220, 30);
+		defaultInquiry.setBounds(220, 170, 220, 30);
 		optionMenu.add(defaultInquiry);
 	}
 
+	/**
+	 * isCompleted returns true once Start Game has been pressed with every
+	 * option chosen.
+	 */
 	public boolean isCompleted() {
+		return completed.getCount() == 0;
+	}
+
+	/** awaitCompletion waits until Start Game has been pressed with every option chosen */
+	public void awaitCompletion() throws InterruptedException {
+		completed.await();
+	}
+
+	/** getOptions returns the options that were chosen */
+	public GameOptions getOptions() {
+		return new GameOptions(numLines, rule, counting, whiteDisadvantageBonus);
+	}
+
+	/**
+	 * checkSelections is called when Start Game is pressed. It tells the
+	 * player about any option they haven't chosen yet, and returns true if
+	 * there are none.
+	 */
+	private boolean checkSelections() {
 		if (startSelected) {
 			if (!koOptionSelected) {
 
 				JOptionPane.showMessageDialog(this,
-						"Make sure you choose between Ko or SuperKo",
+						"Make sure you choose between Ko, SuperKo or situational SuperKo",
 						"Make All Selections", JOptionPane.PLAIN_MESSAGE);
 				startSelected = false;
 				return false;
@@ -171,15 +238,28 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 	public void actionPerformed(ActionEvent e) {
 		if (e.getActionCommand().equals("ko")) {
 			koOptionSelected = true;
-			usingKo = true;
+			rule = RulesEngine.SIMPLE_KO;
 
 		} else if (e.getActionCommand().equals("superKo")) {
 			koOptionSelected = true;
-			usingKo = false;
+			rule = RulesEngine.POSITIONAL_SUPERKO;
+
+		} else if (e.getActionCommand().equals("situationalSuperKo")) {
+			koOptionSelected = true;
+			rule = RulesEngine.SITUATIONAL_SUPERKO;
 
 		} else if (e.getActionCommand().equals("koInquiry")) {
 			explainKo();
 
+		} else if (e.getActionCommand().equals("area")) {
+			counting = RulesEngine.AREA;
+
+		} else if (e.getActionCommand().equals("territory")) {
+			counting = RulesEngine.TERRITORY;
+
+		} else if (e.getActionCommand().equals("countingInquiry")) {
+			explainCounting();
+
 		} else if (e.getActionCommand().equals("wDisadvantage")) {
 			disadvantageBonusSelected = true;
 			try {
@@ -217,15 +297,19 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 			disadvantageBonusSelected = true;
 			boardSizeSelected = true;
 
-			usingKo = true;
-			whiteDisadvantageBonus = 5;
-			numLines = 19;
+			rule = GameOptions.DEFAULT_RULE;
+			counting = GameOptions.DEFAULT_COUNTING;
+			whiteDisadvantageBonus = GameOptions.DEFAULT_WHITE_BONUS;
+			numLines = GameOptions.DEFAULT_BOARD_SIZE;
 
 		} else if (e.getActionCommand().equals("defaultInquiry")) {
 			explainDefaults();
 
 		} else if (e.getActionCommand().equals("start")) {
 			startSelected = true;
+			if (checkSelections()) {
+				completed.countDown();
+			}
 		}
 
 	}
@@ -236,10 +320,21 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 						this,
 						"Under Ko, you cannot make a move that would cause the board "
 								+ "\nto be layed out the same way it was after your previous move."
-								+ " \nUnder Superko, no previous board layout can ever be repeated.",
+								+ " \nUnder Superko, no previous board layout can ever be repeated."
+								+ " \nUnder situational Superko, no previous board layout can be"
+								+ " repeated \nwith the same player to move.",
 						"Rules", JOptionPane.PLAIN_MESSAGE);
 	}
 
+	private void explainCounting() {
+		JOptionPane.showMessageDialog(this,
+				"By area, each player scores a point for every piece they have on the board"
+						+ "\nand for every empty point they surround."
+						+ " \nBy territory, each player scores a point for every empty point they"
+						+ "\nsurround and for every piece of the other player they have captured.",
+				"Rules", JOptionPane.PLAIN_MESSAGE);
+	}
+
 	private void explainDisadvantage() {
 		JOptionPane.showMessageDialog(this,
 				"Because White goes second, they are inherently at a disadvantage "
@@ -250,6 +345,7 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 
 	private void explainDefaults() {
 		JOptionPane.showMessageDialog(this, "Ko is used"
+				+ "\nThe score is counted by area"
 				+ "\nWhite gets 5 extra points" + " \nThe board is 19 by 19",
 				"Defaults", JOptionPane.PLAIN_MESSAGE);
 	}
@@ -260,8 +356,12 @@ public class GoOptionMenu extends JFrame implements ActionListener {
 				JOptionPane.PLAIN_MESSAGE);
 	}
 
-	public boolean getUsingKo() {
-		return usingKo;
+	public int getRule() {
+		return rule;
+	}
+
+	public int getCounting() {
+		return counting;
 	}
 
 	public int getWhiteDisadvantageBonus() {
@@ -0,0 +1,943 @@
+package src;
+
+/**
+ * File: GoRules.java
+ * ------------------
+ * GoRules is the board and rules of the Go program without any of the graphics: the
+ * intersections, placing pieces and capturing them, the rule against repeating boards, passing,
+ * undoing turns and counting the score. The Go program plays every game on a GoRules and only
+ * draws what it is told has changed, and the DifferentialHarness plays random games on one
+ * headlessly, as the oracle every other RulesEngine is checked against, so the rules the harness
+ * checks are always the rules real games are played by.
+ *
+ * The rules are the ones the Go program has always had, odd parts included. A move that leaves
+ * the chain of the piece just placed without liberties is not refused: enemy chains are captured
+ * first, and then the player's own chain is captured, as described in capturePieces and
+ * checkNeighbors. A move that breaks the rule against repeating boards is made and then undone,
+ * which also sets the count of passes back to 0, just like a legal move would.
+ *
+ * The rule against repeating boards (simple ko, positional superko or situational superko) and the
+ * way of counting the score (area or territory) are chosen from the GameOptions when the game
+ * starts, and can't change during it. Every captured piece is counted as a prisoner of the other
+ * player whichever way the score is counted, so that the count is right if the game is saved.
+ *
+ * Each rule has a final class of its own, SimpleKo, PositionalSuperko and SituationalSuperko,
+ * and create makes the one the game uses, so no move ever checks which rule it is playing by.
+ * Scoring happens once a game, so the counting is kept as a choice rather than a class of its
+ * own. On random 9x9 and 19x19 games this plays at the same speed as the single class that
+ * checked the rule on every move did, within the difference between one run and the next: the
+ * check was one branch that always went the same way, next to the flood fills of every move.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public abstract class GoRules implements RulesEngine {
+
+	/** makes a GoRules for every game, for the DifferentialHarness */
+	public static final RulesEngine.Factory FACTORY = new RulesEngine.Factory() {
+		public String getName() {
+			return "go";
+		}
+
+		public RulesEngine create(int size, int rule, int counting) {
+			return GoRules.create(size, rule, counting);
+		}
+	};
+
+	/**
+	 * Boards with at least this many lines are scored by a TerritoryScorer,
+	 * which splits the work between every processor. Smaller boards are scored
+	 * by setColorTerritory and tallyScore, which is quicker when there is so
+	 * little to do.
+	 */
+	private static final int PARALLEL_SCORING_MIN_LINES = 100;
+
+	/** A Listener is told about every piece that is placed on or taken off the board */
+	public interface Listener {
+
+		/** pieceChanged is called when the intersection at x, y changes to the given allegiance */
+		void pieceChanged(int x, int y, int allegiance);
+	}
+
+	private final int numLines;
+
+	/** This integer represents the player whose turn it currently is */
+	private int currentPlayer = Allegiance.BLACK;
+	private int opposingPlayer = Allegiance.WHITE;
+
+	/**
+	 * This array contains all of the intersections on the game board. The
+	 * indices of each intersection represent the x and y number of each
+	 * intersection. That is, index 0,0 is the leftmost topmost intersection,
+	 * while 0,1 is the intersection directly below it.
+	 */
+	private final Intersection[][] intersections;
+
+	/**
+	 * floodFill is used every time a chain of pieces or a region of empty
+	 * spaces has to be found, for captures and for counting territory. It is
+	 * created once with the board, so finding a chain creates no objects.
+	 */
+	private final FloodFillWorkspace floodFill;
+
+	/**
+	 * This GameHistory contains the board state of every previous turn. The most
+	 * recent previous board state is stored in index 0, with each previous turn
+	 * in increasing order. If a turn is undone, the most recent prior board
+	 * state replaces the current one and is removed from this GameHistory. It
+	 * starts with the empty board.
+	 */
+	private GameHistory allPreviousAllegiances;
+
+	/**
+	 * historyBase is how many board states in allPreviousAllegiances can't be
+	 * undone. It is 1, the empty board, unless the game was continued from a
+	 * GameSnapshot, in which case it is every board state saved with it.
+	 */
+	private int historyBase = 1;
+
+	/**
+	 * pass stores the number of times a turn has been passed consecutively. It
+	 * is reset to 0 once a player places a piece and is incremented by one if a
+	 * player passes. Should it reach 2, the game ends as per the rules of Go.
+	 */
+	private int pass = 0;
+
+	/** counting is how the score is counted at the end of the game, AREA or TERRITORY */
+	private final int counting;
+
+	/** prisoners[colour] is how many pieces that player has captured */
+	private final int[] prisoners = new int[3];
+
+	/** the prisoners at the history base, which are 0 unless the game was continued */
+	private final int[] basePrisoners = new int[3];
+
+	/**
+	 * turnPrisoners holds black's and white's prisoners from before every
+	 * turn that can be undone, oldest first, two ints a turn, so that undoing
+	 * turns gives back the prisoners they took.
+	 */
+	private int[] turnPrisoners = new int[64];
+	private int numTurnsRecorded = 0;
+
+	/** listener is told about every piece that changes, and is null if nothing is listening */
+	private Listener listener;
+
+	/**
+	 * create makes the rules for an empty board, as the class for the given
+	 * rule against repeating boards. Simple ko means that only the board state
+	 * of the previous turn cannot be repeated. Positional superko is a rule
+	 * that states that no previous board state can ever be repeated, and
+	 * situational superko that no previous board state can be repeated with
+	 * the same player to move.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if there is no such rule or way of counting
+	 */
+	public static GoRules create(int numLines, int rule, int counting) {
+		if (rule == SIMPLE_KO) {
+			return new SimpleKo(numLines, counting);
+		} else if (rule == POSITIONAL_SUPERKO) {
+			return new PositionalSuperko(numLines, counting);
+		} else if (rule == SITUATIONAL_SUPERKO) {
+			return new SituationalSuperko(numLines, counting);
+		}
+		throw new IllegalArgumentException("There is no rule numbered " + rule);
+	}
+
+	private GoRules(int numLines, int counting) {
+		if (counting != AREA && counting != TERRITORY) {
+			throw new IllegalArgumentException("There is no way of counting numbered " + counting);
+		}
+		this.numLines = numLines;
+		this.counting = counting;
+		floodFill = new FloodFillWorkspace(numLines);
+		allPreviousAllegiances = new GameHistory(numLines);
+		intersections = new Intersection[numLines][numLines];
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+				intersections[i][j] = new Intersection(i, j);
+			}
+		}
+		overwritePreviousAllegiances();
+	}
+
+	/** setListener makes the given listener the one told about every piece that changes */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	public int getSize() {
+		return numLines;
+	}
+
+	public int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	public int get(int x, int y) {
+		return intersections[x][y].getAllegiance();
+	}
+
+	/** getPasses returns how many passes there have been since the last move */
+	public int getPasses() {
+		return pass;
+	}
+
+	/** getRule returns the rule against repeating boards, such as SIMPLE_KO */
+	public abstract int getRule();
+
+	/** getCounting returns how the score is counted, AREA or TERRITORY */
+	public int getCounting() {
+		return counting;
+	}
+
+	/** getPrisoners returns how many pieces the given player has captured */
+	public int getPrisoners(int colour) {
+		return prisoners[colour];
+	}
+
+	/**
+	 * getPrisonersByTurn returns black's and white's prisoners after every
+	 * turn, two ints a turn, in the order ScoreEvolution.fromHistory puts the
+	 * boards: the board before the first move first and the current board
+	 * last. Turns from before a saved game was continued weren't played here,
+	 * so their prisoners are worked out backwards from the ones it was saved
+	 * with, by taking off the pieces each turn captured. When the player who
+	 * moved lost pieces, the piece they placed was captured with them. A lone
+	 * piece that captured itself leaves the board as it was, just like a pass,
+	 * so it stays counted for the turns before it.
+	 */
+	public int[] getPrisonersByTurn() {
+		int numTurns = Math.max(0, allPreviousAllegiances.size() - 1);
+		int[] byTurn = new int[2 * (numTurns + 1)];
+		int firstRecorded = numTurns - numTurnsRecorded;
+		System.arraycopy(turnPrisoners, 0, byTurn, 2 * firstRecorded, 2 * numTurnsRecorded);
+		byTurn[2 * numTurns] = prisoners[Allegiance.BLACK];
+		byTurn[2 * numTurns + 1] = prisoners[Allegiance.WHITE];
+
+		int[] captured = new int[3];
+		for (int turn = firstRecorded - 1; turn >= 0; turn--) {
+			int mover = (numTurns - turn) % 2 == 1 ? opposingPlayer : currentPlayer;
+			PackedPosition before = allPreviousAllegiances.get(numTurns - 1 - turn);
+			PackedPosition after = turn + 1 < numTurns ? allPreviousAllegiances
+					.get(numTurns - 2 - turn) : pack();
+			captured[Allegiance.BLACK] = 0;
+			captured[Allegiance.WHITE] = 0;
+			for (int p = 0; p < numLines * numLines; p++) {
+				int allegiance = before.get(p);
+				if (Allegiance.isPiece(allegiance) && after.get(p) != allegiance) {
+					captured[Allegiance.opponent(allegiance)]++;
+				}
+			}
+			if (captured[Allegiance.opponent(mover)] > 0) {
+				captured[Allegiance.opponent(mover)]++;
+			}
+			byTurn[2 * turn] = Math.max(0, byTurn[2 * turn + 2] - captured[Allegiance.BLACK]);
+			byTurn[2 * turn + 1] = Math.max(0, byTurn[2 * turn + 3] - captured[Allegiance.WHITE]);
+		}
+		return byTurn;
+	}
+
+	/** getHistory returns every board state before the current one, 0 being the most recent */
+	public GameHistory getHistory() {
+		return allPreviousAllegiances;
+	}
+
+	/** getHistoryBase returns how many board states of the history can't be undone */
+	public int getHistoryBase() {
+		return historyBase;
+	}
+
+	/** getNumUndoable returns how many turns can be undone */
+	public int getNumUndoable() {
+		return allPreviousAllegiances.size() - historyBase;
+	}
+
+	/** pack returns the board as a PackedPosition */
+	public PackedPosition pack() {
+		return PackedPosition.pack(intersections);
+	}
+
+	/**
+	 * toGoBoard returns a GoBoard holding the pieces that are on the board
+	 * right now, for the analysis classes to work on.
+	 */
+	public GoBoard toGoBoard() {
+		int[][] allegiances = new int[numLines][numLines];
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+				allegiances[i][j] = intersections[i][j].getAllegiance();
+			}
+		}
+		return GoBoard.fromAllegiances(allegiances);
+	}
+
+	/**
+	 * play places a piece of the current player on the intersection at
+	 * indices i and j, captures anything it surrounds and makes it the next
+	 * player's turn. The piece's own chain is then checked for self capture,
+	 * and if the move breaks the rule against repeating boards, it is taken
+	 * back again by koCheck.
+	 *
+	 * @return true if a piece was placed and the move was allowed to stand
+	 */
+	public boolean play(int i, int j) {
+		if (!Allegiance.isPiece(intersections[i][j].getAllegiance())) {
+
+			overwritePreviousAllegiances();
+
+			setAllegiance(i, j, currentPlayer);
+
+			pass = 0;
+			capturePieces(i, j);
+			nextPlayer();
+			checkNeighbors(i, j);
+
+			return !koCheck();
+		}
+		return false;
+	}
+
+	/**
+	 * pass passes the current player's turn. The board state is still stored,
+	 * so that the pass can be undone like a move. A pass isn't allowed before
+	 * any turn has been taken.
+	 *
+	 * @return true if the turn was passed
+	 */
+	public boolean pass() {
+		if (allPreviousAllegiances.size() > 1) {
+			pass++;
+			overwritePreviousAllegiances();
+			nextPlayer();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * undo reverts the given number of turns. If the last turn was a pass, the
+	 * count of passes goes down by one. Turns from before the history base
+	 * can't be undone.
+	 *
+	 * @return true if the turns were undone
+	 */
+	public boolean undo(int numTurns) {
+		if (pass > 0) {
+			pass--;
+		}
+
+		if (allPreviousAllegiances.size() > historyBase) {
+
+			overwriteIntersections(numTurns - 1);
+
+			for (int i = 0; i < numTurns; i++) {
+				nextPlayer();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * setPosition is a void method that puts the given board in place of the
+	 * current one, with the given player to move and count of passes, without
+	 * changing the history, for going straight to another line of play.
+	 */
+	public void setPosition(PackedPosition board, int toMove, int passes) {
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+				setAllegiance(i, j, board.get(i, j));
+			}
+		}
+		currentPlayer = toMove;
+		opposingPlayer = Allegiance.opponent(toMove);
+		pass = passes;
+	}
+
+	/**
+	 * restore is a void method that carries on a saved game: the board,
+	 * player to move, count of passes and prisoners are put in place, and the
+	 * saved history replaces this one, none of which can be undone.
+	 */
+	public void restore(PackedPosition board, int toMove, int passes, GameHistory history,
+			int blackPrisoners, int whitePrisoners) {
+		allPreviousAllegiances.close();
+		allPreviousAllegiances = history;
+		historyBase = history.size();
+		numTurnsRecorded = 0;
+		basePrisoners[Allegiance.BLACK] = blackPrisoners;
+		basePrisoners[Allegiance.WHITE] = whitePrisoners;
+		prisoners[Allegiance.BLACK] = blackPrisoners;
+		prisoners[Allegiance.WHITE] = whitePrisoners;
+		setPosition(board, toMove, passes);
+	}
+
+	/**
+	 * followLine is a void method that undoes every turn that can be undone
+	 * from the history and then goes straight to the last node of a line of
+	 * the VariationTree, starting from its root: the boards before it are
+	 * added to the history as if they had been played since, the prisoners of
+	 * every capture on the way are counted, and the last node's board, player
+	 * to move and count of passes are put in place.
+	 */
+	public void followLine(ArrayList<VariationTree.Node> line) {
+		allPreviousAllegiances.truncate(historyBase);
+		numTurnsRecorded = 0;
+		prisoners[Allegiance.BLACK] = basePrisoners[Allegiance.BLACK];
+		prisoners[Allegiance.WHITE] = basePrisoners[Allegiance.WHITE];
+
+		for (int k = 0; k + 1 < line.size(); k++) {
+			PersistentBoard before = line.get(k).getBoard();
+			allPreviousAllegiances.add(before.toPackedPosition());
+			recordPrisoners();
+
+			VariationTree.Node next = line.get(k + 1);
+			if (next.getMove() != VariationTree.PASS) {
+				PersistentBoard after = next.getBoard();
+				for (int p = 0; p < numLines * numLines; p++) {
+					int allegiance = before.get(p);
+					if (allegiance != Allegiance.EMPTY && after.get(p) != allegiance) {
+						prisoners[Allegiance.opponent(allegiance)]++;
+					}
+				}
+				if (after.get(next.getMove()) == Allegiance.EMPTY) {
+					prisoners[next.getToMove()]++; // the piece just placed captured itself
+				}
+			}
+		}
+
+		VariationTree.Node last = line.get(line.size() - 1);
+		setPosition(last.getBoard().toPackedPosition(), last.getToMove(), last.getPasses());
+	}
+
+	/**
+	 * remove is a void method that takes the pieces at the given points off the
+	 * board, as dead pieces, which makes each of them a prisoner of the other
+	 * player.
+	 */
+	public void remove(int[] points) {
+		for (int p : points) {
+			int allegiance = intersections[p / numLines][p % numLines].getAllegiance();
+			if (Allegiance.isPiece(allegiance)) {
+				prisoners[Allegiance.opponent(allegiance)]++;
+				setAllegiance(p / numLines, p % numLines, Allegiance.EMPTY);
+			}
+		}
+	}
+
+	/** close deletes the temporary file of the history, if it has one */
+	public void close() {
+		allPreviousAllegiances.close();
+	}
+
+	/**
+	 * setAllegiance changes the allegiance of the intersection at x, y, and
+	 * tells the listener if a piece was placed or taken away.
+	 */
+	private void setAllegiance(int x, int y, int allegiance) {
+		if (intersections[x][y].getAllegiance() != allegiance) {
+			intersections[x][y].setAllegiance(allegiance);
+			if (listener != null) {
+				listener.pieceChanged(x, y, allegiance);
+			}
+		}
+	}
+
+	/**
+	 * nextPlayer is a void method that changes the current player to the other
+	 * player and vice versa. It is called in response to a piece being placed
+	 * or to a turn being passed.
+	 */
+	private void nextPlayer() {
+
+		currentPlayer = Allegiance.opponent(currentPlayer);
+		opposingPlayer = Allegiance.opponent(opposingPlayer);
+
+	}
+
+	/**
+	 * koCheck is a boolean method that checks if the move the player made
+	 * breaks the rule against repeating boards being used in this game, and
+	 * undoes the move if it does.
+	 *
+	 * @return true if the move broke the rule and was undone
+	 */
+	private boolean koCheck() {
+		if (breakingRule()) {
+			undo(1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * overwriteIntersections is a void method that replaces every allegiance
+	 * value in intersections with the corresponding value from the board at
+	 * index boardIndex of allPreviousAllegiances, and gives both players back
+	 * the prisoners they had then. Additionally, it removes that particular
+	 * board state from the GameHistory and every board state that came after
+	 * it (ie earlier indices), since the game board has been reverted to that
+	 * state.
+	 *
+	 * @param boardIndex
+	 *            the index of the board the player has chosen to revert to when
+	 *            the press the undo button. It is 0 if they are reverting the
+	 *            last move
+	 */
+	private void overwriteIntersections(int boardIndex) {
+
+		PackedPosition board = allPreviousAllegiances.get(boardIndex);
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				setAllegiance(i, j, board.get(i, j));
+
+			}
+		}
+
+		for (int i = 0; i <= boardIndex; i++) {
+			allPreviousAllegiances.removeMostRecent();
+		}
+
+		numTurnsRecorded -= boardIndex + 1;
+		prisoners[Allegiance.BLACK] = turnPrisoners[2 * numTurnsRecorded];
+		prisoners[Allegiance.WHITE] = turnPrisoners[2 * numTurnsRecorded + 1];
+	}
+
+	/**
+	 * overwritePreviousAllegiances is a void method that stores in a GameHistory
+	 * the allegiance of each piece on the board. It is called immediately
+	 * before a piece is placed or after a player passes their turn, as well as
+	 * at the beginning of the game to store the empty board as the first board
+	 * state. The prisoners are stored along with every board state that can be
+	 * undone.
+	 */
+	private void overwritePreviousAllegiances() {
+
+		allPreviousAllegiances.add(PackedPosition.pack(intersections));
+		if (allPreviousAllegiances.size() > historyBase) {
+			recordPrisoners();
+		}
+	}
+
+	/** recordPrisoners is a void method that stores both players' prisoners for undo */
+	private void recordPrisoners() {
+		if (2 * numTurnsRecorded == turnPrisoners.length) {
+			turnPrisoners = Arrays.copyOf(turnPrisoners, turnPrisoners.length * 2);
+		}
+		turnPrisoners[2 * numTurnsRecorded] = prisoners[Allegiance.BLACK];
+		turnPrisoners[2 * numTurnsRecorded + 1] = prisoners[Allegiance.WHITE];
+		numTurnsRecorded++;
+	}
+
+	/**
+	 * breakingRule is the check of the rule against repeating boards that the
+	 * class of this game plays by, one of the three below.
+	 *
+	 * @return true if the move just made repeats a board the rule forbids
+	 */
+	abstract boolean breakingRule();
+
+	/**
+	 * breakingKo is a boolean method helps enforce the Ko rule in the koCheck
+	 * method. Ko is a rule in go that prevents a player from making a move that
+	 * results in the board state of their previous turn being repeated. This
+	 * means that if the array of allegiances 2 moves ago is the same as that of
+	 * th move being made, then the move being made is invalid. This method
+	 * returns false if there have not been enough moves in the game for Ko to
+	 * matter, or if the previous turn of that player did not have the same
+	 * board state.
+	 *
+	 * @return true if the player has made a move that repeats the board state
+	 *         of their previous move
+	 */
+	final boolean breakingKo() {
+
+		if (allPreviousAllegiances.size() < 2) {
+			return false;
+		}
+
+		return PackedPosition.pack(intersections).equals(
+				allPreviousAllegiances.get(1));
+	}
+
+	/**
+	 * breakingSuperko is the same as breakingKo, except it checks for every
+	 * previous board rather than just the board from the previous move.
+	 *
+	 * @return true if the player has made a move that repeats the board state
+	 *         of any previous move
+	 */
+	final boolean breakingSuperko() {
+
+		if (allPreviousAllegiances.size() < 2) {
+			return false;
+		}
+
+		return allPreviousAllegiances.contains(PackedPosition
+				.pack(intersections));
+	}
+
+	/**
+	 * breakingSituationalSuperko is the same as breakingSuperko, except it only
+	 * checks the previous boards that had the same player to move as the board
+	 * the move has made. Every turn adds one board to the history, so those are
+	 * the boards at odd indices: index 1 is the board before the other
+	 * player's last turn, which had the other player to move just as now. The
+	 * oldest board is left out, since it is the empty board the history starts
+	 * with and is there a second time at the next index, with black to move.
+	 *
+	 * @return true if the player has made a move that repeats the board state
+	 *         of any previous move with the same player to move
+	 */
+	final boolean breakingSituationalSuperko() {
+
+		PackedPosition board = PackedPosition.pack(intersections);
+		int hash = board.hashCode();
+		for (int i = 1; i < allPreviousAllegiances.size() - 1; i += 2) {
+			if (allPreviousAllegiances.getHash(i) == hash
+					&& board.equals(allPreviousAllegiances.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * capturePieces is a void method that checks to see if any of the pieces
+	 * adjacent to the most recently placed piece are part of a group that
+	 * should be captured, then removes any group as appropriate. Each call of
+	 * checkNeighbors checks a different neighboring intersection for opposing
+	 * allegiance pieces.
+	 *
+	 * checkNeighbors only needs to be called 4 times since captures can only be
+	 * performed on chains of pieces that are touching the last placed piece.
+	 * However, since the capture methods only operate on pieces not of the
+	 * allegiance of the current player, self capture doesn't happen, the pieces
+	 * that would be self captured are not adjacent to the piece that is next
+	 * played after the current turn ends and so can never be captured. This is
+	 * currently an fault in the program.
+	 *
+	 * @param x
+	 *            the x index of the piece just placed
+	 * @param y
+	 *            the y index of the piece just placed
+	 */
+	private void capturePieces(int x, int y) {
+
+		checkNeighbors(x, y - 1);
+		checkNeighbors(x + 1, y);
+		checkNeighbors(x - 1, y);
+		checkNeighbors(x, y + 1);
+
+	}
+
+	/**
+	 * checkNeighbors is a method that performs some of the capture
+	 * functionality. It receives the indices of one of the four intersections
+	 * adjacent to the most recently placed piece. If the intersection has a
+	 * piece of the opposite player's allegiance, then findLiberty is called to
+	 * determine if it should be removed. findLiberty leaves every piece of the
+	 * same color attached to the aforementioned piece in the floodFill
+	 * workspace. If the chain has no liberty, the pieces are all removed and
+	 * become prisoners of the other player.
+	 *
+	 * checkNeighbors is additionally called once more on the last played piece
+	 * itself after the current player allegiance has switched but before that
+	 * player's turn starts in order to check for self capture. Self-capture is
+	 * when a player makes a move that causes a chain of their own pieces to be
+	 * captured. It always occurs after any sort of regular capture, and does
+	 * not occur if the pieces causing the self-capture would be removed by
+	 * regular capture.
+	 *
+	 * @param x
+	 *            the x index of the adjacent piece
+	 * @param y
+	 *            the y index of the adjacent piece
+	 */
+	private void checkNeighbors(int x, int y) {
+
+		if (y >= 0 && y < numLines && x >= 0 && x < numLines) {
+
+			if (intersections[x][y].getAllegiance() == opposingPlayer) {
+
+				if (!findLiberty(x, y)) {
+					prisoners[Allegiance.opponent(opposingPlayer)] += floodFill.getNumFound();
+					for (int i = 0; i < floodFill.getNumFound(); i++) {
+						int point = floodFill.getFound(i);
+						setAllegiance(point / numLines, point % numLines, Allegiance.EMPTY);
+					}
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * findLiberty is a boolean method that searches the chain of pieces
+	 * containing the piece at indices x and y for a liberty, that is, an empty
+	 * space next to any piece of the chain. It fills outwards from the piece
+	 * using the floodFill workspace, one piece at a time, adding every
+	 * neighboring piece of the same color to the chain. If it finds no
+	 * liberty, every piece of the chain has been found and is left in the
+	 * workspace so it can be captured.
+	 *
+	 * @param x
+	 *            the x index of the piece being checked
+	 * @param y
+	 *            the y index of the piece being checked
+	 * @return true as soon as a liberty is found, false if the chain has none
+	 */
+	private boolean findLiberty(int x, int y) {
+		/*
+		 * Capture rules, for reference: if a piece has no 'liberties' that is,
+		 * empty spaces around it, then it is slated to be captured however, if
+		 * any of its liberties are occupied by a piece of the same color, then
+		 * it will not be captured. Again however, if those pieces of the same
+		 * color have no liberties they are marked for capture under the same
+		 * conditions and all pieces will be captured.
+		 */
+		int color = intersections[x][y].getAllegiance();
+		floodFill.start(x * numLines + y);
+
+		while (floodFill.hasNext()) {
+			int point = floodFill.next();
+
+			for (int k = 0; k < 4; k++) {
+				int neighbor = floodFill.neighbor(point, k);
+				if (neighbor == FloodFillWorkspace.NO_POINT) {
+					continue;
+				}
+
+				int allegiance = intersections[neighbor / numLines][neighbor
+						% numLines].getAllegiance();
+				if (allegiance == Allegiance.EMPTY) {
+					return true;
+				} else if (allegiance == color) {
+					floodFill.visit(neighbor);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * score counts both players' scores. Every empty intersection is checked by
+	 * setColorTerritory and is changed to the corresponding allegiance of the
+	 * player that owns it, along with every other intersection that was
+	 * connected to it, (allegiance 3 is black territory, 4 is white, 5 is
+	 * unaligned/neutral) and then every piece and territory is counted by
+	 * tallyScore. The territory is turned back into empty intersections
+	 * afterwards, so the board is left as it was. Counting by area, every piece
+	 * and every intersection of territory is a point; counting by territory,
+	 * every intersection of territory and every prisoner is.
+	 *
+	 * @return black's score followed by white's score, which includes the bonus
+	 */
+	public int[] score(int whiteDisadvantageBonus) {
+		if (numLines >= PARALLEL_SCORING_MIN_LINES) {
+			return scoreInParallel(whiteDisadvantageBonus);
+		}
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				if (intersections[i][j].getAllegiance() == Allegiance.EMPTY) {
+					setColorTerritory(i, j);
+				}
+
+			}
+		}
+
+		int blackScore = tallyScore(Allegiance.BLACK, whiteDisadvantageBonus);
+		int whiteScore = tallyScore(Allegiance.WHITE, whiteDisadvantageBonus);
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+				if (!Allegiance.isPiece(intersections[i][j].getAllegiance())) {
+					intersections[i][j].setAllegiance(Allegiance.EMPTY);
+				}
+			}
+		}
+		return new int[] { blackScore, whiteScore };
+	}
+
+	/**
+	 * scoreInParallel is the version of setColorTerritory and tallyScore used
+	 * for very large boards. It gives both players' scores, including the bonus
+	 * for white, without changing the allegiance of any intersection.
+	 *
+	 * @return black's score followed by white's score
+	 */
+	private int[] scoreInParallel(int whiteDisadvantageBonus) {
+		int[] points = new int[numLines * numLines];
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+				points[i * numLines + j] = intersections[i][j].getAllegiance();
+			}
+		}
+
+		int[] scores = new TerritoryScorer().score(points, numLines);
+		scores[1] += whiteDisadvantageBonus;
+		if (counting == TERRITORY) {
+			for (int p = 0; p < points.length; p++) {
+				if (Allegiance.isPiece(points[p])) {
+					scores[points[p] - 1]--;
+				}
+			}
+			scores[0] += prisoners[Allegiance.BLACK];
+			scores[1] += prisoners[Allegiance.WHITE];
+		}
+		return scores;
+	}
+
+	/**
+	 * setColorTerritory is a method that helps determine the winner by changing
+	 * the allegiance of a piece that currently has allegiance 0 to the the
+	 * allegiance of the territory it should be. If the piece is surrounded by
+	 * black pieces, it is allegiance 3. White, allegiance 4, and if it is
+	 * connected to both colors, it is of allegiance 5: neutral.
+	 * setColorTerritory fills outwards from the space at indices x and y with
+	 * the floodFill workspace to find every empty space touching it, noting the
+	 * color of every piece the spaces touch along the way, then changes the
+	 * allegiance of all of those spaces to its appropriate value. As before,
+	 * spaces that touch no pieces at all count as black territory.
+	 *
+	 * @param x
+	 *            the x index of the space
+	 * @param y
+	 *            the y index of the space
+	 */
+	private void setColorTerritory(int x, int y) {
+
+		boolean touchesBlack = false;
+		boolean touchesWhite = false;
+		floodFill.start(x * numLines + y);
+
+		while (floodFill.hasNext()) {
+			int point = floodFill.next();
+
+			for (int k = 0; k < 4; k++) {
+				int neighbor = floodFill.neighbor(point, k);
+				if (neighbor == FloodFillWorkspace.NO_POINT) {
+					continue;
+				}
+
+				int allegiance = intersections[neighbor / numLines][neighbor
+						% numLines].getAllegiance();
+				if (allegiance == Allegiance.BLACK) {
+					touchesBlack = true;
+				} else if (allegiance == Allegiance.WHITE) {
+					touchesWhite = true;
+				} else {
+					floodFill.visit(neighbor);
+				}
+			}
+		}
+
+		int territory = Allegiance.NEUTRAL;
+		if (!touchesWhite) {
+			territory = Allegiance.BLACK_TERRITORY;
+		} else if (!touchesBlack) {
+			territory = Allegiance.WHITE_TERRITORY;
+		}
+
+		for (int i = 0; i < floodFill.getNumFound(); i++) {
+			int point = floodFill.getFound(i);
+			intersections[point / numLines][point % numLines]
+					.setAllegiance(territory);
+		}
+	}
+
+	/**
+	 * tallyScore is an integer method that returns the total score of the
+	 * given player. It does so by checking every intersection and
+	 * incrementing the variable totalPlayerScore by 1 for every intersection
+	 * that is of the allegiance or corresponding territory allegiance of the
+	 * player. That is, if the player is 1 (black), then any space/piece with
+	 * allegiance 1 or 3 increases black's score by 1. Additionally, if there
+	 * is a bonus for white for going second, white's total score will also
+	 * increase. When the score is counted by territory, the player's pieces
+	 * aren't counted, and their prisoners are instead.
+	 *
+	 * @return the player's total score
+	 */
+	private int tallyScore(int player, int whiteDisadvantageBonus) {
+
+		int totalPlayerScore = 0;
+		if (player == Allegiance.WHITE) {
+			totalPlayerScore = whiteDisadvantageBonus;
+		}
+		if (counting == TERRITORY) {
+			totalPlayerScore += prisoners[player];
+		}
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				if ((intersections[i][j].getAllegiance() == player && counting == AREA)
+						|| intersections[i][j].getAllegiance() == Allegiance
+								.territoryOf(player)) {
+
+					totalPlayerScore++;
+				}
+
+			}
+		}
+
+		return totalPlayerScore;
+	}
+
+	/** SimpleKo is the rules for a game played by simple ko */
+	private static final class SimpleKo extends GoRules {
+
+		SimpleKo(int numLines, int counting) {
+			super(numLines, counting);
+		}
+
+		public int getRule() {
+			return SIMPLE_KO;
+		}
+
+		boolean breakingRule() {
+			return breakingKo();
+		}
+	}
+
+	/** PositionalSuperko is the rules for a game played by positional superko */
+	private static final class PositionalSuperko extends GoRules {
+
+		PositionalSuperko(int numLines, int counting) {
+			super(numLines, counting);
+		}
+
+		public int getRule() {
+			return POSITIONAL_SUPERKO;
+		}
+
+		boolean breakingRule() {
+			return breakingSuperko();
+		}
+	}
+
+	/** SituationalSuperko is the rules for a game played by situational superko */
+	private static final class SituationalSuperko extends GoRules {
+
+		SituationalSuperko(int numLines, int counting) {
+			super(numLines, counting);
+		}
+
+		public int getRule() {
+			return SITUATIONAL_SUPERKO;
+		}
+
+		boolean breakingRule() {
+			return breakingSituationalSuperko();
+		}
+	}
+}
@@ -6,17 +6,16 @@ package src;
  * Written by Matthew Abbott
  * 
  * An intersection is an class created for the Go program
- * Intersections store the position and allegiance of an intersection
+ * Intersections store the indices and allegiance of an intersection
  * The allegiance of an intersection is a variable that represents who owns the intersection
+ * Intersections only hold numbers, the game pieces drawn on them are drawn by the BoardRenderer
  */
 
-import java.awt.*;
-import acm.graphics.*;
-
 public class Intersection {
 	
-	private double xLocation;
-	private double yLocation;
+	/** the indices of the intersection in the intersections array of the Go program */
+	private int column;
+	private int row;
 	
 	
 	/** Color of the intersection
@@ -29,22 +28,9 @@ public class Intersection {
 	 */
 	private int allegiance;
 	
-//	/** determines the diameter of the game piece associated with the intersection */
-//	private double pieceDiameter;
-	
-	/** This oval is the game piece associated with the given intersection
-	 * It is drawn by the Go.java program when a player has chosen the intersection.
-	 * Its color is concurrent with that of the player who owns it, and is modified by the setAllegiance method
-	 * It is removed by the Go.java program when it is captured
-	 */
-	private GOval piece;
-	
-	private boolean marked = false;
-	
-	public Intersection(double xPos, double yPos, double pieceDiameter) {
-		xLocation = xPos;
-		yLocation = yPos;
-		piece = new GOval(xLocation - pieceDiameter/2, yLocation - pieceDiameter/2, pieceDiameter, pieceDiameter);
+	public Intersection(int i, int j) {
+		column = i;
+		row = j;
 		allegiance = 0;
 	}
 	
@@ -54,37 +40,18 @@ public class Intersection {
 	
 	/** setAllegiance is a public method that, when called, alters the allegiance of the intersection according
 	 * to the input player
-	 * it also changes the color of the game piece associated with the intersection
-	 * black if it's player 1, and white if it's player 2
 	 * 
 	 * @param player: the player who is taking the given intersection
 	 */
 	public void setAllegiance(int player) {
 		allegiance = player;
-		piece.setFilled(true);
-		if (player == 1) {
-			piece.setFillColor(Color.BLACK);
-		} else if (player == 2) {
-			piece.setFillColor(Color.WHITE);
-		}
 	}
 	
-	public double getX() {
-		return xLocation;
-	}
-	
-	public double getY() {
-		return yLocation;
-	}
-	
-	public boolean getMarked() {
-		return marked;
-	}
-	public void setMarked(boolean b) {
-		marked = b;
+	public int getColumn() {
+		return column;
 	}
 	
-	public GOval getPiece(){
-		return piece;
+	public int getRow() {
+		return row;
 	}
 }
\ No newline at end of file
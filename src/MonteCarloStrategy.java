@@ -0,0 +1,100 @@
+package src;
+
+/**
+ * File: MonteCarloStrategy.java
+ * -----------------------------
+ * A MonteCarloStrategy chooses a move by trying every move that a playout would consider,
+ * playing pattern-guided playouts after each one in turn, and keeping the move whose playouts
+ * were won most often. It has no tree, unlike the Ponderer, so it is much weaker for the same
+ * number of playouts, but it needs no threads and is quick to make, which suits running many
+ * games at once in a Tournament.
+ */
+
+public class MonteCarloStrategy implements MoveStrategy {
+
+	private final int playoutsPerMove;
+	private final int whiteDisadvantageBonus;
+	private final Playout playout;
+
+	/**
+	 * root is kept in step with the game and tracks patterns, so that each
+	 * chooseMove only works out the patterns around the moves made since the
+	 * last one, and every playout copies them from root instead of working
+	 * them out over the whole board.
+	 */
+	private GoBoard root;
+	private GoBoard scratch;
+	private int[] candidates;
+	private int[] wins;
+	private int[] tries;
+
+	public MonteCarloStrategy(long seed, int playoutsPerMove, int whiteDisadvantageBonus) {
+		this.playoutsPerMove = Math.max(1, playoutsPerMove);
+		this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+		playout = new Playout(seed, true);
+	}
+
+	public int chooseMove(GoBoard board, int colour) {
+		int numPoints = board.getNumPoints();
+		if (scratch == null || scratch.getSize() != board.getSize()) {
+			root = new GoBoard(board.getSize());
+			root.trackPatterns();
+			scratch = new GoBoard(board.getSize());
+			scratch.trackPatterns();
+			candidates = new int[numPoints];
+			wins = new int[numPoints];
+			tries = new int[numPoints];
+		}
+
+		root.copyFrom(board);
+
+		int count = 0;
+		for (int p = 0; p < numPoints; p++) {
+			if (!root.isEye(p, colour) && root.isLegal(p, colour)) {
+				candidates[count++] = p;
+			}
+		}
+		if (count == 0) {
+			return PASS;
+		}
+
+		for (int c = 0; c < count; c++) {
+			wins[c] = 0;
+			tries[c] = 0;
+		}
+		int total = Math.max(playoutsPerMove, count);
+		for (int i = 0; i < total; i++) {
+			int c = i % count;
+			scratch.copyFrom(root);
+			scratch.play(candidates[c], colour);
+			playout.play(scratch, GoBoard.opponent(colour));
+			int score = scratch.areaScore() - whiteDisadvantageBonus;
+			if (colour == GoBoard.BLACK ? score > 0 : score < 0) {
+				wins[c]++;
+			}
+			tries[c]++;
+		}
+
+		int best = 0;
+		for (int c = 1; c < count; c++) {
+			if ((long) wins[c] * tries[best] > (long) wins[best] * tries[c]) {
+				best = c;
+			}
+		}
+		return candidates[best];
+	}
+
+	/** factory returns a Factory of strategies named "mc" and the number of playouts per move */
+	public static MoveStrategy.Factory factory(final int playoutsPerMove,
+			final int whiteDisadvantageBonus) {
+		return new MoveStrategy.Factory() {
+			public String getName() {
+				return "mc" + playoutsPerMove;
+			}
+
+			public MoveStrategy create(long seed) {
+				return new MonteCarloStrategy(seed, playoutsPerMove, whiteDisadvantageBonus);
+			}
+		};
+	}
+}
@@ -0,0 +1,33 @@
+package src;
+
+/**
+ * File: MoveStrategy.java
+ * -----------------------
+ * A MoveStrategy chooses moves for one side of a game, so that different ways of playing can be
+ * compared against each other by a Tournament. A strategy only sees a GoBoard and whose turn it
+ * is, and it may keep whatever it likes between moves, so a strategy must not be shared between
+ * threads. Every thread of a tournament makes its own with a Factory.
+ */
+
+public interface MoveStrategy {
+
+	/** the move of a strategy that passes */
+	int PASS = GoBoard.NO_POINT;
+
+	/**
+	 * chooseMove returns the point colour plays on the given board, or PASS.
+	 * The point must be one the board says is legal. The board belongs to the
+	 * caller and must be left as it was.
+	 */
+	int chooseMove(GoBoard board, int colour);
+
+	/** A Factory makes strategies of one kind, one for each thread that plays with them */
+	interface Factory {
+
+		/** getName returns the name the strategy goes by in the results */
+		String getName();
+
+		/** create makes a new strategy, with its own random numbers from seed */
+		MoveStrategy create(long seed);
+	}
+}
@@ -0,0 +1,232 @@
+package src;
+
+/**
+ * File: OpeningBook.java
+ * ----------------------
+ * An OpeningBook says which moves were played from a board state in earlier games, and how often
+ * the player who made them went on to win. Books are made from game logs by the
+ * OpeningBookBuilder.
+ *
+ * The book file is memory-mapped and only read, never loaded, so a book of any size uses no more
+ * memory than the operating system chooses to cache. It is a table of fixed size entries sorted
+ * by key, with the entries of one key most played first, and looking up a board state is a
+ * binary search of the mapped file. The key of a board state is its canonical hash (see
+ * SymmetryHash) mixed with whose turn it is, so every rotation and reflection of a board shares
+ * one set of entries. Moves are stored turned to match the canonical board, and are turned back
+ * when they are looked up.
+ *
+ * Boards are looked up as GoBoards that track their symmetries, so the canonical hash is already
+ * up to date and finding it doesn't mean hashing every point of the board again. firstEntry,
+ * isEntryFor and getPoint walk the moves of a board in order without creating any objects;
+ * getMoves collects them into a list for callers that don't mind.
+ *
+ * The file starts with a header of four ints: MAGIC, VERSION, the board size and the number of
+ * entries. Each entry is the key (a long), then the move, the number of games it was played in
+ * and the number of those games that the player who played it won (three ints).
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+public class OpeningBook {
+
+	public static final int MAGIC = 0x474F424B;
+	public static final int VERSION = 2;
+	public static final int HEADER_BYTES = 4 * 4;
+	public static final int ENTRY_BYTES = 8 + 3 * 4;
+
+	/** mixed into the key of a board state when it is white's turn */
+	private static final long WHITE_TO_MOVE = 0x6A09E667F3BCC909L;
+
+	private final MappedByteBuffer entries;
+	private final int size;
+	private final int numEntries;
+
+	private OpeningBook(MappedByteBuffer entries, int size, int numEntries) {
+		this.entries = entries;
+		this.size = size;
+		this.numEntries = numEntries;
+	}
+
+	/**
+	 * open maps a book file into memory. The file can be closed straight away,
+	 * since a mapping stays valid until it is no longer used.
+	 *
+	 * @throws IOException
+	 *             if the file can't be read or is not a book
+	 */
+	public static OpeningBook open(File bookFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(bookFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(bookFile + " is not an opening book");
+			}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			int size = map.getInt(8);
+			int numEntries = map.getInt(12);
+			if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+					|| channel.size() != HEADER_BYTES + (long) numEntries * ENTRY_BYTES) {
+				throw new IOException(bookFile + " is not an opening book");
+			}
+			return new OpeningBook(map, size, numEntries);
+		} finally {
+			file.close();
+		}
+	}
+
+	/** getSize returns the size of the board the book was made for */
+	public int getSize() {
+		return size;
+	}
+
+	public int getNumEntries() {
+		return numEntries;
+	}
+
+	/**
+	 * key returns the number a board state is stored under: the canonical hash
+	 * of the board, changed if it is white's turn.
+	 */
+	public static long key(GoBoard board, int toMove) {
+		long canonical = board.getCanonicalHash(false);
+		return toMove == GoBoard.WHITE ? canonical ^ WHITE_TO_MOVE : canonical;
+	}
+
+	/**
+	 * canonicalMove returns the point that move p becomes on the canonical
+	 * board. If the board looks the same after several symmetries, such as the
+	 * empty board, the moves those symmetries turn p into are all the same
+	 * move, and the smallest of them is used so that they share one entry.
+	 */
+	public static int canonicalMove(GoBoard board, int p) {
+		long canonical = board.getCanonicalHash(false);
+		int best = Integer.MAX_VALUE;
+		for (int s = 0; s < SymmetryHash.NUM_SYMMETRIES; s++) {
+			if (board.getSymmetryHash(s) == canonical) {
+				best = Math.min(best, SymmetryHash.transform(p, s, board.getSize()));
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * firstEntry returns the index of the first entry stored under key, or -1
+	 * if there are none. Entries with the same key are next to each other.
+	 */
+	public int firstEntry(long key) {
+		int low = 0;
+		int high = numEntries;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getKey(middle) < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low < numEntries && getKey(low) == key ? low : -1;
+	}
+
+	/**
+	 * isEntryFor returns true if entry is one of the entries stored under key,
+	 * so that the moves of a board can be walked most played first with
+	 *
+	 *     for (int entry = book.firstEntry(key); book.isEntryFor(entry, key); entry++)
+	 */
+	public boolean isEntryFor(int entry, long key) {
+		return entry >= 0 && entry < numEntries && getKey(entry) == key;
+	}
+
+	public long getKey(int entry) {
+		return entries.getLong(HEADER_BYTES + entry * ENTRY_BYTES);
+	}
+
+	/** getMove returns the move of an entry, on the canonical board */
+	public int getMove(int entry) {
+		return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 8);
+	}
+
+	/**
+	 * getPoint returns the move of an entry turned to match the given board,
+	 * which must be the board the entry was looked up for
+	 */
+	public int getPoint(int entry, GoBoard board) {
+		int back = SymmetryHash.inverse(SymmetryHash.symmetryOf(board.getCanonicalIndex(false)));
+		return SymmetryHash.transform(getMove(entry), back, size);
+	}
+
+	public int getPlays(int entry) {
+		return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 12);
+	}
+
+	public int getWins(int entry) {
+		return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 16);
+	}
+
+	/**
+	 * getMoves returns every move in the book for the given board with the
+	 * given player to move, turned to match the board, most played first.
+	 */
+	public ArrayList<BookMove> getMoves(GoBoard board, int toMove) {
+		ArrayList<BookMove> moves = new ArrayList<BookMove>();
+		if (board.getSize() != size) {
+			return moves;
+		}
+		long key = key(board, toMove);
+		for (int entry = firstEntry(key); isEntryFor(entry, key); entry++) {
+			moves.add(new BookMove(getPoint(entry, board), getPlays(entry), getWins(entry)));
+		}
+		return moves;
+	}
+
+	/**
+	 * isBookMove returns true if the book has an entry for the given player
+	 * playing at p on the given board, or any rotation or reflection of it.
+	 */
+	public boolean isBookMove(GoBoard board, int toMove, int p) {
+		if (board.getSize() != size) {
+			return false;
+		}
+		int move = canonicalMove(board, p);
+		long key = key(board, toMove);
+		for (int entry = firstEntry(key); isEntryFor(entry, key); entry++) {
+			if (getMove(entry) == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** A BookMove is one move of the book, on the board it was looked up for */
+	public static class BookMove {
+
+		private final int point;
+		private final int plays;
+		private final int wins;
+
+		private BookMove(int point, int plays, int wins) {
+			this.point = point;
+			this.plays = plays;
+			this.wins = wins;
+		}
+
+		/** getPoint returns the point of the move, numbered x * size + y */
+		public int getPoint() {
+			return point;
+		}
+
+		public int getPlays() {
+			return plays;
+		}
+
+		public int getWins() {
+			return wins;
+		}
+	}
+}
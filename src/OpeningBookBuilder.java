@@ -0,0 +1,399 @@
+package src;
+
+/**
+ * File: OpeningBookBuilder.java
+ * -----------------------------
+ * The OpeningBookBuilder makes an OpeningBook file out of the game logs of finished games. It is
+ * run on its own, not from the Go program:
+ *
+ *     java src.OpeningBookBuilder book-file max-moves log-file-or-folder...
+ *
+ * Every game is replayed with a VariationTree, following its undos, to find the moves that were
+ * actually kept and the board they were played on. The final board is scored the same way as at
+ * the end of a game (with white's bonus, and by area or territory as the log says), and the first
+ * max-moves moves are counted as played, and won if the player who made them won. Games that
+ * were never ended, or whose board size is different from the first game's, are skipped.
+ *
+ * Counts are collected in memory a batch at a time. Each full batch is sorted, added up and
+ * written to a temporary run file, and at the end the runs are merged into the book, so the
+ * memory used doesn't grow with the number of games. The runs are sorted by key and move so that
+ * they can be merged, and the moves of each key are put in order of how often they were played
+ * as they are written, so the book never has to sort them when it is read.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+public class OpeningBookBuilder {
+
+	public static final int DEFAULT_MAX_MOVES = 30;
+
+	/** how many moves are counted in memory before they are written to a run file */
+	private static final int RUN_LENGTH = 1 << 20;
+
+	private final int maxMoves;
+	private final TerritoryScorer scorer = new TerritoryScorer();
+
+	/** the board size of the book, set by the first game added */
+	private int size = -1;
+
+	/**
+	 * a board that tracks its symmetries, kept in step with the game being
+	 * added so that every board's canonical hash only costs the points that
+	 * changed since the one before
+	 */
+	private GoBoard board;
+
+	/** the moves of the current batch, one played move per index */
+	private final long[] keys = new long[RUN_LENGTH];
+	private final int[] moves = new int[RUN_LENGTH];
+	private final int[] wins = new int[RUN_LENGTH];
+	private int runLength = 0;
+
+	private final ArrayList<File> runFiles = new ArrayList<File>();
+	private int gamesAdded = 0;
+	private int gamesSkipped = 0;
+
+	public OpeningBookBuilder(int maxMoves) {
+		this.maxMoves = maxMoves;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: java src.OpeningBookBuilder book-file max-moves log-file-or-folder...");
+			return;
+		}
+		OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[1]));
+		for (int i = 2; i < args.length; i++) {
+			File input = new File(args[i]);
+			File[] logFiles = input.isDirectory() ? input.listFiles() : new File[] { input };
+			Arrays.sort(logFiles);
+			for (File logFile : logFiles) {
+				if (logFile.isFile()) {
+					builder.addGame(logFile);
+				}
+			}
+		}
+
+		if (builder.getGamesAdded() == 0) {
+			System.out.println("No finished games were found, so no book was written.");
+			return;
+		}
+		int numEntries = builder.finish(new File(args[0]));
+		System.out.println("Added " + builder.getGamesAdded() + " games (skipped "
+				+ builder.getGamesSkipped() + "), wrote " + numEntries + " entries to "
+				+ args[0]);
+	}
+
+	public int getGamesAdded() {
+		return gamesAdded;
+	}
+
+	public int getGamesSkipped() {
+		return gamesSkipped;
+	}
+
+	/**
+	 * addGame reads the game log in a file and adds its moves to the book.
+	 *
+	 * @return true if the game was added, false if it was skipped
+	 */
+	public boolean addGame(File logFile) throws IOException {
+		return addGame(GameLog.read(logFile));
+	}
+
+	/**
+	 * addGame adds the moves of a recovered game log to the book.
+	 *
+	 * @return true if the game was added, false if it was skipped
+	 */
+	public boolean addGame(GameLog.Recovery recovery) throws IOException {
+		VariationTree.Node end = replay(recovery);
+		if (end == null) {
+			gamesSkipped++;
+			return false;
+		}
+
+		// a tie counts as a win for neither player
+		int[] deadPieces = recovery.getDeadPieces();
+		int winner = scorer.winner(end.getBoard().remove(deadPieces), recovery.getNumber(0, 2),
+				GameOptions.countingOf(recovery.getNumber(0, 1)), end.countPrisoners(deadPieces));
+		ArrayList<VariationTree.Node> path = new ArrayList<VariationTree.Node>();
+		for (VariationTree.Node node = end; node.getParent() != null; node = node.getParent()) {
+			path.add(0, node);
+		}
+
+		if (board == null) {
+			board = new GoBoard(size);
+			board.trackSymmetries();
+		}
+		for (int k = 0; k < path.size() && k < maxMoves; k++) {
+			VariationTree.Node node = path.get(k);
+			if (node.getMove() == VariationTree.PASS) {
+				continue;
+			}
+			VariationTree.Node before = node.getParent();
+			board.copyFrom(before.getBoard());
+			add(OpeningBook.key(board, before.getToMove()),
+					OpeningBook.canonicalMove(board, node.getMove()),
+					before.getToMove() == winner ? 1 : 0);
+		}
+		gamesAdded++;
+		return true;
+	}
+
+	/**
+	 * replay plays a recovered game log on a VariationTree and returns the node
+	 * the game ended on, or null if the game can't be used.
+	 */
+	private VariationTree.Node replay(GameLog.Recovery recovery) {
+		if (!recovery.hasGame()) {
+			return null;
+		}
+		int gameSize = recovery.getNumber(0, 0);
+		if (size != -1 && gameSize != size) {
+			return null;
+		}
+		VariationTree.Node end = VariationTree.replay(recovery, true);
+		if (end != null && size == -1) {
+			size = gameSize;
+		}
+		return end;
+	}
+
+	private void add(long key, int move, int won) throws IOException {
+		if (runLength == RUN_LENGTH) {
+			writeRun();
+		}
+		keys[runLength] = key;
+		moves[runLength] = move;
+		wins[runLength] = won;
+		runLength++;
+	}
+
+	/**
+	 * writeRun sorts the current batch by key and move, adds up the moves that
+	 * were played from the same board, and writes the totals to a new run file.
+	 */
+	private void writeRun() throws IOException {
+		Integer[] order = new Integer[runLength];
+		for (int i = 0; i < runLength; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				if (keys[a] != keys[b]) {
+					return Long.compare(keys[a], keys[b]);
+				}
+				return Integer.compare(moves[a], moves[b]);
+			}
+		});
+
+		File runFile = File.createTempFile("go_book_run", ".bin");
+		runFile.deleteOnExit();
+		runFiles.add(runFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(runFile)));
+		try {
+			int i = 0;
+			while (i < runLength) {
+				int first = order[i];
+				int plays = 0;
+				int won = 0;
+				while (i < runLength && keys[order[i]] == keys[first]
+						&& moves[order[i]] == moves[first]) {
+					plays++;
+					won += wins[order[i]];
+					i++;
+				}
+				writeEntry(out, keys[first], moves[first], plays, won);
+			}
+		} finally {
+			out.close();
+		}
+		runLength = 0;
+	}
+
+	private static void writeEntry(DataOutputStream out, long key, int move, int plays,
+			int won) throws IOException {
+		out.writeLong(key);
+		out.writeInt(move);
+		out.writeInt(plays);
+		out.writeInt(won);
+	}
+
+	/**
+	 * finish writes the book file by merging every run file, adding up the
+	 * counts of any move found in more than one run, and then deletes the runs.
+	 *
+	 * @return the number of entries in the book
+	 */
+	public int finish(File bookFile) throws IOException {
+		if (runLength > 0) {
+			writeRun();
+		}
+
+		PriorityQueue<Run> queue = new PriorityQueue<Run>(Math.max(1, runFiles.size()),
+				new Comparator<Run>() {
+					public int compare(Run a, Run b) {
+						if (a.key != b.key) {
+							return Long.compare(a.key, b.key);
+						}
+						return Integer.compare(a.move, b.move);
+					}
+				});
+		for (File runFile : runFiles) {
+			Run run = new Run(runFile);
+			if (run.next()) {
+				queue.add(run);
+			}
+		}
+
+		long numEntries = 0;
+		long maxEntries = (Integer.MAX_VALUE - OpeningBook.HEADER_BYTES) / OpeningBook.ENTRY_BYTES;
+		KeyMoves keyMoves = new KeyMoves(size * size);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(bookFile)));
+		try {
+			out.writeInt(OpeningBook.MAGIC);
+			out.writeInt(OpeningBook.VERSION);
+			out.writeInt(size);
+			out.writeInt(0); // the number of entries is filled in at the end
+
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				long key = run.key;
+				int move = run.move;
+				int plays = 0;
+				int won = 0;
+				while (true) {
+					plays += run.plays;
+					won += run.wins;
+					if (run.next()) {
+						queue.add(run);
+					}
+					Run following = queue.peek();
+					if (following == null || following.key != key || following.move != move) {
+						break;
+					}
+					run = queue.poll();
+				}
+				if (++numEntries > maxEntries) {
+					throw new IOException("The book has too many entries to be memory-mapped");
+				}
+				if (keyMoves.numMoves > 0 && keyMoves.key != key) {
+					keyMoves.write(out);
+				}
+				keyMoves.add(key, move, plays, won);
+			}
+			keyMoves.write(out);
+		} finally {
+			out.close();
+			for (Run run : queue) {
+				run.close();
+			}
+			for (File runFile : runFiles) {
+				runFile.delete();
+			}
+			runFiles.clear();
+		}
+
+		RandomAccessFile book = new RandomAccessFile(bookFile, "rw");
+		try {
+			book.seek(12);
+			book.writeInt((int) numEntries);
+		} finally {
+			book.close();
+		}
+		return (int) numEntries;
+	}
+
+	/**
+	 * KeyMoves holds the totals of every move of one key while the runs are
+	 * merged, in order of how often each was played, until the next key comes
+	 * along and they are written to the book. Moves played equally often stay
+	 * in the order of their points.
+	 */
+	private static class KeyMoves {
+
+		private long key;
+		private final int[] moves;
+		private final int[] plays;
+		private final int[] wins;
+		private int numMoves = 0;
+
+		/** maxMoves is the most moves one key can have, one for every point */
+		private KeyMoves(int maxMoves) {
+			moves = new int[maxMoves];
+			plays = new int[maxMoves];
+			wins = new int[maxMoves];
+		}
+
+		/** add puts a move in its place among the others, which is an insertion sort */
+		private void add(long key, int move, int played, int won) {
+			this.key = key;
+			int i = numMoves++;
+			while (i > 0 && plays[i - 1] < played) {
+				moves[i] = moves[i - 1];
+				plays[i] = plays[i - 1];
+				wins[i] = wins[i - 1];
+				i--;
+			}
+			moves[i] = move;
+			plays[i] = played;
+			wins[i] = won;
+		}
+
+		/** write writes every move held to the book and empties the list */
+		private void write(DataOutputStream out) throws IOException {
+			for (int i = 0; i < numMoves; i++) {
+				writeEntry(out, key, moves[i], plays[i], wins[i]);
+			}
+			numMoves = 0;
+		}
+	}
+
+	/** A Run reads the entries of one run file back in order */
+	private static class Run {
+
+		private final DataInputStream in;
+		private long key;
+		private int move;
+		private int plays;
+		private int wins;
+
+		private Run(File runFile) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+		}
+
+		/** next reads the next entry, returning false and closing the file at the end */
+		private boolean next() throws IOException {
+			try {
+				key = in.readLong();
+				move = in.readInt();
+				plays = in.readInt();
+				wins = in.readInt();
+				return true;
+			} catch (EOFException endOfRun) {
+				close();
+				return false;
+			}
+		}
+
+		private void close() throws IOException {
+			in.close();
+		}
+	}
+}
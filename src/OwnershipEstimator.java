@@ -0,0 +1,180 @@
+package src;
+
+/**
+ * File: OwnershipEstimator.java
+ * -----------------------------
+ * The OwnershipEstimator guesses which pieces are dead at the end of a game.
+ * It plays as many random playouts from the final position as it can within a time budget,
+ * using every processor, and records who ended up owning each point in each playout.
+ * A chain whose points usually end up belonging to the other player is proposed as dead.
+ * No playout is started once the time is up, so a budget too short for even one playout
+ * proposes nothing as dead.
+ */
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class OwnershipEstimator {
+
+	/**
+	 * A chain is called dead if its average ownership from its own point of view
+	 * is below minus this value. 0.5 means the other player owned its points in
+	 * at least three quarters of the playouts.
+	 */
+	private static final double DEAD_THRESHOLD = 0.5;
+
+	private final int numThreads;
+
+	public OwnershipEstimator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public OwnershipEstimator(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * estimate plays playouts from the given position until timeBudget
+	 * milliseconds have passed and returns the combined ownership of every
+	 * point. The deadline is checked before every playout, so only the
+	 * playouts already under way when it passes can run over it. The board
+	 * itself is not changed.
+	 *
+	 * @param board
+	 *            the final position of the game
+	 * @param toMove
+	 *            the player whose turn it is in that position
+	 * @param timeBudget
+	 *            how long to spend, in milliseconds
+	 */
+	public Estimate estimate(final GoBoard board, final int toMove, long timeBudget) {
+		final long deadline = System.nanoTime() + timeBudget * 1000000L;
+		final int numPoints = board.getNumPoints();
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<int[]>> results = new ArrayList<Future<int[]>>();
+
+		for (int t = 0; t < numThreads; t++) {
+			final long seed = System.nanoTime() * 31 + t;
+			results.add(pool.submit(new Callable<int[]>() {
+				public int[] call() {
+					/*
+					 * the last element counts the playouts this thread played,
+					 * the rest are black wins minus white wins for each point
+					 */
+					int[] ownership = new int[numPoints + 1];
+					Playout playout = new Playout(seed);
+					GoBoard scratch = board.copy();
+					int played = 0;
+
+					while (System.nanoTime() < deadline) {
+						scratch.copyFrom(board);
+						playout.play(scratch, toMove);
+						for (int p = 0; p < numPoints; p++) {
+							int owner = scratch.owner(p);
+							if (owner == GoBoard.BLACK) {
+								ownership[p]++;
+							} else if (owner == GoBoard.WHITE) {
+								ownership[p]--;
+							}
+						}
+						played++;
+					}
+					ownership[numPoints] = played;
+					return ownership;
+				}
+			}));
+		}
+
+		int[] total = new int[numPoints + 1];
+		try {
+			for (Future<int[]> result : results) {
+				int[] ownership = result.get();
+				for (int p = 0; p <= numPoints; p++) {
+					total[p] += ownership[p];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		int playouts = Math.max(1, total[numPoints]);
+		double[] ownership = new double[numPoints];
+		for (int p = 0; p < numPoints; p++) {
+			ownership[p] = (double) total[p] / playouts;
+		}
+		return new Estimate(board, ownership, total[numPoints]);
+	}
+
+	/**
+	 * An Estimate holds the result of estimate: the ownership of every point,
+	 * from -1 (always white's) to 1 (always black's), and the chains that are
+	 * probably dead.
+	 */
+	public static class Estimate {
+
+		private final double[] ownership;
+		private final boolean[] dead;
+		private final int playouts;
+
+		private Estimate(GoBoard board, double[] ownership, int playouts) {
+			this.ownership = ownership;
+			this.playouts = playouts;
+			dead = findDeadStones(board, ownership);
+		}
+
+		/**
+		 * findDeadStones averages the ownership over every chain on the board
+		 * and marks every piece of the chains that mostly belong to the other
+		 * player.
+		 */
+		private static boolean[] findDeadStones(GoBoard board, double[] ownership) {
+			int numPoints = board.getNumPoints();
+			boolean[] dead = new boolean[numPoints];
+			boolean[] checked = new boolean[numPoints];
+			int[] chain = new int[numPoints];
+
+			for (int p = 0; p < numPoints; p++) {
+				if (board.get(p) == GoBoard.EMPTY || checked[p]) {
+					continue;
+				}
+				int count = board.collectChain(p, chain);
+				double sum = 0;
+				for (int i = 0; i < count; i++) {
+					checked[chain[i]] = true;
+					sum += ownership[chain[i]];
+				}
+				double average = sum / count;
+				if (board.get(p) == GoBoard.WHITE) {
+					average = -average;
+				}
+				if (average < -DEAD_THRESHOLD) {
+					for (int i = 0; i < count; i++) {
+						dead[chain[i]] = true;
+					}
+				}
+			}
+			return dead;
+		}
+
+		public double getOwnership(int p) {
+			return ownership[p];
+		}
+
+		public boolean isDead(int p) {
+			return dead[p];
+		}
+
+		public int getPlayouts() {
+			return playouts;
+		}
+	}
+}
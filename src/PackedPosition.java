@@ -0,0 +1,119 @@
+package src;
+
+/**
+ * File: PackedPosition.java
+ * -------------------------
+ * A PackedPosition is a board state stored in as little memory as possible, for keeping every
+ * previous board state of a game.
+ *
+ * Each point only needs 2 bits to say whether it is empty, black or white, so 32 points are
+ * packed into every long. Points are numbered the same way as in a GoBoard, with the point at
+ * x, y stored as point x * size + y. Territory allegiances (3 to 5) are stored as empty, since
+ * they only exist while the score is being counted. PackedPositions never change once they are
+ * made, and two positions can be compared a whole long at a time.
+ */
+
+import java.util.Arrays;
+
+public class PackedPosition {
+
+	private static final int BITS_PER_POINT = 2;
+	private static final int POINTS_PER_WORD = 64 / BITS_PER_POINT;
+	private static final long POINT_MASK = 3L;
+
+	private final int size;
+	private final long[] words;
+	private final int hash;
+
+	private PackedPosition(int size, long[] words) {
+		this.size = size;
+		this.words = words;
+		hash = Arrays.hashCode(words);
+	}
+
+	/** pack stores the pieces on the intersections of the Go program */
+	public static PackedPosition pack(Intersection[][] intersections) {
+		int size = intersections.length;
+		long[] words = new long[wordsFor(size)];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				setPoint(words, x * size + y, intersections[x][y].getAllegiance());
+			}
+		}
+		return new PackedPosition(size, words);
+	}
+
+	/** pack stores the pieces on a GoBoard */
+	public static PackedPosition pack(GoBoard board) {
+		int size = board.getSize();
+		long[] words = new long[wordsFor(size)];
+		for (int p = 0; p < board.getNumPoints(); p++) {
+			setPoint(words, p, board.get(p));
+		}
+		return new PackedPosition(size, words);
+	}
+
+	/**
+	 * fromWords makes a position out of words that were packed by another
+	 * PackedPosition, such as ones read back from a file. The array is kept, so
+	 * it must not be changed afterwards.
+	 */
+	public static PackedPosition fromWords(int size, long[] words) {
+		if (words.length != wordsFor(size)) {
+			throw new IllegalArgumentException("A " + size + "x" + size
+					+ " board needs " + wordsFor(size) + " words, not " + words.length);
+		}
+		return new PackedPosition(size, words);
+	}
+
+	/** wordsFor returns how many longs are needed to hold a board of the given size */
+	public static int wordsFor(int size) {
+		return (size * size + POINTS_PER_WORD - 1) / POINTS_PER_WORD;
+	}
+
+	private static void setPoint(long[] words, int p, int allegiance) {
+		if (allegiance == 1 || allegiance == 2) {
+			words[p / POINTS_PER_WORD] |= (long) allegiance << (BITS_PER_POINT * (p % POINTS_PER_WORD));
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/** get returns the allegiance of point p: 0 for empty, 1 for black or 2 for white */
+	public int get(int p) {
+		return (int) ((words[p / POINTS_PER_WORD] >>> (BITS_PER_POINT * (p % POINTS_PER_WORD))) & POINT_MASK);
+	}
+
+	public int get(int x, int y) {
+		return get(x * size + y);
+	}
+
+	public int getNumWords() {
+		return words.length;
+	}
+
+	/** getWord returns one of the longs the position is packed into, for writing it somewhere */
+	public long getWord(int index) {
+		return words[index];
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof PackedPosition)) {
+			return false;
+		}
+		PackedPosition position = (PackedPosition) other;
+		return hash == position.hash && size == position.size
+				&& Arrays.equals(words, position.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+}
@@ -0,0 +1,319 @@
+package src;
+
+/**
+ * File: PassAlive.java
+ * --------------------
+ * PassAlive finds the parts of a board that are settled for good, using Benson's algorithm. A
+ * chain is pass-alive if it can never be captured, even if its owner passes every turn from now
+ * on. Benson showed that these are exactly the chains left after repeating two steps until
+ * nothing changes, starting with every chain of one colour and every region of the board that
+ * isn't that colour:
+ *
+ *     - a region is vital to a chain if every empty point in the region is a liberty of the
+ *       chain, and a chain with fewer than two vital regions is dropped
+ *     - a region that touches a dropped chain is dropped
+ *
+ * The empty regions that are vital to a pass-alive chain are settled too: every point in them is
+ * a liberty of a chain that can't be captured, so the opponent can never make an eye there, and
+ * filling them in only takes away the owner's eyes. Regions with any of the opponent's pieces in
+ * them are never counted as settled, since the owner still has to capture those pieces to score
+ * the region.
+ *
+ * Like a FloodFillWorkspace, a PassAlive keeps all of its arrays between uses so that finding
+ * the settled points doesn't create any objects, and it must not be shared between threads.
+ */
+
+import java.util.Arrays;
+
+public class PassAlive {
+
+	private static final int NONE = -1;
+
+	private final int size;
+	private final int numPoints;
+
+	/** neighbors[4 * p + k] is the k'th point next to p, or NONE off the edge of the board */
+	private final int[] neighbors;
+	/** a copy of the board being looked at */
+	private final int[] points;
+	/** the points waiting to have their neighbors looked at while labelling */
+	private final int[] stack;
+
+	private int numChains;
+
+	/** the chain of the colour being looked at that each point is in, or NONE */
+	private final int[] chainOf;
+	/** the region of points not of that colour that each point is in, or NONE */
+	private final int[] regionOf;
+
+	/** the points of region r are regionPoints[regionStart[r]] up to regionStart[r + 1] */
+	private final int[] regionPoints;
+	private final int[] regionStart;
+	private final boolean[] regionHasOpponent;
+
+	/** the chains touching region r are borderChains[borderStart[r]] up to borderStart[r + 1] */
+	private final int[] borderChains;
+	private final int[] borderStart;
+	/** the region whose border was last being listed when each chain was added to it */
+	private final int[] listedFor;
+
+	/**
+	 * the chains region r is vital to are vitalChains[4 * r] onwards, numVital[r] of them. Every
+	 * region has an empty point, or the opponent's pieces in it would have no liberties, so no
+	 * region is vital to more than the four chains next to its first empty point.
+	 */
+	private final int[] vitalChains;
+	private final int[] numVital;
+
+	private final boolean[] chainAlive;
+	private final boolean[] regionAlive;
+	private final int[] numHealthy;
+
+	public PassAlive(int size) {
+		this.size = size;
+		numPoints = size * size;
+		neighbors = new int[4 * numPoints];
+		FloodFillWorkspace workspace = new FloodFillWorkspace(size);
+		for (int p = 0; p < numPoints; p++) {
+			for (int k = 0; k < 4; k++) {
+				neighbors[4 * p + k] = workspace.neighbor(p, k);
+			}
+		}
+		points = new int[numPoints];
+		stack = new int[numPoints];
+		chainOf = new int[numPoints];
+		regionOf = new int[numPoints];
+		regionPoints = new int[numPoints];
+		regionStart = new int[numPoints + 1];
+		regionHasOpponent = new boolean[numPoints];
+		borderChains = new int[4 * numPoints];
+		borderStart = new int[numPoints + 1];
+		listedFor = new int[numPoints];
+		vitalChains = new int[4 * numPoints];
+		numVital = new int[numPoints];
+		chainAlive = new boolean[numPoints];
+		regionAlive = new boolean[numPoints];
+		numHealthy = new int[numPoints];
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * find runs Benson's algorithm for the chains of one colour and marks
+	 * settled[p] true for every empty point p in a region that is vital to
+	 * one of its pass-alive chains. Points already marked are left as they
+	 * are, so the points settled for both colours can be found with two
+	 * calls, and points settled earlier in a game stay settled without
+	 * having to be found again.
+	 *
+	 * @return true if every empty point of the board is now settled, so that
+	 *         neither player has anything left to gain by playing
+	 */
+	public boolean find(GoBoard board, int colour, boolean[] settled) {
+		for (int p = 0; p < numPoints; p++) {
+			points[p] = board.get(p);
+		}
+		mark(colour, settled);
+		for (int p = 0; p < numPoints; p++) {
+			if (points[p] == GoBoard.EMPTY && !settled[p]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** mark marks the empty regions settled by the pass-alive chains of one colour */
+	private void mark(int colour, boolean[] settled) {
+		// every pass-alive chain needs two vital regions, so most boards can be ruled out early
+		int numRegions = label(colour);
+		if (numChains < 1 || numRegions < 2 || findVital(numRegions) < 2) {
+			return;
+		}
+		listBorders(numChains, numRegions);
+
+		Arrays.fill(chainAlive, 0, numChains, true);
+		Arrays.fill(regionAlive, 0, numRegions, true);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			Arrays.fill(numHealthy, 0, numChains, 0);
+			for (int r = 0; r < numRegions; r++) {
+				if (regionAlive[r]) {
+					for (int i = 0; i < numVital[r]; i++) {
+						numHealthy[vitalChains[4 * r + i]]++;
+					}
+				}
+			}
+			for (int c = 0; c < numChains; c++) {
+				if (chainAlive[c] && numHealthy[c] < 2) {
+					chainAlive[c] = false;
+					changed = true;
+				}
+			}
+			for (int r = 0; r < numRegions; r++) {
+				if (!regionAlive[r]) {
+					continue;
+				}
+				for (int i = borderStart[r]; i < borderStart[r + 1]; i++) {
+					if (!chainAlive[borderChains[i]]) {
+						regionAlive[r] = false;
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+
+		// a region left alive only touches pass-alive chains, so any chain it is vital to is one
+		for (int r = 0; r < numRegions; r++) {
+			if (regionAlive[r] && numVital[r] > 0 && !regionHasOpponent[r]) {
+				for (int i = regionStart[r]; i < regionStart[r + 1]; i++) {
+					settled[regionPoints[i]] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * label numbers the chains of the given colour and the regions of points
+	 * that aren't that colour, listing the points of each region together.
+	 * Both are found the same way: from every point not yet labelled, the
+	 * points next to it that are on the same side are added until none are
+	 * left.
+	 *
+	 * @return how many regions there are, after setting numChains
+	 */
+	private int label(int colour) {
+		Arrays.fill(chainOf, NONE);
+		Arrays.fill(regionOf, NONE);
+		numChains = 0;
+		int numRegions = 0;
+		int numListed = 0;
+		for (int p = 0; p < numPoints; p++) {
+			if (chainOf[p] != NONE || regionOf[p] != NONE) {
+				continue;
+			}
+			boolean isChain = points[p] == colour;
+			int id = isChain ? numChains++ : numRegions++;
+			int[] labels = isChain ? chainOf : regionOf;
+			if (!isChain) {
+				regionStart[id] = numListed;
+				regionHasOpponent[id] = false;
+			}
+			labels[p] = id;
+			int numStacked = 0;
+			stack[numStacked++] = p;
+			while (numStacked > 0) {
+				int q = stack[--numStacked];
+				if (!isChain) {
+					regionPoints[numListed++] = q;
+					if (points[q] != GoBoard.EMPTY) {
+						regionHasOpponent[id] = true;
+					}
+				}
+				for (int k = 4 * q; k < 4 * q + 4; k++) {
+					int n = neighbors[k];
+					if (n != NONE && labels[n] == NONE && (points[n] == colour) == isChain) {
+						labels[n] = id;
+						stack[numStacked++] = n;
+					}
+				}
+			}
+		}
+		regionStart[numRegions] = numListed;
+		return numRegions;
+	}
+
+	/** listBorders lists the chains touching each region, each chain once */
+	private void listBorders(int numChains, int numRegions) {
+		Arrays.fill(listedFor, 0, numChains, NONE);
+		int numListed = 0;
+		for (int r = 0; r < numRegions; r++) {
+			borderStart[r] = numListed;
+			for (int i = regionStart[r]; i < regionStart[r + 1]; i++) {
+				int q = regionPoints[i];
+				for (int k = 0; k < 4; k++) {
+					int n = neighbors[4 * q + k];
+					if (n == NONE || chainOf[n] == NONE) {
+						continue;
+					}
+					int c = chainOf[n];
+					if (listedFor[c] != r) {
+						listedFor[c] = r;
+						borderChains[numListed++] = c;
+					}
+				}
+			}
+		}
+		borderStart[numRegions] = numListed;
+	}
+
+	/**
+	 * findVital works out which chains each region is vital to, starting with
+	 * the chains next to its first empty point and keeping only those that
+	 * are next to every other empty point of the region as well
+	 *
+	 * @return how many regions are vital to at least one chain
+	 */
+	private int findVital(int numRegions) {
+		int numWithVital = 0;
+		for (int r = 0; r < numRegions; r++) {
+			numVital[r] = 0;
+			boolean first = true;
+			for (int i = regionStart[r]; i < regionStart[r + 1]; i++) {
+				int q = regionPoints[i];
+				if (points[q] != GoBoard.EMPTY) {
+					continue;
+				}
+				if (first) {
+					for (int k = 0; k < 4; k++) {
+						int n = neighbors[4 * q + k];
+						if (n != NONE && chainOf[n] != NONE
+								&& !isVital(r, chainOf[n])) {
+							vitalChains[4 * r + numVital[r]++] = chainOf[n];
+						}
+					}
+					first = false;
+				} else {
+					int numKept = 0;
+					for (int j = 0; j < numVital[r]; j++) {
+						int c = vitalChains[4 * r + j];
+						if (isNextTo(q, c)) {
+							vitalChains[4 * r + numKept++] = c;
+						}
+					}
+					numVital[r] = numKept;
+				}
+				if (numVital[r] == 0) {
+					break;
+				}
+			}
+			if (numVital[r] > 0) {
+				numWithVital++;
+			}
+		}
+		return numWithVital;
+	}
+
+	private boolean isVital(int r, int c) {
+		for (int i = 0; i < numVital[r]; i++) {
+			if (vitalChains[4 * r + i] == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** isNextTo returns true if point q is a liberty of chain c */
+	private boolean isNextTo(int q, int c) {
+		for (int k = 0; k < 4; k++) {
+			int n = neighbors[4 * q + k];
+			if (n != NONE && chainOf[n] == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
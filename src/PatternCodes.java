@@ -0,0 +1,305 @@
+package src;
+
+/**
+ * File: PatternCodes.java
+ * -----------------------
+ * PatternCodes keeps a code for the 3x3 pattern around every point of a GoBoard, and a weight
+ * for playing on each empty point that comes from its pattern, so a playout can pick moves that
+ * look sensible without looking at the board at all.
+ *
+ * The low 16 bits of a code are the 8 points around the middle point, two bits each: EMPTY,
+ * BLACK, WHITE or EDGE. The 4 bits above them are atari flags, one for each of the 4 points next
+ * to the middle point, set when that point holds a piece whose chain has the middle point as its
+ * only liberty. The pieces are found with the same neighbor numbering as FloodFillWorkspace, so
+ * neighbor k of a point is around it at position k, and the diagonals follow at positions 4 to 7.
+ *
+ * The GoBoard that owns the codes keeps them up to date as pieces are placed and captured: a
+ * piece changes a position of the codes of its 8 neighbors, and a chain that gains or loses
+ * liberties sets or clears the atari flags of its liberties. Codes are never worked out again
+ * from the board unless the board is overwritten.
+ *
+ * Weights are looked up in a table made once for black to move. For white to move the colours in
+ * the code are swapped first, so both tables are the same table. The weights are in a
+ * WeightedSampler for each colour, and are 0 for every occupied point and for every point that is
+ * the player's own eye, so a playout never fills its own eyes.
+ */
+
+import java.util.Arrays;
+
+public class PatternCodes {
+
+	/** what can be at each of the 8 positions: one of the allegiances in Allegiance, or the edge */
+	public static final int EMPTY = Allegiance.EMPTY;
+	public static final int BLACK = Allegiance.BLACK;
+	public static final int WHITE = Allegiance.WHITE;
+	public static final int EDGE = 3;
+
+	/** the 8 positions around a point take 2 bits each, and the atari flags start after them */
+	public static final int ATARI_SHIFT = 16;
+
+	/** how many different codes there are */
+	public static final int NUM_CODES = 1 << (ATARI_SHIFT + 4);
+
+	/** how far each of the 8 positions is from the middle point, matching FloodFillWorkspace */
+	private static final int[] DX = { 0, 1, -1, 0, -1, 1, -1, 1 };
+	private static final int[] DY = { -1, 0, 0, 1, -1, -1, 1, 1 };
+
+	/*
+	 * weights of the table, which only matter compared to each other: a move
+	 * next to other pieces is worth CONTACT quiet moves in open space, a
+	 * rescue is worth more than that, and a capture more again
+	 */
+	private static final int QUIET = 4;
+	private static final int CONTACT = 3;
+	private static final int FIRST_LINE = 2;
+	private static final int SAVE = 16;
+	private static final int CAPTURE = 20;
+
+	/** the weight of every code for black to move */
+	private static final byte[] BLACK_WEIGHTS = createWeights();
+
+	/** the low 16 bits of a code with black and white swapped */
+	private static final char[] SWAPPED = createSwapped();
+
+	private final int numPoints;
+
+	/** the code of every point, kept up to date for occupied points too */
+	private final int[] codes;
+
+	/** the point at each of the 8 positions around every point, or NO_POINT past the edge */
+	private final int[] around;
+
+	private final boolean[] occupied;
+
+	/** the weights of every point, for black to move and for white to move */
+	private final WeightedSampler blackSampler;
+	private final WeightedSampler whiteSampler;
+
+	/** the number of the last refresh that reached each point, used by GoBoard */
+	private final int[] refreshedBy;
+	private int currentRefresh = 0;
+
+	public PatternCodes(int size) {
+		numPoints = size * size;
+		codes = new int[numPoints];
+		around = new int[8 * numPoints];
+		occupied = new boolean[numPoints];
+		blackSampler = new WeightedSampler(numPoints);
+		whiteSampler = new WeightedSampler(numPoints);
+		refreshedBy = new int[numPoints];
+
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				int p = x * size + y;
+				for (int j = 0; j < 8; j++) {
+					int nx = x + DX[j];
+					int ny = y + DY[j];
+					boolean onBoard = nx >= 0 && nx < size && ny >= 0 && ny < size;
+					around[8 * p + j] = onBoard ? nx * size + ny : GoBoard.NO_POINT;
+				}
+			}
+		}
+		clear();
+	}
+
+	/** clear sets the codes to those of an empty board */
+	public void clear() {
+		for (int p = 0; p < numPoints; p++) {
+			int code = 0;
+			for (int j = 0; j < 8; j++) {
+				if (around[8 * p + j] == GoBoard.NO_POINT) {
+					code |= EDGE << (2 * j);
+				}
+			}
+			codes[p] = code;
+			occupied[p] = false;
+			updateWeights(p);
+		}
+	}
+
+	/** copyFrom overwrites the codes with those of another board of the same size */
+	public void copyFrom(PatternCodes other) {
+		System.arraycopy(other.codes, 0, codes, 0, numPoints);
+		System.arraycopy(other.occupied, 0, occupied, 0, numPoints);
+		blackSampler.copyFrom(other.blackSampler);
+		whiteSampler.copyFrom(other.whiteSampler);
+	}
+
+	public int getCode(int p) {
+		return codes[p];
+	}
+
+	/** getSampler returns the weights of the empty points for the given colour to move */
+	public WeightedSampler getSampler(int colour) {
+		return colour == BLACK ? blackSampler : whiteSampler;
+	}
+
+	/**
+	 * setPoint is a void method that records that p now holds the given
+	 * allegiance, changing the codes of the points around it. A point that
+	 * becomes empty loses its atari flags, and the chains next to it must set
+	 * them again.
+	 */
+	public void setPoint(int p, int allegiance) {
+		for (int j = 0; j < 8; j++) {
+			int n = around[8 * p + j];
+			if (n != GoBoard.NO_POINT) {
+				// p is at the opposite position around n, which is 3 - j or 11 - j
+				int shift = 2 * (j < 4 ? 3 - j : 11 - j);
+				codes[n] = codes[n] & ~(3 << shift) | allegiance << shift;
+				if (!occupied[n]) {
+					updateWeights(n);
+				}
+			}
+		}
+		occupied[p] = allegiance != EMPTY;
+		if (!occupied[p]) {
+			codes[p] &= (1 << ATARI_SHIFT) - 1;
+		}
+		updateWeights(p);
+	}
+
+	/**
+	 * setAtari is a void method that sets or clears the atari flag of empty
+	 * point p for its k'th neighbor.
+	 */
+	public void setAtari(int p, int k, boolean inAtari) {
+		int bit = 1 << (ATARI_SHIFT + k);
+		int code = inAtari ? codes[p] | bit : codes[p] & ~bit;
+		if (code != codes[p]) {
+			codes[p] = code;
+			updateWeights(p);
+		}
+	}
+
+	private void updateWeights(int p) {
+		if (occupied[p]) {
+			blackSampler.set(p, 0);
+			whiteSampler.set(p, 0);
+		} else {
+			int code = codes[p];
+			blackSampler.set(p, BLACK_WEIGHTS[code]);
+			whiteSampler.set(p, BLACK_WEIGHTS[code & ~0xFFFF | SWAPPED[code & 0xFFFF]]);
+		}
+	}
+
+	/** newRefresh starts a new round of refreshing chains, in which no point has been reached */
+	int newRefresh() {
+		currentRefresh++;
+		if (currentRefresh == Integer.MAX_VALUE) {
+			Arrays.fill(refreshedBy, 0);
+			currentRefresh = 1;
+		}
+		return currentRefresh;
+	}
+
+	/** markRefreshed marks p as reached, returning false if it already was this round */
+	boolean markRefreshed(int p) {
+		if (refreshedBy[p] == currentRefresh) {
+			return false;
+		}
+		refreshedBy[p] = currentRefresh;
+		return true;
+	}
+
+	/** getState returns what is at position j around the point with the given code */
+	public static int getState(int code, int j) {
+		return (code >> (2 * j)) & 3;
+	}
+
+	public static boolean isAtari(int code, int k) {
+		return (code & (1 << (ATARI_SHIFT + k))) != 0;
+	}
+
+	/** weight returns the weight of a code for black to move */
+	public static int weight(int code) {
+		return BLACK_WEIGHTS[code];
+	}
+
+	private static byte[] createWeights() {
+		byte[] weights = new byte[NUM_CODES];
+		for (int code = 0; code < NUM_CODES; code++) {
+			weights[code] = (byte) blackWeight(code);
+		}
+		return weights;
+	}
+
+	/**
+	 * blackWeight works out the weight of playing black in the middle of a
+	 * pattern. Filling black's own eye is worth nothing. Capturing a white
+	 * chain in atari, or extending a black one that is in atari, is worth the
+	 * most. Otherwise a move touching other pieces is favored, a move on the
+	 * first line in open space is discouraged, and a move surrounded on every
+	 * side by white, which can only be self-atari unless it captures, is worth
+	 * the least.
+	 */
+	private static int blackWeight(int code) {
+		boolean eye = true;
+		int white = 0;
+		boolean capture = false;
+		boolean save = false;
+		for (int k = 0; k < 4; k++) {
+			int state = getState(code, k);
+			if (state != BLACK && state != EDGE) {
+				eye = false;
+			}
+			if (state == WHITE) {
+				white++;
+			}
+			if (isAtari(code, k)) {
+				capture |= state == WHITE;
+				save |= state == BLACK;
+			}
+		}
+		if (eye) {
+			return 0;
+		}
+		if (capture) {
+			return CAPTURE;
+		}
+		if (save) {
+			return SAVE;
+		}
+
+		boolean contact = false;
+		boolean edge = false;
+		for (int j = 0; j < 8; j++) {
+			int state = getState(code, j);
+			contact |= state == BLACK || state == WHITE;
+			edge |= j < 4 && state == EDGE;
+		}
+		if (white + edgeCount(code) == 4) {
+			return 1;
+		}
+		if (contact) {
+			return QUIET * CONTACT;
+		}
+		return edge ? QUIET / FIRST_LINE : QUIET;
+	}
+
+	private static int edgeCount(int code) {
+		int edges = 0;
+		for (int k = 0; k < 4; k++) {
+			if (getState(code, k) == EDGE) {
+				edges++;
+			}
+		}
+		return edges;
+	}
+
+	private static char[] createSwapped() {
+		char[] swapped = new char[1 << ATARI_SHIFT];
+		for (int code = 0; code < swapped.length; code++) {
+			int result = 0;
+			for (int j = 0; j < 8; j++) {
+				int state = getState(code, j);
+				if (state == BLACK || state == WHITE) {
+					state = 3 - state;
+				}
+				result |= state << (2 * j);
+			}
+			swapped[code] = (char) result;
+		}
+		return swapped;
+	}
+}
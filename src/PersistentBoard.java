@@ -0,0 +1,294 @@
+package src;
+
+/**
+ * File: PersistentBoard.java
+ * --------------------------
+ * A PersistentBoard is a board state that never changes. Playing a move on it returns a new
+ * PersistentBoard and leaves the old one as it was, so a tree of variations can keep a board for
+ * every node at once.
+ *
+ * The points are packed 2 bits each into longs, like a PackedPosition, and the longs are split
+ * into small chunks held in a tree with 32 branches per node. A new board only copies the chunks
+ * that changed and the nodes on the way down to them, and shares everything else with the board
+ * it came from. An empty board of any size shares a single empty chunk everywhere.
+ *
+ * Moves follow the rules of the Go program: enemy chains left without liberties are captured,
+ * and then the chain of the piece that was placed is captured too if it has no liberties left.
+ */
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+public final class PersistentBoard {
+
+	private static final int POINTS_PER_WORD = 32;
+	private static final long POINT_MASK = 3L;
+
+	/** each chunk holds this many longs, which is 256 points */
+	private static final int CHUNK_WORDS = 8;
+
+	/** each node of the tree holds this many children */
+	private static final int BRANCH_BITS = 5;
+	private static final int BRANCHES = 1 << BRANCH_BITS;
+
+	private final int size;
+
+	/** how many levels of nodes are above the chunks, 0 if the root is the only chunk */
+	private final int depth;
+
+	/** a long[] chunk if depth is 0, otherwise an Object[] of children */
+	private final Object root;
+
+	/**
+	 * a hash of every piece on the board, kept up to date as pieces are added
+	 * and removed. It is the same as the hash of a GoBoard with the same pieces.
+	 */
+	private final long hash;
+
+	private PersistentBoard(int size, int depth, Object root, long hash) {
+		this.size = size;
+		this.depth = depth;
+		this.root = root;
+		this.hash = hash;
+	}
+
+	/** empty returns a board of the given size with no pieces on it */
+	public static PersistentBoard empty(int size) {
+		int numChunks = Math.max(1, (PackedPosition.wordsFor(size) + CHUNK_WORDS - 1) / CHUNK_WORDS);
+		int depth = 0;
+		while ((1L << (BRANCH_BITS * depth)) < numChunks) {
+			depth++;
+		}
+
+		Object node = new long[CHUNK_WORDS];
+		for (int level = 0; level < depth; level++) {
+			Object[] branch = new Object[BRANCHES];
+			Arrays.fill(branch, node);
+			node = branch;
+		}
+		return new PersistentBoard(size, depth, node, 0);
+	}
+
+	/** fromPosition returns a board holding the same pieces as a PackedPosition */
+	public static PersistentBoard fromPosition(PackedPosition position) {
+		PersistentBoard board = empty(position.getSize());
+		Editor editor = board.new Editor();
+		for (int p = 0; p < position.getSize() * position.getSize(); p++) {
+			if (position.get(p) != 0) {
+				editor.set(p, position.get(p));
+			}
+		}
+		return editor.finish();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getHash() {
+		return hash;
+	}
+
+	/** get returns the allegiance of point p: 0 for empty, 1 for black or 2 for white */
+	public int get(int p) {
+		return get(root, p);
+	}
+
+	public int get(int x, int y) {
+		return get(x * size + y);
+	}
+
+	private int get(Object top, int p) {
+		int word = p / POINTS_PER_WORD;
+		int chunk = word / CHUNK_WORDS;
+		Object node = top;
+		for (int level = depth; level > 0; level--) {
+			node = ((Object[]) node)[(chunk >>> (BRANCH_BITS * (level - 1))) & (BRANCHES - 1)];
+		}
+		long bits = ((long[]) node)[word % CHUNK_WORDS];
+		return (int) ((bits >>> (2 * (p % POINTS_PER_WORD))) & POINT_MASK);
+	}
+
+	/** toPackedPosition copies the board into a PackedPosition, for storing it in a GameHistory */
+	public PackedPosition toPackedPosition() {
+		long[] words = new long[PackedPosition.wordsFor(size)];
+		for (int w = 0; w < words.length; w++) {
+			int chunk = w / CHUNK_WORDS;
+			Object node = root;
+			for (int level = depth; level > 0; level--) {
+				node = ((Object[]) node)[(chunk >>> (BRANCH_BITS * (level - 1))) & (BRANCHES - 1)];
+			}
+			words[w] = ((long[]) node)[w % CHUNK_WORDS];
+		}
+		return PackedPosition.fromWords(size, words);
+	}
+
+	/**
+	 * remove returns the board with the pieces at the given points taken off,
+	 * such as the dead pieces removed before the score is counted. This board
+	 * is not changed.
+	 */
+	public PersistentBoard remove(int[] points) {
+		if (points.length == 0) {
+			return this;
+		}
+		Editor editor = new Editor();
+		for (int p : points) {
+			editor.set(p, 0);
+		}
+		return editor.finish();
+	}
+
+	/**
+	 * play returns the board after a piece of the given colour is placed at p,
+	 * with any captures made. This board is not changed. The point must be
+	 * empty; ko is left for the caller to check by comparing boards.
+	 *
+	 * @param workspace
+	 *            a workspace for a board of this size, used to find chains
+	 */
+	public PersistentBoard play(int p, int colour, FloodFillWorkspace workspace) {
+		Editor editor = new Editor();
+		editor.set(p, colour);
+
+		int enemy = 3 - colour;
+		for (int k = 0; k < 4; k++) {
+			int n = workspace.neighbor(p, k);
+			if (n != FloodFillWorkspace.NO_POINT && editor.get(n) == enemy
+					&& !hasLiberty(editor, n, workspace)) {
+				editor.clearFound(workspace);
+			}
+		}
+
+		if (!hasLiberty(editor, p, workspace)) {
+			editor.clearFound(workspace);
+		}
+		return editor.finish();
+	}
+
+	/**
+	 * hasLiberty returns true if the chain containing p has an empty point next
+	 * to it. If not, the whole chain is left as the points found by workspace.
+	 */
+	private static boolean hasLiberty(Editor editor, int p, FloodFillWorkspace workspace) {
+		int colour = editor.get(p);
+		workspace.start(p);
+		while (workspace.hasNext()) {
+			int q = workspace.next();
+			for (int k = 0; k < 4; k++) {
+				int n = workspace.neighbor(q, k);
+				if (n == FloodFillWorkspace.NO_POINT) {
+					continue;
+				}
+				int allegiance = editor.get(n);
+				if (allegiance == 0) {
+					return true;
+				} else if (allegiance == colour) {
+					workspace.visit(n);
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof PersistentBoard)) {
+			return false;
+		}
+		PersistentBoard board = (PersistentBoard) other;
+		return size == board.size && hash == board.hash
+				&& sameNodes(root, board.root, depth);
+	}
+
+	/** sameNodes compares two subtrees, skipping any part the two boards share */
+	private static boolean sameNodes(Object a, Object b, int level) {
+		if (a == b) {
+			return true;
+		}
+		if (level == 0) {
+			return Arrays.equals((long[]) a, (long[]) b);
+		}
+		Object[] branchA = (Object[]) a;
+		Object[] branchB = (Object[]) b;
+		for (int i = 0; i < BRANCHES; i++) {
+			if (!sameNodes(branchA[i], branchB[i], level - 1)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * An Editor builds a new board from this one. The first time a chunk or a
+	 * node is changed it is copied, and the copy is remembered so that later
+	 * changes to it in the same edit don't copy it again.
+	 */
+	private class Editor {
+
+		private Object newRoot = root;
+		private long newHash = hash;
+		private final IdentityHashMap<Object, Boolean> copies = new IdentityHashMap<Object, Boolean>();
+
+		private int get(int p) {
+			return PersistentBoard.this.get(newRoot, p);
+		}
+
+		private void set(int p, int allegiance) {
+			int old = get(p);
+			if (old == allegiance) {
+				return;
+			}
+			if (old != 0) {
+				newHash ^= SymmetryHash.pieceKey(size, p, old);
+			}
+			if (allegiance != 0) {
+				newHash ^= SymmetryHash.pieceKey(size, p, allegiance);
+			}
+			int word = p / POINTS_PER_WORD;
+			newRoot = set(newRoot, depth, word / CHUNK_WORDS, word % CHUNK_WORDS,
+					2 * (p % POINTS_PER_WORD), allegiance);
+		}
+
+		private Object set(Object node, int level, int chunk, int wordInChunk,
+				int shift, int allegiance) {
+			if (level == 0) {
+				long[] words = (long[]) node;
+				if (!copies.containsKey(words)) {
+					words = words.clone();
+					copies.put(words, Boolean.TRUE);
+				}
+				words[wordInChunk] = (words[wordInChunk] & ~(POINT_MASK << shift))
+						| ((long) allegiance << shift);
+				return words;
+			}
+			Object[] branch = (Object[]) node;
+			if (!copies.containsKey(branch)) {
+				branch = branch.clone();
+				copies.put(branch, Boolean.TRUE);
+			}
+			int index = (chunk >>> (BRANCH_BITS * (level - 1))) & (BRANCHES - 1);
+			branch[index] = set(branch[index], level - 1, chunk, wordInChunk, shift, allegiance);
+			return branch;
+		}
+
+		/** clearFound removes every piece found by the last fill of workspace */
+		private void clearFound(FloodFillWorkspace workspace) {
+			for (int i = 0; i < workspace.getNumFound(); i++) {
+				set(workspace.getFound(i), 0);
+			}
+		}
+
+		private PersistentBoard finish() {
+			return new PersistentBoard(size, depth, newRoot, newHash);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package src;
+
+/**
+ * File: Playout.java
+ * ------------------
+ * A Playout plays a game out to the end on a GoBoard using random moves.
+ * Each player picks random legal moves, except that they never fill in one of their own eyes,
+ * and the game ends when both players pass in a row. Since neither player will fill their own
+ * eyes, the finished board has every empty point surrounded by one colour, which makes it easy
+ * to see who owns what. A Playout is not thread safe, so every thread should have its own.
+ *
+ * A Playout made with usePatterns picks its moves by the 3x3 pattern around each point instead
+ * of evenly, favouring captures, escapes from atari and moves near other pieces (see
+ * PatternCodes). The board keeps the weights of its points up to date as it is played on, so a
+ * move is picked from a WeightedSampler without scanning the board.
+ */
+
+import java.util.SplittableRandom;
+
+public class Playout {
+
+	/**
+	 * A playout gives up after this many moves for every point on the board.
+	 * Random games almost always end long before this, but it stops endless
+	 * fights over kos from running forever.
+	 */
+	private static final int MAX_MOVES_PER_POINT = 3;
+
+	private final SplittableRandom random;
+	private final boolean usePatterns;
+
+	/** the empty points of the board, used to pick moves without scanning the whole board */
+	private int[] candidates;
+
+	/** the points a pattern-guided move was not allowed on, and their weights before being taken out */
+	private int[] rejected;
+	private int[] rejectedWeights;
+
+	public Playout(long seed) {
+		this(seed, false);
+	}
+
+	public Playout(long seed, boolean usePatterns) {
+		random = new SplittableRandom(seed);
+		this.usePatterns = usePatterns;
+	}
+
+	/**
+	 * play finishes the game on the given board, starting with the player
+	 * toMove. The board is changed, so callers should pass a copy of any
+	 * position they want to keep.
+	 *
+	 * @return the number of moves that were played
+	 */
+	public int play(GoBoard board, int toMove) {
+		int numPoints = board.getNumPoints();
+		prepare(board);
+
+		int maxMoves = MAX_MOVES_PER_POINT * numPoints;
+		int colour = toMove;
+		int passes = 0;
+		int moves = 0;
+
+		while (passes < 2 && moves < maxMoves) {
+			int move = usePatterns ? choosePatternMove(board, colour) : chooseMove(board,
+					colour);
+			if (move == GoBoard.NO_POINT) {
+				board.pass();
+				passes++;
+			} else {
+				board.play(move, colour);
+				passes = 0;
+			}
+			colour = GoBoard.opponent(colour);
+			moves++;
+		}
+		return moves;
+	}
+
+	/**
+	 * nextMove picks one move for colour the way a playout would, without
+	 * playing it, so that the same choice can be used as a simple player.
+	 *
+	 * @return the chosen point, or NO_POINT if colour should pass
+	 */
+	public int nextMove(GoBoard board, int colour) {
+		prepare(board);
+		return usePatterns ? choosePatternMove(board, colour) : chooseMove(board, colour);
+	}
+
+	/** prepare makes the lists big enough for the board, and starts its patterns if they are used */
+	private void prepare(GoBoard board) {
+		int numPoints = board.getNumPoints();
+		if (candidates == null || candidates.length != numPoints) {
+			candidates = new int[numPoints];
+			rejected = new int[numPoints];
+			rejectedWeights = new int[numPoints];
+		}
+		if (usePatterns) {
+			board.trackPatterns();
+		}
+	}
+
+	/**
+	 * chooseMove picks a random empty point that colour can legally play on and
+	 * that is not one of its own eyes. Points that are rejected are swapped out
+	 * of the candidate list so each one is only looked at once per turn.
+	 *
+	 * @return the chosen point, or NO_POINT if colour has to pass
+	 */
+	private int chooseMove(GoBoard board, int colour) {
+		int count = 0;
+		for (int p = 0; p < board.getNumPoints(); p++) {
+			if (board.get(p) == GoBoard.EMPTY) {
+				candidates[count++] = p;
+			}
+		}
+
+		while (count > 0) {
+			int i = random.nextInt(count);
+			int p = candidates[i];
+			if (!board.isEye(p, colour) && board.isLegal(p, colour)) {
+				return p;
+			}
+			candidates[i] = candidates[--count];
+		}
+		return GoBoard.NO_POINT;
+	}
+
+	/**
+	 * choosePatternMove picks a random point for colour with a chance in
+	 * proportion to the weight of its pattern. Points with a weight of 0,
+	 * which include colour's own eyes, are never picked. A picked point that
+	 * turns out to be illegal is taken out of the sampler until a move is
+	 * found, and then put back.
+	 *
+	 * @return the chosen point, or NO_POINT if colour has to pass
+	 */
+	private int choosePatternMove(GoBoard board, int colour) {
+		WeightedSampler sampler = board.getPatterns().getSampler(colour);
+		int numRejected = 0;
+		int move = GoBoard.NO_POINT;
+		int total = sampler.getTotal();
+
+		while (total > 0) {
+			int p = sampler.find(random.nextInt(total));
+			if (board.isLegal(p, colour)) {
+				move = p;
+				break;
+			}
+			rejected[numRejected] = p;
+			rejectedWeights[numRejected++] = sampler.get(p);
+			total -= sampler.get(p);
+			sampler.set(p, 0);
+		}
+
+		for (int i = 0; i < numRejected; i++) {
+			sampler.set(rejected[i], rejectedWeights[i]);
+		}
+		return move;
+	}
+}
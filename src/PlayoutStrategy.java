@@ -0,0 +1,46 @@
+package src;
+
+/**
+ * File: PlayoutStrategy.java
+ * --------------------------
+ * A PlayoutStrategy plays the moves a Playout would play: a random legal move that doesn't fill
+ * one of its own eyes, chosen either evenly or by pattern. It is the weakest strategy there is
+ * worth measuring, and the one every other strategy should beat.
+ */
+
+public class PlayoutStrategy implements MoveStrategy {
+
+	private final Playout playout;
+
+	/**
+	 * a copy of the board to choose on, since choosing by pattern starts
+	 * tracking patterns. It is kept from move to move, so copying the board
+	 * onto it only changes the points played on since the last move.
+	 */
+	private GoBoard scratch;
+
+	public PlayoutStrategy(long seed, boolean usePatterns) {
+		playout = new Playout(seed, usePatterns);
+	}
+
+	public int chooseMove(GoBoard board, int colour) {
+		if (scratch == null || scratch.getSize() != board.getSize()) {
+			scratch = new GoBoard(board.getSize());
+		}
+		scratch.copyFrom(board);
+		return playout.nextMove(scratch, colour);
+	}
+
+	/** factory returns a Factory of playout strategies, named "random" or "pattern" */
+	public static MoveStrategy.Factory factory(final boolean usePatterns) {
+		return new MoveStrategy.Factory() {
+			public String getName() {
+				return usePatterns ? "pattern" : "random";
+			}
+
+			public MoveStrategy create(long seed) {
+				return new PlayoutStrategy(seed, usePatterns);
+			}
+		};
+	}
+}
@@ -0,0 +1,357 @@
+package src;
+
+/**
+ * File: Ponderer.java
+ * -------------------
+ * A Ponderer keeps searching the current position on background threads while the players
+ * think, so that a suggested move is ready the moment it is asked for.
+ *
+ * The search is Monte Carlo tree search: every thread walks down a tree of moves from the
+ * current position, choosing the most promising move at each step, plays a random game out from
+ * where it stops with a pattern-guided Playout, and counts the result as a win or a loss for every move on the
+ * way. When a move is played in the game, the branch of the tree for that move becomes the new
+ * tree and everything learned about it is kept, so the search carries on from where it was.
+ *
+ * The tree is shared between the threads and only changed while holding its lock, but the
+ * playouts, which take nearly all of the time, run without it. A thread that is walking down the
+ * tree counts its visit straight away (a "virtual loss"), so the other threads spread out to
+ * other moves instead of all trying the same one. Moves follow the rules of a GoBoard, which
+ * only forbids simple ko, so Superko is not checked inside the tree.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class Ponderer {
+
+	/** the move of a pass */
+	public static final int PASS = -1;
+
+	/** the move of a root that wasn't reached by any move */
+	private static final int NO_MOVE = -2;
+
+	/** how much the search favors moves that have been tried less, against ones that win more */
+	private static final double EXPLORATION = 1.0;
+
+	/** a leaf is only given children once it has been visited this many times */
+	private static final int EXPAND_AFTER = 2;
+
+	/** the tree stops growing once it has this many nodes, until a move frees some of them */
+	private static final int MAX_NODES = 500000;
+
+	private final int size;
+	private final int whiteDisadvantageBonus;
+	private final int numThreads;
+
+	/** guards the tree, the root board and whether the threads are running */
+	private final Object lock = new Object();
+
+	private GoBoard rootBoard;
+	private int rootToMove;
+	private Node root;
+	private int numNodes;
+
+	private boolean running = false;
+
+	/**
+	 * counts how many times the threads have been started, so that threads
+	 * left over from before a stop know to finish even if pondering has
+	 * started again since
+	 */
+	private int runNumber = 0;
+
+	public Ponderer(int size, int whiteDisadvantageBonus) {
+		this(size, whiteDisadvantageBonus, Math.max(1, Runtime.getRuntime()
+				.availableProcessors() - 1));
+	}
+
+	public Ponderer(int size, int whiteDisadvantageBonus, int numThreads) {
+		this.size = size;
+		this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * start begins pondering the given position with a new tree, starting the
+	 * background threads if they aren't running. The board is copied.
+	 */
+	public void start(GoBoard board, int toMove) {
+		if (board.getSize() != size) {
+			throw new IllegalArgumentException("The board is " + board.getSize()
+					+ " lines, not " + size);
+		}
+		synchronized (lock) {
+			rootBoard = board.copy();
+			rootBoard.trackPatterns(); // so the boards copied from it for playouts have them too
+			rootToMove = toMove;
+			root = new Node(null, NO_MOVE, GoBoard.opponent(toMove));
+			numNodes = 1;
+
+			if (!running) {
+				running = true;
+				runNumber++;
+				for (int t = 0; t < numThreads; t++) {
+					final long seed = System.nanoTime() * 31 + t;
+					final int run = runNumber;
+					Thread thread = new Thread(new Runnable() {
+						public void run() {
+							search(seed, run);
+						}
+					}, "Ponderer " + t);
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					thread.start();
+				}
+			}
+		}
+	}
+
+	/** stop stops the background threads; the tree is kept until the next start */
+	public void stop() {
+		synchronized (lock) {
+			running = false;
+		}
+	}
+
+	public boolean isRunning() {
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	/**
+	 * play moves the root of the tree to the branch for the given move (a
+	 * point, or PASS) that was just played in the game, keeping everything
+	 * searched below it. If the move was never searched, a new tree is started
+	 * from the position after it.
+	 */
+	public void play(int move) {
+		synchronized (lock) {
+			if (root == null) {
+				return;
+			}
+			Node next = null;
+			if (root.children != null) {
+				for (Node child : root.children) {
+					if (child.move == move) {
+						next = child;
+					}
+				}
+			}
+
+			if (move == PASS) {
+				rootBoard.pass();
+			} else {
+				rootBoard.play(move, rootToMove);
+			}
+			rootToMove = GoBoard.opponent(rootToMove);
+
+			if (next == null) {
+				next = new Node(null, move, GoBoard.opponent(rootToMove));
+			}
+			next.parent = null;
+			root = next;
+			numNodes = root.countNodes();
+		}
+	}
+
+	/** getPlayouts returns how many playouts the current root has been searched with */
+	public int getPlayouts() {
+		synchronized (lock) {
+			return root == null ? 0 : root.visits;
+		}
+	}
+
+	/**
+	 * getBestMove returns the move searched most from the current position,
+	 * which is the one the search trusts most, or PASS if nothing has been
+	 * searched yet.
+	 */
+	public int getBestMove() {
+		synchronized (lock) {
+			Node best = mostVisitedChild();
+			return best == null ? PASS : best.move;
+		}
+	}
+
+	/**
+	 * getBestWinRate returns how often the player to move won the playouts
+	 * after the best move, from 0 to 1.
+	 */
+	public double getBestWinRate() {
+		synchronized (lock) {
+			Node best = mostVisitedChild();
+			return best == null || best.visits == 0 ? 0.5 : best.wins / best.visits;
+		}
+	}
+
+	private Node mostVisitedChild() {
+		if (root == null || root.children == null) {
+			return null;
+		}
+		Node best = null;
+		for (Node child : root.children) {
+			if (best == null || child.visits > best.visits) {
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * search is what every background thread runs until it is stopped: walk
+	 * down the tree with the lock held, play a random game out without it,
+	 * then count the result with the lock held again.
+	 */
+	private void search(long seed, int run) {
+		Playout playout = new Playout(seed, true);
+		GoBoard scratch = null;
+		Node[] path = new Node[64];
+
+		while (true) {
+			int length;
+			int toMove;
+			boolean gameOver = false;
+			synchronized (lock) {
+				if (!running || run != runNumber) {
+					return;
+				}
+				if (scratch == null || scratch.getSize() != rootBoard.getSize()) {
+					scratch = rootBoard.copy();
+				} else {
+					scratch.copyFrom(rootBoard);
+				}
+				toMove = rootToMove;
+
+				Node node = root;
+				length = 0;
+				while (true) {
+					if (length == path.length) {
+						path = Arrays.copyOf(path, length * 2);
+					}
+					path[length++] = node;
+					node.visits++; // the virtual loss, until the win is added after the playout
+					if (node.isGameOver()) {
+						gameOver = true;
+						break;
+					}
+					if (node.children == null) {
+						if (node.visits <= EXPAND_AFTER || numNodes >= MAX_NODES) {
+							break;
+						}
+						expand(node, scratch, toMove);
+					}
+					node = select(node);
+					if (node.move == PASS) {
+						scratch.pass();
+					} else {
+						scratch.play(node.move, toMove);
+					}
+					toMove = GoBoard.opponent(toMove);
+				}
+			}
+
+			if (!gameOver) {
+				playout.play(scratch, toMove);
+			}
+			int winner = winner(scratch);
+
+			synchronized (lock) {
+				for (int k = 0; k < length; k++) {
+					Node node = path[k];
+					if (winner == 0) {
+						node.wins += 0.5;
+					} else if (winner == node.mover) {
+						node.wins += 1;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * expand gives a node a child for every move the player to move could make
+	 * on the board: every legal point that isn't one of their own eyes, and
+	 * passing.
+	 */
+	private void expand(Node node, GoBoard board, int toMove) {
+		ArrayList<Node> children = new ArrayList<Node>();
+		for (int p = 0; p < board.getNumPoints(); p++) {
+			if (!board.isEye(p, toMove) && board.isLegal(p, toMove)) {
+				children.add(new Node(node, p, toMove));
+			}
+		}
+		children.add(new Node(node, PASS, toMove));
+		node.children = children.toArray(new Node[children.size()]);
+		numNodes += node.children.length;
+	}
+
+	/**
+	 * select returns the child with the highest upper confidence bound: its
+	 * win rate plus a bonus that is larger for children tried less often.
+	 * Children that have never been tried come first.
+	 */
+	private Node select(Node node) {
+		double logVisits = Math.log(Math.max(1, node.visits));
+		Node best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (Node child : node.children) {
+			double value;
+			if (child.visits == 0) {
+				value = Double.MAX_VALUE;
+			} else {
+				value = child.wins / child.visits + EXPLORATION
+						* Math.sqrt(logVisits / child.visits);
+			}
+			if (value > bestValue) {
+				best = child;
+				bestValue = value;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * winner returns the player who won a finished playout under area scoring
+	 * with white's bonus, or 0 for a tie.
+	 */
+	private int winner(GoBoard board) {
+		int score = board.areaScore() - whiteDisadvantageBonus;
+		return score > 0 ? GoBoard.BLACK : score < 0 ? GoBoard.WHITE : 0;
+	}
+
+	/** A Node is one move of the tree, with the results of the playouts that went through it */
+	private static class Node {
+
+		private Node parent;
+		private Node[] children;
+		private final int move;
+
+		/** the player who made the move */
+		private final int mover;
+
+		private int visits = 0;
+		private double wins = 0;
+
+		private Node(Node parent, int move, int mover) {
+			this.parent = parent;
+			this.move = move;
+			this.mover = mover;
+		}
+
+		/** isGameOver returns true if this move and the one before it were both passes */
+		private boolean isGameOver() {
+			return move == PASS && parent != null && parent.move == PASS;
+		}
+
+		private int countNodes() {
+			int count = 1;
+			if (children != null) {
+				for (Node child : children) {
+					count += child.countNodes();
+				}
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,512 @@
+package src;
+
+/**
+ * File: ReferenceRules.java
+ * -------------------------
+ * ReferenceRules plays by the rules exactly as the first version of the Go program did, method for
+ * method. It is one of the engines the DifferentialHarness can check against GoRules, which is
+ * what the Go program plays on now, so that any change to the rules of the Go program since the
+ * first version shows up as a game the two disagree on. Nothing here has been made faster on
+ * purpose: captures are found by the recursive markedForCapture and its marked flags, Ko and
+ * Superko compare whole arrays of allegiances against a list of every previous board, and the
+ * score is counted by the recursive determineTerritory. The only change is that the
+ * intersections are plain arrays of allegiances and marks, with no pieces to draw.
+ *
+ * That includes the odd parts. A move that leaves the chain of the piece just placed without
+ * liberties is not refused: enemy chains are captured first, and then the player's own chain is
+ * captured, as described in capturePieces and checkNeighbors. A move that breaks the Ko or
+ * Superko rule is made and then undone, which also sets the count of passes back to 0, just like
+ * a legal move would.
+ */
+
+import java.util.ArrayList;
+
+public class ReferenceRules implements RulesEngine {
+
+	/** makes ReferenceRules engines */
+	public static final RulesEngine.Factory FACTORY = new RulesEngine.Factory() {
+		public String getName() {
+			return "reference";
+		}
+
+		public RulesEngine create(int size, int rule, int counting) {
+			if (rule == SITUATIONAL_SUPERKO || counting != AREA) {
+				throw new IllegalArgumentException(
+						"The reference engine only has Ko and Superko, counted by area");
+			}
+			return new ReferenceRules(size, rule == SIMPLE_KO);
+		}
+	};
+
+	private final int numLines;
+
+	private int currentPlayer = 1;
+	private int opposingPlayer = 2;
+
+	/** the allegiance and marked flag of every intersection */
+	private final int[][] allegiances;
+	private final boolean[][] marked;
+
+	/** every previous board, the most recent first */
+	private final ArrayList<int[][]> allPreviousAllegiances = new ArrayList<int[][]>();
+
+	private int pass = 0;
+	private final boolean usingKo;
+
+	public ReferenceRules(int numLines, boolean usingKo) {
+		this.numLines = numLines;
+		this.usingKo = usingKo;
+		allegiances = new int[numLines][numLines];
+		marked = new boolean[numLines][numLines];
+		overwritePreviousAllegiances();
+	}
+
+	public int getSize() {
+		return numLines;
+	}
+
+	public int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	public int get(int x, int y) {
+		return allegiances[x][y];
+	}
+
+	/** getPasses returns how many passes there have been since the last move */
+	public int getPasses() {
+		return pass;
+	}
+
+	/**
+	 * play is playerMoved without the mouse: the piece is placed, pieces are
+	 * captured, the turn changes, the piece's own chain is checked for self
+	 * capture, and then the move is undone if it breaks the rule being used.
+	 */
+	public boolean play(int x, int y) {
+		if (allegiances[x][y] != 1 && allegiances[x][y] != 2) {
+
+			overwritePreviousAllegiances();
+
+			allegiances[x][y] = currentPlayer;
+
+			pass = 0;
+			capturePieces(x, y);
+			nextPlayer();
+			checkNeighbors(x, y);
+
+			return !koCheck();
+		}
+		return false;
+	}
+
+	/** pass is passTurn, which the Pass button only allows once a turn has been taken */
+	public boolean pass() {
+		if (allPreviousAllegiances.size() > 1) {
+			pass++;
+			overwritePreviousAllegiances();
+			nextPlayer();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * score is determineWinner, which turns every empty intersection into
+	 * territory, with the allegiances and players put back afterwards the way
+	 * endGame and undo would.
+	 */
+	public int[] score(int whiteDisadvantageBonus) {
+		int lastPlayer = currentPlayer;
+		int[][] board = copyAllegiances();
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				if (allegiances[i][j] == 0) {
+					setColorTerritory(i, j);
+				}
+
+			}
+		}
+
+		currentPlayer = 1;
+		int blackScore = tallyScore(whiteDisadvantageBonus);
+
+		currentPlayer = 2;
+		int whiteScore = tallyScore(whiteDisadvantageBonus);
+
+		for (int i = 0; i < numLines; i++) {
+			System.arraycopy(board[i], 0, allegiances[i], 0, numLines);
+		}
+		currentPlayer = lastPlayer;
+		opposingPlayer = currentPlayer + 1;
+		if (opposingPlayer == 3) {
+			opposingPlayer = 1;
+		}
+		return new int[] { blackScore, whiteScore };
+	}
+
+	private void nextPlayer() {
+
+		currentPlayer++;
+		if (currentPlayer > 2) {
+			currentPlayer = 1;
+		}
+
+		opposingPlayer++;
+		if (opposingPlayer > 2) {
+			opposingPlayer = 1;
+		}
+
+	}
+
+	/**
+	 * koCheck undoes the move that was just made if it breaks the Ko or
+	 * Superko rule.
+	 *
+	 * @return true if the move was undone
+	 */
+	private boolean koCheck() {
+		if (usingKo) {
+
+			if (breakingKo()) {
+				undo(1);
+				return true;
+			}
+
+		} else {
+			if (breakingSuperko()) {
+				undo(1);
+				return true;
+			}
+
+		}
+		return false;
+	}
+
+	/** undo reverts the given number of turns, as the Undo button and koCheck do */
+	public boolean undo(int numTurns) {
+		if (pass > 0) {
+			pass--;
+		}
+
+		if (allPreviousAllegiances.size() > 1) {
+
+			overwriteIntersections(numTurns - 1);
+
+			for (int i = 0; i < numTurns; i++) {
+				nextPlayer();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * overwriteIntersections replaces every allegiance with the board at
+	 * boardIndex of allPreviousAllegiances, and removes that board and every
+	 * board that came after it.
+	 */
+	private void overwriteIntersections(int boardIndex) {
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				allegiances[i][j] = allPreviousAllegiances.get(boardIndex)[i][j];
+
+			}
+		}
+
+		for (int i = 0; i <= boardIndex; i++) {
+			allPreviousAllegiances.remove(0);
+		}
+	}
+
+	/** overwritePreviousAllegiances stores the current board as the most recent previous board */
+	private void overwritePreviousAllegiances() {
+		allPreviousAllegiances.add(0, copyAllegiances());
+	}
+
+	private int[][] copyAllegiances() {
+
+		int[][] previousAllegiances = new int[numLines][numLines];
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				previousAllegiances[i][j] = allegiances[i][j];
+
+			}
+		}
+		return previousAllegiances;
+	}
+
+	/**
+	 * breakingKo returns true if the board is the same as the board before the
+	 * opponent's last turn.
+	 */
+	private boolean breakingKo() {
+
+		if (allPreviousAllegiances.size() < 2) {
+			return false;
+		}
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				if (allegiances[i][j] != allPreviousAllegiances.get(1)[i][j]) {
+					return false;
+				}
+
+			}
+		}
+		return true;
+	}
+
+	/** breakingSuperko returns true if the board is the same as any previous board */
+	private boolean breakingSuperko() {
+
+		if (allPreviousAllegiances.size() < 2) {
+			return false;
+		}
+
+		for (int i = 0; i < allPreviousAllegiances.size(); i++) {
+			boolean arraysSame = true;
+
+			for (int j = 0; j < numLines; j++) {
+				for (int k = 0; k < numLines; k++) {
+
+					if (allegiances[j][k] != allPreviousAllegiances.get(i)[j][k]) {
+						arraysSame = false;
+					}
+
+				}
+			}
+
+			if (arraysSame) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * capturePieces checks the four intersections next to the piece just
+	 * placed for opposing chains that should be captured. The player's own
+	 * chain is only checked afterwards, by the separate call of checkNeighbors
+	 * in play once the players have changed over.
+	 */
+	private void capturePieces(int x, int y) {
+
+		checkNeighbors(x, y - 1);
+		checkNeighbors(x + 1, y);
+		checkNeighbors(x - 1, y);
+		checkNeighbors(x, y + 1);
+
+	}
+
+	/**
+	 * checkNeighbors captures the chain of the opposing player at x, y if
+	 * markedForCapture marks every piece of it, and otherwise clears their
+	 * marks.
+	 */
+	private void checkNeighbors(int x, int y) {
+
+		if (y >= 0 && y < numLines && x >= 0 && x < numLines) {
+
+			if (allegiances[x][y] == opposingPlayer) {
+
+				ArrayList<Integer> chain = new ArrayList<Integer>();
+				markedForCapture(x, y, chain);
+
+				for (int i = 0; i < chain.size(); i++) {
+					if (!isMarked(chain.get(i))) {
+						for (int j = 0; j < chain.size(); j++) {
+							setMarked(chain.get(j), false);
+						}
+						break;
+					}
+				}
+
+				if (isMarked(chain.get(0))) {
+					for (int i = 0; i < chain.size(); i++) {
+						int point = chain.get(i);
+						allegiances[point / numLines][point % numLines] = 0;
+					}
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * markedForCapture is the recursive method that marks a piece if it has
+	 * no empty spaces next to it, adding every piece of the chain it reaches
+	 * to chain. It stops as soon as it finds an empty space.
+	 *
+	 * @return whether or not the previous piece should be marked
+	 */
+	private boolean markedForCapture(int x, int y, ArrayList<Integer> chain) {
+
+		if (x < 0 || y < 0 || y >= numLines || x >= numLines) {
+			return true;
+
+		} else if (allegiances[x][y] == currentPlayer) {
+			return true;
+
+		}
+		if (allegiances[x][y] == 0) {
+			return false;
+
+		}
+		if (chain.contains(x * numLines + y)) {
+			marked[x][y] = true;
+			return true;
+
+		}
+
+		chain.add(x * numLines + y);
+
+		if (markedForCapture(x, y - 1, chain)
+				&& markedForCapture(x - 1, y, chain)
+				&& markedForCapture(x + 1, y, chain)
+				&& markedForCapture(x, y + 1, chain)) {
+
+			marked[x][y] = true;
+			return true;
+
+		}
+
+		marked[x][y] = false;
+		return false;
+
+	}
+
+	/**
+	 * setColorTerritory changes the allegiance of the empty space at x, y and
+	 * every empty space touching it to 3 if they are black territory, 4 if
+	 * they are white territory, or 5 if they are neutral.
+	 */
+	private void setColorTerritory(int x, int y) {
+
+		ArrayList<Integer> chain = new ArrayList<Integer>();
+
+		currentPlayer = 1;
+		opposingPlayer = 2;
+		if (!checkCurrentPlayerTerritory(x, y, chain)) {
+
+			chain.clear();
+			currentPlayer = 2;
+			opposingPlayer = 1;
+			if (!checkCurrentPlayerTerritory(x, y, chain)) {
+				/*
+				 * if the intersections were touching both white and black (or
+				 * no color for some reason), the pieces are now guaranteed to
+				 * be neutral
+				 */
+				for (int i = 0; i < chain.size(); i++) {
+					int point = chain.get(i);
+					allegiances[point / numLines][point % numLines] = 5;
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * checkCurrentPlayerTerritory changes the spaces connected to x, y into
+	 * territory of the current player and returns true if determineTerritory
+	 * marks every one of them.
+	 */
+	private boolean checkCurrentPlayerTerritory(int x, int y, ArrayList<Integer> chain) {
+		determineTerritory(x, y, chain);
+
+		for (int i = 0; i < chain.size(); i++) {
+			if (!isMarked(chain.get(i))) {
+				for (int j = 0; j < chain.size(); j++) {
+					setMarked(chain.get(j), false);
+				}
+				break;
+			}
+		}
+
+		if (isMarked(chain.get(0))) {
+			for (int i = 0; i < chain.size(); i++) {
+				int point = chain.get(i);
+				allegiances[point / numLines][point % numLines] = currentPlayer + 2;
+				setMarked(point, false);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * determineTerritory is markedForCapture for empty spaces, marking every
+	 * space surrounded by previously checked spaces, walls or pieces of the
+	 * current player.
+	 */
+	private boolean determineTerritory(int x, int y, ArrayList<Integer> chain) {
+
+		if (x < 0 || y < 0 || y >= numLines || x >= numLines) {
+			return true;
+		} else if (allegiances[x][y] == currentPlayer) {
+			return true;
+		}
+		if (allegiances[x][y] == opposingPlayer) {
+			return false;
+		}
+		if (chain.contains(x * numLines + y)) {
+			marked[x][y] = true;
+			return true;
+		}
+		chain.add(x * numLines + y);
+		if (determineTerritory(x, y - 1, chain)
+				&& determineTerritory(x - 1, y, chain)
+				&& determineTerritory(x + 1, y, chain)
+				&& determineTerritory(x, y + 1, chain)) {
+			marked[x][y] = true;
+			return true;
+		}
+		marked[x][y] = false;
+		return false;
+
+	}
+
+	/**
+	 * tallyScore counts every piece and territory of the current player, plus
+	 * the bonus if the current player is white.
+	 */
+	private int tallyScore(int whiteDisadvantageBonus) {
+
+		int totalCurrentPlayerScore = 0;
+		if (currentPlayer == 2) {
+			totalCurrentPlayerScore = whiteDisadvantageBonus;
+		}
+
+		for (int i = 0; i < numLines; i++) {
+			for (int j = 0; j < numLines; j++) {
+
+				if (allegiances[i][j] == currentPlayer
+						|| allegiances[i][j] == currentPlayer + 2) {
+
+					totalCurrentPlayerScore++;
+				}
+
+			}
+		}
+
+		return totalCurrentPlayerScore;
+	}
+
+	private boolean isMarked(int point) {
+		return marked[point / numLines][point % numLines];
+	}
+
+	private void setMarked(int point, boolean b) {
+		marked[point / numLines][point % numLines] = b;
+	}
+}
@@ -0,0 +1,289 @@
+package src;
+
+/**
+ * File: ReplayController.java
+ * ---------------------------
+ * A ReplayController is a window that replays a game at any speed, from one move a second to
+ * thousands, and lets the players drag a slider to any turn of it.
+ *
+ * Replaying a game through the Go program would place every piece and remove every capture on
+ * the board one at a time, repainting after each of them. Instead, the whole game is played on a
+ * VariationTree before the window opens, which keeps the PersistentBoard of every turn, so any
+ * turn can be shown straight away without replaying the turns before it. While the replay runs,
+ * a Swing Timer fires once per frame of the screen, works out how many turns the chosen speed has
+ * moved on since the last frame, and only shows the board of the turn it has reached. However
+ * fast the replay, the board is drawn at most once a frame, and the turns in between are never
+ * drawn at all.
+ *
+ * The Replay button of the Go program replays the current line of play, and a game log can be
+ * replayed on its own with:
+ *
+ *     java src.ReplayController [game log] [--speed turns per second]
+ */
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+public class ReplayController extends JFrame implements ActionListener, ChangeListener {
+
+	private static final int WINDOW_WIDTH = 700;
+	private static final int WINDOW_HEIGHT = 750;
+	private static final int EXTRA_HEIGHT = 50;
+
+	/** how often the board is redrawn while the replay runs, about 60 times a second */
+	private static final int FRAME_MILLIS = 16;
+
+	/**
+	 * The speed slider goes from 1 to MAX_SPEED turns per second, spaced so
+	 * that each SPEED_STEPS_PER_TENFOLD steps of the slider are ten times as
+	 * fast.
+	 */
+	private static final int MAX_SPEED = 10000;
+	private static final int SPEED_STEPS_PER_TENFOLD = 100;
+	public static final double DEFAULT_SPEED = 4;
+
+	private static final String DEFAULT_GAME_LOG_FILE = "go_game.log";
+
+	/** the node of every turn of the game, starting with the board before the first turn */
+	private final ArrayList<VariationTree.Node> turns;
+
+	private final BoardRenderer renderer;
+	private final JSlider turnSlider;
+	private final JSlider speedSlider;
+	private final JLabel speedLabel;
+	private final JButton playButton;
+	private final Timer timer;
+
+	/** turns per second */
+	private double speed = DEFAULT_SPEED;
+
+	/**
+	 * position is the turn the replay has reached, with a fraction of a turn
+	 * kept between frames so that slow speeds still move on steadily. The turn
+	 * shown is its whole part.
+	 */
+	private double position = 0;
+	private int shownTurn = -1;
+	private long lastFrameTime;
+
+	/** set while the turn slider is moved by the replay rather than by a player */
+	private boolean movingTurnSlider = false;
+
+	/** framesDrawn and turnsSkipped count how much drawing the coalescing saved */
+	private long framesDrawn = 0;
+	private long turnsSkipped = 0;
+
+	/**
+	 * Makes a replay of the given line of play, where each node is one turn
+	 * after the one before it, starting with the board before the first turn
+	 * to be shown.
+	 */
+	public ReplayController(ArrayList<VariationTree.Node> turns) {
+		super("Replay");
+		if (turns.isEmpty()) {
+			throw new IllegalArgumentException("A replay needs at least one board");
+		}
+		this.turns = turns;
+		int numLines = turns.get(0).getBoard().getSize();
+
+		renderer = new BoardRenderer(numLines, EXTRA_HEIGHT, WINDOW_WIDTH, WINDOW_HEIGHT);
+		renderer.setPreferredSize(renderer.getSize());
+
+		turnSlider = new JSlider(0, turns.size() - 1, 0);
+		turnSlider.addChangeListener(this);
+		speedSlider = new JSlider(0, speedToSteps(MAX_SPEED), speedToSteps(speed));
+		speedSlider.addChangeListener(this);
+		speedLabel = new JLabel();
+		playButton = new JButton("Play");
+		playButton.addActionListener(this);
+
+		JPanel controls = new JPanel();
+		controls.add(playButton);
+		controls.add(new JLabel("Speed:"));
+		controls.add(speedSlider);
+		controls.add(speedLabel);
+
+		JPanel panel = new JPanel(new BorderLayout());
+		panel.add(controls, BorderLayout.NORTH);
+		panel.add(renderer, BorderLayout.CENTER);
+		panel.add(turnSlider, BorderLayout.SOUTH);
+		setContentPane(panel);
+		setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		pack();
+
+		timer = new Timer(FRAME_MILLIS, this);
+		timer.setCoalesce(true);
+
+		// the window is only disposed of when it is closed, so the timer has to be stopped too
+		addWindowListener(new WindowAdapter() {
+			public void windowClosed(WindowEvent e) {
+				timer.stop();
+			}
+		});
+		showSpeed();
+		showTurn(0);
+	}
+
+	/** getNumTurns returns how many turns the replay has, not counting the board it starts from */
+	public int getNumTurns() {
+		return turns.size() - 1;
+	}
+
+	/** setSpeed changes how many turns a second the replay moves on by */
+	public void setSpeed(double turnsPerSecond) {
+		double newSpeed = Math.max(1, Math.min(MAX_SPEED, turnsPerSecond));
+		speedSlider.setValue(speedToSteps(newSpeed));
+		speed = newSpeed;
+		showSpeed();
+	}
+
+	/** play starts the replay from the turn shown, or from the start if it had reached the end */
+	public void play() {
+		if (shownTurn == getNumTurns()) {
+			position = 0;
+			showTurn(0);
+		}
+		lastFrameTime = System.nanoTime();
+		timer.start();
+		playButton.setText("Pause");
+	}
+
+	public void pause() {
+		timer.stop();
+		playButton.setText("Play");
+	}
+
+	/** getFramesDrawn returns how many times the replay has changed the board shown */
+	public long getFramesDrawn() {
+		return framesDrawn;
+	}
+
+	/** getTurnsSkipped returns how many turns were passed over without being drawn */
+	public long getTurnsSkipped() {
+		return turnsSkipped;
+	}
+
+	/**
+	 * actionPerformed responds to the Play button and to every frame of the
+	 * timer. A frame moves the replay on by as many turns as the speed allows
+	 * in the time since the last frame, however long that really was, so a
+	 * frame that arrives late catches up instead of slowing the replay down.
+	 */
+	public void actionPerformed(ActionEvent e) {
+		if (e.getSource() == playButton) {
+			if (timer.isRunning()) {
+				pause();
+			} else {
+				play();
+			}
+			return;
+		}
+
+		long now = System.nanoTime();
+		position += speed * (now - lastFrameTime) / 1e9;
+		lastFrameTime = now;
+		if (position >= getNumTurns()) {
+			position = getNumTurns();
+			pause();
+		}
+		int turn = (int) position;
+		if (turn != shownTurn) {
+			turnsSkipped += Math.max(0, Math.abs(turn - shownTurn) - 1);
+			showTurn(turn);
+		}
+	}
+
+	/**
+	 * stateChanged responds to the sliders. Dragging the turn slider jumps
+	 * straight to that turn, and the replay carries on from there if it was
+	 * running.
+	 */
+	public void stateChanged(ChangeEvent e) {
+		if (e.getSource() == speedSlider) {
+			speed = stepsToSpeed(speedSlider.getValue());
+			showSpeed();
+		} else if (e.getSource() == turnSlider && !movingTurnSlider) {
+			position = turnSlider.getValue();
+			showTurn(turnSlider.getValue());
+		}
+	}
+
+	/**
+	 * showTurn is a void method that shows the board of the given turn. The
+	 * board is swapped in all at once, so it costs one repaint whether it is
+	 * one turn or a thousand away from the board shown before.
+	 */
+	private void showTurn(int turn) {
+		VariationTree.Node node = turns.get(turn);
+		renderer.setStones(node.getBoard().toPackedPosition());
+		renderer.setTurnInformation(node.getDepth() + 1, node.getToMove());
+		shownTurn = turn;
+		framesDrawn++;
+
+		movingTurnSlider = true;
+		turnSlider.setValue(turn);
+		movingTurnSlider = false;
+	}
+
+	private void showSpeed() {
+		speedLabel.setText(Math.round(speed) + " turns/s");
+	}
+
+	private static int speedToSteps(double speed) {
+		return (int) Math.round(Math.log10(speed) * SPEED_STEPS_PER_TENFOLD);
+	}
+
+	private static double stepsToSpeed(int steps) {
+		return Math.pow(10, steps / (double) SPEED_STEPS_PER_TENFOLD);
+	}
+
+	/**
+	 * main replays a game log, go_game.log unless another file is given,
+	 * starting straight away at the given speed.
+	 */
+	public static void main(String[] args) throws IOException {
+		File logFile = new File(DEFAULT_GAME_LOG_FILE);
+		double startSpeed = DEFAULT_SPEED;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--speed") && i + 1 < args.length) {
+				startSpeed = Double.parseDouble(args[++i]);
+			} else {
+				logFile = new File(args[i]);
+			}
+		}
+
+		// the game doesn't have to have been ended to be replayed
+		VariationTree.Node end = VariationTree.replay(GameLog.read(logFile), false);
+		if (end == null) {
+			System.out.println(logFile + " has no game that can be replayed");
+			return;
+		}
+		final ArrayList<VariationTree.Node> turns = end.getLine();
+		final double speed = startSpeed;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				ReplayController replay = new ReplayController(turns);
+				replay.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+				replay.setSpeed(speed);
+				replay.setVisible(true);
+				replay.play();
+			}
+		});
+	}
+}
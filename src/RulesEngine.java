@@ -0,0 +1,108 @@
+package src;
+
+/**
+ * File: RulesEngine.java
+ * ----------------------
+ * A RulesEngine is everything the Go program needs from the rules of the game, without any of the
+ * graphics: placing pieces and capturing, the rule against repeating boards, passing, undoing and
+ * counting the score at the end. GoRules is the engine the Go program itself plays on, and the
+ * DifferentialHarness plays random games on it and on any other engine at once to check that the
+ * other engine agrees with it on every turn.
+ *
+ * Points are given by their x and y indices, the same as the intersections array, and hold the
+ * same allegiances: 0 for empty, 1 for black and 2 for white. An engine is only ever used by one
+ * thread.
+ */
+
+public interface RulesEngine {
+
+	/**
+	 * the rules against repeating boards. Under simple ko a move may not bring
+	 * back the board from before the opponent's last turn, under positional
+	 * superko it may not bring back any earlier board, and under situational
+	 * superko it may not bring back any earlier board that had the same player
+	 * to move. Simple ko and positional superko are the Ko and Superko of the
+	 * Go program.
+	 */
+	int SIMPLE_KO = 0;
+	int POSITIONAL_SUPERKO = 1;
+	int SITUATIONAL_SUPERKO = 2;
+
+	/**
+	 * the ways of counting the score. Area counts every piece and every point
+	 * of territory, and territory counts every point of territory and every
+	 * piece captured.
+	 */
+	int AREA = 0;
+	int TERRITORY = 1;
+
+	int getSize();
+
+	/** getCurrentPlayer returns the player whose turn it is, 1 for black or 2 for white */
+	int getCurrentPlayer();
+
+	/** get returns the allegiance of the point at x, y */
+	int get(int x, int y);
+
+	/**
+	 * getPasses returns the count of passes in a row that ends the game at 2,
+	 * kept the way the Go program keeps it: a pass adds one, trying a move on
+	 * an empty point sets it to 0 even if the move is refused, and undoing
+	 * takes one off, however many turns are undone and whatever they were.
+	 */
+	int getPasses();
+
+	/**
+	 * play places a piece of the current player at x, y, captures whatever it
+	 * should, and makes it the other player's turn.
+	 *
+	 * @return false, leaving the board and turn as they were, if the point is
+	 *         taken or the move breaks the rule against repeating boards
+	 */
+	boolean play(int x, int y);
+
+	/**
+	 * pass passes the current player's turn.
+	 *
+	 * @return false, changing nothing, if the pass isn't allowed, which is only
+	 *         the case on the very first turn of the game
+	 */
+	boolean pass();
+
+	/**
+	 * undo takes back the last numTurns turns, moves and passes alike, along
+	 * with any pieces they captured. The Go program only asks for as many
+	 * turns as have been taken, or for one turn when none have, so nothing
+	 * else has to be handled. Either way the count of passes goes down by one
+	 * if it isn't 0.
+	 *
+	 * @return false, changing nothing but the count of passes, if there is no
+	 *         turn to undo
+	 */
+	boolean undo(int numTurns);
+
+	/**
+	 * score counts both players' scores the way the end of the game does, and
+	 * leaves the board as it was.
+	 *
+	 * @return black's score followed by white's score, which includes the bonus
+	 */
+	int[] score(int whiteDisadvantageBonus);
+
+	/** A Factory makes engines of one kind, one for every game */
+	interface Factory {
+
+		/** getName returns the name the engine goes by */
+		String getName();
+
+		/**
+		 * create makes an engine for an empty board with one of the rules
+		 * against repeating boards and one of the ways of counting.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if this kind of engine doesn't have that rule or way of
+		 *             counting
+		 */
+		RulesEngine create(int size, int rule, int counting);
+	}
+}
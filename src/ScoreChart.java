@@ -0,0 +1,141 @@
+package src;
+
+/**
+ * File: ScoreChart.java
+ * ---------------------
+ * A ScoreChart is a window that draws how far ahead black was after every turn of a game, as a
+ * ScoreEvolution scores the turns. It is a ScoreEvolution.Listener, and the chart fills in while
+ * the scores arrive, so a long game shows the turns already scored instead of an empty window.
+ *
+ * The line is black's score minus white's score, bonus included, so it is above the middle line
+ * while black is ahead and below it while white is ahead.
+ */
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+public class ScoreChart extends JFrame implements ScoreEvolution.Listener {
+
+	private static final int MARGIN = 40;
+
+	private final Plot plot;
+
+	/** the score of every turn, guarded by this chart, with scored[turn] false until it arrives */
+	private final int[] blackScores;
+	private final int[] whiteScores;
+	private final boolean[] scored;
+	private int numScored = 0;
+
+	public ScoreChart(int numTurns) {
+		super("Score by turn");
+		blackScores = new int[numTurns];
+		whiteScores = new int[numTurns];
+		scored = new boolean[numTurns];
+		plot = new Plot();
+		plot.setPreferredSize(new Dimension(700, 400));
+		setContentPane(plot);
+		setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		pack();
+	}
+
+	/**
+	 * show scores every turn of a game in the background and opens a chart
+	 * that fills in as the scores arrive.
+	 */
+	public static ScoreChart show(ScoreEvolution evolution) {
+		ScoreChart chart = new ScoreChart(evolution.getNumTurns());
+		chart.setVisible(true);
+		evolution.start(chart);
+		return chart;
+	}
+
+	/** scored records the score of a turn; repaint can be called from any thread */
+	public void scored(int turn, int blackScore, int whiteScore) {
+		synchronized (this) {
+			blackScores[turn] = blackScore;
+			whiteScores[turn] = whiteScore;
+			scored[turn] = true;
+			numScored++;
+		}
+		plot.repaint();
+	}
+
+	public void finished() {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				setTitle("Score by turn (" + scored.length + " turns)");
+			}
+		});
+	}
+
+	/** A Plot draws the chart from whatever scores have arrived so far */
+	private class Plot extends JComponent {
+
+		protected void paintComponent(Graphics graphics) {
+			Graphics2D g = (Graphics2D) graphics;
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, getWidth(), getHeight());
+
+			int numTurns = scored.length;
+			int[] margins = new int[numTurns];
+			boolean[] known = new boolean[numTurns];
+			int done;
+			int largest = 1;
+			synchronized (ScoreChart.this) {
+				for (int turn = 0; turn < numTurns; turn++) {
+					known[turn] = scored[turn];
+					margins[turn] = blackScores[turn] - whiteScores[turn];
+					if (known[turn]) {
+						largest = Math.max(largest, Math.abs(margins[turn]));
+					}
+				}
+				done = numScored;
+			}
+
+			int width = getWidth() - 2 * MARGIN;
+			int height = getHeight() - 2 * MARGIN;
+			int middle = MARGIN + height / 2;
+
+			g.setColor(Color.LIGHT_GRAY);
+			g.drawLine(MARGIN, middle, MARGIN + width, middle);
+			g.setColor(Color.DARK_GRAY);
+			g.drawString("black +" + largest, 5, MARGIN - 8);
+			g.drawString("white +" + largest, 5, MARGIN + height + 18);
+			g.drawString("turn " + (numTurns - 1), MARGIN + width - 50, middle - 6);
+			if (done < numTurns) {
+				g.drawString("Scored " + done + " of " + numTurns + " turns...", MARGIN + 60,
+						MARGIN - 8);
+			}
+
+			g.setColor(Color.BLACK);
+			g.setStroke(new BasicStroke(2));
+			int lastX = -1;
+			int lastY = -1;
+			for (int turn = 0; turn < numTurns; turn++) {
+				if (!known[turn]) {
+					lastX = -1; // leave a gap until the turns between have arrived
+					continue;
+				}
+				int x = MARGIN + (numTurns == 1 ? 0 : turn * width / (numTurns - 1));
+				int y = middle - margins[turn] * (height / 2) / largest;
+				if (lastX >= 0) {
+					g.drawLine(lastX, lastY, x, y);
+				} else {
+					g.fillOval(x - 2, y - 2, 4, 4);
+				}
+				lastX = x;
+				lastY = y;
+			}
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package src;
+
+/**
+ * File: ScoreEvolution.java
+ * -------------------------
+ * A ScoreEvolution works out the score after every turn of a game, counted the way GoRules counts
+ * it at the end of that game: every empty region that touches only one colour (or none, which
+ * counts for black), plus white's bonus, plus either every piece, counting by area, or the
+ * prisoners taken so far, counting by territory. No pieces are taken off as dead, so the scores
+ * during the game are only as good as that count allows.
+ *
+ * The boards are copied out of the GameHistory first, as PackedPositions, so the history can go
+ * on being used by the game while the scores are worked out. Every board is scored on its own,
+ * so the turns are split between the threads of a ForkJoinPool, and each score is handed to a
+ * Listener as soon as it is ready, in whatever order they finish.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ScoreEvolution {
+
+	/** a task scores at most this many turns itself, and splits anything bigger in half */
+	private static final int TURNS_PER_TASK = 4;
+
+	/** A Listener is told the score of each turn as it is worked out */
+	public interface Listener {
+
+		/**
+		 * scored is called once for every turn, from one of the threads of the
+		 * pool, with both scores including white's bonus.
+		 */
+		void scored(int turn, int blackScore, int whiteScore);
+
+		/** finished is called once every turn has been scored */
+		void finished();
+	}
+
+	private final PackedPosition[] positions;
+	private final int[] prisoners;
+	private final int counting;
+	private final int whiteDisadvantageBonus;
+
+	/**
+	 * @param positions
+	 *            the board after every turn, the board at index 0 being the
+	 *            one before the first move
+	 * @param prisoners
+	 *            black's and white's prisoners after every turn, two ints a
+	 *            turn, which are only used counting by territory
+	 * @param counting
+	 *            AREA or TERRITORY of RulesEngine
+	 */
+	public ScoreEvolution(PackedPosition[] positions, int[] prisoners, int counting,
+			int whiteDisadvantageBonus) {
+		this.positions = positions;
+		this.prisoners = prisoners;
+		this.counting = counting;
+		this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+	}
+
+	/**
+	 * fromHistory copies the board after every turn out of the history of the
+	 * Go program, which stores the empty board once more than it has turns,
+	 * followed by the current board, which the history doesn't hold yet. The
+	 * prisoners are the ones GoRules.getPrisonersByTurn gives.
+	 */
+	public static ScoreEvolution fromHistory(GameHistory history, PackedPosition current,
+			int[] prisoners, int counting, int whiteDisadvantageBonus) {
+		int numTurns = Math.max(0, history.size() - 1);
+		PackedPosition[] positions = new PackedPosition[numTurns + 1];
+		for (int turn = 0; turn < numTurns; turn++) {
+			positions[turn] = history.get(numTurns - 1 - turn);
+		}
+		positions[numTurns] = current;
+		return new ScoreEvolution(positions, prisoners, counting, whiteDisadvantageBonus);
+	}
+
+	/** getNumTurns returns how many scores there are, the first being for the empty board */
+	public int getNumTurns() {
+		return positions.length;
+	}
+
+	/**
+	 * start begins scoring every turn in the common ForkJoinPool and returns
+	 * straight away. The listener hears about each turn as it is scored.
+	 */
+	public void start(Listener listener) {
+		start(ForkJoinPool.commonPool(), listener);
+	}
+
+	public void start(final ForkJoinPool pool, final Listener listener) {
+		final ScoreTask all = new ScoreTask(pool, listener, 0, positions.length);
+		Thread waiter = new Thread(new Runnable() {
+			public void run() {
+				pool.invoke(all);
+				listener.finished();
+			}
+		}, "Score evolution");
+		waiter.setDaemon(true);
+		waiter.start();
+	}
+
+	/**
+	 * scoreAll scores every turn in the given pool and returns the scores,
+	 * black's then white's for each turn, once they are all done.
+	 */
+	public int[][] scoreAll(ForkJoinPool pool) {
+		final int[][] scores = new int[positions.length][];
+		pool.invoke(new ScoreTask(pool, new Listener() {
+			public void scored(int turn, int blackScore, int whiteScore) {
+				scores[turn] = new int[] { blackScore, whiteScore };
+			}
+
+			public void finished() {
+			}
+		}, 0, positions.length));
+		return scores;
+	}
+
+	/** A ScoreTask scores the turns from start up to end */
+	private class ScoreTask extends RecursiveAction {
+
+		private final ForkJoinPool pool;
+		private final Listener listener;
+		private final int start;
+		private final int end;
+
+		private ScoreTask(ForkJoinPool pool, Listener listener, int start, int end) {
+			this.pool = pool;
+			this.listener = listener;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute() {
+			if (end - start > TURNS_PER_TASK) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new ScoreTask(pool, listener, start, middle), new ScoreTask(pool,
+						listener, middle, end));
+				return;
+			}
+
+			TerritoryScorer scorer = new TerritoryScorer(pool);
+			for (int turn = start; turn < end; turn++) {
+				PackedPosition position = positions[turn];
+				int size = position.getSize();
+				int[] points = new int[size * size];
+				for (int p = 0; p < points.length; p++) {
+					points[p] = position.get(p);
+				}
+				int[] score = scorer.score(points, size, counting, prisoners[2 * turn],
+						prisoners[2 * turn + 1]);
+				listener.scored(turn, score[0], score[1] + whiteDisadvantageBonus);
+			}
+		}
+	}
+}
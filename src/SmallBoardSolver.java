@@ -0,0 +1,678 @@
+package src;
+
+/**
+ * File: SmallBoardSolver.java
+ * ---------------------------
+ * The SmallBoardSolver searches every line of play from a position on a small board to find the
+ * best move and the score it leads to with perfect play by both sides. It can be run on its own
+ * to solve an empty board:
+ *
+ *     java src.SmallBoardSolver size [bonus] [ko|superko] [seconds] [threads]
+ *
+ * The game is scored the same way as the Go program scores it at the end (pieces plus the empty
+ * spaces they surround, with white's bonus added), and ends after two passes in a row. Moves
+ * that repeat a board state are forbidden according to the Ko or Superko rule. Suicide is
+ * never tried, since it is never better than passing under this scoring.
+ *
+ * The search is alpha-beta, deepened one turn at a time until the time runs out or the result
+ * is proven. A result is proven once a search finishes without ever stopping at its depth limit,
+ * which means every line was played out until both players passed. Every thread searches from
+ * the same position with the moves in a different order, and they share what they learn through
+ * one transposition table, so they help each other without having to split the work up.
+ *
+ * Under Ko, two or more kos can make the game go round in a loop forever, so a position with such
+ * a loop is never proven and the best search that finished is returned instead.
+ *
+ * Under Superko, whether a move is allowed depends on the whole line that led to a position, but
+ * the transposition table only knows the position itself, so in rare cases a proven result can
+ * still depend on the order in which lines happened to be searched.
+ *
+ * Under Ko, the table is keyed by the canonical board from SymmetryHash, so that the eight
+ * rotations and reflections of a position are searched once between them; the ko point and the
+ * move kept in the table are turned to match. Under Superko it is keyed by the board as it is,
+ * since a rotated copy of an earlier board isn't a repeat, so two positions the table took to be
+ * the same could allow different moves. Keyed by the canonical board, even the empty 2x2 board
+ * came out wrong.
+ *
+ * PassAlive finds the chains that can never be captured and the empty regions they settle, and
+ * neither player is ever given a move inside those regions. Once every empty point is settled
+ * the game is scored as if both players had passed. This assumes that playing in a settled
+ * region never changes the result, which holds under area counting: filling in your own region
+ * gains nothing, and the opponent's pieces there can always be captured again. It ignores that
+ * such a move could still be used as a threat in a ko fight somewhere else.
+ *
+ * Even so, only the smallest empty boards can really be solved, and the empty 5x5 to 7x7 boards
+ * are out of reach. On one thread, the empty 2x2 board under Superko is proven straight away and
+ * the empty 3x3 board in about 3 seconds (black wins by 9 by playing in the middle). Under Ko the
+ * empty 3x3 board is searched to the deepest depth in about 5 seconds, where without the
+ * symmetries it only got to about 54 turns in a minute. The empty 4x4 board only gets to a depth
+ * of about 14 turns in a minute. What can be solved on the larger boards are positions where both
+ * players have groups that can't be captured and only the points between them are left: 5x5 and
+ * 6x6 positions like that with 10 to 12 empty points are proven in a few seconds, where without
+ * PassAlive none of them was proven in a minute. Looking for settled points costs about half the
+ * nodes searched per second, so positions with nothing settled are searched a little slower.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SmallBoardSolver {
+
+	/** the move of a pass */
+	public static final int PASS = -1;
+
+	/** how many bits of the hash pick a slot of the transposition table by default */
+	public static final int DEFAULT_TABLE_BITS = 22;
+
+	/** the deepest the search can go, in turns from the position being solved */
+	private static final int MAX_PLY = 250;
+
+	private static final int NO_MOVE = -2;
+	private static final int INFINITY = 30000;
+
+	/** mixed into the key of a position when it is white's turn */
+	private static final long WHITE_TO_MOVE = 0x6A09E667F3BCC909L;
+	/** mixed into the key of a position right after a pass */
+	private static final long AFTER_PASS = 0xBB67AE8584CAA73BL;
+	/** multiplied by the ko point and mixed into the key, since it changes which moves are legal */
+	private static final long KO_POINT = 0x3C6EF372FE94F82BL;
+
+	private final int size;
+	private final int numPoints;
+	private final boolean usingKo;
+	private final int whiteDisadvantageBonus;
+	private final int numThreads;
+	private final TranspositionTable table;
+
+	/** set once the time is up or the result is proven, to stop every thread */
+	private volatile boolean stopped;
+	private long deadline;
+	private Result best;
+
+	public SmallBoardSolver(int size, boolean usingKo, int whiteDisadvantageBonus) {
+		this(size, usingKo, whiteDisadvantageBonus, Runtime.getRuntime()
+				.availableProcessors(), DEFAULT_TABLE_BITS);
+	}
+
+	public SmallBoardSolver(int size, boolean usingKo, int whiteDisadvantageBonus,
+			int numThreads, int tableBits) {
+		this.size = size;
+		numPoints = size * size;
+		this.usingKo = usingKo;
+		this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+		this.numThreads = Math.max(1, numThreads);
+		table = new TranspositionTable(tableBits);
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: java src.SmallBoardSolver size [bonus] [ko|superko] [seconds] [threads]");
+			return;
+		}
+		int size = Integer.parseInt(args[0]);
+		int bonus = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		boolean usingKo = args.length > 2 && args[2].equalsIgnoreCase("ko");
+		long seconds = args.length > 3 ? Long.parseLong(args[3]) : 60;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime
+				.getRuntime().availableProcessors();
+
+		SmallBoardSolver solver = new SmallBoardSolver(size, usingKo, bonus, threads,
+				DEFAULT_TABLE_BITS);
+		Result result = solver.solve(new GoBoard(size), GoBoard.BLACK, 0, new long[0],
+				seconds * 1000);
+		System.out.println(result);
+	}
+
+	/**
+	 * solve searches the given position until it is solved or timeBudget
+	 * milliseconds have passed, and returns the result of the deepest search
+	 * that finished. If the search is interrupted before any search finished,
+	 * the result has a depth of 0 and its score and move mean nothing. The
+	 * board itself is not changed.
+	 *
+	 * @param toMove
+	 *            the player whose turn it is
+	 * @param passes
+	 *            how many passes in a row led to this position, 0 or 1
+	 * @param earlierHashes
+	 *            the hashes (from GoBoard.getHash) of the board states before
+	 *            this one in the game, oldest first, for the Ko and Superko
+	 *            rules
+	 */
+	public Result solve(final GoBoard board, final int toMove, final int passes,
+			final long[] earlierHashes, long timeBudget) {
+		long start = System.nanoTime();
+		deadline = start + timeBudget * 1000000L;
+		stopped = false;
+		best = null;
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Searcher> searchers = new ArrayList<Searcher>();
+		ArrayList<Future<Void>> running = new ArrayList<Future<Void>>();
+		for (int t = 0; t < numThreads; t++) {
+			Searcher searcher = new Searcher(t, board, toMove, passes, earlierHashes);
+			searchers.add(searcher);
+			running.add(pool.submit(searcher));
+		}
+
+		try {
+			for (Future<Void> searcher : running) {
+				searcher.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			stopped = true;
+			pool.shutdownNow();
+		}
+
+		long nodes = 0;
+		for (Searcher searcher : searchers) {
+			nodes += searcher.nodes;
+		}
+		Result result = best != null ? best : new Result(0, 0, PASS, false);
+		result.nodes = nodes;
+		result.elapsed = (System.nanoTime() - start) / 1000000L;
+		return result;
+	}
+
+	/**
+	 * publish records the result of a finished search if it is deeper than
+	 * any before it, and stops every thread once a result is proven. A proven
+	 * result is never replaced, not even by a deeper search from a thread that
+	 * finished just after it.
+	 */
+	private synchronized void publish(int depth, int value, int move, boolean proven, int toMove) {
+		if (best != null && best.proven) {
+			return;
+		}
+		if (best == null || depth > best.depth || proven) {
+			int score = toMove == GoBoard.BLACK ? value : -value;
+			best = new Result(depth, score, move, proven);
+		}
+		if (proven) {
+			stopped = true;
+		}
+	}
+
+	/**
+	 * A Result is the outcome of a search: the best move found, and the score
+	 * it leads to as black's score minus white's (with the bonus), so that a
+	 * positive score is a win for black.
+	 */
+	public static class Result {
+
+		private final int depth;
+		private final int score;
+		private final int move;
+		private final boolean proven;
+		private long nodes;
+		private long elapsed;
+
+		private Result(int depth, int score, int move, boolean proven) {
+			this.depth = depth;
+			this.score = score;
+			this.move = move;
+			this.proven = proven;
+		}
+
+		/**
+		 * getDepth returns how many turns ahead the search that found this
+		 * result looked, or 0 if no search finished
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		public int getScore() {
+			return score;
+		}
+
+		/** getMove returns the best move, numbered x * size + y, or PASS */
+		public int getMove() {
+			return move;
+		}
+
+		/**
+		 * isProven returns true if the score is the result of perfect play,
+		 * rather than the best guess from a search that stopped at its depth
+		 * limit.
+		 */
+		public boolean isProven() {
+			return proven;
+		}
+
+		public long getNodes() {
+			return nodes;
+		}
+
+		public long getNodesPerSecond() {
+			return nodes * 1000 / Math.max(1, elapsed);
+		}
+
+		public String toString() {
+			if (depth == 0) {
+				return "No search finished, " + nodes + " nodes in " + elapsed + " ms";
+			}
+			return (proven ? "Proven" : "Depth " + depth) + ": score " + score
+					+ ", best move " + (move == PASS ? "pass" : String.valueOf(move)) + ", "
+					+ nodes + " nodes in " + elapsed + " ms (" + getNodesPerSecond()
+					+ " nodes/sec)";
+		}
+	}
+
+	/** SearchAborted unwinds a search once the time is up */
+	private static class SearchAborted extends RuntimeException {
+		private SearchAborted() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final SearchAborted ABORTED = new SearchAborted();
+
+	/**
+	 * A Searcher is one thread of the search. It keeps a board for every ply
+	 * so that taking a move back is only going back to the board before it.
+	 */
+	private class Searcher implements Callable<Void> {
+
+		private final int id;
+		private final int rootToMove;
+		private final int rootPasses;
+		private final GoBoard[] boards = new GoBoard[MAX_PLY + 1];
+		private final int[][] moveLists = new int[MAX_PLY + 1][];
+
+		/** the hash of every board state of the game, then of every ply of the current line */
+		private final long[] path;
+		private final int base;
+
+		private final FloodFillWorkspace workspace = new FloodFillWorkspace(size);
+		private final boolean[] regionDone = new boolean[numPoints];
+		private final PassAlive passAlive = new PassAlive(size);
+		private final boolean[][] settledLists = new boolean[MAX_PLY + 1][numPoints];
+		private long nodes = 0;
+		private int completedDepth = 0;
+
+		/** true if the current subtree stopped somewhere at the depth limit */
+		private boolean horizon;
+		private int rootBestMove = PASS;
+
+		/**
+		 * the depth of the search from the root in progress. An entry of the
+		 * table that isn't proven is only trusted by searches of the same depth,
+		 * since a deeper search might find that its subtree can be played out
+		 * to the end after all.
+		 */
+		private int rootDepth;
+
+		private Searcher(int id, GoBoard board, int toMove, int passes, long[] earlierHashes) {
+			this.id = id;
+			rootToMove = toMove;
+			rootPasses = passes;
+			for (int ply = 0; ply <= MAX_PLY; ply++) {
+				boards[ply] = board.copy();
+				if (usingKo) {
+					boards[ply].trackSymmetries();
+				}
+				moveLists[ply] = new int[numPoints + 1];
+			}
+			path = new long[earlierHashes.length + MAX_PLY + 1];
+			System.arraycopy(earlierHashes, 0, path, 0, earlierHashes.length);
+			base = earlierHashes.length;
+			path[base] = board.getHash();
+		}
+
+		/**
+		 * call deepens the search one turn at a time. Half the threads start a
+		 * turn deeper than the others so that they reach the next depth
+		 * first and fill the table for the rest.
+		 */
+		public Void call() {
+			try {
+				for (int depth = 1 + id % 2; depth <= MAX_PLY; depth++) {
+					rootDepth = depth;
+					horizon = false;
+					int value = search(0, depth, -INFINITY, INFINITY, rootPasses);
+					completedDepth = depth;
+					publish(depth, value, rootBestMove, !horizon, rootToMove);
+					if (stopped) {
+						break;
+					}
+				}
+			} catch (SearchAborted timeUp) {
+				// the last search didn't finish, so its result is not used
+			}
+			return null;
+		}
+
+		private int search(int ply, int depth, int alpha, int beta, int passes) {
+			if ((++nodes & 1023) == 0 && completedDepth > 0
+					&& (stopped || System.nanoTime() > deadline)) {
+				stopped = true;
+				throw ABORTED;
+			}
+
+			GoBoard board = boards[ply];
+			int toMove = ply % 2 == 0 ? rootToMove : GoBoard.opponent(rootToMove);
+			if (passes >= 2) {
+				return relative(areaScore(board, true), toMove);
+			}
+			if (depth == 0 || ply == MAX_PLY) {
+				horizon = true;
+				return relative(areaScore(board, false), toMove);
+			}
+
+			if (findSettled(board, ply, depth, toMove, passes)) {
+				return relative(areaScore(board, true), toMove);
+			}
+			boolean[] settled = settledLists[ply];
+
+			int symmetry = SymmetryHash.IDENTITY;
+			long boardKey = board.getHash();
+			if (usingKo) {
+				// the table is keyed by the canonical board, so its moves are turned to match it
+				symmetry = SymmetryHash.symmetryOf(board.getCanonicalIndex(false));
+				boardKey = board.getCanonicalHash(false);
+			}
+			long key = boardKey ^ (toMove == GoBoard.WHITE ? WHITE_TO_MOVE : 0)
+					^ (passes == 1 ? AFTER_PASS : 0)
+					^ (toCanonical(board.getKoPoint(), symmetry) + 1) * KO_POINT;
+			int ttMove = NO_MOVE;
+			long entry = table.probe(key);
+			if (entry != TranspositionTable.MISS) {
+				ttMove = toCanonical(TranspositionTable.moveOf(entry), SymmetryHash.inverse(symmetry));
+				int entryDepth = TranspositionTable.depthOf(entry);
+				int value = TranspositionTable.valueOf(entry);
+				int bound = TranspositionTable.boundOf(entry);
+				boolean usable = entryDepth == TranspositionTable.PROVEN
+						|| TranspositionTable.generationOf(entry) == rootDepth;
+				if (usable && entryDepth >= depth && (bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER && value >= beta)
+						|| (bound == TranspositionTable.UPPER && value <= alpha))) {
+					if (entryDepth != TranspositionTable.PROVEN) {
+						horizon = true;
+					}
+					if (ply == 0) {
+						rootBestMove = ttMove;
+					}
+					return value;
+				}
+			}
+
+			boolean outerHorizon = horizon;
+			horizon = false;
+			int alphaBefore = alpha;
+			int bestValue = -INFINITY;
+			int bestMove = NO_MOVE;
+			int[] moves = moveLists[ply];
+			int numMoves = generateMoves(board, toMove, ttMove, passes, settled, moves);
+			GoBoard next = boards[ply + 1];
+
+			for (int m = 0; m < numMoves; m++) {
+				int move = moves[m];
+				next.copyFrom(board);
+				int value;
+				if (move == PASS) {
+					next.pass();
+					path[base + ply + 1] = path[base + ply];
+					value = -search(ply + 1, depth - 1, -beta, -alpha, passes + 1);
+				} else {
+					next.play(move, toMove);
+					long hash = next.getHash();
+					if (repeatsBoardState(hash, ply)) {
+						continue;
+					}
+					path[base + ply + 1] = hash;
+					value = -search(ply + 1, depth - 1, -beta, -alpha, 0);
+				}
+
+				if (value > bestValue) {
+					bestValue = value;
+					bestMove = move;
+				}
+				if (bestValue > alpha) {
+					alpha = bestValue;
+				}
+				if (alpha >= beta) {
+					break;
+				}
+			}
+
+			int bound = bestValue <= alphaBefore ? TranspositionTable.UPPER
+					: bestValue >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			table.store(key, bestValue, horizon ? depth : TranspositionTable.PROVEN, bound,
+					toCanonical(bestMove, symmetry), rootDepth);
+			if (ply == 0) {
+				rootBestMove = bestMove;
+			}
+			horizon = outerHorizon || horizon;
+			return bestValue;
+		}
+
+		/**
+		 * findSettled works out the points of the board at ply that PassAlive
+		 * finds settled, and returns true if every empty point is settled, which
+		 * ends the game. Points only ever become settled along a line, since
+		 * pass-alive chains can't be captured and nobody plays in the regions
+		 * they settle, so they are carried on from the ply before. New ones are
+		 * nearly always made by the player who just played, so only theirs are
+		 * looked for, and none at all right after a pass or one turn from the
+		 * depth limit, where it hardly pays. Missing some only means fewer
+		 * moves are left out.
+		 */
+		private boolean findSettled(GoBoard board, int ply, int depth, int toMove, int passes) {
+			boolean[] settled = settledLists[ply];
+			if (ply == 0) {
+				Arrays.fill(settled, false);
+				passAlive.find(board, toMove, settled);
+				return passAlive.find(board, GoBoard.opponent(toMove), settled);
+			}
+			System.arraycopy(settledLists[ply - 1], 0, settled, 0, numPoints);
+			if (passes > 0 || depth <= 1) {
+				return false;
+			}
+			return passAlive.find(board, GoBoard.opponent(toMove), settled);
+		}
+
+		/**
+		 * toCanonical turns a point with the given symmetry, leaving a pass, no
+		 * move or no ko point as it is
+		 */
+		private int toCanonical(int p, int symmetry) {
+			return p < 0 ? p : SymmetryHash.transform(p, symmetry, size);
+		}
+
+		/**
+		 * generateMoves stores every legal move in moves and returns how many
+		 * there are: the move from the table first, then the rest starting at a
+		 * different point for every thread, then passing. Right after the
+		 * opponent passed, passing is tried first since it ends the game. Points
+		 * PassAlive found settled are left out, for both players.
+		 */
+		private int generateMoves(GoBoard board, int toMove, int ttMove, int passes,
+				boolean[] settled, int[] moves) {
+			int count = 0;
+			if (passes == 1 || ttMove == PASS) {
+				moves[count++] = PASS;
+			}
+			if (ttMove >= 0 && !settled[ttMove] && board.isLegal(ttMove, toMove)) {
+				moves[count++] = ttMove;
+			}
+			int offset = (id * 7) % numPoints;
+			for (int k = 0; k < numPoints; k++) {
+				int p = (k + offset) % numPoints;
+				if (p != ttMove && !settled[p] && board.isLegal(p, toMove)) {
+					moves[count++] = p;
+				}
+			}
+			if (passes != 1 && ttMove != PASS) {
+				moves[count++] = PASS;
+			}
+			return count;
+		}
+
+		/**
+		 * repeatsBoardState returns true if a move from the position at ply
+		 * gives a board the rule being used forbids. Under Ko, that is the
+		 * board before the opponent's last turn; under Superko, any board of
+		 * the game or of the line being searched.
+		 */
+		private boolean repeatsBoardState(long hash, int ply) {
+			int current = base + ply;
+			if (usingKo) {
+				return current > 0 && path[current - 1] == hash;
+			}
+			for (int i = 0; i <= current; i++) {
+				if (path[i] == hash) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * areaScore returns black's score minus white's, counting pieces and
+		 * the empty spaces that only touch one colour, and white's bonus. At
+		 * the end of the game empty spaces touching no pieces are black's, as
+		 * in the Go program; part way through a search they are nobody's.
+		 */
+		private int areaScore(GoBoard board, boolean gameOver) {
+			int score = -whiteDisadvantageBonus;
+			for (int p = 0; p < numPoints; p++) {
+				int allegiance = board.get(p);
+				if (allegiance == GoBoard.BLACK) {
+					score++;
+				} else if (allegiance == GoBoard.WHITE) {
+					score--;
+				}
+			}
+
+			// every empty region is filled once, from the first of its points found
+			Arrays.fill(regionDone, false);
+			for (int p = 0; p < numPoints; p++) {
+				if (board.get(p) != GoBoard.EMPTY || regionDone[p]) {
+					continue;
+				}
+				boolean touchesBlack = false;
+				boolean touchesWhite = false;
+				workspace.start(p);
+				while (workspace.hasNext()) {
+					int q = workspace.next();
+					regionDone[q] = true;
+					for (int k = 0; k < 4; k++) {
+						int n = workspace.neighbor(q, k);
+						if (n == FloodFillWorkspace.NO_POINT) {
+							continue;
+						}
+						int allegiance = board.get(n);
+						if (allegiance == GoBoard.BLACK) {
+							touchesBlack = true;
+						} else if (allegiance == GoBoard.WHITE) {
+							touchesWhite = true;
+						} else {
+							workspace.visit(n);
+						}
+					}
+				}
+				if (touchesBlack && !touchesWhite) {
+					score += workspace.getNumFound();
+				} else if (touchesWhite && !touchesBlack) {
+					score -= workspace.getNumFound();
+				} else if (!touchesWhite && gameOver) {
+					score += workspace.getNumFound();
+				}
+			}
+			return score;
+		}
+
+		private int relative(int score, int toMove) {
+			return toMove == GoBoard.BLACK ? score : -score;
+		}
+	}
+
+	/**
+	 * A TranspositionTable remembers the result of searching each position, so
+	 * that a position reached by different orders of moves, or by another
+	 * thread, is only searched once. Every slot is a key and an entry, written
+	 * without locking. The key is stored XORed with the entry, so a slot that
+	 * was half written by two threads at once simply doesn't match any key.
+	 */
+	private static class TranspositionTable {
+
+		static final long MISS = 0;
+		static final int EXACT = 0;
+		static final int LOWER = 1;
+		static final int UPPER = 2;
+
+		/** the depth of an entry whose whole subtree was played to the end */
+		static final int PROVEN = 255;
+
+		private static final long VALID = 1L << 48;
+		private static final int GENERATION_SHIFT = 49;
+
+		private final long[] keys;
+		private final long[] entries;
+		private final int mask;
+
+		TranspositionTable(int bits) {
+			keys = new long[1 << bits];
+			entries = new long[1 << bits];
+			mask = (1 << bits) - 1;
+		}
+
+		long probe(long key) {
+			int slot = (int) key & mask;
+			long entry = entries[slot];
+			if (entry != MISS && (keys[slot] ^ entry) == key) {
+				return entry;
+			}
+			return MISS;
+		}
+
+		/**
+		 * store keeps the deeper of the old and new entries for the same
+		 * position, unless the old one is from an earlier generation, which is
+		 * the depth of the search from the root that made it.
+		 */
+		void store(long key, int value, int depth, int bound, int move, int generation) {
+			int slot = (int) key & mask;
+			long old = entries[slot];
+			if (old != MISS && (keys[slot] ^ old) == key && depthOf(old) > depth
+					&& (depthOf(old) == PROVEN || generationOf(old) == generation)) {
+				return;
+			}
+			long entry = VALID | (long) (generation & 0xFF) << GENERATION_SHIFT
+					| (long) (move + 2) << 32 | (long) bound << 24
+					| (long) depth << 16 | (value + 32768) & 0xFFFFL;
+			entries[slot] = entry;
+			keys[slot] = key ^ entry;
+		}
+
+		static int valueOf(long entry) {
+			return (int) (entry & 0xFFFF) - 32768;
+		}
+
+		static int depthOf(long entry) {
+			return (int) (entry >>> 16) & 0xFF;
+		}
+
+		static int boundOf(long entry) {
+			return (int) (entry >>> 24) & 0x3;
+		}
+
+		static int generationOf(long entry) {
+			return (int) (entry >>> GENERATION_SHIFT) & 0xFF;
+		}
+
+		static int moveOf(long entry) {
+			return (int) (entry >>> 32 & 0xFFFF) - 2;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package src;
+
+/**
+ * File: SpectatorFeed.java
+ * ------------------------
+ * SpectatorFeed is the binary format a SpectatorServer sends to spectators: a stream of frames,
+ * each one turn of the game or a whole board. Every number is written as a varint, 7 bits to a
+ * byte with the top bit set on every byte but the last, so the small numbers that make up most of
+ * a game take a single byte. A frame is its length, then its type, then:
+ *
+ *     SNAPSHOT  size, turn, player to move, then every point packed 4 to a byte, 2 bits each
+ *     MOVE      turn, colour, point, number of points captured, then each captured point
+ *     PASS      turn, colour
+ *     UNDO      turns undone, turn, player to move, number of points changed, then each changed
+ *               point as point * 4 + its new allegiance
+ *
+ * Points are numbered x * size + y, as in a GoBoard, and turn is the number of turns that have
+ * been taken once the frame is applied. A MOVE places the piece first and then empties the
+ * captured points, which can include the piece itself if it captured itself. A spectator is
+ * always sent a SNAPSHOT first, and again whenever it falls too far behind to be sent the turns it
+ * missed.
+ *
+ * A Board applies frames to a board, and is used by the server to keep the board new spectators
+ * are sent, as well as by spectators. A FrameReader puts frames back together from whatever bytes
+ * have arrived so far.
+ */
+
+import java.nio.ByteBuffer;
+
+public class SpectatorFeed {
+
+	public static final int SNAPSHOT = 0;
+	public static final int MOVE = 1;
+	public static final int PASS = 2;
+	public static final int UNDO = 3;
+
+	/** the most bytes a varint of an int can take */
+	public static final int MAX_VARINT_BYTES = 5;
+
+	private SpectatorFeed() {
+	}
+
+	/** putVarint writes a number that is not negative as a varint */
+	public static void putVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/** getVarint reads a varint written by putVarint */
+	public static int getVarint(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	/** varintLength returns how many bytes putVarint writes for a number */
+	public static int varintLength(int value) {
+		int length = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * putFrame writes a frame whose type and contents have already been
+	 * written to body, between its position and limit, putting its length in
+	 * front of it.
+	 */
+	public static void putFrame(ByteBuffer buffer, ByteBuffer body) {
+		putVarint(buffer, body.remaining());
+		buffer.put(body);
+	}
+
+	/** frameLength returns how many bytes putFrame writes for a body of the given length */
+	public static int frameLength(int bodyLength) {
+		return varintLength(bodyLength) + bodyLength;
+	}
+
+	/**
+	 * A Board is the state of the game as the frames describe it: every point,
+	 * the number of turns taken and the player to move.
+	 */
+	public static class Board {
+
+		private int size;
+		private int[] points;
+		private int turn = 0;
+		private int toMove = 1;
+
+		public Board(int size) {
+			this.size = size;
+			points = new int[size * size];
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public int get(int p) {
+			return points[p];
+		}
+
+		public int getTurn() {
+			return turn;
+		}
+
+		public int getToMove() {
+			return toMove;
+		}
+
+		/**
+		 * apply changes the board by one frame, given without its length, and
+		 * returns the frame's type.
+		 */
+		public int apply(ByteBuffer frame) {
+			int type = frame.get();
+			if (type == SNAPSHOT) {
+				int newSize = getVarint(frame);
+				if (newSize != size) {
+					size = newSize;
+					points = new int[size * size];
+				}
+				turn = getVarint(frame);
+				toMove = getVarint(frame);
+				for (int p = 0; p < points.length; p += 4) {
+					int packed = frame.get() & 0xFF;
+					for (int i = 0; i < 4 && p + i < points.length; i++) {
+						points[p + i] = (packed >>> (2 * i)) & 3;
+					}
+				}
+
+			} else if (type == MOVE) {
+				turn = getVarint(frame);
+				int colour = getVarint(frame);
+				points[getVarint(frame)] = colour;
+				int numCaptured = getVarint(frame);
+				for (int i = 0; i < numCaptured; i++) {
+					points[getVarint(frame)] = 0;
+				}
+				toMove = 3 - colour;
+
+			} else if (type == PASS) {
+				turn = getVarint(frame);
+				toMove = 3 - getVarint(frame);
+
+			} else if (type == UNDO) {
+				getVarint(frame); // the number of turns undone, which only matters for showing it
+				turn = getVarint(frame);
+				toMove = getVarint(frame);
+				int numChanged = getVarint(frame);
+				for (int i = 0; i < numChanged; i++) {
+					int change = getVarint(frame);
+					points[change >>> 2] = change & 3;
+				}
+			}
+			return type;
+		}
+
+		/** snapshotLength returns the most bytes putSnapshot can write */
+		public int snapshotLength() {
+			return 1 + MAX_VARINT_BYTES * 3 + (points.length + 3) / 4;
+		}
+
+		/** putSnapshot writes the type and contents of a SNAPSHOT frame of the board */
+		public void putSnapshot(ByteBuffer buffer) {
+			buffer.put((byte) SNAPSHOT);
+			putVarint(buffer, size);
+			putVarint(buffer, turn);
+			putVarint(buffer, toMove);
+			for (int p = 0; p < points.length; p += 4) {
+				int packed = 0;
+				for (int i = 0; i < 4 && p + i < points.length; i++) {
+					packed |= points[p + i] << (2 * i);
+				}
+				buffer.put((byte) packed);
+			}
+		}
+	}
+
+	/**
+	 * A FrameReader collects the bytes of a stream of frames as they arrive and
+	 * hands back each frame once all of it is there.
+	 */
+	public static class FrameReader {
+
+		private ByteBuffer pending = ByteBuffer.allocate(4096);
+
+		/** getBuffer returns the buffer that bytes should be read into */
+		public ByteBuffer getBuffer() {
+			if (!pending.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+				pending.flip();
+				larger.put(pending);
+				pending = larger;
+			}
+			return pending;
+		}
+
+		/**
+		 * nextFrame returns the next whole frame, without its length, or null
+		 * if the rest of it hasn't arrived yet.
+		 */
+		public ByteBuffer nextFrame() {
+			pending.flip();
+			int start = pending.position();
+			int length = 0;
+			boolean haveLength = false;
+			for (int shift = 0; pending.hasRemaining(); shift += 7) {
+				byte b = pending.get();
+				length |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					haveLength = true;
+					break;
+				}
+			}
+
+			if (!haveLength || pending.remaining() < length) {
+				pending.position(start);
+				pending.compact();
+				return null;
+			}
+			ByteBuffer frame = ByteBuffer.wrap(new byte[length]);
+			pending.get(frame.array());
+			pending.compact();
+			return frame;
+		}
+	}
+}
@@ -0,0 +1,796 @@
+package src;
+
+/**
+ * File: SpectatorServer.java
+ * --------------------------
+ * A SpectatorServer lets anyone watch a game as it is played by connecting to a port. Every turn
+ * is sent to every spectator as a frame of the SpectatorFeed format, and a spectator that joins
+ * late is sent a snapshot of the board first, so it never needs the turns before it joined.
+ *
+ * Everything to do with the network happens on one thread, with non-blocking channels and a
+ * Selector, so thousands of spectators don't need thousands of threads. The game only adds its
+ * turns to a queue and wakes the thread up. The thread takes every turn waiting in the queue, writes
+ * their frames once into a single buffer, and gives every spectator its own view of that same
+ * buffer, then writes as much to each spectator as it will take without waiting. Whatever a
+ * spectator won't take yet waits for it to be ready.
+ *
+ * A spectator that falls more than MAX_QUEUED_BYTES behind isn't sent the turns it missed: they are
+ * thrown away and it is sent a new snapshot instead, so a slow spectator can never make the server
+ * run out of memory or hold up the others.
+ *
+ * Run on its own, a SpectatorServer plays a random game on the loopback address to many spectators
+ * at once and checks that they all end up with the right board:
+ *
+ *     java src.SpectatorServer [--spectators n] [--turns n] [--size n] [--slow n]
+ */
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SpectatorServer {
+
+	/** the port the Go program broadcasts on */
+	public static final int DEFAULT_PORT = 6190;
+
+	/** the most bytes a spectator can have waiting before it is sent a snapshot instead */
+	private static final int MAX_QUEUED_BYTES = 64 * 1024;
+
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	/** turns the game has taken that the network thread hasn't sent yet */
+	private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<Event>();
+
+	/*
+	 * everything below is only used by the network thread
+	 */
+
+	/** the board as the spectators will see it once they are sent everything so far */
+	private final SpectatorFeed.Board board;
+
+	/** a SNAPSHOT frame of board, or null if board has changed since it was made */
+	private ByteBuffer snapshot;
+
+	/** where the frames of a batch of turns are written before they are shared */
+	private ByteBuffer batch;
+	private ByteBuffer body;
+
+	private final ArrayList<Spectator> spectators = new ArrayList<Spectator>();
+
+	/** where anything spectators send is read into and forgotten */
+	private final ByteBuffer ignored = ByteBuffer.allocate(256);
+
+	/** read by any thread, for showing how the server is doing */
+	private volatile int numSpectators = 0;
+	private volatile long bytesSent = 0;
+	private volatile int numResyncs = 0;
+
+	/**
+	 * Starts a server for a game on a board of the given size, listening on
+	 * the given address and port. Port 0 picks any free port.
+	 */
+	public SpectatorServer(int size, InetAddress address, int port) throws IOException {
+		board = new SpectatorFeed.Board(size);
+		batch = ByteBuffer.allocate(4096);
+		body = ByteBuffer.allocate(board.snapshotLength());
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(address, port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		thread = new Thread(new Runnable() {
+			public void run() {
+				serve();
+			}
+		}, "Spectator server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public static void main(String[] args) {
+		int numSpectators = 1000;
+		int numTurns = 100000;
+		int size = 19;
+		int numSlow = 10;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--spectators")) {
+					numSpectators = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--turns")) {
+					numTurns = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--size")) {
+					size = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--slow")) {
+					numSlow = Integer.parseInt(args[++i]);
+				} else {
+					numSpectators = 0;
+				}
+			}
+		} catch (RuntimeException badArguments) {
+			numSpectators = 0;
+		}
+		if (numSpectators < 1 || numTurns < 1 || size < 2 || numSlow < 0
+				|| numSlow > numSpectators) {
+			System.out.println("Usage: java src.SpectatorServer [--spectators n] [--turns n]"
+					+ " [--size n] [--slow n]");
+			return;
+		}
+
+		try {
+			demonstrate(numSpectators, numTurns, size, numSlow);
+		} catch (IOException failed) {
+			System.out.println("The demonstration failed: " + failed);
+		} catch (InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * demonstrate plays a random game of numTurns turns, with passes and undos,
+	 * to numSpectators spectators on the loopback address. A tenth of them only
+	 * join halfway through, and numSlow of them read nothing at all until the
+	 * game is over, so they fall behind and have to be sent snapshots. Once
+	 * every spectator has the final board, how long it all took is printed.
+	 */
+	private static void demonstrate(int numSpectators, int numTurns, int size, int numSlow)
+			throws IOException, InterruptedException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		SpectatorServer server = new SpectatorServer(size, loopback, 0);
+		InetSocketAddress address = new InetSocketAddress(loopback, server.getPort());
+		Audience audience = new Audience(size);
+
+		int numLate = numSpectators / 10;
+		long startTime = System.nanoTime();
+		audience.connect(address, numSpectators - numLate, numSlow);
+		audience.awaitSnapshots(numSpectators - numLate - numSlow);
+		double joinSeconds = (System.nanoTime() - startTime) / 1e9;
+
+		Random random = new Random();
+		GoBoard board = new GoBoard(size);
+		ArrayList<PackedPosition> history = new ArrayList<PackedPosition>();
+		history.add(PackedPosition.pack(board));
+		int[] captured = new int[board.getNumPoints()];
+		int[] chain = new int[board.getNumPoints()];
+		int toMove = GoBoard.BLACK;
+		int numUndos = 0;
+
+		startTime = System.nanoTime();
+		for (int turn = 0; turn < numTurns; turn++) {
+			if (turn == numTurns / 2) {
+				audience.connect(address, numLate, 0);
+			}
+
+			if (random.nextInt(100) == 0 && history.size() > 3) {
+				int undone = 1 + random.nextInt(3);
+				for (int i = 0; i < undone; i++) {
+					history.remove(history.size() - 1);
+				}
+				PackedPosition position = history.get(history.size() - 1);
+				board = unpack(position);
+				toMove = undone % 2 == 1 ? GoBoard.opponent(toMove) : toMove;
+				server.undo(undone, position, history.size() - 1, toMove);
+				numUndos++;
+				continue;
+			}
+
+			int p = GoBoard.NO_POINT;
+			for (int tries = 0; tries < 20 && p == GoBoard.NO_POINT; tries++) {
+				int q = random.nextInt(board.getNumPoints());
+				if (board.isLegal(q, toMove)) {
+					p = q;
+				}
+			}
+			if (p == GoBoard.NO_POINT || random.nextInt(30) == 0) {
+				board.pass();
+				server.pass(toMove);
+			} else {
+				int numCaptured = 0;
+				for (int k = 0; k < 4; k++) {
+					int n = board.neighbor(p, k);
+					if (n != GoBoard.NO_POINT && board.get(n) == GoBoard.opponent(toMove)
+							&& board.countLiberties(n, 2) == 1) {
+						int length = board.collectChain(n, chain);
+						for (int i = 0; i < length; i++) {
+							if (!contains(captured, numCaptured, chain[i])) {
+								captured[numCaptured++] = chain[i];
+							}
+						}
+					}
+				}
+				board.play(p, toMove);
+				server.move(p, toMove, captured, numCaptured);
+			}
+			history.add(PackedPosition.pack(board));
+			toMove = GoBoard.opponent(toMove);
+		}
+		double playSeconds = (System.nanoTime() - startTime) / 1e9;
+
+		audience.expect(history.get(history.size() - 1), history.size() - 1, toMove);
+		audience.awaitAll(numSpectators);
+		double totalSeconds = (System.nanoTime() - startTime) / 1e9;
+
+		System.out.printf("%d spectators joined in %.2f seconds%n", numSpectators - numLate,
+				joinSeconds);
+		System.out.printf("%d turns (%d undos) sent in %.2f seconds, %.0f turns per second%n",
+				numTurns, numUndos, playSeconds, numTurns / playSeconds);
+		System.out.printf("All %d spectators had the final board after %.2f seconds%n",
+				numSpectators, totalSeconds);
+		System.out.printf("%.1f MB sent, %.1f bytes per turn per spectator, %d resyncs%n",
+				server.getBytesSent() / 1e6, (double) server.getBytesSent() / numTurns
+						/ numSpectators, server.getNumResyncs());
+
+		audience.close();
+		server.close();
+	}
+
+	private static boolean contains(int[] points, int count, int point) {
+		for (int i = 0; i < count; i++) {
+			if (points[i] == point) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static GoBoard unpack(PackedPosition position) {
+		int size = position.getSize();
+		int[][] allegiances = new int[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				allegiances[x][y] = position.get(x, y);
+			}
+		}
+		return GoBoard.fromAllegiances(allegiances);
+	}
+
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	public int getNumSpectators() {
+		return numSpectators;
+	}
+
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/** getNumResyncs returns how many times a spectator fell behind and was sent a snapshot */
+	public int getNumResyncs() {
+		return numResyncs;
+	}
+
+	/**
+	 * move sends a piece of the given colour being placed at p, and the points
+	 * that were captured because of it, which may include p itself.
+	 */
+	public void move(int p, int colour, int[] captured, int numCaptured) {
+		int[] points = new int[numCaptured + 1];
+		points[0] = p;
+		System.arraycopy(captured, 0, points, 1, numCaptured);
+		send(new Event(SpectatorFeed.MOVE, colour, 0, points, null));
+	}
+
+	public void pass(int colour) {
+		send(new Event(SpectatorFeed.PASS, colour, 0, null, null));
+	}
+
+	/**
+	 * undo sends the board going back by numTurns turns, to the given position
+	 * with turn turns taken and toMove to move. Only the points that are
+	 * different from the board before are sent.
+	 */
+	public void undo(int numTurns, PackedPosition position, int turn, int toMove) {
+		send(new Event(SpectatorFeed.UNDO, toMove, turn, new int[] { numTurns }, position));
+	}
+
+	/** position sends a whole new board, for when the game jumps somewhere else entirely */
+	public void position(PackedPosition position, int turn, int toMove) {
+		send(new Event(SpectatorFeed.SNAPSHOT, toMove, turn, null, position));
+	}
+
+	private void send(Event event) {
+		events.add(event);
+		selector.wakeup();
+	}
+
+	/** close disconnects every spectator and stops the server */
+	public void close() {
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join();
+		} catch (InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** serve is the network thread, which runs until the server is closed */
+	private void serve() {
+		try {
+			while (running) {
+				selector.select();
+				sendEvents();
+
+				Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+				while (selected.hasNext()) {
+					SelectionKey key = selected.next();
+					selected.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						Spectator spectator = (Spectator) key.attachment();
+						if (key.isReadable()) {
+							spectator.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							spectator.flush();
+						}
+					}
+				}
+			}
+		} catch (IOException selectorBroken) {
+			// nothing more can be sent, so everyone is disconnected below
+		} finally {
+			for (Spectator spectator : new ArrayList<Spectator>(spectators)) {
+				spectator.disconnect();
+			}
+			try {
+				serverChannel.close();
+				selector.close();
+			} catch (IOException alreadyClosing) {
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			Spectator spectator = new Spectator(channel);
+			spectator.key = channel.register(selector, SelectionKey.OP_READ, spectator);
+			spectators.add(spectator);
+			numSpectators = spectators.size();
+			spectator.enqueue(getSnapshot());
+			spectator.flush();
+		}
+	}
+
+	/**
+	 * sendEvents writes the frame of every waiting event into one new buffer,
+	 * applying each to board as it goes, and shares the buffer between every
+	 * spectator.
+	 */
+	private void sendEvents() {
+		if (events.isEmpty()) {
+			return;
+		}
+		batch.clear();
+		Event event;
+		while ((event = events.poll()) != null) {
+			body.clear();
+			event.write();
+			body.flip();
+
+			int length = SpectatorFeed.frameLength(body.remaining());
+			if (batch.remaining() < length) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(batch.capacity() * 2,
+						batch.position() + length));
+				batch.flip();
+				larger.put(batch);
+				batch = larger;
+			}
+			board.apply(body.duplicate());
+			SpectatorFeed.putFrame(batch, body);
+		}
+		snapshot = null;
+
+		batch.flip();
+		ByteBuffer shared = ByteBuffer.allocate(batch.remaining());
+		shared.put(batch);
+		shared.flip();
+		for (Spectator spectator : new ArrayList<Spectator>(spectators)) {
+			spectator.enqueue(shared.asReadOnlyBuffer());
+			spectator.flush();
+		}
+	}
+
+	/** getSnapshot returns a new view of a SNAPSHOT frame of the board as it is now */
+	private ByteBuffer getSnapshot() {
+		if (snapshot == null) {
+			body.clear();
+			board.putSnapshot(body);
+			body.flip();
+			snapshot = ByteBuffer.allocate(SpectatorFeed.frameLength(body.remaining()));
+			SpectatorFeed.putFrame(snapshot, body);
+			snapshot.flip();
+		}
+		return snapshot.asReadOnlyBuffer();
+	}
+
+	/**
+	 * An Event is a turn of the game waiting to be sent: its type, a colour or
+	 * player to move, a turn number and whatever points and board it needs.
+	 */
+	private class Event {
+
+		private final int type;
+		private final int player;
+		private final int turn;
+		private final int[] points;
+		private final PackedPosition position;
+
+		private Event(int type, int player, int turn, int[] points, PackedPosition position) {
+			this.type = type;
+			this.player = player;
+			this.turn = turn;
+			this.points = points;
+			this.position = position;
+		}
+
+		/**
+		 * write writes the type and contents of the event's frame to body. UNDO
+		 * frames are worked out from the board before the event.
+		 */
+		private void write() {
+			if (type == SpectatorFeed.SNAPSHOT) {
+				body.put((byte) SpectatorFeed.SNAPSHOT);
+				SpectatorFeed.putVarint(body, board.getSize());
+				SpectatorFeed.putVarint(body, turn);
+				SpectatorFeed.putVarint(body, player);
+				int numPoints = board.getSize() * board.getSize();
+				for (int p = 0; p < numPoints; p += 4) {
+					int packed = 0;
+					for (int i = 0; i < 4 && p + i < numPoints; i++) {
+						packed |= position.get(p + i) << (2 * i);
+					}
+					body.put((byte) packed);
+				}
+
+			} else if (type == SpectatorFeed.MOVE) {
+				ensureRoom(SpectatorFeed.MAX_VARINT_BYTES * (points.length + 3));
+				body.put((byte) SpectatorFeed.MOVE);
+				SpectatorFeed.putVarint(body, board.getTurn() + 1);
+				SpectatorFeed.putVarint(body, player);
+				SpectatorFeed.putVarint(body, points[0]);
+				SpectatorFeed.putVarint(body, points.length - 1);
+				for (int i = 1; i < points.length; i++) {
+					SpectatorFeed.putVarint(body, points[i]);
+				}
+
+			} else if (type == SpectatorFeed.PASS) {
+				body.put((byte) SpectatorFeed.PASS);
+				SpectatorFeed.putVarint(body, board.getTurn() + 1);
+				SpectatorFeed.putVarint(body, player);
+
+			} else if (type == SpectatorFeed.UNDO) {
+				int numPoints = board.getSize() * board.getSize();
+				int numChanged = 0;
+				for (int p = 0; p < numPoints; p++) {
+					if (position.get(p) != board.get(p)) {
+						numChanged++;
+					}
+				}
+				ensureRoom(SpectatorFeed.MAX_VARINT_BYTES * (numChanged + 5));
+				body.put((byte) SpectatorFeed.UNDO);
+				SpectatorFeed.putVarint(body, points[0]);
+				SpectatorFeed.putVarint(body, turn);
+				SpectatorFeed.putVarint(body, player);
+				SpectatorFeed.putVarint(body, numChanged);
+				for (int p = 0; p < numPoints; p++) {
+					if (position.get(p) != board.get(p)) {
+						SpectatorFeed.putVarint(body, p << 2 | position.get(p));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * ensureRoom makes body large enough for a frame of the given length,
+	 * which only happens for a move that captures, or an undo that changes,
+	 * nearly the whole of a large board.
+	 */
+	private void ensureRoom(int length) {
+		if (body.remaining() < length) {
+			ByteBuffer larger = ByteBuffer.allocate(body.position() + length);
+			body.flip();
+			larger.put(body);
+			body = larger;
+		}
+	}
+
+	/**
+	 * A Spectator is one connection, and the views of shared buffers waiting
+	 * to be written to it, oldest first.
+	 */
+	private class Spectator {
+
+		private final SocketChannel channel;
+		private SelectionKey key;
+		private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<ByteBuffer>();
+		private int queuedBytes = 0;
+
+		private Spectator(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * enqueue adds a buffer to the end of the queue, unless the spectator
+		 * is too far behind, in which case everything that hasn't started being
+		 * written is thrown away and replaced by a snapshot.
+		 */
+		private void enqueue(ByteBuffer buffer) {
+			if (queuedBytes + buffer.remaining() > MAX_QUEUED_BYTES) {
+				ByteBuffer started = queue.peekFirst();
+				if (started != null && started.position() == 0) {
+					started = null;
+				}
+				queue.clear();
+				queuedBytes = 0;
+				if (started != null) {
+					queue.add(started);
+					queuedBytes = started.remaining();
+				}
+				buffer = getSnapshot();
+				numResyncs++;
+			}
+			queue.add(buffer);
+			queuedBytes += buffer.remaining();
+		}
+
+		/**
+		 * flush writes as much of the queue as the channel will take without
+		 * waiting, and only asks to hear when the channel is writable if some
+		 * is left.
+		 */
+		private void flush() {
+			try {
+				ByteBuffer head;
+				while ((head = queue.peekFirst()) != null) {
+					int written = channel.write(head);
+					queuedBytes -= written;
+					bytesSent += written;
+					if (head.hasRemaining()) {
+						key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+						return;
+					}
+					queue.removeFirst();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			} catch (IOException disconnected) {
+				disconnect();
+			}
+		}
+
+		/** read throws away anything the spectator sends, only watching for it leaving */
+		private void read() {
+			try {
+				while (true) {
+					ignored.clear();
+					int read = channel.read(ignored);
+					if (read < 0) {
+						disconnect();
+						return;
+					} else if (read == 0) {
+						return;
+					}
+				}
+			} catch (IOException disconnected) {
+				disconnect();
+			}
+		}
+
+		private void disconnect() {
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException alreadyClosed) {
+			}
+			queue.clear();
+			spectators.remove(this);
+			numSpectators = spectators.size();
+		}
+	}
+
+	/**
+	 * An Audience is a crowd of spectators for demonstrate, all read by one
+	 * thread of their own, which keeps the board each of them has been sent.
+	 */
+	private static class Audience {
+
+		private final int size;
+		private final Selector selector;
+		private final Thread thread;
+		private volatile boolean running = true;
+
+		/** spectators that have connected but haven't been registered with the selector */
+		private final ConcurrentLinkedQueue<Viewer> joining = new ConcurrentLinkedQueue<Viewer>();
+		private final ArrayList<Viewer> viewers = new ArrayList<Viewer>();
+
+		/** the board every spectator should end up with, once the game is over */
+		private volatile PackedPosition expectedPosition;
+		private volatile int expectedTurn;
+		private volatile int expectedToMove;
+		private PackedPosition checkedPosition;
+
+		/** how many spectators have had their first snapshot, and have the final board */
+		private int numJoined = 0;
+		private int numFinished = 0;
+
+		private Audience(int size) throws IOException {
+			this.size = size;
+			selector = Selector.open();
+			thread = new Thread(new Runnable() {
+				public void run() {
+					watch();
+				}
+			}, "Audience");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * connect connects count more spectators, the first numSlow of which
+		 * don't read anything until the final board is expected. Their receive
+		 * buffers are made small so that they fall behind quickly.
+		 */
+		private void connect(InetSocketAddress address, int count, int numSlow) throws IOException {
+			for (int i = 0; i < count; i++) {
+				SocketChannel channel = SocketChannel.open();
+				if (i < numSlow) {
+					channel.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+				}
+				channel.connect(address);
+				channel.configureBlocking(false);
+				joining.add(new Viewer(channel, i < numSlow));
+			}
+			selector.wakeup();
+		}
+
+		/** expect gives the final board, and lets the slow spectators start reading */
+		private void expect(PackedPosition position, int turn, int toMove) {
+			expectedTurn = turn;
+			expectedToMove = toMove;
+			expectedPosition = position;
+			selector.wakeup();
+		}
+
+		private synchronized void awaitSnapshots(int count) throws InterruptedException {
+			while (numJoined < count) {
+				wait();
+			}
+		}
+
+		private synchronized void awaitAll(int count) throws InterruptedException {
+			while (numFinished < count) {
+				wait();
+			}
+		}
+
+		private synchronized void joined() {
+			numJoined++;
+			notifyAll();
+		}
+
+		private synchronized void finished() {
+			numFinished++;
+			notifyAll();
+		}
+
+		private void close() throws InterruptedException {
+			running = false;
+			selector.wakeup();
+			thread.join();
+		}
+
+		private void watch() {
+			try {
+				while (running) {
+					selector.select();
+
+					Viewer viewer;
+					while ((viewer = joining.poll()) != null) {
+						viewer.key = viewer.channel.register(selector,
+								viewer.slow ? 0 : SelectionKey.OP_READ, viewer);
+						viewers.add(viewer);
+					}
+
+					PackedPosition expected = expectedPosition;
+					if (expected != checkedPosition) {
+						checkedPosition = expected;
+						for (Viewer v : viewers) {
+							v.key.interestOps(SelectionKey.OP_READ);
+							v.check();
+						}
+					}
+
+					Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+					while (selected.hasNext()) {
+						SelectionKey key = selected.next();
+						selected.remove();
+						if (key.isValid() && key.isReadable()) {
+							((Viewer) key.attachment()).read();
+						}
+					}
+				}
+				for (Viewer viewer : viewers) {
+					viewer.channel.close();
+				}
+				selector.close();
+			} catch (IOException failed) {
+				System.out.println("A spectator failed: " + failed);
+			}
+		}
+
+		/** A Viewer is one spectator, and the board it has been sent so far */
+		private class Viewer {
+
+			private final SocketChannel channel;
+			private final boolean slow;
+			private SelectionKey key;
+			private final SpectatorFeed.FrameReader reader = new SpectatorFeed.FrameReader();
+			private final SpectatorFeed.Board board = new SpectatorFeed.Board(size);
+			private boolean hasJoined = false;
+			private boolean hasFinished = false;
+
+			private Viewer(SocketChannel channel, boolean slow) {
+				this.channel = channel;
+				this.slow = slow;
+			}
+
+			private void read() throws IOException {
+				while (channel.read(reader.getBuffer()) > 0) {
+					ByteBuffer frame;
+					while ((frame = reader.nextFrame()) != null) {
+						board.apply(frame);
+						if (!hasJoined) {
+							hasJoined = true;
+							if (!slow) {
+								joined();
+							}
+						}
+					}
+				}
+				check();
+			}
+
+			/** check counts this spectator as finished if it has the final board */
+			private void check() {
+				PackedPosition expected = expectedPosition;
+				if (hasFinished || expected == null || board.getTurn() != expectedTurn
+						|| board.getToMove() != expectedToMove) {
+					return;
+				}
+				for (int p = 0; p < size * size; p++) {
+					if (board.get(p) != expected.get(p)) {
+						return;
+					}
+				}
+				hasFinished = true;
+				finished();
+			}
+		}
+	}
+}
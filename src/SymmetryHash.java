@@ -0,0 +1,149 @@
+package src;
+
+/**
+ * File: SymmetryHash.java
+ * -----------------------
+ * SymmetryHash works out hashes of a board that are the same for every rotation and reflection
+ * of it, so that a cache or a collection of games can treat all of them as one board state.
+ *
+ * A square board has 8 symmetries: the 4 rotations, and the same 4 after a reflection. A board
+ * keeps one hash for each of them, the hash of the board as it would look after that symmetry,
+ * plus the same 8 again with the colours of every piece swapped. When a point changes, update
+ * changes all 16 hashes at once, so they never have to be worked out from scratch. The canonical
+ * hash is the smallest of the 8 (or all 16), which is the same number whichever way round the
+ * board is.
+ *
+ * Hashes only depend on the size of the board and the pieces on it, not on which program run
+ * made them, so they can be stored in files and compared later.
+ */
+
+public final class SymmetryHash {
+
+	public static final int NUM_SYMMETRIES = 8;
+
+	/** hashes[s] is the board after symmetry s, hashes[NUM_SYMMETRIES + s] the same with colours swapped */
+	public static final int NUM_HASHES = 2 * NUM_SYMMETRIES;
+
+	/** the symmetry that leaves every point where it is */
+	public static final int IDENTITY = 0;
+
+	/*
+	 * The bits of a symmetry say what it does to a point (x, y), in this order:
+	 * 1 swaps x and y, 2 turns x into size - 1 - x, 4 turns y into size - 1 - y
+	 */
+	private static final int TRANSPOSE = 1;
+	private static final int FLIP_X = 2;
+	private static final int FLIP_Y = 4;
+
+	private SymmetryHash() {
+	}
+
+	/**
+	 * transform returns the point that p moves to under the given symmetry, on
+	 * a board of the given size. Points are numbered x * size + y.
+	 */
+	public static int transform(int p, int symmetry, int size) {
+		int x = p / size;
+		int y = p % size;
+		if ((symmetry & TRANSPOSE) != 0) {
+			int swap = x;
+			x = y;
+			y = swap;
+		}
+		if ((symmetry & FLIP_X) != 0) {
+			x = size - 1 - x;
+		}
+		if ((symmetry & FLIP_Y) != 0) {
+			y = size - 1 - y;
+		}
+		return x * size + y;
+	}
+
+	/**
+	 * inverse returns the symmetry that undoes the given one. Flips undo
+	 * themselves, but once x and y are swapped the flips have to be undone on
+	 * the other axis.
+	 */
+	public static int inverse(int symmetry) {
+		if ((symmetry & TRANSPOSE) == 0) {
+			return symmetry;
+		}
+		int flips = ((symmetry & FLIP_X) != 0 ? FLIP_Y : 0)
+				| ((symmetry & FLIP_Y) != 0 ? FLIP_X : 0);
+		return TRANSPOSE | flips;
+	}
+
+	/**
+	 * pieceKey returns the number a piece of the given colour (1 or 2) at point
+	 * p adds to the hash of a board of the given size. It uses the splitmix64
+	 * mixing function, so no table of random numbers is needed.
+	 */
+	public static long pieceKey(int size, int p, int colour) {
+		long z = ((long) size << 40 | 2L * p + colour) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * update changes all 16 hashes of a board whose point p changes from
+	 * oldAllegiance to newAllegiance. Allegiances other than 1 and 2 count as
+	 * empty.
+	 */
+	public static void update(long[] hashes, int size, int p, int oldAllegiance, int newAllegiance) {
+		for (int s = 0; s < NUM_SYMMETRIES; s++) {
+			int q = transform(p, s, size);
+			if (oldAllegiance == 1 || oldAllegiance == 2) {
+				hashes[s] ^= pieceKey(size, q, oldAllegiance);
+				hashes[NUM_SYMMETRIES + s] ^= pieceKey(size, q, 3 - oldAllegiance);
+			}
+			if (newAllegiance == 1 || newAllegiance == 2) {
+				hashes[s] ^= pieceKey(size, q, newAllegiance);
+				hashes[NUM_SYMMETRIES + s] ^= pieceKey(size, q, 3 - newAllegiance);
+			}
+		}
+	}
+
+	/** of returns all 16 hashes of a stored board state, worked out from scratch */
+	public static long[] of(PackedPosition position) {
+		int size = position.getSize();
+		long[] hashes = new long[NUM_HASHES];
+		for (int p = 0; p < size * size; p++) {
+			update(hashes, size, p, 0, position.get(p));
+		}
+		return hashes;
+	}
+
+	/**
+	 * canonicalIndex returns which of the hashes is the canonical one: the
+	 * smallest of the 8 symmetries, or of all 16 if swapping the colours
+	 * should count as the same board state too. Turning a point of the board
+	 * with symmetryOf this index gives the matching point of the canonical
+	 * board.
+	 */
+	public static int canonicalIndex(long[] hashes, boolean swapColours) {
+		int count = swapColours ? NUM_HASHES : NUM_SYMMETRIES;
+		int best = 0;
+		for (int h = 1; h < count; h++) {
+			if (hashes[h] < hashes[best]) {
+				best = h;
+			}
+		}
+		return best;
+	}
+
+	/** canonical returns the canonical hash itself */
+	public static long canonical(long[] hashes, boolean swapColours) {
+		return hashes[canonicalIndex(hashes, swapColours)];
+	}
+
+	/** symmetryOf returns the symmetry used by one of the 16 hashes */
+	public static int symmetryOf(int hashIndex) {
+		return hashIndex % NUM_SYMMETRIES;
+	}
+
+	/** swapsColours returns true if one of the 16 hashes has the colours swapped */
+	public static boolean swapsColours(int hashIndex) {
+		return hashIndex >= NUM_SYMMETRIES;
+	}
+}
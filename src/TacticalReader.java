@@ -0,0 +1,281 @@
+package src;
+
+/**
+ * File: TacticalReader.java
+ * -------------------------
+ * A TacticalReader answers "can this chain be captured?" by reading out the fights that decide
+ * it, such as ladders and capture races, a few moves at a time.
+ *
+ * Only chains with one or two liberties are read. The attacker only tries playing on the
+ * chain's liberties, and the defender only tries extending from a liberty or capturing a chain
+ * next to it that is short of liberties itself, so even a ladder that runs across a 19x19 board
+ * is a narrow search. A chain that reaches three liberties counts as safe, and a search that
+ * goes deeper than MAX_DEPTH moves gives up and counts the chain as safe too.
+ *
+ * The reader plays its moves on its own copies of the board, one per move of the search, and
+ * works out liberties with its own marks instead of the board's. Answers are kept in a small
+ * table keyed by the board's hash, so asking about the same chain again is nearly free. A reader
+ * must not be shared between threads.
+ */
+
+import java.util.Arrays;
+
+public class TacticalReader {
+
+	/** the chain can't be captured, even if the attacker moves first */
+	public static final int SAFE = 0;
+	/** the chain can be captured if the attacker moves first, but can escape if it moves first */
+	public static final int UNSETTLED = 1;
+	/** the chain can be captured even if it moves first */
+	public static final int DEAD = 2;
+
+	/** the most moves either side makes in one search */
+	public static final int MAX_DEPTH = 80;
+
+	/** how many answers the table holds, which must be a power of two */
+	private static final int CACHE_SIZE = 4096;
+
+	private static final long ATTACKER_FIRST = 0x9E3779B97F4A7C15L;
+	private static final long DEFENDER_FIRST = 0xC2B2AE3D27D4EB4FL;
+
+	private final int size;
+	private final int numPoints;
+
+	/** the board before each move of the search, boards[0] being the one asked about */
+	private final GoBoard[] boards = new GoBoard[MAX_DEPTH + 2];
+
+	/** a list of candidate moves for each move of the search */
+	private final int[][] candidates = new int[MAX_DEPTH + 2][];
+
+	/** points of a chain, and the number of the last search of the board that marked each point */
+	private final int[] chain;
+	private final int[] markedBy;
+
+	/** the chain being defended, and one point of each enemy chain touching it */
+	private final int[] defenderChain;
+	private final int[] enemies;
+	private int currentMark = 0;
+
+	private final long[] cacheKeys = new long[CACHE_SIZE];
+	private final boolean[] cacheAnswers = new boolean[CACHE_SIZE];
+
+	/** how many boards the search has played, for measuring how hard a question was */
+	private long nodes = 0;
+
+	public TacticalReader(int size) {
+		this.size = size;
+		numPoints = size * size;
+		for (int d = 0; d < boards.length; d++) {
+			boards[d] = new GoBoard(size);
+			candidates[d] = new int[numPoints];
+		}
+		chain = new int[numPoints];
+		markedBy = new int[numPoints];
+		defenderChain = new int[numPoints];
+		enemies = new int[numPoints];
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * status returns whether the chain containing p is SAFE, UNSETTLED or
+	 * DEAD. p must hold a piece.
+	 */
+	public int status(GoBoard board, int p) {
+		if (!canCapture(board, p)) {
+			return SAFE;
+		}
+		return canEscape(board, p) ? UNSETTLED : DEAD;
+	}
+
+	/** canCapture returns true if the chain containing p can be captured when its opponent moves first */
+	public boolean canCapture(GoBoard board, int p) {
+		return ask(board, p, true);
+	}
+
+	/** canEscape returns true if the chain containing p can avoid capture when it moves first */
+	public boolean canEscape(GoBoard board, int p) {
+		return !ask(board, p, false);
+	}
+
+	/**
+	 * ask returns true if the chain at p can be captured, looking the answer
+	 * up in the table before reading it out.
+	 */
+	private boolean ask(GoBoard board, int p, boolean attackerFirst) {
+		long key = board.getHash() ^ ((attackerFirst ? ATTACKER_FIRST : DEFENDER_FIRST) * (p + 1))
+				^ ((board.getKoPoint() + 1L) << 40);
+		int slot = (int) (key ^ (key >>> 32)) & (CACHE_SIZE - 1);
+		if (cacheKeys[slot] == key && key != 0) {
+			return cacheAnswers[slot];
+		}
+
+		boards[0].copyFrom(board);
+		boolean captured = attackerFirst ? attack(0, p) : !defend(0, p);
+		cacheKeys[slot] = key;
+		cacheAnswers[slot] = captured;
+		return captured;
+	}
+
+	/**
+	 * attack returns true if the attacker, moving on boards[depth], can
+	 * capture the chain containing p.
+	 */
+	private boolean attack(int depth, int p) {
+		nodes++;
+		GoBoard board = boards[depth];
+		int liberties = board.countLiberties(p, 3);
+		if (liberties == 0) {
+			return true;
+		}
+		if (liberties >= 3 || depth >= MAX_DEPTH) {
+			return false;
+		}
+
+		int defender = board.get(p);
+		int attacker = GoBoard.opponent(defender);
+		int[] moves = candidates[depth];
+		int numMoves = collectLiberties(board, p, moves, 0);
+
+		for (int m = 0; m < numMoves; m++) {
+			if (!board.isLegal(moves[m], attacker)) {
+				continue;
+			}
+			GoBoard next = boards[depth + 1];
+			next.copyFrom(board);
+			next.play(moves[m], attacker);
+			if (next.get(p) == GoBoard.EMPTY) {
+				return true;
+			}
+			if (!defend(depth + 1, p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * defend returns true if the defender, moving on boards[depth], can save
+	 * the chain containing p: by extending from one of its liberties, or by
+	 * capturing a neighboring chain that has no more liberties than it does.
+	 */
+	private boolean defend(int depth, int p) {
+		nodes++;
+		GoBoard board = boards[depth];
+		int liberties = board.countLiberties(p, 3);
+		if (liberties >= 3) {
+			return true;
+		}
+		if (depth >= MAX_DEPTH) {
+			return true;
+		}
+
+		int defender = board.get(p);
+		int[] moves = candidates[depth];
+		int numMoves = collectLiberties(board, p, moves, 0);
+		numMoves = collectCounterAttacks(board, p, liberties, moves, numMoves);
+
+		for (int m = 0; m < numMoves; m++) {
+			if (!board.isLegal(moves[m], defender)) {
+				continue;
+			}
+			GoBoard next = boards[depth + 1];
+			next.copyFrom(board);
+			next.play(moves[m], defender);
+			int after = next.countLiberties(p, 3);
+			if (after >= 3) {
+				return true;
+			}
+			if (after >= 2 && !attack(depth + 1, p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * collectLiberties adds every liberty of the chain containing p to moves,
+	 * starting at index count, and returns the new count.
+	 */
+	private int collectLiberties(GoBoard board, int p, int[] moves, int count) {
+		int chainSize = board.collectChain(p, chain);
+		newMark();
+		for (int c = 0; c < chainSize; c++) {
+			for (int k = 0; k < 4; k++) {
+				int n = board.neighbor(chain[c], k);
+				if (n != GoBoard.NO_POINT && board.get(n) == GoBoard.EMPTY
+						&& markedBy[n] != currentMark) {
+					markedBy[n] = currentMark;
+					moves[count++] = n;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * collectCounterAttacks adds the liberties of every enemy chain touching
+	 * the chain at p that has at most the given number of liberties, which
+	 * are the moves that capture or race against it, and returns the new
+	 * count. Points already in moves are not added twice.
+	 */
+	private int collectCounterAttacks(GoBoard board, int p, int liberties, int[] moves, int count) {
+		int enemy = GoBoard.opponent(board.get(p));
+		int defenderSize = board.collectChain(p, defenderChain);
+
+		// each enemy chain is remembered by one of its points, and marked so it is found once
+		int numEnemies = 0;
+		int enemyMark = newMark();
+		for (int c = 0; c < defenderSize; c++) {
+			for (int k = 0; k < 4; k++) {
+				int n = board.neighbor(defenderChain[c], k);
+				if (n != GoBoard.NO_POINT && board.get(n) == enemy && markedBy[n] != enemyMark) {
+					int enemySize = board.collectChain(n, chain);
+					for (int e = 0; e < enemySize; e++) {
+						markedBy[chain[e]] = enemyMark;
+					}
+					enemies[numEnemies++] = n;
+				}
+			}
+		}
+
+		for (int e = 0; e < numEnemies; e++) {
+			if (board.countLiberties(enemies[e], liberties + 1) <= liberties) {
+				int before = count;
+				count = collectLiberties(board, enemies[e], moves, count);
+				count = removeRepeats(moves, before, count);
+			}
+		}
+		return count;
+	}
+
+	/** removeRepeats removes moves[from..count) that are already in moves[0..from) */
+	private static int removeRepeats(int[] moves, int from, int count) {
+		int kept = from;
+		for (int i = from; i < count; i++) {
+			boolean repeated = false;
+			for (int j = 0; j < from && !repeated; j++) {
+				repeated = moves[j] == moves[i];
+			}
+			if (!repeated) {
+				moves[kept++] = moves[i];
+			}
+		}
+		return kept;
+	}
+
+	private int newMark() {
+		currentMark++;
+		if (currentMark == Integer.MAX_VALUE) {
+			Arrays.fill(markedBy, 0);
+			currentMark = 1;
+		}
+		return currentMark;
+	}
+}
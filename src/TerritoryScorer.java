@@ -0,0 +1,333 @@
+package src;
+
+/**
+ * File: TerritoryScorer.java
+ * --------------------------
+ * The TerritoryScorer counts the score of a board the same way determineWinner and tallyScore
+ * do in the Go program, but splits the work up so that very large boards can be scored on
+ * every processor at once.
+ *
+ * The board is cut into square tiles. Each tile finds the connected empty regions inside it
+ * in parallel, then the regions that continue across the edges of tiles are joined together,
+ * then every region records which colours it touches, and finally both colours are counted in
+ * a single pass. As in determineWinner, an empty region belongs to black if it touches only
+ * black pieces or no pieces at all, to white if it touches only white pieces, and to nobody if
+ * it touches both. Counting by area, as the Go program always has, every piece and every point
+ * of territory scores; counting by territory, only the territory and the prisoners do.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class TerritoryScorer {
+
+	/** the width and height of a tile, in points */
+	private static final int TILE_SIZE = 64;
+
+	/** each phase of scoring, which are run one after another over every tile */
+	private static final int LABEL_REGIONS = 0;
+	private static final int FLATTEN_LABELS = 1;
+	private static final int FIND_BORDERS = 2;
+	private static final int TALLY = 3;
+
+	/** bits of a region's border, recording which colours it touches */
+	private static final int TOUCHES_BLACK = 1;
+	private static final int TOUCHES_WHITE = 2;
+
+	private final ForkJoinPool pool;
+
+	public TerritoryScorer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public TerritoryScorer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * score counts every point that belongs to black and to white. The points
+	 * array is laid out like a GoBoard, with the point at x, y stored at index
+	 * x * size + y, and holds 1 for black pieces, 2 for white pieces and
+	 * anything else for empty points. No bonus for white is included.
+	 *
+	 * @return an array holding black's score followed by white's score
+	 */
+	public int[] score(int[] points, int size) {
+		Scoring scoring = new Scoring(points, size);
+		int numTiles = scoring.tilesPerSide * scoring.tilesPerSide;
+
+		pool.invoke(new TileTask(scoring, LABEL_REGIONS, 0, numTiles));
+		scoring.joinAcrossTiles();
+		pool.invoke(new TileTask(scoring, FLATTEN_LABELS, 0, numTiles));
+		pool.invoke(new TileTask(scoring, FIND_BORDERS, 0, numTiles));
+		int[] scores = pool.invoke(new TileTask(scoring, TALLY, 0, numTiles));
+		return scores;
+	}
+
+	/** score is a convenience method for boards stored like the intersections array */
+	public int[] score(int[][] allegiances) {
+		int size = allegiances.length;
+		int[] points = new int[size * size];
+		for (int x = 0; x < size; x++) {
+			System.arraycopy(allegiances[x], 0, points, x * size, size);
+		}
+		return score(points, size);
+	}
+
+	/**
+	 * score counts both players' scores the given way, AREA or TERRITORY of
+	 * RulesEngine. Counting by territory, each player's pieces are taken off
+	 * the score and their prisoners are added instead. No bonus for white is
+	 * included.
+	 *
+	 * @return an array holding black's score followed by white's score
+	 */
+	public int[] score(int[] points, int size, int counting, int blackPrisoners,
+			int whitePrisoners) {
+		int[] scores = score(points, size);
+		if (counting == RulesEngine.TERRITORY) {
+			for (int p = 0; p < points.length; p++) {
+				if (Allegiance.isPiece(points[p])) {
+					scores[points[p] - 1]--;
+				}
+			}
+			scores[0] += blackPrisoners;
+			scores[1] += whitePrisoners;
+		}
+		return scores;
+	}
+
+	/**
+	 * winner returns the player with the higher score on a board once white's
+	 * bonus is added, or 0 for a tie, counting by area.
+	 */
+	public int winner(PersistentBoard board, int whiteDisadvantageBonus) {
+		return winner(board, whiteDisadvantageBonus, RulesEngine.AREA, new int[3]);
+	}
+
+	/**
+	 * winner returns the player with the higher score on a board, counted the
+	 * given way, once white's bonus is added, or 0 for a tie. prisoners holds
+	 * how many pieces each player has captured, indexed by colour, and is only
+	 * used counting by territory.
+	 */
+	public int winner(PersistentBoard board, int whiteDisadvantageBonus, int counting,
+			int[] prisoners) {
+		int size = board.getSize();
+		int[] points = new int[size * size];
+		for (int p = 0; p < points.length; p++) {
+			points[p] = board.get(p);
+		}
+		int[] score = score(points, size, counting, prisoners[Allegiance.BLACK],
+				prisoners[Allegiance.WHITE]);
+		int white = score[1] + whiteDisadvantageBonus;
+		if (score[0] > white) {
+			return 1;
+		} else if (white > score[0]) {
+			return 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * A Scoring holds the working state for scoring one board. parent is a
+	 * union-find forest over the empty points, where every region is
+	 * eventually represented by one of its points.
+	 */
+	private static class Scoring {
+
+		private final int[] points;
+		private final int size;
+		private final int tilesPerSide;
+		private final int[] parent;
+		private final int[] region;
+		private final AtomicIntegerArray borders;
+
+		private Scoring(int[] points, int size) {
+			this.points = points;
+			this.size = size;
+			tilesPerSide = (size + TILE_SIZE - 1) / TILE_SIZE;
+			parent = new int[size * size];
+			region = new int[size * size];
+			borders = new AtomicIntegerArray(size * size);
+		}
+
+		private boolean isEmpty(int p) {
+			return points[p] != 1 && points[p] != 2;
+		}
+
+		/**
+		 * find returns the point that represents the region containing p. It
+		 * halves the path as it goes, so it must only be used while no other
+		 * thread is using the same part of the forest.
+		 */
+		private int find(int p) {
+			while (parent[p] != p) {
+				parent[p] = parent[parent[p]];
+				p = parent[p];
+			}
+			return p;
+		}
+
+		/** findWithoutChanges is find for when other threads are reading the forest */
+		private int findWithoutChanges(int p) {
+			while (parent[p] != p) {
+				p = parent[p];
+			}
+			return p;
+		}
+
+		private void union(int p, int q) {
+			int rootP = find(p);
+			int rootQ = find(q);
+			if (rootP < rootQ) {
+				parent[rootQ] = rootP;
+			} else if (rootQ < rootP) {
+				parent[rootP] = rootQ;
+			}
+		}
+
+		/**
+		 * processTile runs one phase of scoring over every point in a tile. Only
+		 * the tally phase returns scores, the others return null.
+		 */
+		private int[] processTile(int phase, int tile) {
+			int startX = (tile / tilesPerSide) * TILE_SIZE;
+			int startY = (tile % tilesPerSide) * TILE_SIZE;
+			int endX = Math.min(startX + TILE_SIZE, size);
+			int endY = Math.min(startY + TILE_SIZE, size);
+			int[] scores = phase == TALLY ? new int[2] : null;
+
+			for (int x = startX; x < endX; x++) {
+				for (int y = startY; y < endY; y++) {
+					int p = x * size + y;
+
+					if (phase == LABEL_REGIONS) {
+						parent[p] = p;
+						if (isEmpty(p)) {
+							if (x > startX && isEmpty(p - size)) {
+								union(p, p - size);
+							}
+							if (y > startY && isEmpty(p - 1)) {
+								union(p, p - 1);
+							}
+						}
+
+					} else if (phase == FLATTEN_LABELS) {
+						region[p] = findWithoutChanges(p);
+
+					} else if (phase == FIND_BORDERS) {
+						if (isEmpty(p)) {
+							int touches = touchedColours(x, y);
+							if (touches != 0
+									&& (borders.get(region[p]) & touches) != touches) {
+								accumulate(region[p], touches);
+							}
+						}
+
+					} else if (points[p] == 1) {
+						scores[0]++;
+					} else if (points[p] == 2) {
+						scores[1]++;
+					} else {
+						int touches = borders.get(region[p]);
+						if (touches == TOUCHES_WHITE) {
+							scores[1]++;
+						} else if (touches != (TOUCHES_BLACK | TOUCHES_WHITE)) {
+							scores[0]++;
+						}
+					}
+				}
+			}
+			return scores;
+		}
+
+		private int touchedColours(int x, int y) {
+			int p = x * size + y;
+			return colourBit(y > 0 ? p - 1 : -1)
+					| colourBit(x < size - 1 ? p + size : -1)
+					| colourBit(x > 0 ? p - size : -1)
+					| colourBit(y < size - 1 ? p + 1 : -1);
+		}
+
+		private int colourBit(int p) {
+			if (p < 0) {
+				return 0;
+			} else if (points[p] == 1) {
+				return TOUCHES_BLACK;
+			} else if (points[p] == 2) {
+				return TOUCHES_WHITE;
+			}
+			return 0;
+		}
+
+		private void accumulate(int r, int touches) {
+			int old;
+			do {
+				old = borders.get(r);
+			} while (!borders.compareAndSet(r, old, old | touches));
+		}
+
+		/**
+		 * joinAcrossTiles joins the regions on either side of every tile edge.
+		 * It only looks at the points along the edges, so it is cheap compared
+		 * to labelling the tiles, and is done on one thread.
+		 */
+		private void joinAcrossTiles() {
+			for (int edge = TILE_SIZE; edge < size; edge += TILE_SIZE) {
+				for (int i = 0; i < size; i++) {
+					int left = (edge - 1) * size + i;
+					int right = edge * size + i;
+					if (isEmpty(left) && isEmpty(right)) {
+						union(left, right);
+					}
+					int above = i * size + edge - 1;
+					int below = i * size + edge;
+					if (isEmpty(above) && isEmpty(below)) {
+						union(above, below);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A TileTask runs one phase over a range of tiles, splitting the range in
+	 * half until each task has a single tile, and adds up the scores returned by
+	 * the tally phase.
+	 */
+	private static class TileTask extends RecursiveTask<int[]> {
+
+		private final Scoring scoring;
+		private final int phase;
+		private final int firstTile;
+		private final int lastTile;
+
+		private TileTask(Scoring scoring, int phase, int firstTile, int lastTile) {
+			this.scoring = scoring;
+			this.phase = phase;
+			this.firstTile = firstTile;
+			this.lastTile = lastTile;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (lastTile - firstTile == 1) {
+				return scoring.processTile(phase, firstTile);
+			}
+			int middle = (firstTile + lastTile) / 2;
+			TileTask first = new TileTask(scoring, phase, firstTile, middle);
+			TileTask second = new TileTask(scoring, phase, middle, lastTile);
+			first.fork();
+			int[] secondScores = second.compute();
+			int[] firstScores = first.join();
+			if (firstScores == null) {
+				return null;
+			}
+			firstScores[0] += secondScores[0];
+			firstScores[1] += secondScores[1];
+			return firstScores;
+		}
+	}
+}
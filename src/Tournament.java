@@ -0,0 +1,448 @@
+package src;
+
+/**
+ * File: Tournament.java
+ * ---------------------
+ * A Tournament plays every MoveStrategy against every other one, the same number of games for
+ * each pair, and reports how often each won and how strong that makes it on the Elo scale. It is
+ * run on its own, not from the Go program:
+ *
+ *     java src.Tournament [--size n] [--ko | --superko] [--bonus n] [--games n] [--threads n]
+ *             strategy strategy...
+ *
+ * where a strategy is "random", "pattern" or "mc" followed by a number of playouts per move,
+ * such as "mc200". The defaults are a 9x9 board, Superko, a bonus of 7 for white, 100 games per
+ * pair and a thread for every processor.
+ *
+ * The two strategies of a pair take turns playing black. A game ends when both players pass in
+ * a row, or after MAX_MOVES_PER_POINT moves for every point, and is scored by area: every piece
+ * and every empty point that only touches one colour. Like the Go program, a move that repeats
+ * the board from the turn before (under Ko) or any earlier board (under Superko) isn't allowed.
+ * Unlike the Go program, which lets a player fill the last liberty of their own chain and takes
+ * the chain off the board, a GoBoard doesn't allow suicide at all. A strategy that tries either
+ * kind of move passes instead. No strategy here ever chooses suicide, since none of them play a
+ * move that GoBoard.isLegal turns down, so the games are the ones the Go program would play.
+ *
+ * The games are shared out between the threads as they finish, and every thread makes its own
+ * strategies from the factories, so no strategy is ever used by two threads. Ratings are found
+ * with the Bradley-Terry model, counting a draw as half a win each, with one draw added to every
+ * pair so that a strategy that never won still gets a finite rating. The confidence intervals
+ * are 95% intervals from how many games each rating rests on, and are only approximate.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Tournament {
+
+	/** a game is stopped after this many moves for every point on the board, and scored as it is */
+	private static final int MAX_MOVES_PER_POINT = 3;
+
+	/** how many Elo points a rating moves for a factor of e in the odds of winning */
+	private static final double ELO_PER_NATURAL_UNIT = 400 / Math.log(10);
+
+	/** the number of standard errors either side of a rating that cover 95% */
+	private static final double Z_95 = 1.96;
+
+	private final ArrayList<MoveStrategy.Factory> entrants;
+	private final int size;
+	private final boolean usingKo;
+	private final int whiteDisadvantageBonus;
+	private final int gamesPerPair;
+	private final int numThreads;
+
+	public Tournament(ArrayList<MoveStrategy.Factory> entrants, int size, boolean usingKo,
+			int whiteDisadvantageBonus, int gamesPerPair, int numThreads) {
+		this.entrants = entrants;
+		this.size = size;
+		this.usingKo = usingKo;
+		this.whiteDisadvantageBonus = whiteDisadvantageBonus;
+		this.gamesPerPair = gamesPerPair;
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	public static void main(String[] args) {
+		int size = 9;
+		boolean usingKo = false;
+		int bonus = 7;
+		int games = 100;
+		int threads = Runtime.getRuntime().availableProcessors();
+		ArrayList<String> names = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--size")) {
+					size = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--ko")) {
+					usingKo = true;
+				} else if (args[i].equals("--superko")) {
+					usingKo = false;
+				} else if (args[i].equals("--bonus")) {
+					bonus = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--games")) {
+					games = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else {
+					names.add(args[i]);
+				}
+			}
+		} catch (RuntimeException badArguments) {
+			names.clear();
+		}
+
+		ArrayList<MoveStrategy.Factory> entrants = new ArrayList<MoveStrategy.Factory>();
+		for (String name : names) {
+			MoveStrategy.Factory factory = strategyNamed(name, bonus);
+			if (factory == null) {
+				System.out.println("There is no strategy called " + name);
+				return;
+			}
+			entrants.add(factory);
+		}
+		if (entrants.size() < 2 || size < 2 || games < 1) {
+			System.out.println("Usage: java src.Tournament [--size n] [--ko | --superko] [--bonus n]"
+					+ " [--games n] [--threads n] strategy strategy...");
+			System.out.println("Strategies: random, pattern, mc<playouts per move>");
+			return;
+		}
+
+		Tournament tournament = new Tournament(entrants, size, usingKo, bonus, games, threads);
+		System.out.print(tournament.run().report());
+	}
+
+	/** strategyNamed returns the factory for a strategy's name, or null if there is none */
+	public static MoveStrategy.Factory strategyNamed(String name, int whiteDisadvantageBonus) {
+		if (name.equals("random")) {
+			return PlayoutStrategy.factory(false);
+		} else if (name.equals("pattern")) {
+			return PlayoutStrategy.factory(true);
+		} else if (name.startsWith("mc")) {
+			try {
+				return MonteCarloStrategy.factory(Integer.parseInt(name.substring(2)),
+						whiteDisadvantageBonus);
+			} catch (NumberFormatException notANumber) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * run plays every game of the tournament, using numThreads threads, and
+	 * returns the results once they are all over.
+	 */
+	public Results run() {
+		final int numEntrants = entrants.size();
+		final int[][] pairs = new int[numEntrants * (numEntrants - 1) / 2][];
+		int pair = 0;
+		for (int a = 0; a < numEntrants; a++) {
+			for (int b = a + 1; b < numEntrants; b++) {
+				pairs[pair++] = new int[] { a, b };
+			}
+		}
+		final int numGames = pairs.length * gamesPerPair;
+		final AtomicInteger nextGame = new AtomicInteger();
+
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<Results>> parts = new ArrayList<Future<Results>>();
+		for (int t = 0; t < numThreads; t++) {
+			final long seed = System.nanoTime() * 31 + t;
+			parts.add(pool.submit(new Callable<Results>() {
+				public Results call() {
+					MoveStrategy[] strategies = new MoveStrategy[numEntrants];
+					for (int e = 0; e < numEntrants; e++) {
+						strategies[e] = entrants.get(e).create(seed * 131 + e);
+					}
+					Results results = new Results(numEntrants);
+					Referee referee = new Referee();
+
+					int game;
+					while ((game = nextGame.getAndIncrement()) < numGames) {
+						int[] players = pairs[game / gamesPerPair];
+						// the two strategies of a pair take turns playing black
+						int black = players[game % 2];
+						int white = players[1 - game % 2];
+						int winner = referee.play(strategies[black], strategies[white]);
+						results.add(black, white, winner);
+					}
+					return results;
+				}
+			}));
+		}
+
+		Results total = new Results(numEntrants);
+		try {
+			for (Future<Results> part : parts) {
+				total.addAll(part.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		total.names = new String[numEntrants];
+		for (int e = 0; e < numEntrants; e++) {
+			total.names[e] = entrants.get(e).getName();
+		}
+		total.seconds = (System.nanoTime() - start) / 1e9;
+		total.description = size + "x" + size + ", " + (usingKo ? "Ko" : "Superko")
+				+ ", white bonus " + whiteDisadvantageBonus + ", " + numThreads + " threads";
+		return total;
+	}
+
+	/**
+	 * A Referee plays games between two strategies for one thread, keeping the
+	 * rules and reusing its boards from game to game.
+	 */
+	private class Referee {
+
+		private final GoBoard board = new GoBoard(size);
+		private final GoBoard before = new GoBoard(size);
+		private final GoBoard empty = new GoBoard(size);
+
+		/** the hash of every board of the game so far, for Superko */
+		private final HashSet<Long> seen = new HashSet<Long>();
+
+		/** the hash of the board before the last turn, which the next move may not repeat under Ko */
+		private long previous;
+
+		/**
+		 * play plays one game and returns the colour of the winner, or 0 for a
+		 * draw.
+		 */
+		private int play(MoveStrategy black, MoveStrategy white) {
+			board.copyFrom(empty);
+			seen.clear();
+			seen.add(board.getHash());
+			previous = board.getHash();
+
+			int maxMoves = MAX_MOVES_PER_POINT * board.getNumPoints();
+			int colour = GoBoard.BLACK;
+			int passes = 0;
+			for (int moves = 0; passes < 2 && moves < maxMoves; moves++) {
+				MoveStrategy strategy = colour == GoBoard.BLACK ? black : white;
+				int move = strategy.chooseMove(board, colour);
+				if (move != MoveStrategy.PASS && tryMove(move, colour)) {
+					passes = 0;
+				} else {
+					previous = board.getHash();
+					board.pass();
+					passes++;
+				}
+				colour = GoBoard.opponent(colour);
+			}
+
+			int score = board.areaScore() - whiteDisadvantageBonus;
+			return score > 0 ? GoBoard.BLACK : score < 0 ? GoBoard.WHITE : 0;
+		}
+
+		/**
+		 * tryMove plays a move if the rules allow it, and returns false without
+		 * changing the board if they don't.
+		 */
+		private boolean tryMove(int move, int colour) {
+			if (move < 0 || move >= board.getNumPoints() || !board.isLegal(move, colour)) {
+				return false;
+			}
+			before.copyFrom(board);
+			board.play(move, colour);
+			long hash = board.getHash();
+			boolean repeats = usingKo ? hash == previous : seen.contains(hash);
+			if (repeats) {
+				board.copyFrom(before);
+				return false;
+			}
+			previous = before.getHash();
+			seen.add(hash);
+			return true;
+		}
+	}
+
+	/** Results are the games won, lost and drawn between every pair of strategies */
+	public static class Results {
+
+		private final int numEntrants;
+
+		/** wins[a][b] is how many times a beat b, and draws[a][b] how many they drew */
+		private final int[][] wins;
+		private final int[][] draws;
+
+		/** how many games black won, of all the games */
+		private int blackWins = 0;
+		private int games = 0;
+
+		private String[] names;
+		private double seconds;
+		private String description;
+
+		private Results(int numEntrants) {
+			this.numEntrants = numEntrants;
+			wins = new int[numEntrants][numEntrants];
+			draws = new int[numEntrants][numEntrants];
+		}
+
+		private void add(int black, int white, int winner) {
+			if (winner == GoBoard.BLACK) {
+				wins[black][white]++;
+				blackWins++;
+			} else if (winner == GoBoard.WHITE) {
+				wins[white][black]++;
+			} else {
+				draws[black][white]++;
+				draws[white][black]++;
+			}
+			games++;
+		}
+
+		private void addAll(Results other) {
+			for (int a = 0; a < numEntrants; a++) {
+				for (int b = 0; b < numEntrants; b++) {
+					wins[a][b] += other.wins[a][b];
+					draws[a][b] += other.draws[a][b];
+				}
+			}
+			blackWins += other.blackWins;
+			games += other.games;
+		}
+
+		public int getGames() {
+			return games;
+		}
+
+		public double getGamesPerSecond() {
+			return games / Math.max(seconds, 1e-9);
+		}
+
+		/** getScore returns how many points a scored against b, a draw being half a point */
+		public double getScore(int a, int b) {
+			return wins[a][b] + draws[a][b] / 2.0;
+		}
+
+		public int getGamesBetween(int a, int b) {
+			return wins[a][b] + wins[b][a] + draws[a][b];
+		}
+
+		/**
+		 * getRatings returns the Elo rating of every strategy, the first one
+		 * being rated 0. They are found with the minorization-maximization
+		 * steps of the Bradley-Terry model, where the chance of a beating b is
+		 * strength[a] / (strength[a] + strength[b]).
+		 */
+		public double[] getRatings() {
+			double[] strength = new double[numEntrants];
+			Arrays.fill(strength, 1);
+			for (int step = 0; step < 1000; step++) {
+				double largestChange = 0;
+				for (int a = 0; a < numEntrants; a++) {
+					double won = 0;
+					double expected = 0;
+					for (int b = 0; b < numEntrants; b++) {
+						if (b == a) {
+							continue;
+						}
+						// the extra draw of every pair is half a point, out of one more game
+						won += getScore(a, b) + 0.5;
+						expected += (getGamesBetween(a, b) + 1) / (strength[a] + strength[b]);
+					}
+					double next = won / expected;
+					largestChange = Math.max(largestChange, Math.abs(Math.log(next / strength[a])));
+					strength[a] = next;
+				}
+				if (largestChange < 1e-9) {
+					break;
+				}
+			}
+
+			double[] ratings = new double[numEntrants];
+			for (int a = 0; a < numEntrants; a++) {
+				ratings[a] = ELO_PER_NATURAL_UNIT * Math.log(strength[a] / strength[0]);
+			}
+			return ratings;
+		}
+
+		/**
+		 * getRatingErrors returns half the width of the 95% interval of every
+		 * rating, from the information its games carry about it while the other
+		 * ratings are held where they are.
+		 */
+		public double[] getRatingErrors(double[] ratings) {
+			double[] errors = new double[numEntrants];
+			for (int a = 0; a < numEntrants; a++) {
+				double information = 0;
+				for (int b = 0; b < numEntrants; b++) {
+					if (b != a) {
+						double p = expectedScore(ratings[a] - ratings[b]);
+						information += (getGamesBetween(a, b) + 1) * p * (1 - p);
+					}
+				}
+				errors[a] = Z_95 * ELO_PER_NATURAL_UNIT / Math.sqrt(information);
+			}
+			return errors;
+		}
+
+		/** expectedScore returns the share of points expected from an Elo difference */
+		private static double expectedScore(double difference) {
+			return 1 / (1 + Math.pow(10, -difference / 400));
+		}
+
+		/** eloDifference returns the Elo difference that gives a share of the points */
+		private static double eloDifference(double score) {
+			double clamped = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+			return -400 * Math.log10(1 / clamped - 1);
+		}
+
+		/** report returns every result, ready to print */
+		public String report() {
+			StringBuilder report = new StringBuilder();
+			report.append(String.format("%d games (%s) in %.1f seconds, %.1f games/second,"
+					+ " black won %.1f%%%n", games, description, seconds, getGamesPerSecond(),
+					100.0 * blackWins / Math.max(1, games)));
+
+			report.append(String.format("%nPairs (wins-losses-draws, score, Elo difference with"
+					+ " 95%% interval):%n"));
+			for (int a = 0; a < numEntrants; a++) {
+				for (int b = a + 1; b < numEntrants; b++) {
+					int n = getGamesBetween(a, b);
+					double score = getScore(a, b) / Math.max(1, n);
+					// the Wilson interval, which stays sensible when one side won nearly everything
+					double z2 = Z_95 * Z_95 / Math.max(1, n);
+					double middle = (score + z2 / 2) / (1 + z2);
+					double error = Z_95 * Math.sqrt(score * (1 - score) / Math.max(1, n) + z2 * z2
+							/ (4 * Z_95 * Z_95)) / (1 + z2);
+					report.append(String.format("  %-10s vs %-10s %5d-%d-%d  %5.1f%%  %+7.1f"
+							+ " [%+.1f, %+.1f]%n", names[a], names[b], wins[a][b], wins[b][a],
+							draws[a][b], 100 * score, eloDifference(score),
+							eloDifference(middle - error), eloDifference(middle + error)));
+				}
+			}
+
+			double[] ratings = getRatings();
+			double[] errors = getRatingErrors(ratings);
+			report.append(String.format("%nRatings (relative to %s):%n", names[0]));
+			for (int a = 0; a < numEntrants; a++) {
+				int played = 0;
+				double scored = 0;
+				for (int b = 0; b < numEntrants; b++) {
+					played += b == a ? 0 : getGamesBetween(a, b);
+					scored += b == a ? 0 : getScore(a, b);
+				}
+				report.append(String.format("  %-10s %+7.1f +/- %.1f   won %.1f%% of %d games%n",
+						names[a], ratings[a], errors[a], 100 * scored / Math.max(1, played),
+						played));
+			}
+			return report.toString();
+		}
+	}
+}
@@ -0,0 +1,481 @@
+package src;
+
+/**
+ * File: TrainingExporter.java
+ * ---------------------------
+ * The TrainingExporter turns the game logs of finished games into training data for models that
+ * learn to evaluate boards. It is run on its own, not from the Go program:
+ *
+ *     java src.TrainingExporter output-file log-file-or-folder...
+ *
+ * Every game is replayed with a VariationTree, following its undos, and every board on the way
+ * from the start to the end becomes one record: the board before a move, the move that was
+ * played from it, and whether the player to move went on to win. Games that were never ended,
+ * or whose board size is different from the first game's, are skipped.
+ *
+ * The output is made to be memory-mapped by a training job and used as it is, with no parsing.
+ * It starts with a header of HEADER_BYTES bytes, then holds one record every getRecordBytes()
+ * bytes. Everything is little-endian. The header is six ints and a long: MAGIC, VERSION, the
+ * board size, the number of planes, HISTORY_MOVES, the bytes per record, and the number of
+ * records. A record is NUM_PLANES planes of size * size bytes, each point of a plane 0 or 1 and
+ * numbered x * size + y like a GoBoard, then the move played (an int, x * size + y, or -1 for a
+ * pass) and the outcome for the player to move (an int, 1 for a win, -1 for a loss, 0 for a tie),
+ * then zeros up to a multiple of 8 bytes. The planes are, in order, from the point of view of
+ * the player to move:
+ *
+ *     0, 1, 2    the player's pieces, the opponent's pieces, empty points
+ *     3, 4, 5    the player's pieces in chains with 1, 2, and 3 or more liberties
+ *     6, 7, 8    the same for the opponent's pieces
+ *     9          the ko point, if the last move took a ko
+ *     10 to 13   the last move, the one before it, and so on (empty for passes)
+ *     14         every point is 1 if black is to move
+ *
+ * The games are replayed twice. The first pass, in parallel, counts the records of every game,
+ * so that each game knows where its records go. The second pass splits the games into batches,
+ * and each thread maps the part of the file its batch covers and writes its records straight
+ * into it.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TrainingExporter {
+
+	public static final int MAGIC = 0x474F5444;
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 6 * 4 + 8;
+
+	/** how many of the last moves get a plane each */
+	public static final int HISTORY_MOVES = 4;
+
+	public static final int NUM_PLANES = 10 + HISTORY_MOVES + 1;
+
+	private static final int OWN_STONES = 0;
+	private static final int OPPONENT_STONES = 1;
+	private static final int EMPTY_POINTS = 2;
+	private static final int OWN_LIBERTIES = 3;
+	private static final int OPPONENT_LIBERTIES = 6;
+	private static final int KO_POINT = 9;
+	private static final int LAST_MOVES = 10;
+	private static final int BLACK_TO_MOVE = 10 + HISTORY_MOVES;
+
+	/** the most bytes one batch of games maps at once */
+	private static final long BATCH_BYTES = 16L << 20;
+
+	private final int numThreads;
+
+	public TrainingExporter() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public TrainingExporter(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java src.TrainingExporter output-file log-file-or-folder...");
+			return;
+		}
+		ArrayList<File> logFiles = new ArrayList<File>();
+		for (int i = 1; i < args.length; i++) {
+			File input = new File(args[i]);
+			File[] files = input.isDirectory() ? input.listFiles() : new File[] { input };
+			Arrays.sort(files);
+			for (File logFile : files) {
+				if (logFile.isFile()) {
+					logFiles.add(logFile);
+				}
+			}
+		}
+
+		long start = System.nanoTime();
+		Summary summary = new TrainingExporter().export(logFiles, new File(args[0]));
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (summary.getGamesExported() == 0) {
+			System.out.println("No finished games were found, so nothing was written.");
+			return;
+		}
+		System.out.println("Exported " + summary.getRecords() + " positions from "
+				+ summary.getGamesExported() + " games (skipped " + summary.getGamesSkipped()
+				+ ") to " + args[0] + " in " + String.format("%.1f", seconds) + " seconds");
+	}
+
+	/** getRecordBytes returns how many bytes apart the records are for a board size */
+	public static int getRecordBytes(int size) {
+		int bytes = NUM_PLANES * size * size;
+		bytes = (bytes + 3) & ~3; // the ints that follow the planes are aligned
+		bytes += 2 * 4;
+		return (bytes + 7) & ~7;
+	}
+
+	/**
+	 * export writes the records of every usable game in logFiles to the
+	 * output file, replacing anything that was in it.
+	 *
+	 * @throws IOException
+	 *             if a log or the output file can't be read or written
+	 */
+	public Summary export(final ArrayList<File> logFiles, File outputFile) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			// the first pass: how many records each game has, and who won it
+			ArrayList<Future<Game>> counted = new ArrayList<Future<Game>>();
+			final TerritoryScorer scorer = new TerritoryScorer();
+			for (final File logFile : logFiles) {
+				counted.add(pool.submit(new Callable<Game>() {
+					public Game call() throws IOException {
+						return Game.count(logFile, scorer);
+					}
+				}));
+			}
+
+			ArrayList<Game> games = new ArrayList<Game>();
+			int size = -1;
+			long numRecords = 0;
+			for (Future<Game> future : counted) {
+				Game game = get(future);
+				if (game == null || (size != -1 && game.size != size)) {
+					continue;
+				}
+				size = game.size;
+				game.firstRecord = numRecords;
+				numRecords += game.numRecords;
+				games.add(game);
+			}
+			Summary summary = new Summary(games.size(), logFiles.size() - games.size(), numRecords);
+			if (games.isEmpty()) {
+				return summary;
+			}
+
+			final int boardSize = size;
+			final int recordBytes = getRecordBytes(size);
+			RandomAccessFile file = new RandomAccessFile(outputFile, "rw");
+			try {
+				final FileChannel channel = file.getChannel();
+				file.setLength(0);
+				file.setLength(HEADER_BYTES + numRecords * recordBytes);
+				writeHeader(channel, size, recordBytes, numRecords);
+
+				// the second pass: every batch maps its part of the file and fills it
+				ArrayList<Future<Void>> written = new ArrayList<Future<Void>>();
+				int first = 0;
+				while (first < games.size()) {
+					int last = first + 1;
+					long bytes = games.get(first).numRecords * (long) recordBytes;
+					while (last < games.size()
+							&& bytes + games.get(last).numRecords * (long) recordBytes <= BATCH_BYTES) {
+						bytes += games.get(last).numRecords * (long) recordBytes;
+						last++;
+					}
+					final ArrayList<Game> batch = new ArrayList<Game>(games.subList(first, last));
+					written.add(pool.submit(new Callable<Void>() {
+						public Void call() throws IOException {
+							new Writer(boardSize, recordBytes).write(batch, channel);
+							return null;
+						}
+					}));
+					first = last;
+				}
+				for (Future<Void> future : written) {
+					get(future);
+				}
+			} finally {
+				file.close();
+			}
+			return summary;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/** get waits for a task and returns its result, passing on anything it threw */
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("The export was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private static void writeHeader(FileChannel channel, int size, int recordBytes,
+			long numRecords) throws IOException {
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(size);
+		header.putInt(NUM_PLANES);
+		header.putInt(HISTORY_MOVES);
+		header.putInt(recordBytes);
+		header.putLong(numRecords);
+	}
+
+	/** A Summary says how much export wrote */
+	public static class Summary {
+
+		private final int gamesExported;
+		private final int gamesSkipped;
+		private final long records;
+
+		private Summary(int gamesExported, int gamesSkipped, long records) {
+			this.gamesExported = gamesExported;
+			this.gamesSkipped = gamesSkipped;
+			this.records = records;
+		}
+
+		public int getGamesExported() {
+			return gamesExported;
+		}
+
+		public int getGamesSkipped() {
+			return gamesSkipped;
+		}
+
+		public long getRecords() {
+			return records;
+		}
+	}
+
+	/** A Game is a usable game log, with where its records go in the file */
+	private static class Game {
+
+		private final File logFile;
+		private final int size;
+		private final int numRecords;
+		private final int winner;
+		private long firstRecord;
+
+		private Game(File logFile, int size, int numRecords, int winner) {
+			this.logFile = logFile;
+			this.size = size;
+			this.numRecords = numRecords;
+			this.winner = winner;
+		}
+
+		/** count replays a game log and returns its Game, or null if it can't be used */
+		private static Game count(File logFile, TerritoryScorer scorer) throws IOException {
+			GameLog.Recovery recovery = GameLog.read(logFile);
+			VariationTree.Node end = VariationTree.replay(recovery, true);
+			if (end == null || end.getDepth() == 0) {
+				return null;
+			}
+			int[] deadPieces = recovery.getDeadPieces();
+			return new Game(logFile, recovery.getNumber(0, 0), end.getDepth(), scorer.winner(
+					end.getBoard().remove(deadPieces), recovery.getNumber(0, 2),
+					GameOptions.countingOf(recovery.getNumber(0, 1)),
+					end.countPrisoners(deadPieces)));
+		}
+	}
+
+	/**
+	 * A Writer turns boards into records for one thread, reusing the same
+	 * arrays for every board.
+	 */
+	private static class Writer {
+
+		private final int numPoints;
+		private final int recordBytes;
+		private final FloodFillWorkspace workspace;
+		private final byte[] record;
+		private final int[] points;
+		private final int[] before;
+
+		/** the number of the last board whose liberties were counted at each point */
+		private final int[] countedBy;
+		private int currentBoard = 0;
+
+		private Writer(int size, int recordBytes) {
+			numPoints = size * size;
+			this.recordBytes = recordBytes;
+			workspace = new FloodFillWorkspace(size);
+			record = new byte[recordBytes];
+			points = new int[numPoints];
+			before = new int[numPoints];
+			countedBy = new int[numPoints];
+		}
+
+		/**
+		 * write replays every game of a batch and writes its records into the
+		 * part of the file the batch covers.
+		 */
+		private void write(ArrayList<Game> batch, FileChannel channel) throws IOException {
+			Game first = batch.get(0);
+			Game last = batch.get(batch.size() - 1);
+			long start = HEADER_BYTES + first.firstRecord * recordBytes;
+			long length = (last.firstRecord + last.numRecords - first.firstRecord) * recordBytes;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			for (Game game : batch) {
+				VariationTree.Node end = VariationTree.replay(GameLog.read(game.logFile), true);
+				if (end == null || end.getDepth() != game.numRecords) {
+					throw new IOException(game.logFile + " changed while it was being exported");
+				}
+				VariationTree.Node[] path = new VariationTree.Node[game.numRecords + 1];
+				for (VariationTree.Node node = end; node != null; node = node.getParent()) {
+					path[node.getDepth()] = node;
+				}
+				for (int k = 0; k < game.numRecords; k++) {
+					fillRecord(path, k, game.winner);
+					buffer.put(record);
+				}
+			}
+		}
+
+		/** fillRecord fills record with the board at path[k] and the move played from it */
+		private void fillRecord(VariationTree.Node[] path, int k, int winner) {
+			Arrays.fill(record, (byte) 0);
+			VariationTree.Node node = path[k];
+			int toMove = node.getToMove();
+			read(node.getBoard(), points);
+
+			for (int p = 0; p < numPoints; p++) {
+				if (points[p] == 0) {
+					record[EMPTY_POINTS * numPoints + p] = 1;
+				} else {
+					int plane = points[p] == toMove ? OWN_STONES : OPPONENT_STONES;
+					record[plane * numPoints + p] = 1;
+				}
+				if (toMove == 1) {
+					record[BLACK_TO_MOVE * numPoints + p] = 1;
+				}
+			}
+			fillLiberties(toMove);
+
+			int koPoint = koPoint(path, k);
+			if (koPoint != GoBoard.NO_POINT) {
+				record[KO_POINT * numPoints + koPoint] = 1;
+			}
+			for (int h = 0; h < HISTORY_MOVES && k - h > 0; h++) {
+				int move = path[k - h].getMove();
+				if (move != VariationTree.PASS) {
+					record[(LAST_MOVES + h) * numPoints + move] = 1;
+				}
+			}
+
+			int offset = (NUM_PLANES * numPoints + 3) & ~3;
+			putInt(offset, path[k + 1].getMove());
+			putInt(offset + 4, winner == 0 ? 0 : winner == toMove ? 1 : -1);
+		}
+
+		/**
+		 * fillLiberties marks every piece in the liberty plane for its chain's
+		 * number of liberties, counting each chain once.
+		 */
+		private void fillLiberties(int toMove) {
+			currentBoard++;
+			if (currentBoard == Integer.MAX_VALUE) {
+				Arrays.fill(countedBy, 0);
+				currentBoard = 1;
+			}
+			for (int p = 0; p < numPoints; p++) {
+				if (points[p] == 0 || countedBy[p] == currentBoard) {
+					continue;
+				}
+				int colour = points[p];
+				int liberties = 0;
+				workspace.start(p);
+				while (workspace.hasNext()) {
+					int q = workspace.next();
+					if (points[q] != colour) {
+						continue;
+					}
+					for (int d = 0; d < 4; d++) {
+						int n = workspace.neighbor(q, d);
+						if (n != GoBoard.NO_POINT && (points[n] == colour || points[n] == 0)
+								&& workspace.visit(n) && points[n] == 0) {
+							liberties++;
+						}
+					}
+				}
+
+				int plane = (colour == toMove ? OWN_LIBERTIES : OPPONENT_LIBERTIES)
+						+ Math.min(liberties, 3) - 1;
+				for (int i = 0; i < workspace.getNumFound(); i++) {
+					int q = workspace.getFound(i);
+					if (points[q] == colour) {
+						countedBy[q] = currentBoard;
+						record[plane * numPoints + q] = 1;
+					}
+				}
+			}
+		}
+
+		/**
+		 * koPoint returns the point the player to move at path[k] can't retake
+		 * straight away, which is where a single piece was captured by a lone
+		 * piece that was left with one liberty, or NO_POINT if there isn't one.
+		 * points must hold the board of path[k].
+		 */
+		private int koPoint(VariationTree.Node[] path, int k) {
+			int move = k > 0 ? path[k].getMove() : VariationTree.PASS;
+			if (move == VariationTree.PASS) {
+				return GoBoard.NO_POINT;
+			}
+			int mover = points[move];
+			int captured = GoBoard.NO_POINT;
+			int liberties = 0;
+			for (int d = 0; d < 4; d++) {
+				int n = workspace.neighbor(move, d);
+				if (n == GoBoard.NO_POINT) {
+					continue;
+				}
+				if (points[n] == mover) {
+					return GoBoard.NO_POINT; // not a lone piece
+				}
+				if (points[n] == 0) {
+					liberties++;
+					captured = n;
+				}
+			}
+			if (liberties != 1) {
+				return GoBoard.NO_POINT;
+			}
+
+			// the only liberty must have held a single enemy piece before the move
+			read(path[k - 1].getBoard(), before);
+			if (before[captured] != GoBoard.opponent(mover)) {
+				return GoBoard.NO_POINT;
+			}
+			int numCaptured = 0;
+			for (int p = 0; p < numPoints; p++) {
+				if (before[p] != 0 && points[p] == 0) {
+					numCaptured++;
+				}
+			}
+			return numCaptured == 1 ? captured : GoBoard.NO_POINT;
+		}
+
+		private void read(PersistentBoard board, int[] into) {
+			PackedPosition position = board.toPackedPosition();
+			for (int p = 0; p < numPoints; p++) {
+				into[p] = position.get(p);
+			}
+		}
+
+		private void putInt(int offset, int value) {
+			record[offset] = (byte) value;
+			record[offset + 1] = (byte) (value >> 8);
+			record[offset + 2] = (byte) (value >> 16);
+			record[offset + 3] = (byte) (value >> 24);
+		}
+	}
+}
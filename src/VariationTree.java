@@ -0,0 +1,342 @@
+package src;
+
+/**
+ * File: VariationTree.java
+ * ------------------------
+ * A VariationTree remembers every line of play that has been tried in a game, not just the one
+ * currently on the board. When turns are undone and something else is played, the old line
+ * stays in the tree as another branch, and any node can be gone back to later.
+ *
+ * Every node holds its board as a PersistentBoard, so a node only costs the parts of the board
+ * its move changed, and any node can be shown straight away without replaying the moves that
+ * led to it.
+ */
+
+import java.util.ArrayList;
+
+public class VariationTree {
+
+	/** the move of a node that was reached by passing */
+	public static final int PASS = -1;
+
+	private final int size;
+	/** the rule against repeating boards, one of the rules of RulesEngine such as SIMPLE_KO */
+	private final int rule;
+	private final FloodFillWorkspace workspace;
+	private final Node root;
+	private Node current;
+
+	/** how many turns had been taken before the root, which is 0 unless the game was resumed */
+	private final int startDepth;
+
+	public VariationTree(int size, int rule) {
+		this(PersistentBoard.empty(size), 1, 0, 0, rule);
+	}
+
+	/**
+	 * Makes a tree whose root is a game part of the way through, such as one
+	 * resumed from a GameSnapshot, with startDepth turns already taken. Boards
+	 * from before the root are not known to the tree, so under superko only
+	 * the boards since the root are checked.
+	 */
+	public VariationTree(PersistentBoard start, int toMove, int passes, int startDepth,
+			int rule) {
+		this.size = start.getSize();
+		this.rule = rule;
+		this.startDepth = startDepth;
+		workspace = new FloodFillWorkspace(size);
+		root = new Node(null, PASS, start, toMove, passes);
+		current = root;
+	}
+
+	public Node getRoot() {
+		return root;
+	}
+
+	public Node getCurrent() {
+		return current;
+	}
+
+	/**
+	 * play places a piece of the player to move at point p of the current
+	 * node. If that move was already tried from here, its node is reused,
+	 * otherwise a new branch is added. The new node becomes the current one.
+	 *
+	 * @return the new current node, or null if the point is taken or the move
+	 *         repeats a board state the rule being used forbids
+	 */
+	public Node play(int p) {
+		Node existing = current.findChild(p);
+		if (existing != null) {
+			current = existing;
+			return current;
+		}
+		if (current.board.get(p) != 0) {
+			return null;
+		}
+
+		PersistentBoard board = current.board.play(p, current.toMove, workspace);
+		if (repeatsBoardState(board)) {
+			return null;
+		}
+		current = current.addChild(p, board, 0);
+		return current;
+	}
+
+	/** pass passes the turn of the player to move, and returns the new current node */
+	public Node pass() {
+		Node existing = current.findChild(PASS);
+		if (existing != null) {
+			current = existing;
+		} else {
+			current = current.addChild(PASS, current.board, current.passes + 1);
+		}
+		return current;
+	}
+
+	/**
+	 * back moves the current node up the tree by the given number of turns,
+	 * stopping at the start of the game, and returns the new current node.
+	 */
+	public Node back(int numTurns) {
+		for (int i = 0; i < numTurns && current.parent != null; i++) {
+			current = current.parent;
+		}
+		return current;
+	}
+
+	/** select makes any node of this tree the current node */
+	public void select(Node node) {
+		current = node;
+	}
+
+	/**
+	 * getLeaves returns the last node of every line of play in the tree, in the
+	 * order the lines were first played.
+	 */
+	public ArrayList<Node> getLeaves() {
+		ArrayList<Node> leaves = new ArrayList<Node>();
+		ArrayList<Node> waiting = new ArrayList<Node>();
+		waiting.add(root);
+		while (!waiting.isEmpty()) {
+			Node node = waiting.remove(waiting.size() - 1);
+			if (node.children.isEmpty()) {
+				leaves.add(node);
+			}
+			for (int i = node.children.size() - 1; i >= 0; i--) {
+				waiting.add(node.children.get(i));
+			}
+		}
+		return leaves;
+	}
+
+	/**
+	 * replay plays a recovered game log on a new VariationTree, following its
+	 * undos, and returns the node the game finished on, so that the path from
+	 * the root to it holds the moves that were actually kept. Games that were
+	 * never ended are only replayed if requireEnded is false.
+	 *
+	 * @return the last node, or null if the log has no game, the game was
+	 *         required to be ended and wasn't, or it has a move the rules don't
+	 *         allow
+	 */
+	public static Node replay(GameLog.Recovery recovery, boolean requireEnded) {
+		if (!recovery.hasGame() || (requireEnded && !recovery.isEnded())) {
+			return null;
+		}
+		VariationTree tree = new VariationTree(recovery.getNumber(0, 0),
+				GameOptions.ruleOf(recovery.getNumber(0, 1)));
+		return tree.follow(recovery);
+	}
+
+	/**
+	 * follow plays every action of a recovered game log after its START
+	 * record on this tree, from the current node, following its undos. The
+	 * tree is left at the node the game finished on, or at the last node
+	 * reached before a move the rules don't allow.
+	 *
+	 * @return the new current node, or null if the log has a move the rules
+	 *         don't allow
+	 */
+	public Node follow(GameLog.Recovery recovery) {
+		for (int index = 1; index < recovery.size(); index++) {
+			int type = recovery.getType(index);
+			if (type == GameLog.MOVE) {
+				int p = recovery.getNumber(index, 0) * size + recovery.getNumber(index, 1);
+				if (play(p) == null) {
+					return null;
+				}
+			} else if (type == GameLog.PASS) {
+				pass();
+			} else if (type == GameLog.UNDO) {
+				back(recovery.getNumber(index, 0));
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * repeatsBoardState returns true if a board reached from the current node
+	 * breaks the rule being used. Under simple ko, the board may not be the
+	 * same as the one before the opponent's last turn. Under positional
+	 * superko, it may not be the same as any board on the way from the start
+	 * of the game, and under situational superko, as any of those boards that
+	 * had the same player to move as the new board will.
+	 */
+	private boolean repeatsBoardState(PersistentBoard board) {
+		if (rule == RulesEngine.SIMPLE_KO) {
+			return current.parent != null && board.equals(current.parent.board);
+		}
+		int nextToMove = Allegiance.opponent(current.toMove);
+		for (Node node = current; node != null; node = node.parent) {
+			if ((rule == RulesEngine.POSITIONAL_SUPERKO || node.toMove == nextToMove)
+					&& board.equals(node.board)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A Node is one board state of the tree: the move that led to it, the board
+	 * after that move, and the player whose turn it is next.
+	 */
+	public class Node {
+
+		private final Node parent;
+		private final ArrayList<Node> children = new ArrayList<Node>();
+		private final int move;
+		private final PersistentBoard board;
+		private final int toMove;
+		private final int depth;
+
+		/** how many passes in a row led to this node */
+		private final int passes;
+
+		private Node(Node parent, int move, PersistentBoard board, int toMove, int passes) {
+			this.parent = parent;
+			this.move = move;
+			this.board = board;
+			this.toMove = toMove;
+			this.passes = passes;
+			depth = parent == null ? startDepth : parent.depth + 1;
+		}
+
+		private Node findChild(int childMove) {
+			for (Node child : children) {
+				if (child.move == childMove) {
+					return child;
+				}
+			}
+			return null;
+		}
+
+		private Node addChild(int childMove, PersistentBoard childBoard, int childPasses) {
+			Node child = new Node(this, childMove, childBoard, Allegiance.opponent(toMove),
+					childPasses);
+			children.add(child);
+			return child;
+		}
+
+		public Node getParent() {
+			return parent;
+		}
+
+		/** getMove returns the point played to reach this node, or PASS */
+		public int getMove() {
+			return move;
+		}
+
+		public PersistentBoard getBoard() {
+			return board;
+		}
+
+		public int getToMove() {
+			return toMove;
+		}
+
+		/**
+		 * countPrisoners returns how many pieces each player captured on the
+		 * way from the root to this node, indexed by colour, with the dead
+		 * pieces at the given points counted as captured too. Every piece that
+		 * is gone from one board to the next is a prisoner of the other player,
+		 * as is a piece that captured itself. Captures from before the root of
+		 * a resumed game aren't known, so they aren't counted.
+		 */
+		public int[] countPrisoners(int[] deadPieces) {
+			int[] prisoners = new int[3];
+			for (Node node = this; node.parent != null; node = node.parent) {
+				if (node.move == PASS) {
+					continue;
+				}
+				PersistentBoard before = node.parent.board;
+				int numPoints = before.getSize() * before.getSize();
+				for (int p = 0; p < numPoints; p++) {
+					int allegiance = before.get(p);
+					if (Allegiance.isPiece(allegiance) && node.board.get(p) != allegiance) {
+						prisoners[Allegiance.opponent(allegiance)]++;
+					}
+				}
+				if (node.board.get(node.move) == Allegiance.EMPTY) {
+					prisoners[node.toMove]++;
+				}
+			}
+			for (int p : deadPieces) {
+				if (Allegiance.isPiece(board.get(p))) {
+					prisoners[Allegiance.opponent(board.get(p))]++;
+				}
+			}
+			return prisoners;
+		}
+
+		/** getDepth returns how many turns were played from the start of the game to reach this node */
+		public int getDepth() {
+			return depth;
+		}
+
+		public int getPasses() {
+			return passes;
+		}
+
+		/**
+		 * getLine returns every node from the root of the tree down to this
+		 * one, which is the line of play that reached it.
+		 */
+		public ArrayList<Node> getLine() {
+			ArrayList<Node> line = new ArrayList<Node>();
+			for (Node node = this; node != null; node = node.parent) {
+				line.add(node);
+			}
+			for (int i = 0, k = line.size() - 1; i < k; i++, k--) {
+				Node swap = line.get(i);
+				line.set(i, line.get(k));
+				line.set(k, swap);
+			}
+			return line;
+		}
+
+		/** isAncestorOf returns true if other is this node or is further down its branch */
+		public boolean isAncestorOf(Node other) {
+			for (Node node = other; node != null; node = node.parent) {
+				if (node == this) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * describe returns a short description of the line of play ending at
+		 * this node, such as "Turn 12, after black at (3, 4)".
+		 */
+		public String describe() {
+			if (parent == null) {
+				return "Turn 1, the start of the game";
+			}
+			String player = toMove == 1 ? "white" : "black";
+			String action = move == PASS ? player + " passed" : player + " at ("
+					+ (move / size) + ", " + (move % size) + ")";
+			return "Turn " + (depth + 1) + ", after " + action;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package src;
+
+/**
+ * File: WeightedSampler.java
+ * --------------------------
+ * A WeightedSampler picks one of a fixed number of items at random, each with a chance in
+ * proportion to its weight, while the weights keep changing. It is used by pattern-guided
+ * playouts, where every empty point of the board is an item and its weight comes from the
+ * pattern around it.
+ *
+ * The weights are kept in a Fenwick tree (a binary indexed tree), in which element i holds the
+ * total weight of a run of items ending at i whose length is the lowest set bit of i. Changing a
+ * weight and finding the item a random number falls on both take a number of steps equal to the
+ * number of bits in the number of items, instead of a pass over every item.
+ */
+
+import java.util.Arrays;
+
+public class WeightedSampler {
+
+	private final int numItems;
+
+	/** the Fenwick tree, numbered from 1 so that the lowest set bit works out */
+	private final int[] tree;
+
+	/** the weight of every item, numbered from 0 */
+	private final int[] weights;
+
+	/** the highest power of two that is no more than numItems, where find starts */
+	private final int topBit;
+
+	public WeightedSampler(int numItems) {
+		this.numItems = numItems;
+		tree = new int[numItems + 1];
+		weights = new int[numItems];
+		topBit = Integer.highestOneBit(Math.max(1, numItems));
+	}
+
+	public int getNumItems() {
+		return numItems;
+	}
+
+	public int get(int item) {
+		return weights[item];
+	}
+
+	/** getTotal returns the sum of every weight */
+	public int getTotal() {
+		int total = 0;
+		for (int i = numItems; i > 0; i -= i & -i) {
+			total += tree[i];
+		}
+		return total;
+	}
+
+	/** set changes the weight of an item, which must not be negative */
+	public void set(int item, int weight) {
+		int change = weight - weights[item];
+		if (change == 0) {
+			return;
+		}
+		weights[item] = weight;
+		for (int i = item + 1; i <= numItems; i += i & -i) {
+			tree[i] += change;
+		}
+	}
+
+	/**
+	 * find returns the item that target falls on when the weights are laid
+	 * end to end in order: the item whose weights before it add up to at most
+	 * target, and including it add up to more. target must be at least 0 and
+	 * less than getTotal(), so a random number in that range picks each item
+	 * with a chance in proportion to its weight.
+	 */
+	public int find(int target) {
+		int position = 0;
+		for (int bit = topBit; bit > 0; bit >>= 1) {
+			int next = position + bit;
+			if (next <= numItems && tree[next] <= target) {
+				position = next;
+				target -= tree[next];
+			}
+		}
+		return position; // the item numbered position + 1 from 1, which is position from 0
+	}
+
+	/** clear sets every weight to 0 */
+	public void clear() {
+		Arrays.fill(tree, 0);
+		Arrays.fill(weights, 0);
+	}
+
+	/** copyFrom overwrites the weights with those of another sampler with the same number of items */
+	public void copyFrom(WeightedSampler other) {
+		System.arraycopy(other.tree, 0, tree, 0, tree.length);
+		System.arraycopy(other.weights, 0, weights, 0, weights.length);
+	}
+}